@@ -23,6 +23,7 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
 import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.RestartResponseException;
 import org.apache.wicket.core.request.handler.IPageRequestHandler;
@@ -31,6 +32,7 @@ import org.apache.wicket.protocol.https.HttpsConfig;
 import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.cycle.IRequestCycleListener;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.brixcms.auth.Action;
 import org.brixcms.auth.Action.Context;
@@ -40,7 +42,10 @@ import org.brixcms.config.BrixConfig;
 import org.brixcms.exception.BrixException;
 import org.brixcms.jcr.JcrNodeWrapperFactory;
 import org.brixcms.jcr.RepositoryInitializer;
+import org.brixcms.jcr.NodeWrapperDispatcher;
 import org.brixcms.jcr.SessionBehavior;
+import org.brixcms.jcr.SessionScope;
+import org.brixcms.jcr.WorkspaceChangeNotifier;
 import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.wrapper.BrixNode;
@@ -62,8 +67,12 @@ import org.brixcms.web.nodepage.BrixPageParameters;
 import org.brixcms.web.nodepage.ForbiddenPage;
 import org.brixcms.web.nodepage.PageParametersAwareEnabler;
 import org.brixcms.web.tile.pagetile.PageTile;
+import org.brixcms.workspace.AbstractWorkspaceManager;
 import org.brixcms.workspace.Workspace;
+import org.brixcms.workspace.WorkspaceCache;
+import org.brixcms.workspace.WorkspaceListener;
 import org.brixcms.workspace.WorkspaceManager;
+import org.brixcms.workspace.rmi.ClientWorkspaceManager;
 
 /**
  * TODO doc
@@ -85,6 +94,12 @@ public abstract class Brix {
 
     private final BrixConfig config;
 
+    private final WorkspaceChangeNotifier changeNotifier;
+
+    private final NodeWrapperDispatcher nodeWrapperDispatcher;
+
+    private final WorkspaceCache workspaceCache;
+
     /*
       * public void publish(String workspace, String targetState, SessionProvider
       * sessionProvider) { String dest = getWorkspaceNameForState(workspace,
@@ -195,6 +210,20 @@ public abstract class Brix {
 
     public Brix(BrixConfig config) {
         this.config = config;
+        this.changeNotifier = new WorkspaceChangeNotifier(config.getSessionFactory());
+        this.workspaceCache = new WorkspaceCache(config.getWorkspaceManager());
+        if (config.getWorkspaceManager() instanceof AbstractWorkspaceManager) {
+            ((AbstractWorkspaceManager) config.getWorkspaceManager()).addWorkspaceListener(new WorkspaceListener() {
+                public void workspaceDeleted(String workspaceId) {
+                    changeNotifier.forget(workspaceId);
+                }
+
+                public void workspaceAttributeChanged(String workspaceId, String key, String value) {
+                }
+            });
+        }
+
+        this.nodeWrapperDispatcher = new NodeWrapperDispatcher(this);
 
         final ExtensionPointRegistry registry = config.getRegistry();
 
@@ -254,6 +283,27 @@ public abstract class Brix {
            */
         application.getComponentOnConfigureListeners().add(new PageParametersAwareEnabler());
 
+        // release sessions of the request
+        application.getRequestCycleListeners().add(new IRequestCycleListener() {
+            @Override
+            public void onDetach(RequestCycle cycle) {
+                SessionScope.close(cycle);
+            }
+        });
+
+        // stop the threads of the site plugin and of the workspace manager with the application
+        application.getApplicationListeners().add(new IApplicationListener() {
+            @Override
+            public void onBeforeDestroyed(Application application) {
+                SitePlugin plugin = SitePlugin.get(Brix.this);
+                if (plugin != null) {
+                    plugin.close();
+                }
+                if (config.getWorkspaceManager() instanceof ClientWorkspaceManager) {
+                    ((ClientWorkspaceManager) config.getWorkspaceManager()).close();
+                }
+            }
+        });
 
         // allow brix to handle any url that wicket cant
         // todo: make sure that BrixRequestMapper is changed so that it can work together with HttpsMapper, problem seems that
@@ -344,6 +394,33 @@ public abstract class Brix {
         return config.getWorkspaceManager();
     }
 
+    /**
+     * Returns the cache used for workspace lookups done on every request.
+     *
+     * @return workspace cache
+     */
+    public final WorkspaceCache getWorkspaceCache() {
+        return workspaceCache;
+    }
+
+    /**
+     * Returns the notifier that reports repository changes to caches holding content derived data.
+     *
+     * @return change notifier
+     */
+    public final WorkspaceChangeNotifier getChangeNotifier() {
+        return changeNotifier;
+    }
+
+    /**
+     * Returns the dispatcher used to wrap nodes with the wrappers of registered {@link JcrNodeWrapperFactory}s.
+     *
+     * @return node wrapper dispatcher
+     */
+    public final NodeWrapperDispatcher getNodeWrapperDispatcher() {
+        return nodeWrapperDispatcher;
+    }
+
     public void initRepository() {
         List<RepositoryInitializer> initializers = new ArrayList<RepositoryInitializer>();
         initializers.addAll(config.getRegistry().lookupCollection(RepositoryInitializer.POINT));
@@ -367,9 +444,23 @@ public abstract class Brix {
         }
     }
 
+    /**
+     * Returns the session of the current request for given workspace. Within a request the same wrapped session is
+     * returned for every call, see {@link SessionScope}.
+     *
+     * @param workspace workspace name or <code>null</code> for default
+     * @return session
+     */
     public JcrSession getCurrentSession(String workspace) {
+        SessionScope scope = SessionScope.get(this);
+        if (scope != null) {
+            return scope.getSession(workspace);
+        }
         Session session = config.getSessionFactory().getCurrentSession(workspace);
-        return wrapSession(session);
+        JcrSession wrapped = wrapSession(session);
+        // current sessions only live for a request
+        wrapped.setNodeCacheEnabled(true);
+        return wrapped;
     }
 
     public JcrSession wrapSession(Session session) {
@@ -0,0 +1,33 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.config;
+
+import org.brixcms.Brix;
+import org.brixcms.Path;
+
+/**
+ * {@link UriMapper} that can declare that the node paths it resolves may be cached. Node paths of other uri mappers are
+ * resolved on every request.
+ */
+public interface CacheableUriMapper extends UriMapper {
+    /**
+     * Tells whether {@link #getNodePathForUriPath(Path, Brix)} depends on nothing but the uri path, so that the node a
+     * uri path resolves to can be cached per workspace and shared by all requests. Mappers whose result depends on the
+     * host, the request or the session must return <code>false</code>.
+     *
+     * @return <code>true</code> if resolved node paths may be cached
+     */
+    public boolean isNodePathCacheable();
+}
@@ -21,10 +21,13 @@ import org.brixcms.plugin.site.SitePlugin;
 /**
  * Uri mapper that mounts cms urls on a certain prefix. Eg <code>new PrefixUriMapper(new Path("/docs/cms"))</code> will
  * mount all cms urls under the <code>/docs/cms/*</code> url space.
+ * <p/>
+ * Node paths resolved by this mapper are cached. Subclasses that override {@link #getNodePathForUriPath(Path, Brix)}
+ * with a result that depends on anything besides the uri path must also override {@link #isNodePathCacheable()}.
  *
  * @author ivaynberg
  */
-public abstract class PrefixUriMapper implements UriMapper {
+public abstract class PrefixUriMapper implements CacheableUriMapper {
     private final Path prefix;
 
     /**
@@ -56,6 +59,13 @@ public abstract class PrefixUriMapper implements UriMapper {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isNodePathCacheable() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -19,6 +19,7 @@ import org.brixcms.jcr.api.JcrNodeIterator;
 import org.brixcms.jcr.api.JcrProperty;
 import org.brixcms.jcr.base.SaveEvent;
 import org.brixcms.jcr.base.SaveEventListener;
+import org.brixcms.jcr.wrapper.BrixFileNode;
 import org.brixcms.jcr.wrapper.BrixNode;
 
 import javax.jcr.observation.Event;
@@ -68,5 +69,19 @@ public class JcrEventListener implements SaveEventListener {
         if (node.isNodeType("nt:file") || node.isNodeType("nt:folder")) {
             new BrixNode(node.getDelegate(), node.getSession()).touch();
         }
+        if (BrixFileNode.isFileNode(node)) {
+            updateContentHash(new BrixFileNode(node.getDelegate(), node.getSession()));
+        }
+    }
+
+    private void updateContentHash(BrixFileNode file) {
+        JcrNode content = file.getNode("jcr:content");
+        if (!content.hasProperty("jcr:data")) {
+            return;
+        }
+        JcrProperty data = content.getProperty("jcr:data");
+        if (data.isNew() || data.isModified() || !file.hasProperty(BrixFileNode.JCR_PROP_CONTENT_HASH)) {
+            file.updateContentHash();
+        }
     }
 }
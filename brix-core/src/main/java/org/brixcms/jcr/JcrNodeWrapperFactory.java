@@ -84,6 +84,28 @@ public abstract class JcrNodeWrapperFactory implements RepositoryInitializer {
      */
     public abstract boolean canWrap(Brix brix, JcrNode node);
 
+    /**
+     * Returns the brix node type (see {@link org.brixcms.jcr.wrapper.BrixNode#getNodeType(JcrNode)}) of nodes this
+     * factory wraps. Factories that wrap exactly the nodes of one brix node type should return it, the factory is then
+     * found with a single lookup and {@link #canWrap(Brix, JcrNode)} is not called.
+     *
+     * @return brix node type or <code>null</code> if {@link #canWrap(Brix, JcrNode)} decides
+     */
+    public String getWrappedNodeType() {
+        return null;
+    }
+
+    /**
+     * Returns the path of the single node this factory wraps. Like {@link #getWrappedNodeType()} this allows the
+     * factory to be found without calling {@link #canWrap(Brix, JcrNode)}.
+     *
+     * @param brix
+     * @return node path or <code>null</code> if {@link #canWrap(Brix, JcrNode)} decides
+     */
+    public String getWrappedNodePath(Brix brix) {
+        return null;
+    }
+
     /**
      * Wraps the node with a subclass.
      * <p/>
@@ -0,0 +1,177 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr;
+
+import org.brixcms.Brix;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.api.wrapper.NodeWrapper;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.jcr.wrapper.ResourceNode;
+import org.brixcms.registry.ExtensionPoint;
+import org.brixcms.registry.ExtensionPointRegistry;
+
+import javax.jcr.Node;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Picks the {@link JcrNodeWrapperFactory} for nodes. Factories that declare the brix node type or the path of the
+ * nodes they wrap are put in lookup tables, only the remaining factories are asked through {@link
+ * JcrNodeWrapperFactory#canWrap(Brix, JcrNode)}. As before the first registered factory that can wrap the node wins.
+ * <p/>
+ * The tables are built lazily and dropped whenever an extension is registered, as factories may depend on plugins
+ * (e.g. for their node path). Building, publishing and dropping the tables happens under a lock, so a table built from
+ * the registrations preceding a registration never outlives the notification about it.
+ */
+public class NodeWrapperDispatcher implements ExtensionPointRegistry.Listener {
+    private final Brix brix;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile Table table;
+
+    public NodeWrapperDispatcher(Brix brix) {
+        if (brix == null) {
+            throw new IllegalArgumentException("Argument 'brix' may not be null.");
+        }
+        this.brix = brix;
+        brix.getConfig().getRegistry().register(this, false);
+    }
+
+    /**
+     * Wraps the node with the wrapper of the first factory that can wrap it, with {@link ResourceNode} or with {@link
+     * BrixNode}.
+     *
+     * @param node
+     * @param session
+     * @return wrapper
+     */
+    public JcrNode wrap(Node node, JcrSession session) {
+        JcrNode n = new NodeWrapper(node, session);
+
+        JcrNodeWrapperFactory factory = getTable().find(n);
+        if (factory != null) {
+            return factory.wrap(brix, node, session);
+        }
+
+        if (ResourceNode.FACTORY.canWrap(brix, n)) {
+            return ResourceNode.FACTORY.wrap(brix, node, session);
+        }
+
+        return new BrixNode(node, session);
+    }
+
+    private Table getTable() {
+        Table table = this.table;
+        if (table == null) {
+            lock.lock();
+            try {
+                table = this.table;
+                if (table == null) {
+                    table = new Table(brix.getConfig().getRegistry().lookupCollection(JcrNodeWrapperFactory.POINT));
+                    this.table = table;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return table;
+    }
+
+    private void invalidate() {
+        lock.lock();
+        try {
+            table = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void registered(ExtensionPoint<?> point, Object extension) {
+        invalidate();
+    }
+
+    public void unregistered(ExtensionPoint<?> point, Object extension) {
+        invalidate();
+    }
+
+    private class Table {
+        private final List<JcrNodeWrapperFactory> factories;
+
+        private final Map<String, Integer> byType = new HashMap<String, Integer>();
+
+        private final Map<String, Integer> byPath = new HashMap<String, Integer>();
+
+        // indices of factories that must be asked through canWrap, ascending
+        private final int[] generic;
+
+        Table(Iterable<JcrNodeWrapperFactory> registered) {
+            factories = new ArrayList<JcrNodeWrapperFactory>();
+            List<Integer> generic = new ArrayList<Integer>();
+            for (JcrNodeWrapperFactory factory : registered) {
+                int index = factories.size();
+                factories.add(factory);
+                String type = factory.getWrappedNodeType();
+                String path = type == null ? factory.getWrappedNodePath(brix) : null;
+                if (type != null) {
+                    if (!byType.containsKey(type)) {
+                        byType.put(type, index);
+                    }
+                } else if (path != null) {
+                    if (!byPath.containsKey(path)) {
+                        byPath.put(path, index);
+                    }
+                } else {
+                    generic.add(index);
+                }
+            }
+            this.generic = new int[generic.size()];
+            for (int i = 0; i < this.generic.length; ++i) {
+                this.generic[i] = generic.get(i);
+            }
+        }
+
+        JcrNodeWrapperFactory find(JcrNode node) {
+            int best = Integer.MAX_VALUE;
+            if (!byType.isEmpty()) {
+                String type = BrixNode.getNodeType(node);
+                Integer index = type != null ? byType.get(type) : null;
+                if (index != null) {
+                    best = index;
+                }
+            }
+            if (!byPath.isEmpty()) {
+                Integer index = byPath.get(node.getPath());
+                if (index != null && index < best) {
+                    best = index;
+                }
+            }
+            for (int index : generic) {
+                if (index > best) {
+                    break;
+                }
+                JcrNodeWrapperFactory factory = factories.get(index);
+                if (factory.canWrap(brix, node)) {
+                    return factory;
+                }
+            }
+            return best != Integer.MAX_VALUE ? factories.get(best) : null;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link JcrSessionFactory} that keeps logged in sessions in per-workspace pools instead of logging in for every
+ * request, which is expensive especially with remote repositories.
+ * <p/>
+ * Sessions returned by {@link #getCurrentSession(String)} belong to a {@link Scope}, usually one per request. The scope
+ * borrows at most one session per workspace and returns all of them to the pool when it is closed. Returned sessions
+ * are refreshed without keeping changes; sessions that are no longer live or can not be refreshed are discarded.
+ * <p/>
+ * The scope is not tied to a thread. {@link #openScope()} binds the new scope to the calling thread so that {@link
+ * #getCurrentSession(String)} finds it, and the scope can be bound to another thread (e.g. when the request continues
+ * on a different virtual thread) with {@link Scope#bind()}. If there is no bound scope, {@link
+ * #getCurrentSession(String)} opens one which is closed by {@link #cleanup()}, the same contract {@link
+ * ThreadLocalSessionFactory} has.
+ * <p/>
+ * Pools use {@link ReentrantLock}s rather than monitors, so waiting for a session does not pin virtual threads.
+ * <p/>
+ * Pooled sessions are reused by different requests, so code using them must not register observation listeners, keep
+ * session scoped locks or otherwise leave state on them.
+ */
+public class PooledSessionFactory implements JcrSessionFactory {
+    private static final Logger logger = LoggerFactory.getLogger(PooledSessionFactory.class);
+
+    /**
+     * Default maximum number of idle sessions kept per workspace
+     */
+    public static final int DEFAULT_MAX_IDLE = 8;
+
+    /**
+     * Default maximum number of sessions (borrowed and idle) per workspace
+     */
+    public static final int DEFAULT_MAX_TOTAL = 64;
+
+    /**
+     * Default number of milliseconds to wait for a session if the workspace pool is exhausted
+     */
+    public static final long DEFAULT_MAX_WAIT = 10000;
+
+    // key of the default workspace, concurrent maps do not allow null keys
+    private static final String DEFAULT_WORKSPACE = "";
+
+    private final Repository repository;
+    private final Credentials credentials;
+
+    private final int maxIdle;
+    private final int maxTotal;
+    private final long maxWait;
+
+    private final ConcurrentMap<String, Pool> pools = new ConcurrentHashMap<String, Pool>();
+
+    private final ThreadLocal<Scope> currentScope = new ThreadLocal<Scope>();
+
+    private final AtomicLong logins = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public PooledSessionFactory(Repository repository, Credentials credentials) {
+        this(repository, credentials, DEFAULT_MAX_IDLE, DEFAULT_MAX_TOTAL, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * @param repository
+     * @param credentials
+     * @param maxIdle     maximum number of idle sessions kept per workspace
+     * @param maxTotal    maximum number of sessions per workspace
+     * @param maxWait     milliseconds to wait for a session when there are <code>maxTotal</code> sessions in use
+     */
+    public PooledSessionFactory(Repository repository, Credentials credentials, int maxIdle, int maxTotal,
+                                long maxWait) {
+        if (repository == null) {
+            throw new IllegalArgumentException("Argument 'repository' may not be null.");
+        }
+        if (credentials == null) {
+            throw new IllegalArgumentException("Argument 'credentials' may not be null.");
+        }
+        if (maxTotal < 1 || maxIdle < 0 || maxIdle > maxTotal) {
+            throw new IllegalArgumentException("Expected 0 <= maxIdle <= maxTotal and maxTotal > 0.");
+        }
+        this.repository = repository;
+        this.credentials = credentials;
+        this.maxIdle = maxIdle;
+        this.maxTotal = maxTotal;
+        this.maxWait = maxWait;
+    }
+
+    public Session createSession(String workspace) throws CannotOpenJcrSessionException {
+        return login(workspace);
+    }
+
+    public Session getCurrentSession(String workspace) throws CannotOpenJcrSessionException {
+        Scope scope = currentScope.get();
+        if (scope == null) {
+            scope = openScope();
+        }
+        return scope.getSession(workspace);
+    }
+
+    /**
+     * Opens new scope and binds it to the current thread. A scope previously bound to the thread is only unbound, it
+     * still has to be closed by its owner.
+     *
+     * @return scope
+     */
+    public Scope openScope() {
+        Scope scope = new Scope();
+        scope.bind();
+        return scope;
+    }
+
+    /**
+     * Closes the scope bound to the current thread, returning its sessions to the pool.
+     */
+    public void cleanup() {
+        Scope scope = currentScope.get();
+        if (scope != null) {
+            scope.close();
+        }
+    }
+
+    /**
+     * Logs out all idle sessions. Sessions borrowed at the time are logged out when they are returned.
+     */
+    public void close() {
+        closed = true;
+        for (Pool pool : pools.values()) {
+            pool.clear();
+        }
+    }
+
+    private Session login(String workspace) {
+        try {
+            logger.debug("Opening jcr session to workspace: {}", workspace);
+            Session session = repository.login(credentials, workspace);
+            logins.incrementAndGet();
+            return session;
+        } catch (Exception e) {
+            throw new CannotOpenJcrSessionException(workspace, e);
+        }
+    }
+
+    private Pool getPool(String workspace) {
+        String key = workspace != null ? workspace : DEFAULT_WORKSPACE;
+        Pool pool = pools.get(key);
+        if (pool == null) {
+            Pool created = new Pool(workspace);
+            pool = pools.putIfAbsent(key, created);
+            if (pool == null) {
+                pool = created;
+            }
+        }
+        return pool;
+    }
+
+    private static void logout(Session session) {
+        try {
+            if (session.isLive()) {
+                session.logout();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Error logging out pooled session", e);
+        }
+    }
+
+    /**
+     * @param workspace workspace name or <code>null</code> for default
+     * @return number of idle sessions of the workspace
+     */
+    public int getIdleCount(String workspace) {
+        return getPool(workspace).getIdleCount();
+    }
+
+    /**
+     * @param workspace workspace name or <code>null</code> for default
+     * @return number of sessions of the workspace currently in use
+     */
+    public int getActiveCount(String workspace) {
+        return getPool(workspace).getActiveCount();
+    }
+
+    /**
+     * @return number of logins done by this factory, including unmanaged sessions
+     */
+    public long getLoginCount() {
+        return logins.get();
+    }
+
+    /**
+     * @return number of sessions handed out to scopes
+     */
+    public long getBorrowCount() {
+        return borrowed.get();
+    }
+
+    /**
+     * @return number of sessions logged out because they were not live, could not be refreshed or exceeded
+     *         <code>maxIdle</code>
+     */
+    public long getDiscardCount() {
+        return discarded.get();
+    }
+
+    /**
+     * @return number of times a scope had to wait because the workspace pool was exhausted
+     */
+    public long getWaitCount() {
+        return waits.get();
+    }
+
+    /**
+     * @return number of times a scope gave up waiting for a session
+     */
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    /**
+     * Sessions borrowed for a single unit of work, usually a request. At most one session per workspace is borrowed, so
+     * all code in the unit of work sees the same transient changes. Scopes are not thread safe, they are meant to be
+     * used by one thread at a time.
+     */
+    public final class Scope {
+        private final Map<String, Session> sessions = new HashMap<String, Session>();
+
+        private boolean closed;
+
+        private Scope() {
+        }
+
+        /**
+         * Returns the session for given workspace, borrowing it from the pool if this scope has none yet.
+         *
+         * @param workspace workspace name or <code>null</code> for default
+         * @return session
+         */
+        public Session getSession(String workspace) {
+            if (closed) {
+                throw new IllegalStateException("Scope has already been closed.");
+            }
+            Session session = sessions.get(workspace);
+            if (session != null && !session.isLive()) {
+                sessions.remove(workspace);
+                getPool(workspace).release(session);
+                session = null;
+            }
+            if (session == null) {
+                session = getPool(workspace).borrow();
+                sessions.put(workspace, session);
+            }
+            return session;
+        }
+
+        /**
+         * Makes this scope the current scope of the calling thread.
+         */
+        public void bind() {
+            currentScope.set(this);
+        }
+
+        /**
+         * Removes this scope from the calling thread if it is bound to it.
+         */
+        public void unbind() {
+            if (currentScope.get() == this) {
+                currentScope.remove();
+            }
+        }
+
+        /**
+         * Returns all borrowed sessions to the pool and unbinds the scope from the calling thread.
+         */
+        public void close() {
+            unbind();
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+                getPool(entry.getKey()).release(entry.getValue());
+            }
+            sessions.clear();
+        }
+    }
+
+    /**
+     * Sessions of a single workspace.
+     */
+    private class Pool {
+        private final String workspace;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+
+        // most recently returned session first, it is the most likely to have warm caches
+        private final Deque<Session> idle = new ArrayDeque<Session>();
+
+        private int active;
+
+        Pool(String workspace) {
+            this.workspace = workspace;
+        }
+
+        Session borrow() {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWait);
+            lock.lock();
+            try {
+                while (true) {
+                    while (!idle.isEmpty()) {
+                        Session session = idle.pollFirst();
+                        if (session.isLive()) {
+                            ++active;
+                            borrowed.incrementAndGet();
+                            return session;
+                        }
+                        discarded.incrementAndGet();
+                    }
+                    if (active < maxTotal) {
+                        // reserve the slot, logging in happens outside of the lock
+                        ++active;
+                        break;
+                    }
+                    if (remaining <= 0) {
+                        timeouts.incrementAndGet();
+                        throw new CannotOpenJcrSessionException(workspace, new IllegalStateException(
+                                "All " + maxTotal + " sessions are in use."));
+                    }
+                    waits.incrementAndGet();
+                    remaining = available.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CannotOpenJcrSessionException(workspace, e);
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                Session session = login(workspace);
+                borrowed.incrementAndGet();
+                return session;
+            } catch (RuntimeException e) {
+                lock.lock();
+                try {
+                    --active;
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+
+        void release(Session session) {
+            boolean keep = !closed && session.isLive();
+            if (keep) {
+                try {
+                    // the next user must not see changes left over by this one
+                    session.refresh(false);
+                } catch (Exception e) {
+                    logger.warn("Could not refresh session returned to pool, discarding it", e);
+                    keep = false;
+                }
+            }
+            lock.lock();
+            try {
+                --active;
+                if (keep && idle.size() < maxIdle) {
+                    idle.addFirst(session);
+                    session = null;
+                }
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            if (session != null) {
+                discarded.incrementAndGet();
+                logout(session);
+            }
+        }
+
+        void clear() {
+            List<Session> sessions;
+            lock.lock();
+            try {
+                sessions = new ArrayList<Session>(idle);
+                idle.clear();
+            } finally {
+                lock.unlock();
+            }
+            for (Session session : sessions) {
+                logout(session);
+            }
+        }
+
+        int getIdleCount() {
+            lock.lock();
+            try {
+                return idle.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getActiveCount() {
+            lock.lock();
+            try {
+                return active;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -19,16 +19,15 @@ import org.brixcms.exception.BrixException;
 import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.api.JcrSession.Behavior;
-import org.brixcms.jcr.api.wrapper.NodeWrapper;
 import org.brixcms.jcr.base.EventUtil;
 import org.brixcms.jcr.exception.JcrException;
-import org.brixcms.jcr.wrapper.BrixNode;
-import org.brixcms.jcr.wrapper.ResourceNode;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
-import java.util.Collection;
 
+/**
+ * Default {@link Behavior} of brix sessions. Nodes are wrapped through the {@link NodeWrapperDispatcher} of brix.
+ */
 public class SessionBehavior implements Behavior {
     private final Brix brix;
 
@@ -36,35 +35,21 @@ public class SessionBehavior implements Behavior {
         this.brix = brix;
     }
 
-
-
     public JcrNode wrap(Node node, JcrSession session) {
         if (node instanceof JcrNode) {
             return (JcrNode) node;
         }
-
-        JcrNode n = new NodeWrapper(node, session);
-
-        Collection<JcrNodeWrapperFactory> factories = brix.getConfig().getRegistry().lookupCollection(
-                JcrNodeWrapperFactory.POINT);
-
-        for (JcrNodeWrapperFactory factory : factories) {
-            if (factory.canWrap(brix, n)) {
-                return factory.wrap(brix, node, session);
-            }
-        }
-
-        if (ResourceNode.FACTORY.canWrap(brix, n)) {
-            return ResourceNode.FACTORY.wrap(brix, node, session);
-        }
-
-        return new BrixNode(node, session);
+        return brix.getNodeWrapperDispatcher().wrap(node, session);
     }
 
     public void nodeSaved(JcrNode node) {
         EventUtil.raiseSaveEvent(node);
     }
 
+    public void nodeSaveSucceeded(JcrNode node) {
+        EventUtil.raiseSavedEvent(node);
+    }
+
     public void handleException(Exception e) {
         if (e instanceof RepositoryException) {
             throw new JcrException((RepositoryException) e);
@@ -0,0 +1,285 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.brixcms.Brix;
+import org.brixcms.jcr.api.JcrSession;
+
+import javax.jcr.Session;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sessions used by a single request. The scope hangs off the {@link RequestCycle} metadata and keeps one wrapped {@link
+ * JcrSession} per workspace, so {@link Brix#getCurrentSession(String)} does not wrap the session again on every call.
+ * If the session factory is a {@link PooledSessionFactory}, all sessions are borrowed through a single {@link
+ * PooledSessionFactory.Scope} and returned when this scope is closed.
+ * <p/>
+ * JCR sessions and the node caches of the wrapped sessions are not thread safe, so the scope is used by one thread at a
+ * time. It belongs to the thread that created it until it is handed to another thread (e.g. a helper or virtual thread
+ * rendering tiles) with {@link #bind()}; that thread gives it back with {@link #unbind()}. While bound, {@link
+ * Brix#getCurrentSession(String)} on the bound thread returns the sessions of the request and any other thread is
+ * refused. Threads binding a scope that is bound elsewhere wait for it, so tasks running in parallel take turns. {@link
+ * #wrap(Runnable)} and {@link #wrap(Callable)} do the handoff around a task.
+ * <p/>
+ * Scopes are closed by brix when the request cycle is detached. Tasks still bound then can no longer get sessions.
+ */
+public class SessionScope {
+    // scopes of the request cycle by brix instance
+    private static final MetaDataKey<Map<Brix, SessionScope>> SCOPES_KEY = new MetaDataKey<Map<Brix, SessionScope>>() {
+    };
+
+    private static final ThreadLocal<SessionScope> bound = new ThreadLocal<SessionScope>();
+
+    private final Brix brix;
+
+    private final Thread creator;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    // thread the scope is bound to and how many times it bound it, guarded by lock
+    private Thread holder;
+    private int holds;
+
+    private final PooledSessionFactory.Scope pooled;
+
+    private final Map<String, JcrSession> sessions = new HashMap<String, JcrSession>();
+
+    private volatile boolean closed;
+
+    private SessionScope(Brix brix) {
+        this.brix = brix;
+        this.creator = Thread.currentThread();
+        JcrSessionFactory factory = brix.getConfig().getSessionFactory();
+        this.pooled = factory instanceof PooledSessionFactory ? ((PooledSessionFactory) factory).openScope() : null;
+    }
+
+    /**
+     * Returns the scope bound to the current thread or the scope of the current request, creating it if necessary.
+     *
+     * @param brix
+     * @return scope or <code>null</code> if the thread has neither a bound scope nor a request cycle
+     */
+    public static SessionScope get(Brix brix) {
+        SessionScope scope = bound.get();
+        if (scope != null && scope.brix == brix) {
+            return scope;
+        }
+        RequestCycle cycle = RequestCycle.get();
+        if (cycle == null) {
+            return null;
+        }
+        Map<Brix, SessionScope> scopes = cycle.getMetaData(SCOPES_KEY);
+        if (scopes == null) {
+            scopes = new IdentityHashMap<Brix, SessionScope>(2);
+            cycle.setMetaData(SCOPES_KEY, scopes);
+        }
+        scope = scopes.get(brix);
+        if (scope == null) {
+            scope = new SessionScope(brix);
+            scopes.put(brix, scope);
+        }
+        return scope;
+    }
+
+    /**
+     * Closes the scopes of given request cycle, if it has any.
+     *
+     * @param cycle
+     */
+    public static void close(RequestCycle cycle) {
+        Map<Brix, SessionScope> scopes = cycle.getMetaData(SCOPES_KEY);
+        if (scopes != null) {
+            cycle.setMetaData(SCOPES_KEY, null);
+            for (SessionScope scope : new ArrayList<SessionScope>(scopes.values())) {
+                scope.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the session of this scope for given workspace.
+     *
+     * @param workspace workspace name or <code>null</code> for default
+     * @return wrapped session
+     * @throws IllegalStateException if the scope is closed or the calling thread does not own the scope
+     */
+    public JcrSession getSession(String workspace) {
+        checkOwner();
+        if (closed) {
+            throw new IllegalStateException("Session scope has already been closed.");
+        }
+        JcrSession session = sessions.get(workspace);
+        if (session == null || !session.isLive()) {
+            session = brix.wrapSession(acquire(workspace));
+            // the scope only lives for a request
+            session.setNodeCacheEnabled(true);
+            sessions.put(workspace, session);
+        }
+        return session;
+    }
+
+    private void checkOwner() {
+        Thread owner;
+        lock.lock();
+        try {
+            owner = holder != null ? holder : creator;
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("Session scope is used by thread " + owner.getName()
+                    + ", sessions can not be shared with thread " + Thread.currentThread().getName() + ".");
+        }
+    }
+
+    private Session acquire(String workspace) {
+        if (pooled != null) {
+            return pooled.getSession(workspace);
+        }
+        return brix.getConfig().getSessionFactory().getCurrentSession(workspace);
+    }
+
+    /**
+     * Hands the scope to the calling thread. Until the thread calls {@link #unbind()}, it gets the sessions of this
+     * scope from {@link Brix#getCurrentSession(String)} and other threads are refused. If the scope is bound to another
+     * thread, waits until that thread unbinds it.
+     *
+     * @throws IllegalStateException if the scope is closed or the thread is interrupted while waiting
+     */
+    public void bind() {
+        Thread thread = Thread.currentThread();
+        lock.lock();
+        try {
+            while (holder != null && holder != thread && !closed) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    thread.interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the session scope.", e);
+                }
+            }
+            if (closed) {
+                throw new IllegalStateException("Session scope has already been closed.");
+            }
+            holder = thread;
+            ++holds;
+        } finally {
+            lock.unlock();
+        }
+        bound.set(this);
+        if (pooled != null) {
+            pooled.bind();
+        }
+    }
+
+    /**
+     * Gives the scope back. Must be called by the thread that called {@link #bind()}, also after the scope has been
+     * closed.
+     *
+     * @throws IllegalStateException if the scope is not bound to the calling thread
+     */
+    public void unbind() {
+        Thread thread = Thread.currentThread();
+        lock.lock();
+        try {
+            if (holder != thread) {
+                throw new IllegalStateException("Session scope is not bound to thread " + thread.getName() + ".");
+            }
+            if (--holds > 0) {
+                return;
+            }
+            holder = null;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (bound.get() == this) {
+            bound.remove();
+        }
+        if (pooled != null) {
+            pooled.unbind();
+        }
+    }
+
+    /**
+     * Returns task that runs given task with this scope bound to the executing thread.
+     *
+     * @param task
+     * @return wrapped task
+     */
+    public Runnable wrap(final Runnable task) {
+        return new Runnable() {
+            public void run() {
+                bind();
+                try {
+                    task.run();
+                } finally {
+                    unbind();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns task that runs given task with this scope bound to the executing thread.
+     *
+     * @param task
+     * @return wrapped task
+     */
+    public <T> Callable<T> wrap(final Callable<T> task) {
+        return new Callable<T>() {
+            public T call() throws Exception {
+                bind();
+                try {
+                    return task.call();
+                } finally {
+                    unbind();
+                }
+            }
+        };
+    }
+
+    /**
+     * Forgets the wrapped sessions and returns pooled sessions. Sessions of other session factories are left to the
+     * factory.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        lock.lock();
+        try {
+            closed = true;
+            // threads waiting to bind the scope give up
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        sessions.clear();
+        if (pooled != null) {
+            pooled.close();
+        }
+    }
+}
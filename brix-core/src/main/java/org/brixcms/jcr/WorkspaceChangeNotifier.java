@@ -0,0 +1,175 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Forwards JCR observation events of workspaces to registered {@link Listener}s. Caches holding data derived from
+ * repository content use this to drop their entries no matter which session (or cluster node) made the change.
+ * <p/>
+ * Workspaces are observed lazily. The first call to {@link #observe(String)} for a workspace opens a dedicated session
+ * and registers an observation listener with it. The session is kept open, otherwise the listener would be removed.
+ */
+public class WorkspaceChangeNotifier {
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceChangeNotifier.class);
+
+    private static final int EVENT_TYPES = Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED |
+            Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+    private final JcrSessionFactory sessionFactory;
+
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+
+    private final Set<String> unobservable = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    public WorkspaceChangeNotifier(JcrSessionFactory sessionFactory) {
+        if (sessionFactory == null) {
+            throw new IllegalArgumentException("Argument 'sessionFactory' may not be null.");
+        }
+        this.sessionFactory = sessionFactory;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Makes sure changes of the given workspace are reported to listeners.
+     *
+     * @param workspaceId workspace id
+     * @return <code>true</code> if the workspace is observed, <code>false</code> if observation could not be set up, in
+     *         which case callers must not rely on being notified
+     */
+    public boolean observe(String workspaceId) {
+        if (workspaceId == null) {
+            return false;
+        }
+        if (sessions.containsKey(workspaceId)) {
+            return true;
+        }
+        if (unobservable.contains(workspaceId)) {
+            return false;
+        }
+        synchronized (this) {
+            if (sessions.containsKey(workspaceId)) {
+                return true;
+            }
+            Session session = null;
+            try {
+                session = sessionFactory.createSession(workspaceId);
+                session.getWorkspace().getObservationManager().addEventListener(
+                        new WorkspaceListener(workspaceId), EVENT_TYPES, "/", true, null, null, false);
+                sessions.put(workspaceId, session);
+                return true;
+            } catch (Exception e) {
+                log.warn("Could not observe workspace " + workspaceId + ", content caches are disabled for it", e);
+                if (session != null && session.isLive()) {
+                    session.logout();
+                }
+                unobservable.add(workspaceId);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Stops observing the given workspace because it has been deleted and tells listeners to drop everything they keep
+     * for it.
+     *
+     * @param workspaceId workspace id
+     */
+    public void forget(String workspaceId) {
+        if (workspaceId == null) {
+            return;
+        }
+        unobservable.remove(workspaceId);
+        Session session = sessions.remove(workspaceId);
+        if (session != null && session.isLive()) {
+            session.logout();
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onWorkspaceDeleted(workspaceId);
+            } catch (RuntimeException e) {
+                log.error("Error notifying listener " + listener + " about deletion of workspace " + workspaceId, e);
+            }
+        }
+    }
+
+    private void notifyListeners(String workspaceId, List<Event> events) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onWorkspaceChanged(workspaceId, events);
+            } catch (RuntimeException e) {
+                log.error("Error notifying listener " + listener + " about changes in workspace " + workspaceId, e);
+            }
+        }
+    }
+
+    /**
+     * Receives changes of observed workspaces. Called from the repository's observation thread, so implementations must
+     * be thread safe and should return quickly.
+     */
+    public interface Listener {
+        /**
+         * @param workspaceId workspace in which the changes happened
+         * @param events      events of a single repository operation (usually a save)
+         */
+        void onWorkspaceChanged(String workspaceId, List<Event> events);
+
+        /**
+         * @param workspaceId workspace that has been deleted
+         */
+        void onWorkspaceDeleted(String workspaceId);
+    }
+
+    private class WorkspaceListener implements EventListener {
+        private final String workspaceId;
+
+        public WorkspaceListener(String workspaceId) {
+            this.workspaceId = workspaceId;
+        }
+
+        public void onEvent(EventIterator iterator) {
+            List<Event> events = new ArrayList<Event>();
+            while (iterator.hasNext()) {
+                events.add(iterator.nextEvent());
+            }
+            if (!events.isEmpty()) {
+                notifyListeners(workspaceId, Collections.unmodifiableList(events));
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ package org.brixcms.jcr.wrapper;
 
 import org.apache.wicket.util.io.Streams;
 import org.apache.wicket.util.string.Strings;
+import org.brixcms.Brix;
 import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.plugin.site.SitePlugin;
@@ -27,6 +28,8 @@ import javax.jcr.RepositoryException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Calendar;
 
 /**
@@ -36,6 +39,13 @@ import java.util.Calendar;
  * @see #initialize(JcrNode, String)
  */
 public class BrixFileNode extends BrixNode {
+    /**
+     * Property holding the hash of the data, see {@link #updateContentHash()}
+     */
+    public static final String JCR_PROP_CONTENT_HASH = Brix.NS_PREFIX + "contentHash";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     /**
      * Returns if the node is a file node,
      *
@@ -234,4 +244,57 @@ public class BrixFileNode extends BrixNode {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Returns the data of this node as binary. The caller is responsible for disposing the binary.
+     *
+     * @return
+     */
+    public Binary getDataAsBinary() {
+        return getContent().getProperty("jcr:data").getBinary();
+    }
+
+    /**
+     * Returns the hash of the data computed when the node was last saved.
+     *
+     * @return hex encoded SHA-256 hash or <code>null</code> if the node has not been saved since hashes were introduced
+     */
+    public String getContentHash() {
+        return hasProperty(JCR_PROP_CONTENT_HASH) ? getProperty(JCR_PROP_CONTENT_HASH).getString() : null;
+    }
+
+    /**
+     * Computes the hash of the data and stores it in the {@value #JCR_PROP_CONTENT_HASH} property. Invoked
+     * automatically when the data of a file node is saved.
+     */
+    public void updateContentHash() {
+        if (!isNodeType(JCR_TYPE_BRIX_NODE)) {
+            addMixin(JCR_TYPE_BRIX_NODE);
+        }
+        InputStream stream = getDataAsStream();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            byte[] hash = digest.digest();
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; ++i) {
+                hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+            }
+            setProperty(JCR_PROP_CONTENT_HASH, new String(hex));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
 }
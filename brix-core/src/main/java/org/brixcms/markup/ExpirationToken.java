@@ -0,0 +1,27 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.markup;
+
+/**
+ * Expiration token (see {@link MarkupSource#getExpirationToken()}) that can tell by itself whether markup generated
+ * with it is stale, without asking the markup source. The {@link MarkupCache} uses this to drop stale entries when
+ * their workspace changes instead of keeping them until they are looked up again or evicted.
+ */
+public interface ExpirationToken {
+    /**
+     * @return <code>true</code> if markup generated with this token is known to be stale
+     */
+    public boolean isExpired();
+}
@@ -14,25 +14,72 @@
 
 package org.brixcms.markup;
 
+import org.brixcms.markup.tag.Comment;
+import org.brixcms.markup.tag.ComponentTag;
 import org.brixcms.markup.tag.Item;
+import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.Text;
+import org.brixcms.markup.tag.simple.SimpleComment;
+import org.brixcms.markup.tag.simple.SimpleTag;
+import org.brixcms.markup.tag.simple.SimpleText;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Contains list of generated markup items and expiration token.
  * <p/>
- * TODO: Consider optimizing the list of items by grouping static items together (as text).
+ * The items are compiled into a render plan. Consecutive static items are pre-rendered into chunks, items whose output
+ * can change (e.g. variables) are rendered on demand and every {@link ComponentTag} gets a slot. Rendering then only
+ * has to fill the slots.
+ * <p/>
+ * Pages using the same template contain the same static markup. Chunks end after items whose rendered text hashes to
+ * a boundary value, so a run of template items is cut into the same chunks no matter which page it is part of, and
+ * chunks are interned. Pages therefore share the chunks of their templates and only keep their own markup and the
+ * chunks bordering it.
  *
  * @author Matej Knopp
  */
 class GeneratedMarkup {
+    /**
+     * Chunks are not cut before they have this many characters
+     */
+    static final int MIN_CHUNK_LENGTH = 256;
+
+    /**
+     * A chunk ends after an item whose hash has none of these bits set, i.e. after every 16th item on average
+     */
+    private static final int BOUNDARY_MASK = 15;
+
+    /**
+     * Interned chunks, held weakly so that chunks of evicted markup can be collected
+     */
+    private static final Map<String, WeakReference<String>> chunks = new WeakHashMap<String, WeakReference<String>>();
+
+    private static final MarkupRenderer RENDERER = new MarkupRenderer(Collections.<Item>emptyList(), null) {
+        @Override
+        void postprocessTagAttributes(Tag tag, Map<String, String> attributes) {
+        }
+    };
+
     final List<Item> items;
 
     final Object expirationToken;
 
     final String doctype;
 
+    private final List<Segment> segments;
+
+    private final List<ComponentTag> slots;
+
+    private int weight;
+
     /**
      * Creates new {@link GeneratedMarkup} instance from given {@link MarkupSource}.
      *
@@ -50,5 +97,183 @@ class GeneratedMarkup {
             item = markupSource.nextMarkupItem();
         }
         this.doctype = markupSource.getDoctype();
+
+        segments = new ArrayList<Segment>();
+        slots = new ArrayList<ComponentTag>();
+        compile();
+        weight += items.size();
+    }
+
+    /**
+     * Returns the approximate memory footprint of this markup, the number of items plus the number of characters of
+     * pre-rendered chunks.
+     *
+     * @return weight used by {@link MarkupCache} to bound its size
+     */
+    int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Builds the render plan.
+     */
+    private void compile() {
+        StringBuilder chunk = new StringBuilder();
+        if (doctype != null) {
+            chunk.append(doctype);
+        }
+        for (Item item : items) {
+            if (item instanceof ComponentTag && ((Tag) item).getType() != Tag.Type.CLOSE) {
+                ComponentTag tag = (ComponentTag) item;
+                flush(chunk);
+                segments.add(new SlotSegment(slots.size(), tag));
+                slots.add(tag);
+            } else if (isStatic(item)) {
+                int start = chunk.length();
+                RENDERER.render(item, chunk);
+                if (chunk.length() >= MIN_CHUNK_LENGTH && isBoundary(chunk, start)) {
+                    flush(chunk);
+                }
+            } else {
+                flush(chunk);
+                segments.add(new DynamicSegment(item));
+            }
+        }
+        flush(chunk);
+    }
+
+    /**
+     * Returns whether a chunk ends after the item rendered at the end of the chunk starting at given index. Only
+     * depends on the item's text, so the same items are cut the same way on every page.
+     */
+    private static boolean isBoundary(StringBuilder chunk, int start) {
+        int hash = 0;
+        for (int i = start; i < chunk.length(); ++i) {
+            hash = 31 * hash + chunk.charAt(i);
+        }
+        hash ^= hash >>> 16;
+        return (hash & BOUNDARY_MASK) == 0;
+    }
+
+    private void flush(StringBuilder chunk) {
+        if (chunk.length() > 0) {
+            weight += chunk.length();
+            segments.add(new StaticSegment(intern(chunk.toString())));
+            chunk.setLength(0);
+        }
+    }
+
+    private static String intern(String chunk) {
+        synchronized (chunks) {
+            WeakReference<String> reference = chunks.get(chunk);
+            String interned = reference != null ? reference.get() : null;
+            if (interned == null) {
+                chunks.put(chunk, new WeakReference<String>(chunk));
+                interned = chunk;
+            }
+            return interned;
+        }
+    }
+
+    /**
+     * Returns whether the item always renders the same output.
+     */
+    private static boolean isStatic(Item item) {
+        if (item instanceof Tag) {
+            Tag tag = (Tag) item;
+            // close tags only render the name
+            return tag.getType() == Tag.Type.CLOSE || tag.getClass().equals(SimpleTag.class);
+        } else if (item instanceof Text) {
+            return item.getClass().equals(SimpleText.class);
+        } else if (item instanceof Comment) {
+            return item.getClass().equals(SimpleComment.class);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the component tags of this markup in document order. Index of the tag in this list is the index of its
+     * slot.
+     *
+     * @return list of component tags
+     */
+    public List<ComponentTag> getSlots() {
+        return Collections.unmodifiableList(slots);
+    }
+
+    /**
+     * @return pre-rendered static chunks of the render plan, in document order
+     */
+    List<String> getStaticChunks() {
+        List<String> result = new ArrayList<String>();
+        for (Segment segment : segments) {
+            if (segment instanceof StaticSegment) {
+                result.add(((StaticSegment) segment).text);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Renders the markup.
+     *
+     * @param filledSlots indices of slots that have a component attached
+     * @return XHTML string
+     */
+    public String render(BitSet filledSlots) {
+        StringBuilder builder = new StringBuilder();
+        for (Segment segment : segments) {
+            segment.render(builder, filledSlots);
+        }
+        return builder.toString();
+    }
+
+    private static abstract class Segment {
+        abstract void render(StringBuilder builder, BitSet filledSlots);
+    }
+
+    private static class StaticSegment extends Segment {
+        private final String text;
+
+        StaticSegment(String text) {
+            this.text = text;
+        }
+
+        @Override
+        void render(StringBuilder builder, BitSet filledSlots) {
+            builder.append(text);
+        }
+    }
+
+    private static class DynamicSegment extends Segment {
+        private final Item item;
+
+        DynamicSegment(Item item) {
+            this.item = item;
+        }
+
+        @Override
+        void render(StringBuilder builder, BitSet filledSlots) {
+            RENDERER.render(item, builder);
+        }
+    }
+
+    private static class SlotSegment extends Segment {
+        private final int index;
+        private final ComponentTag tag;
+
+        SlotSegment(int index, ComponentTag tag) {
+            this.index = index;
+            this.tag = tag;
+        }
+
+        @Override
+        void render(StringBuilder builder, BitSet filledSlots) {
+            Map<String, String> attributes = new HashMap<String, String>(tag.getAttributeMap());
+            if (filledSlots.get(index)) {
+                attributes.put("wicket:id", MarkupHelper.getComponentID(tag));
+            }
+            MarkupRenderer.render(tag, attributes, builder);
+        }
     }
 }
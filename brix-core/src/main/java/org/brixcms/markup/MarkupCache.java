@@ -15,21 +15,64 @@
 package org.brixcms.markup;
 
 import org.apache.wicket.MarkupContainer;
+import org.brixcms.jcr.WorkspaceChangeNotifier;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.web.generic.IGenericComponent;
 
-import java.util.Map;
+import javax.jcr.observation.Event;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Contains {@link GeneratedMarkup} instances associated with {@link MarkupContainer}s. The {@link MarkupContainer}s
  * must also implement {@link MarkupSourceProvider} so that the cache can check if the {@link GeneratedMarkup} is still
  * valid and generate new one in case it is not.
+ * <p/>
+ * The cache is bounded by the total weight of its entries (see {@link #setMaxWeight(long)}). Lookups do not lock, every
+ * entry only remembers when it was last used. Once the weight is exceeded one thread evicts the least recently used
+ * entries until the weight drops below {@link #EVICTION_LOW_WATERMARK} of the maximum, so the order is only
+ * approximately LRU under concurrent use. When the cache is registered as listener of the {@link
+ * WorkspaceChangeNotifier} it also drops entries known to be stale (see {@link ExpirationToken}) as soon as their
+ * workspace changes, and all entries of deleted workspaces.
  *
  * @author Matej Knopp
  */
-public class MarkupCache {
-    private Map<String, GeneratedMarkup> map = new ConcurrentHashMap<String, GeneratedMarkup>();
+public class MarkupCache implements WorkspaceChangeNotifier.Listener {
+    /**
+     * Default maximum weight, roughly the number of characters of markup kept in the cache
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 8 * 1024 * 1024;
+
+    /**
+     * Fraction of the maximum weight eviction shrinks the cache to, so that not every insert has to evict
+     */
+    static final double EVICTION_LOW_WATERMARK = 0.9;
+
+    private final ConcurrentMap<String, Entry> map = new ConcurrentHashMap<String, Entry>(256);
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private volatile long maxWeight;
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong totalLoadTime = new AtomicLong();
+
+    public MarkupCache() {
+        this(DEFAULT_MAX_WEIGHT);
+    }
+
+    public MarkupCache(long maxWeight) {
+        setMaxWeight(maxWeight);
+    }
 
     /**
      * Returns the {@link GeneratedMarkup} instance for given container. The container must implement {@link
@@ -44,29 +87,140 @@ public class MarkupCache {
             throw new IllegalArgumentException("Argument 'container' must implement MarkupSourceProvider");
         }
         MarkupSourceProvider provider = (MarkupSourceProvider) container;
-        final String key = getKey(container);
-        GeneratedMarkup markup = map.get(key);
-        if (markup != null) {
+        BrixNode node = container.getModelObject();
+        final String workspace = node.getSession().getWorkspace().getName();
+        final String key = getKey(container, node, workspace);
+        Entry entry = map.get(key);
+        if (entry != null) {
             // check if markup is still valid
-            if (provider.getMarkupSource().isMarkupExpired(markup.expirationToken)) {
-                markup = null;
+            if (!provider.getMarkupSource().isMarkupExpired(entry.markup.expirationToken)) {
+                entry.touch();
+                hitCount.incrementAndGet();
+                return entry.markup;
             }
         }
-        if (markup == null) {
-            markup = new GeneratedMarkup(provider.getMarkupSource());
-            map.put(key, markup);
-        }
+        missCount.incrementAndGet();
+
+        long start = System.nanoTime();
+        GeneratedMarkup markup = new GeneratedMarkup(provider.getMarkupSource());
+        totalLoadTime.addAndGet(System.nanoTime() - start);
+
+        put(new Entry(key, workspace, markup));
         return markup;
     }
 
+    private void put(Entry entry) {
+        Entry previous = map.put(entry.key, entry);
+        weight.addAndGet(entry.markup.getWeight() - (previous != null ? previous.markup.getWeight() : 0));
+        if (weight.get() > maxWeight && evictionLock.tryLock()) {
+            // threads finding the lock taken just go on, the cache is only over its limit for a moment
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void evict() {
+        final long target = (long) (maxWeight * EVICTION_LOW_WATERMARK);
+        // access times change while sorting, so sort on a snapshot of them
+        List<Candidate> candidates = new ArrayList<Candidate>(map.size());
+        for (Entry entry : map.values()) {
+            candidates.add(new Candidate(entry));
+        }
+        Collections.sort(candidates);
+        for (int i = 0; i < candidates.size() && weight.get() > target; ++i) {
+            if (remove(candidates.get(i).entry)) {
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes the entry unless it has been replaced in the meantime.
+     */
+    private boolean remove(Entry entry) {
+        if (map.remove(entry.key, entry)) {
+            weight.addAndGet(-entry.markup.getWeight());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all entries of the given workspace.
+     *
+     * @param workspace
+     */
+    public void purge(String workspace) {
+        for (Entry entry : map.values()) {
+            if (entry.workspace.equals(workspace)) {
+                remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (Entry entry : map.values()) {
+            remove(entry);
+        }
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Sets the maximum total weight of cached markup. The weight of a {@link GeneratedMarkup} is the number of its
+     * items plus the number of characters of its pre-rendered static parts.
+     *
+     * @param maxWeight
+     */
+    public void setMaxWeight(long maxWeight) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("Argument 'maxWeight' may not be negative.");
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return snapshot of the cache counters, size and weight may be slightly off while other threads use the cache
+     */
+    public Statistics getStatistics() {
+        return new Statistics(map.size(), weight.get(), hitCount.get(), missCount.get(), evictionCount.get(),
+                totalLoadTime.get());
+    }
+
+    /**
+     * Drops entries of the workspace whose expiration token reports them stale. Must be registered after the listener
+     * that expires the tokens, e.g. the container versions of the site plugin.
+     */
+    public void onWorkspaceChanged(String workspaceId, List<Event> events) {
+        for (Entry entry : map.values()) {
+            if (entry.workspace.equals(workspaceId) && entry.markup.expirationToken instanceof ExpirationToken &&
+                    ((ExpirationToken) entry.markup.expirationToken).isExpired()) {
+                remove(entry);
+            }
+        }
+    }
+
+    public void onWorkspaceDeleted(String workspaceId) {
+        purge(workspaceId);
+    }
+
     /**
      * Returns the string representation of cache key for the given container.
      *
      * @param container
+     * @param node
+     * @param workspace
      * @return
      */
-    private String getKey(IGenericComponent<BrixNode> container) {
-        BrixNode node = container.getModelObject();
+    private String getKey(IGenericComponent<BrixNode> container, BrixNode node, String workspace) {
         String nodeId = "";
         if (node != null) {
             if (node.isNodeType("mix:referenceable")) {
@@ -75,7 +229,103 @@ public class MarkupCache {
                 nodeId = node.getPath();
             }
         }
-        String workspace = node.getSession().getWorkspace().getName();
         return container.getClass().getName() + "-" + workspace + "-" + nodeId;
     }
+
+    private static class Entry {
+        private final String key;
+        private final String workspace;
+        private final GeneratedMarkup markup;
+        private volatile long lastAccess = System.nanoTime();
+
+        Entry(String key, String workspace, GeneratedMarkup markup) {
+            this.key = key;
+            this.workspace = workspace;
+            this.markup = markup;
+        }
+
+        void touch() {
+            lastAccess = System.nanoTime();
+        }
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        private final Entry entry;
+        private final long lastAccess;
+
+        Candidate(Entry entry) {
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+
+        public int compareTo(Candidate other) {
+            // nanoTime values may only be compared by their difference
+            long diff = lastAccess - other.lastAccess;
+            return diff < 0 ? -1 : (diff == 0 ? 0 : 1);
+        }
+    }
+
+    /**
+     * Counters of a {@link MarkupCache}.
+     */
+    public static final class Statistics {
+        private final int size;
+        private final long weight;
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long totalLoadTime;
+
+        private Statistics(int size, long weight, long hitCount, long missCount, long evictionCount,
+                           long totalLoadTime) {
+            this.size = size;
+            this.weight = weight;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.totalLoadTime = totalLoadTime;
+        }
+
+        /**
+         * @return number of cached entries
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return total weight of cached entries
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * @return number of lookups that had to generate the markup, because it was missing or expired
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * @return total time spent generating markup, in nanoseconds
+         */
+        public long getTotalLoadTime() {
+            return totalLoadTime;
+        }
+
+        @Override
+        public String toString() {
+            return "MarkupCache.Statistics[size=" + size + ", weight=" + weight + ", hits=" + hitCount + ", misses=" +
+                    missCount + ", evictions=" + evictionCount + ", loadTime=" + totalLoadTime + "ns]";
+        }
+    }
 }
@@ -18,14 +18,15 @@ import org.apache.wicket.Component;
 import org.apache.wicket.MarkupContainer;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.markup.tag.ComponentTag;
-import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.PreloadingComponentTag;
 import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.web.generic.IGenericComponent;
 
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -54,41 +55,47 @@ public class MarkupHelper implements Serializable {
      * ComponentTag}s in markup. Also removes components no longer present in markup.
      */
     private void initMarkup() {
+        final MarkupContainer container = (MarkupContainer) component;
+        final GeneratedMarkup markup = getMarkupCache().getMarkup(component);
+        final Set<String> existing = getExistingComponents();
         final Set<String> components = new HashSet<String>();
-        GeneratedMarkup markup = getMarkupCache().getMarkup(component);
-
-        MarkupRenderer renderer = new MarkupRenderer(markup.items, markup.doctype) {
-            @Override
-            void postprocessTagAttributes(Tag tag, Map<String, String> attributes) {
-                // if during rendering we have a ComponentTag
-                if (tag instanceof ComponentTag && tag.getType() != Tag.Type.CLOSE) {
-                    ComponentTag componentTag = (ComponentTag) tag;
-                    String id = getComponentID(componentTag);
-
-                    // check if the component already is in hierarchy
-                    if (getExistingComponents().contains(id)) {
-                        // just put the wicket:id attribute to component tag
-                        attributes.put("wicket:id", id);
-                        components.add(id);
-                    } else {
-                        // otherwise we need to create the component instance
-                        Component c = componentTag.getComponent(id, component.getModel());
-                        if (c != null) {
-                            attributes.put("wicket:id", id);
-                            components.add(id);
-                            ((MarkupContainer) component).add(c);
-                        }
-                    }
+
+        List<ComponentTag> slots = markup.getSlots();
+
+        // start slow loads of all new components first so that they run in parallel
+        for (ComponentTag componentTag : slots) {
+            if (componentTag instanceof PreloadingComponentTag && !existing.contains(getComponentID(componentTag))) {
+                ((PreloadingComponentTag) componentTag).preload(component.getModel());
+            }
+        }
+
+        BitSet filledSlots = new BitSet(slots.size());
+        for (int i = 0; i < slots.size(); ++i) {
+            ComponentTag componentTag = slots.get(i);
+            String id = getComponentID(componentTag);
+
+            // check if the component already is in hierarchy
+            if (existing.contains(id)) {
+                filledSlots.set(i);
+                components.add(id);
+            } else {
+                // otherwise we need to create the component instance
+                Component c = componentTag.getComponent(id, component.getModel());
+                if (c != null) {
+                    container.add(c);
+                    existing.add(id);
+                    filledSlots.set(i);
+                    components.add(id);
                 }
             }
-        };
-        this.markup = renderer.render();
+        }
+        this.markup = markup.render(filledSlots);
 
         // go through existing components and remove those not present in
         // current markup
-        for (String s : getExistingComponents()) {
+        for (String s : existing) {
             if (!components.contains(s)) {
-                ((MarkupContainer) component).get(s).remove();
+                container.get(s).remove();
             }
         }
     }
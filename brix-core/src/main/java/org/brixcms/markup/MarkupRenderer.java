@@ -57,7 +57,13 @@ public abstract class MarkupRenderer {
         return builder.toString();
     }
 
-    private void render(Item item, StringBuilder builder) {
+    /**
+     * Renders single item into the given builder.
+     *
+     * @param item
+     * @param builder
+     */
+    void render(Item item, StringBuilder builder) {
         if (item instanceof Tag) {
             render((Tag) item, builder);
         } else if (item instanceof Text) {
@@ -70,6 +76,22 @@ public abstract class MarkupRenderer {
     }
 
     private void render(Tag tag, StringBuilder builder) {
+        Map<String, String> attributeMap = null;
+        if (tag.getType() == Tag.Type.OPEN || tag.getType() == Tag.Type.OPEN_CLOSE) {
+            attributeMap = new HashMap<String, String>(tag.getAttributeMap());
+            postprocessTagAttributes(tag, attributeMap);
+        }
+        render(tag, attributeMap, builder);
+    }
+
+    /**
+     * Renders the tag with given (already postprocessed) attributes.
+     *
+     * @param tag
+     * @param attributeMap attributes, ignored for close tags
+     * @param builder
+     */
+    static void render(Tag tag, Map<String, String> attributeMap, StringBuilder builder) {
         if (tag.getType() == Tag.Type.CLOSE) {
             builder.append("</");
         } else {
@@ -78,8 +100,6 @@ public abstract class MarkupRenderer {
         builder.append(tag.getName());
 
         if (tag.getType() == Tag.Type.OPEN || tag.getType() == Tag.Type.OPEN_CLOSE) {
-            Map<String, String> attributeMap = new HashMap<String, String>(tag.getAttributeMap());
-            postprocessTagAttributes(tag, attributeMap);
             for (Entry<String, String> e : attributeMap.entrySet()) {
                 builder.append(" ");
                 builder.append(e.getKey());
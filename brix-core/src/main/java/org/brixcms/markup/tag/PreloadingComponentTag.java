@@ -0,0 +1,33 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.markup.tag;
+
+import org.apache.wicket.model.IModel;
+import org.brixcms.jcr.wrapper.BrixNode;
+
+/**
+ * {@link ComponentTag} whose component needs data that takes long to obtain, e.g. from a remote service. The markup
+ * helper calls {@link #preload(IModel)} on all such tags of the markup before it creates any component, so the data of
+ * all tags is loaded in parallel instead of one tag after another.
+ */
+public interface PreloadingComponentTag extends ComponentTag {
+    /**
+     * Starts loading the data of the component that will be created by {@link #getComponent(String, IModel)} later in
+     * the same request. Must not block until the data is available.
+     *
+     * @param pageNodeModel model to JcrNode that represents the target page
+     */
+    public void preload(IModel<BrixNode> pageNodeModel);
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.markup.tag.simple;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact immutable attribute map. Keys and values are kept in a single flat array in the order they were given, keys
+ * are interned. Tags usually have only a few attributes, so lookups are a linear scan.
+ * <p/>
+ * Parsed markup items are shared between all pages using the same template, so attribute maps must not be modified.
+ */
+public final class AttributeMap extends AbstractMap<String, String> {
+    private static final String[] EMPTY_ARRAY = new String[0];
+
+    /**
+     * Empty attribute map
+     */
+    public static final AttributeMap EMPTY = new AttributeMap(EMPTY_ARRAY);
+
+    private final String[] data;
+
+    private transient Set<Entry<String, String>> entrySet;
+
+    private AttributeMap(String[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Returns compact copy of the given attributes.
+     *
+     * @param attributes
+     * @return attribute map
+     */
+    public static AttributeMap of(Map<String, String> attributes) {
+        if (attributes instanceof AttributeMap) {
+            return (AttributeMap) attributes;
+        } else if (attributes == null || attributes.isEmpty()) {
+            return EMPTY;
+        }
+        String[] data = new String[attributes.size() * 2];
+        int i = 0;
+        for (Entry<String, String> e : attributes.entrySet()) {
+            data[i++] = e.getKey() != null ? e.getKey().intern() : null;
+            data[i++] = e.getValue();
+        }
+        return new AttributeMap(data);
+    }
+
+    /**
+     * Creates attribute map from given alternating keys and values. If a key is repeated the last value is used. The
+     * array is used by the map and must not be modified afterwards.
+     *
+     * @param keysAndValues
+     * @return attribute map
+     */
+    public static AttributeMap of(String... keysAndValues) {
+        if (keysAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Argument 'keysAndValues' must contain pairs of keys and values.");
+        }
+        if (keysAndValues.length == 0) {
+            return EMPTY;
+        }
+        int length = 0;
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            String key = keysAndValues[i] != null ? keysAndValues[i].intern() : null;
+            String value = keysAndValues[i + 1];
+            int existing = indexOf(keysAndValues, length, key);
+            if (existing != -1) {
+                keysAndValues[existing + 1] = value;
+            } else {
+                keysAndValues[length++] = key;
+                keysAndValues[length++] = value;
+            }
+        }
+        return new AttributeMap(length == keysAndValues.length ? keysAndValues : Arrays.copyOf(keysAndValues,
+                length));
+    }
+
+    @Override
+    public int size() {
+        return data.length / 2;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = indexOf(key);
+        return index != -1 ? data[index + 1] : null;
+    }
+
+    private int indexOf(Object key) {
+        return indexOf(data, data.length, key);
+    }
+
+    private static int indexOf(String[] data, int length, Object key) {
+        for (int i = 0; i < length; i += 2) {
+            if (key == null ? data[i] == null : key.equals(data[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        private int index = 0;
+
+                        public boolean hasNext() {
+                            return index < data.length;
+                        }
+
+                        public Entry<String, String> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> e = new SimpleImmutableEntry<String, String>(data[index],
+                                    data[index + 1]);
+                            index += 2;
+                            return e;
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return AttributeMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+}
@@ -21,10 +21,12 @@ import org.brixcms.markup.MarkupSource;
 import org.brixcms.markup.tag.ComponentTag;
 import org.brixcms.markup.tag.Item;
 import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.simple.SimpleTag;
 import org.brixcms.plugin.site.page.AbstractContainer;
 import org.brixcms.plugin.site.page.tile.TileTag;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -60,21 +62,26 @@ public class EnclosureMarkupSourceTransformer extends MarkupSourceTransformer {
     @Override
     protected List<Item> transform(List<Item> items) {
         Tag enclosure = null;
+        int enclosureIndex = -1;
         List<String> children = null;
         List<Tag> enclosureChildTags = null;
-        for (Item i : items) {
+        for (int position = 0; position < items.size(); ++position) {
+            Item i = items.get(position);
             if (i instanceof Tag) {
                 Tag tag = (Tag) i;
                 if (isEnclosure(tag)) {
                     if (tag.getType() == Tag.Type.OPEN) {
                         // found opening enclosure
                         enclosure = tag;
+                        enclosureIndex = position;
                         children = getChildren(enclosure);
                         enclosureChildTags = new ArrayList<Tag>();
                     } else if (tag.getType() == Tag.Type.CLOSE) {
                         // tidy up on close tag
-                        updateEnclosureChildId(enclosure, children,
-                                enclosureChildTags);
+                        if (enclosure != null) {
+                            items.set(enclosureIndex, updateEnclosureChildId(enclosure, children,
+                                    enclosureChildTags));
+                        }
                         enclosure = null;
                         children = null;
                         enclosureChildTags = null;
@@ -121,16 +128,19 @@ public class EnclosureMarkupSourceTransformer extends MarkupSourceTransformer {
     }
 
     /**
-     * Replaces the supplied enclosure child tag with the actual resolved comma separated component path
+     * Replaces the supplied enclosure child tag with the actual resolved comma separated component path. Parsed tags
+     * are shared and immutable, so a new enclosure tag is returned.
      *
      * @param enclosure
      * @param children
      * @param enclosureChildTags
+     * @return enclosure tag with updated child attribute
      */
-    private void updateEnclosureChildId(Tag enclosure, List<String> children,
-                                        List<Tag> enclosureChildTags) {
-        Map<String, String> attributes = enclosure.getAttributeMap();
-        if (attributes != null) {
+    private Tag updateEnclosureChildId(Tag enclosure, List<String> children,
+                                       List<Tag> enclosureChildTags) {
+        Map<String, String> original = enclosure.getAttributeMap();
+        if (original != null) {
+            Map<String, String> attributes = new LinkedHashMap<String, String>(original);
             String child = "";
             for (int i = 0; i < children.size(); i++) {
                 String childid = children.get(i);
@@ -148,7 +158,9 @@ public class EnclosureMarkupSourceTransformer extends MarkupSourceTransformer {
                 }
             }
             attributes.put(EnclosureHandler.CHILD_ATTRIBUTE, child);
+            return new SimpleTag(enclosure.getName(), enclosure.getType(), attributes);
         }
+        return enclosure;
     }
 
     /**
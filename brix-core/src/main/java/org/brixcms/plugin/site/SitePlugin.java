@@ -46,6 +46,7 @@ import org.brixcms.jcr.api.JcrNodeIterator;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.api.wrapper.NodeWrapper;
 import org.brixcms.jcr.base.BrixSession;
+import org.brixcms.jcr.base.EventUtil;
 import org.brixcms.jcr.base.action.AbstractActionHandler;
 import org.brixcms.jcr.base.event.AddNodeEvent;
 import org.brixcms.jcr.base.event.Event;
@@ -71,16 +72,22 @@ import org.brixcms.plugin.site.auth.SiteNodeAction.Type;
 import org.brixcms.plugin.site.fallback.FallbackNodePlugin;
 import org.brixcms.plugin.site.folder.FolderNodePlugin;
 import org.brixcms.plugin.site.page.AbstractContainer;
+import org.brixcms.plugin.site.page.ContainerVersions;
 import org.brixcms.plugin.site.page.PageNode;
+import org.brixcms.plugin.site.page.ParsedTemplateCache;
 import org.brixcms.plugin.site.page.PageSiteNodePlugin;
 import org.brixcms.plugin.site.page.TemplateNode;
 import org.brixcms.plugin.site.page.TemplateSiteNodePlugin;
+import org.brixcms.plugin.site.page.PageOutputCache;
+import org.brixcms.plugin.site.page.TileIndex;
+import org.brixcms.plugin.site.page.VariableIndex;
 import org.brixcms.plugin.site.page.admin.MarkupEditorFactory;
 import org.brixcms.plugin.site.page.admin.SimpleMarkupEditorFactory;
 import org.brixcms.plugin.site.page.global.GlobalContainerNode;
 import org.brixcms.plugin.site.page.global.GlobalTilesPanel;
 import org.brixcms.plugin.site.page.global.GlobalVariablesPanel;
 import org.brixcms.plugin.site.page.tile.TileContainerFacet;
+import org.brixcms.plugin.site.page.tile.TileLoader;
 import org.brixcms.plugin.site.resource.ResourceNodePlugin;
 import org.brixcms.plugin.site.webdav.Rule;
 import org.brixcms.plugin.site.webdav.RulesNode;
@@ -111,6 +118,12 @@ public class SitePlugin implements SessionAwarePlugin {
 
     public static final String BRIX_INDEX_PAGE = "index.brix";
 
+    private static final ExtensionPointRegistry.Key<SiteNodePlugin> NODE_TYPE = new ExtensionPointRegistry.Key<SiteNodePlugin>() {
+        public String getKey(SiteNodePlugin plugin) {
+            return plugin.getNodeType();
+        }
+    };
+
     private final Brix brix;
 
     private FallbackNodePlugin fallbackNodePlugin = new FallbackNodePlugin();
@@ -119,6 +132,18 @@ public class SitePlugin implements SessionAwarePlugin {
 
     private MarkupCache markupCache = new MarkupCache();
 
+    private final ContainerVersions containerVersions;
+
+    private final ParsedTemplateCache parsedTemplateCache;
+
+    private final TileIndex tileIndex;
+
+    private final VariableIndex variableIndex;
+
+    private final PageOutputCache pageOutputCache;
+
+    private volatile TileLoader tileLoader;
+
     private WebDavEventListener webDavEventListener = new WebDavEventListener();
 
     public static SitePlugin get() {
@@ -131,6 +156,15 @@ public class SitePlugin implements SessionAwarePlugin {
 
     public SitePlugin(Brix brix) {
         this.brix = brix;
+        containerVersions = new ContainerVersions(brix.getChangeNotifier());
+        EventUtil.registerSaveEventListener(containerVersions);
+        brix.getChangeNotifier().addListener(markupCache);
+        parsedTemplateCache = new ParsedTemplateCache(brix.getChangeNotifier(), containerVersions);
+        tileIndex = new TileIndex(brix.getChangeNotifier(), containerVersions);
+        variableIndex = new VariableIndex(brix.getChangeNotifier(), containerVersions);
+        pageOutputCache = new PageOutputCache(brix.getChangeNotifier(), containerVersions);
+        tileLoader = new TileLoader();
+
         registerNodePlugin(new FolderNodePlugin(this));
         registerNodePlugin(new ResourceNodePlugin(this));
         registerNodePlugin(new TemplateSiteNodePlugin(this));
@@ -176,6 +210,59 @@ public class SitePlugin implements SessionAwarePlugin {
         return markupCache;
     }
 
+    public ContainerVersions getContainerVersions() {
+        return containerVersions;
+    }
+
+    public ParsedTemplateCache getParsedTemplateCache() {
+        return parsedTemplateCache;
+    }
+
+    public TileIndex getTileIndex() {
+        return tileIndex;
+    }
+
+    public VariableIndex getVariableIndex() {
+        return variableIndex;
+    }
+
+    public PageOutputCache getPageOutputCache() {
+        return pageOutputCache;
+    }
+
+    /**
+     * @return loader that runs the data loads of {@link org.brixcms.plugin.site.page.tile.AsyncTile}s
+     */
+    public TileLoader getTileLoader() {
+        return tileLoader;
+    }
+
+    /**
+     * Replaces the loader of async tiles, e.g. with one bounded to a different number of concurrent loads. The
+     * previous loader is closed, loads still running on it are interrupted.
+     *
+     * @param tileLoader
+     */
+    public void setTileLoader(TileLoader tileLoader) {
+        if (tileLoader == null) {
+            throw new IllegalArgumentException("Argument 'tileLoader' may not be null.");
+        }
+        TileLoader previous = this.tileLoader;
+        this.tileLoader = tileLoader;
+        if (previous != tileLoader) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Stops the background work of the plugin and unregisters its save event listener. Called when the application
+     * brix is attached to is destroyed.
+     */
+    public void close() {
+        EventUtil.unregisterSaveEventListener(containerVersions);
+        tileLoader.close();
+    }
+
     public void setStateComparator(Comparator<String> stateComparator) {
         this.stateComparator = stateComparator;
     }
@@ -422,12 +509,8 @@ public class SitePlugin implements SessionAwarePlugin {
     }
 
     public SiteNodePlugin getNodePluginForType(String type) {
-        for (SiteNodePlugin plugin : getNodePlugins()) {
-            if (plugin.getNodeType().equals(type)) {
-                return plugin;
-            }
-        }
-        return fallbackNodePlugin;
+        SiteNodePlugin plugin = brix.getConfig().getRegistry().lookup(SiteNodePlugin.POINT, NODE_TYPE, type);
+        return plugin != null ? plugin : fallbackNodePlugin;
     }
 
     public Collection<SiteNodePlugin> getNodePlugins() {
@@ -626,7 +709,7 @@ public class SitePlugin implements SessionAwarePlugin {
         if (state != null) {
             attributes.put(WORKSPACE_ATTRIBUTE_STATE, state);
         }
-        List<Workspace> res = brix.getWorkspaceManager().getWorkspacesFiltered(attributes);
+        List<Workspace> res = brix.getWorkspaceCache().getWorkspacesFiltered(attributes);
         return res.isEmpty() ? null : res.get(0);
     }
 
@@ -34,6 +34,12 @@ public class SiteRootNode extends FolderNode {
             return node.getPath().equals(SitePlugin.get(brix).getSiteRootPath());
         }
 
+        @Override
+        public String getWrappedNodePath(Brix brix) {
+            SitePlugin site = SitePlugin.get(brix);
+            return site != null ? site.getSiteRootPath() : null;
+        }
+
         @Override
         public JcrNode wrap(Brix brix, Node node, JcrSession session) {
             return new SiteRootNode(node, session);
@@ -38,6 +38,12 @@ public class WebRootNode extends FolderNode implements TreeAwareNode {
             return node.getPath().equals(SitePlugin.get(brix).getWebRootPath());
         }
 
+        @Override
+        public String getWrappedNodePath(Brix brix) {
+            SitePlugin site = SitePlugin.get(brix);
+            return site != null ? site.getWebRootPath() : null;
+        }
+
         @Override
         public JcrNode wrap(Brix brix, Node node, JcrSession session) {
             return new WebRootNode(node, session);
@@ -47,26 +47,56 @@ abstract class FolderDataSource implements IDataSource<BrixNode> {
 
     private static final NodeFilter SITE_FILTER = new SiteNodeFilter(false, null);
 
-
-
+    /**
+     * Maximum number of sort columns taken into account
+     */
+    private static final int MAX_SORT_COLUMNS = 3;
+
+    /**
+     * Lists the visible children of the folder. Sort keys are read once per child into a {@link Row}, the rows are
+     * sorted and only the requested window of nodes is handed to the grid.
+     */
     public void query(IQuery query, IQueryResult<BrixNode> result) {
         BrixNode node = getFolderNode();
-        List<BrixNode> visibleNodes = visibleNodes(node.getNodes());
-        if (query.getSortState().getColumns().isEmpty() == false) {
-            sort(visibleNodes, query.<String>getSortState());
-        } else {
-            sort(visibleNodes, PROPERTY_NAME, IGridSortState.Direction.ASC);
+
+        List<String> properties = new ArrayList<String>(MAX_SORT_COLUMNS);
+        List<IGridSortState.Direction> directions = new ArrayList<IGridSortState.Direction>(MAX_SORT_COLUMNS);
+        for (ISortStateColumn<String> column : query.<String>getSortState().getColumns()) {
+            if (properties.size() == MAX_SORT_COLUMNS) {
+                break;
+            }
+            properties.add(column.getPropertyName());
+            directions.add(column.getDirection());
+        }
+        if (properties.isEmpty()) {
+            properties.add(PROPERTY_NAME);
+            directions.add(IGridSortState.Direction.ASC);
         }
 
+        List<Row> rows = visibleRows(node.getNodes(), properties);
+        Collections.sort(rows, new RowComparator(properties, directions));
+
+        BrixNode parent = null;
         if (node.getPath().equals(SitePlugin.get().getSiteRootPath()) == false) {
-            BrixNode parent = (BrixNode) node.getParent();
-            if (canShowNode(parent)) {
-                visibleNodes.add(0, parent);
+            parent = (BrixNode) node.getParent();
+            if (!canShowNode(parent)) {
+                parent = null;
             }
         }
 
-        result.setItems(visibleNodes.iterator());
-        result.setTotalCount(visibleNodes.size());
+        // the parent is always listed first
+        final int offset = parent != null ? 1 : 0;
+        final int total = rows.size() + offset;
+        final int from = (int) Math.min(Math.max(query.getFrom(), 0), total);
+        final int to = query.getCount() < 0 ? total : (int) Math.min(from + query.getCount(), total);
+
+        List<BrixNode> items = new ArrayList<BrixNode>(to - from);
+        for (int i = from; i < to; ++i) {
+            items.add(i < offset ? parent : rows.get(i - offset).node);
+        }
+
+        result.setItems(items.iterator());
+        result.setTotalCount(total);
     }
 
     public IModel<BrixNode> model(BrixNode brixNode) {
@@ -79,80 +109,63 @@ abstract class FolderDataSource implements IDataSource<BrixNode> {
 
     abstract BrixNode getFolderNode();
 
-    private void sort(List<BrixNode> node, IGridSortState<String> state) {
-        int max = Math.min(state.getColumns().size() - 1, 2);
-        for (int i = max; i >= 0; --i) {
-            ISortStateColumn<String> column = state.getColumns().get(i);
-            sort(node, column.getPropertyName(), column.getDirection());
-        }
-    }
-
-    private void sort(List<BrixNode> original, final String property, final IGridSortState.Direction direction) {
-        Collections.sort(original, new Comparator<BrixNode>() {
-            public int compare(BrixNode o1, BrixNode o2) {
-                int res = compareNodes(o1, o2, property);
-                if (direction == IGridSortState.Direction.DESC) {
-                    res = -res;
-                }
-                return res;
-            }
-        });
-    }
-
-    private int compareNodes(BrixNode n1, BrixNode n2, String property) {
-        SitePlugin sp = SitePlugin.get();
-
-        // always put folders first if we sort by name, size or mime type
-        if (PROPERTY_NAME.equals(property) || PROPERTY_SIZE.equals(property) || PROPERTY_MIME_TYPE.equals(property)) {
-            if (n1.isFolder() && !n2.isFolder()) {
-                return -1;
-            } else if (n2.isFolder() && !n1.isFolder()) {
-                return 1;
-            }
-        }
-
+    /**
+     * Reads the value of given sort property of the node.
+     */
+    private static Comparable<?> getSortKey(BrixNode node, String property) {
         if (PROPERTY_NAME.equals(property)) {
-            return compare(n1.getUserVisibleName(), n2.getUserVisibleName());
+            return node.getUserVisibleName();
         } else if (PROPERTY_TYPE.equals(property)) {
-            return compare(n1.getUserVisibleType(), n2.getUserVisibleType());
+            return node.getUserVisibleType();
         } else if (PROPERTY_CREATED.equals(property)) {
-            return compare(n1.getCreated(), n2.getCreated());
+            return node.getCreated();
         } else if (PROPERTY_CREATED_BY.equals(property)) {
-            return compare(n1.getCreatedBy(), n2.getCreatedBy());
+            return node.getCreatedBy();
         } else if (PROPERTY_LAST_MODIFIED.equals(property)) {
-            return compare(n1.getLastModified(), n2.getLastModified());
-        } else if (PROPERTY_LAST_MODIFIED_BY.equals(n2.getLastModifiedBy())) {
-            return compare(n1.getLastModifiedBy(), n2.getLastModifiedBy());
+            return node.getLastModified();
+        } else if (PROPERTY_LAST_MODIFIED_BY.equals(property)) {
+            return node.getLastModifiedBy();
         } else if (PROPERTY_MIME_TYPE.equals(property)) {
-            String mime1 = (n1 instanceof BrixFileNode) ? ((BrixFileNode) n1).getMimeType(true) : null;
-            String mime2 = (n2 instanceof BrixFileNode) ? ((BrixFileNode) n2).getMimeType(true) : null;
-            return compare(mime1, mime2);
+            return (node instanceof BrixFileNode) ? ((BrixFileNode) node).getMimeType(true) : null;
         } else if (PROPERTY_SIZE.equals(property)) {
-            Long size1 = (n1 instanceof BrixFileNode) ? ((BrixFileNode) n1).getContentLength() : null;
-            Long size2 = (n2 instanceof BrixFileNode) ? ((BrixFileNode) n2).getContentLength() : null;
-            return compare(size1, size2);
+            return (node instanceof BrixFileNode) ? ((BrixFileNode) node).getContentLength() : null;
         }
-        return 0;
+        return null;
     }
 
-    private <T> int compare(Comparable<T> c1, T c2) {
+    /**
+     * Returns whether folders are listed before other nodes when sorting by given property.
+     */
+    private static boolean isFoldersFirst(String property) {
+        return PROPERTY_NAME.equals(property) || PROPERTY_SIZE.equals(property) || PROPERTY_MIME_TYPE.equals(property);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Comparable c1, Comparable c2) {
+        // missing values first, keeps the order total
         if (c1 == null || c2 == null) {
-            return 0;
+            return c1 == null ? (c2 == null ? 0 : -1) : 1;
+        } else if (c1 instanceof String) {
+            return ((String) c1).compareToIgnoreCase((String) c2);
         } else {
-            if (c1 instanceof String) {
-                return ((String) c1).compareToIgnoreCase((String) c2);
-            } else {
-                return c1.compareTo(c2);
-            }
+            return c1.compareTo(c2);
         }
     }
 
-    private List<BrixNode> visibleNodes(JcrNodeIterator iterator) {
-        List<BrixNode> res = new ArrayList<BrixNode>();
+    private List<Row> visibleRows(JcrNodeIterator iterator, List<String> properties) {
+        boolean foldersFirst = false;
+        for (String property : properties) {
+            foldersFirst |= isFoldersFirst(property);
+        }
+        List<Row> res = new ArrayList<Row>();
         while (iterator.hasNext()) {
             BrixNode node = (BrixNode) iterator.nextNode();
             if (canShowNode(node)) {
-                res.add(node);
+                Comparable<?>[] keys = new Comparable<?>[properties.size()];
+                for (int i = 0; i < keys.length; ++i) {
+                    keys[i] = getSortKey(node, properties.get(i));
+                }
+                res.add(new Row(node, foldersFirst && node.isFolder(), keys));
             }
         }
         return res;
@@ -166,4 +179,49 @@ abstract class FolderDataSource implements IDataSource<BrixNode> {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Child node with the values of the sort properties, read once before sorting.
+     */
+    private static final class Row {
+        private final BrixNode node;
+        private final boolean folder;
+        private final Comparable<?>[] keys;
+
+        Row(BrixNode node, boolean folder, Comparable<?>[] keys) {
+            this.node = node;
+            this.folder = folder;
+            this.keys = keys;
+        }
+    }
+
+    private static final class RowComparator implements Comparator<Row> {
+        private final boolean[] foldersFirst;
+        private final boolean[] descending;
+
+        RowComparator(List<String> properties, List<IGridSortState.Direction> directions) {
+            foldersFirst = new boolean[properties.size()];
+            descending = new boolean[properties.size()];
+            for (int i = 0; i < foldersFirst.length; ++i) {
+                foldersFirst[i] = isFoldersFirst(properties.get(i));
+                descending[i] = directions.get(i) == IGridSortState.Direction.DESC;
+            }
+        }
+
+        public int compare(Row r1, Row r2) {
+            for (int i = 0; i < descending.length; ++i) {
+                int res = 0;
+                if (foldersFirst[i] && r1.folder != r2.folder) {
+                    res = r1.folder ? -1 : 1;
+                }
+                if (res == 0) {
+                    res = FolderDataSource.compare(r1.keys[i], r2.keys[i]);
+                }
+                if (res != 0) {
+                    return descending[i] ? -res : res;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package org.brixcms.plugin.site.page;
 import org.brixcms.Brix;
 import org.brixcms.exception.NodeNotFoundException;
 import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrProperty;
 import org.brixcms.jcr.api.JcrPropertyIterator;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.wrapper.BrixFileNode;
@@ -34,7 +35,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class AbstractContainer extends BrixFileNode
@@ -61,6 +64,19 @@ public abstract class AbstractContainer extends BrixFileNode
      * Returns collection of possible variable keys for this node.
      */
     public Collection<String> getVariableKeys() {
+        VariableIndex.Variables variables = SitePlugin.get(getBrix()).getVariableIndex().get(this);
+        if (variables != null) {
+            return variables.getVariableKeys(this);
+        }
+        Set<String> keys = collectMarkupVariableKeys();
+        keys.addAll(SitePlugin.get().getGlobalVariableKeys(getSession()));
+        return keys;
+    }
+
+    /**
+     * Returns keys of variables referenced by the markup of this node and its templates.
+     */
+    Set<String> collectMarkupVariableKeys() {
         Set<String> keys = new HashSet<String>();
         PageMarkupSource source = new PageMarkupSource(this);
         VariableTransformer transfomer = new VariableTransformer(source, this);
@@ -74,9 +90,6 @@ public abstract class AbstractContainer extends BrixFileNode
             }
             i = transfomer.nextMarkupItem();
         }
-
-        keys.addAll(SitePlugin.get().getGlobalVariableKeys(getSession()));
-
         return keys;
     }
 
@@ -101,6 +114,10 @@ public abstract class AbstractContainer extends BrixFileNode
     }
 
     public boolean requiresSSL() {
+        TileIndex.Tiles tiles = SitePlugin.get(getBrix()).getTileIndex().get(this);
+        if (tiles != null) {
+            return tiles.requiresSSL();
+        }
         Boolean requiresSSL = isRequiresSSL();
         return (requiresSSL != null && requiresSSL.booleanValue()) || tileManager.anyTileRequiresSSL() || (getTemplate() != null && getTemplate().requiresSSL());
     }
@@ -121,20 +138,38 @@ public abstract class AbstractContainer extends BrixFileNode
     }
 
     public List<String> getSavedVariableKeys() {
+        VariableIndex.Variables variables = SitePlugin.get(getBrix()).getVariableIndex().get(this);
+        if (variables != null) {
+            return variables.getSavedKeys();
+        }
+        Map<String, String> saved = readSavedVariables();
+        if (saved.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<String>(saved.keySet());
+    }
+
+    /**
+     * Reads all variables saved on this node.
+     *
+     * @return map of variable keys to values, in the order of the properties
+     */
+    Map<String, String> readSavedVariables() {
         if (hasNode(VARIABLES_NODE_NAME)) {
             JcrNode node = getNode(VARIABLES_NODE_NAME);
-            List<String> result = new ArrayList<String>();
+            Map<String, String> result = new LinkedHashMap<String, String>();
             JcrPropertyIterator i = node.getProperties();
             while (i.hasNext()) {
-                String name = i.nextProperty().getName();
+                JcrProperty property = i.nextProperty();
+                String name = property.getName();
                 // filter out jcr: properties (or other possible brix properties)
-                if (!name.contains(":")) {
-                    result.add(name);
+                if (!name.contains(":") && !property.getDefinition().isMultiple()) {
+                    result.put(name, property.getString());
                 }
             }
             return result;
         } else {
-            return Collections.emptyList();
+            return Collections.emptyMap();
         }
     }
 
@@ -152,6 +187,19 @@ public abstract class AbstractContainer extends BrixFileNode
     }
 
     public Collection<String> getTileIDs() {
+        VariableIndex.Variables variables = SitePlugin.get(getBrix()).getVariableIndex().get(this);
+        if (variables != null) {
+            return variables.getTileIds(this);
+        }
+        Set<String> keys = collectMarkupTileIDs();
+        keys.addAll(SitePlugin.get().getGlobalTileIDs(getSession()));
+        return keys;
+    }
+
+    /**
+     * Returns ids of tiles referenced by the markup of this node and its templates.
+     */
+    Set<String> collectMarkupTileIDs() {
         Set<String> keys = new HashSet<String>();
         PageMarkupSource source = new PageMarkupSource(this);
         Item i = source.nextMarkupItem();
@@ -161,25 +209,50 @@ public abstract class AbstractContainer extends BrixFileNode
             }
             i = source.nextMarkupItem();
         }
-
-        keys.addAll(SitePlugin.get().getGlobalTileIDs(getSession()));
-
         return keys;
     }
 
+    /**
+     * Returns ids of tiles of this node, without its templates.
+     */
+    Set<String> collectOwnTileIDs() {
+        Set<String> ids = new HashSet<String>();
+        for (BrixNode n : tiles().getTileNodes()) {
+            String id = TileContainerFacet.getTileId(n);
+            if (id != null && id.length() > 0) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
     public BrixNode getTileNode(String id) {
+        BrixNode node = findTileNode(this, id);
+        if (node == null) {
+            AbstractContainer container = SitePlugin.get().getGlobalContainer(getSession());
+            if (container != null) {
+                node = findTileNode(container, id);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Looks up tile node with given id in the container and its templates, through the {@link TileIndex} if possible.
+     */
+    private static BrixNode findTileNode(AbstractContainer container, String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("tile id cannot be null");
+        }
+        TileIndex.Tiles tiles = SitePlugin.get(container.getBrix()).getTileIndex().get(container);
+        if (tiles != null) {
+            return tiles.getTileNode(id, container.getSession());
+        }
         BrixNode node = null;
-        AbstractContainer container = this;
         while (node == null && container != null) {
             node = container.tiles().getTile(id);
             container = container.getTemplate();
         }
-        if (node == null) {
-            container = SitePlugin.get().getGlobalContainer(getSession());
-            if (container != null) {
-                node = container.tiles().getTile(id);
-            }
-        }
         return node;
     }
 
@@ -192,6 +265,12 @@ public abstract class AbstractContainer extends BrixFileNode
     }
 
     public String getVariableValue(String key, boolean followTemplate) {
+        if (followTemplate) {
+            VariableIndex.Variables variables = SitePlugin.get(getBrix()).getVariableIndex().get(this);
+            if (variables != null) {
+                return variables.getValue(key);
+            }
+        }
         if (hasNode(VARIABLES_NODE_NAME)) {
             JcrNode node = getNode(VARIABLES_NODE_NAME);
             if (node.hasProperty(key)) {
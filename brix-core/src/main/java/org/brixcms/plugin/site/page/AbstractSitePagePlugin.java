@@ -28,7 +28,6 @@ import org.brixcms.plugin.site.SiteNodePlugin;
 import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.plugin.site.page.admin.ManageTileNodeTabFactory;
 import org.brixcms.plugin.site.resource.ResourceNodePlugin;
-import org.brixcms.web.nodepage.BrixNodePageRequestHandler;
 import org.brixcms.web.nodepage.BrixNodePageRequestHandler.PageFactory;
 import org.brixcms.web.nodepage.BrixNodeWebPage;
 import org.brixcms.web.nodepage.BrixPageParameters;
@@ -66,7 +65,7 @@ public abstract class AbstractSitePagePlugin implements SiteNodePlugin {
                 return pageParameters;
             }
         };
-        return new BrixNodePageRequestHandler(nodeModel, factory);
+        return new OutputCachingPageRequestHandler(nodeModel, factory);
     }
 
     public abstract Panel newCreateNodePanel(String id, IModel<BrixNode> parentNode, SimpleCallback goBack);
@@ -0,0 +1,268 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.Path;
+import org.brixcms.jcr.WorkspaceChangeNotifier;
+import org.brixcms.jcr.base.SaveEvent;
+import org.brixcms.jcr.base.SaveEventListener;
+import org.brixcms.jcr.exception.JcrException;
+import org.brixcms.markup.ExpirationToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a version counter for every {@link AbstractContainer} whose markup has been generated. The counter is bumped
+ * whenever the container or anything below it changes, so checking whether generated markup is still valid is a
+ * simple comparison with the {@link Stamp} taken when the markup was generated.
+ * <p/>
+ * Each container registers itself as dependent of all templates in its template chain. Bumping a template also bumps
+ * all containers depending on it.
+ * <p/>
+ * Counters are bumped from the save path ({@link SaveEvent}s raised before the save) and from the JCR observation
+ * events delivered after the save, the latter also covering changes made through other sessions.
+ */
+public class ContainerVersions implements WorkspaceChangeNotifier.Listener, SaveEventListener {
+    private static final Logger log = LoggerFactory.getLogger(ContainerVersions.class);
+
+    private final WorkspaceChangeNotifier notifier;
+
+    private final ConcurrentMap<String, WorkspaceVersions> workspaces = new ConcurrentHashMap<String, WorkspaceVersions>();
+
+    public ContainerVersions(WorkspaceChangeNotifier notifier) {
+        if (notifier == null) {
+            throw new IllegalArgumentException("Argument 'notifier' may not be null.");
+        }
+        this.notifier = notifier;
+        notifier.addListener(this);
+    }
+
+    /**
+     * Returns the current version stamp of the container and registers the container as dependent of its templates.
+     *
+     * @param container
+     * @return stamp or <code>null</code> if changes of the container's workspace can not be tracked
+     */
+    public Stamp getStamp(AbstractContainer container) {
+        final String workspace = container.getSession().getWorkspace().getName();
+        if (!notifier.observe(workspace)) {
+            return null;
+        }
+        WorkspaceVersions versions = getWorkspaceVersions(workspace);
+
+        final String path = container.getPath();
+        Set<String> chain = new HashSet<String>();
+        chain.add(path);
+        for (AbstractContainer template = container.getTemplate(); template != null; template = template
+                .getTemplate()) {
+            String templatePath = template.getPath();
+            if (!chain.add(templatePath)) {
+                // loop, reported when parsing the markup
+                break;
+            }
+            versions.addDependent(templatePath, path);
+        }
+
+        AtomicLong version = versions.getVersion(path);
+        return new Stamp(version, version.get());
+    }
+
+    /**
+     * Bumps versions of the node on given path, of containers above it and of all containers depending on those.
+     *
+     * @param workspace
+     * @param path
+     */
+    public void bump(String workspace, String path) {
+        WorkspaceVersions versions = workspaces.get(workspace);
+        if (versions != null) {
+            for (Path p = new Path(path); ; p = p.parent()) {
+                versions.bump(p.toString());
+                if (p.isRoot()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Expires all stamps of given workspace and forgets its versions.
+     *
+     * @param workspace
+     */
+    public void forget(String workspace) {
+        WorkspaceVersions versions = workspaces.remove(workspace);
+        if (versions != null) {
+            versions.bumpAll();
+        }
+    }
+
+    public void onWorkspaceChanged(String workspace, List<Event> events) {
+        WorkspaceVersions versions = workspaces.get(workspace);
+        if (versions == null) {
+            return;
+        }
+        for (Event event : events) {
+            try {
+                String path = event.getPath();
+                switch (event.getType()) {
+                    case Event.NODE_REMOVED:
+                    case Event.NODE_MOVED:
+                        versions.bumpDescendants(path);
+                        bump(workspace, path);
+                        break;
+                    case Event.PROPERTY_ADDED:
+                    case Event.PROPERTY_CHANGED:
+                    case Event.PROPERTY_REMOVED:
+                        bump(workspace, new Path(path).parent().toString());
+                        break;
+                    default:
+                        bump(workspace, path);
+                }
+            } catch (RepositoryException e) {
+                log.warn("Could not process event, expiring all markup of workspace " + workspace, e);
+                versions.bumpAll();
+            }
+        }
+    }
+
+    public void onWorkspaceDeleted(String workspace) {
+        forget(workspace);
+    }
+
+    public void onEvent(EventIterator events) {
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            if (event instanceof SaveEvent) {
+                // path and workspace are read without wrapping the node
+                try {
+                    bump(((SaveEvent) event).getWorkspaceName(), event.getPath());
+                } catch (RepositoryException e) {
+                    throw new JcrException(e);
+                }
+            }
+        }
+    }
+
+    private WorkspaceVersions getWorkspaceVersions(String workspace) {
+        WorkspaceVersions versions = workspaces.get(workspace);
+        if (versions == null) {
+            WorkspaceVersions created = new WorkspaceVersions();
+            versions = workspaces.putIfAbsent(workspace, created);
+            if (versions == null) {
+                versions = created;
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Version of a container at the time the stamp was taken.
+     */
+    public static final class Stamp implements ExpirationToken {
+        private final AtomicLong version;
+        private final long value;
+
+        private Stamp(AtomicLong version, long value) {
+            this.version = version;
+            this.value = value;
+        }
+
+        /**
+         * @return <code>true</code> if neither the container nor any of its templates changed since the stamp was
+         *         taken
+         */
+        public boolean isCurrent() {
+            return version.get() == value;
+        }
+
+        public boolean isExpired() {
+            return !isCurrent();
+        }
+    }
+
+    private static class WorkspaceVersions {
+        private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+
+        private final ConcurrentMap<String, Set<String>> dependents = new ConcurrentHashMap<String, Set<String>>();
+
+        AtomicLong getVersion(String path) {
+            AtomicLong version = versions.get(path);
+            if (version == null) {
+                AtomicLong created = new AtomicLong();
+                version = versions.putIfAbsent(path, created);
+                if (version == null) {
+                    version = created;
+                }
+            }
+            return version;
+        }
+
+        void addDependent(String templatePath, String path) {
+            Set<String> set = dependents.get(templatePath);
+            if (set == null) {
+                Set<String> created = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                set = dependents.putIfAbsent(templatePath, created);
+                if (set == null) {
+                    set = created;
+                }
+            }
+            set.add(path);
+        }
+
+        void bump(String path) {
+            increment(path);
+            Set<String> set = dependents.get(path);
+            if (set != null) {
+                for (String dependent : set) {
+                    increment(dependent);
+                }
+            }
+        }
+
+        void bumpDescendants(String path) {
+            String prefix = path.endsWith("/") ? path : path + "/";
+            for (String p : versions.keySet()) {
+                if (p.startsWith(prefix)) {
+                    bump(p);
+                }
+            }
+        }
+
+        void bumpAll() {
+            for (AtomicLong version : versions.values()) {
+                version.incrementAndGet();
+            }
+        }
+
+        private void increment(String path) {
+            AtomicLong version = versions.get(path);
+            if (version != null) {
+                version.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.markup.ExpirationToken;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the {@link ExpirationToken}s of cached entries used while computing another cached entry, so that the
+ * computed entry expires together with them. E.g. whether a page requires SSL depends on the pages referenced by its
+ * page tiles, which are indexed separately.
+ * <p/>
+ * Trackers are bound to the computing thread and nest, entries computed while computing another entry become its
+ * dependencies together with their own dependencies.
+ */
+final class DependencyTracker implements ExpirationToken {
+    private static final ThreadLocal<DependencyTracker> current = new ThreadLocal<DependencyTracker>();
+
+    private final DependencyTracker outer;
+
+    private final List<ExpirationToken> tokens = new ArrayList<ExpirationToken>();
+
+    private boolean tracked = true;
+
+    private DependencyTracker(DependencyTracker outer) {
+        this.outer = outer;
+    }
+
+    /**
+     * Starts collecting dependencies of an entry on the current thread. Must be followed by {@link #end()}.
+     *
+     * @return tracker collecting the dependencies
+     */
+    static DependencyTracker begin() {
+        DependencyTracker tracker = new DependencyTracker(current.get());
+        current.set(tracker);
+        return tracker;
+    }
+
+    /**
+     * Stops collecting dependencies, the outer tracker (if any) becomes current again.
+     */
+    void end() {
+        if (current.get() != this) {
+            throw new IllegalStateException("Dependency tracker is not the current one.");
+        }
+        if (outer != null) {
+            current.set(outer);
+        } else {
+            current.remove();
+        }
+    }
+
+    /**
+     * Records that the entry currently being computed depends on an entry with given token.
+     *
+     * @param token
+     */
+    static void depend(ExpirationToken token) {
+        if (token == null) {
+            throw new IllegalArgumentException("Argument 'token' may not be null.");
+        }
+        DependencyTracker tracker = current.get();
+        if (tracker != null) {
+            tracker.tokens.add(token);
+        }
+    }
+
+    /**
+     * Records that the entry currently being computed depends on state that can not be tracked, so it must not be
+     * cached.
+     */
+    static void dependOnUntracked() {
+        DependencyTracker tracker = current.get();
+        if (tracker != null) {
+            tracker.tracked = false;
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the entry depends on state that can not be tracked
+     */
+    boolean isTracked() {
+        return tracked;
+    }
+
+    /**
+     * @return <code>true</code> if any of the dependencies expired
+     */
+    public boolean isExpired() {
+        for (ExpirationToken token : tokens) {
+            if (token.isExpired()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,497 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.markup.tag.simple.AttributeMap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming tokenizer for the markup of tile containers. The markup is read incrementally into a char buffer that only
+ * holds the current token and the lookahead needed to recognize it, tokens are spans of that buffer and strings are
+ * only created for the parts that end up in markup items. Long text is reported as several subsequent text tokens.
+ * <p/>
+ * Recognizes tags, comments, the doctype and text. Contents of <code>script</code> and <code>style</code> elements is
+ * reported as text. Processing instructions, CDATA sections and other declarations are passed through as text, as is
+ * anything that can not be parsed as markup (e.g. an unterminated tag).
+ */
+final class MarkupTokenizer {
+    enum Token {
+        TEXT, COMMENT, DOCTYPE, TAG
+    }
+
+    /**
+     * Default size of the read buffer
+     */
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+
+    /**
+     * Maximum length of a single text token
+     */
+    private final int maxTextLength;
+
+    private char[] buffer;
+
+    // positions are absolute offsets in the markup, buffer[0] holds the char at position offset
+    private int offset = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    // first position that has to be kept in the buffer
+    private int mark = 0;
+
+    private int position = 0;
+
+    private int start;
+    private int end;
+
+    // comment text span
+    private int textStart;
+    private int textEnd;
+
+    // tag
+    private String tagName;
+    private boolean close;
+    private boolean openClose;
+
+    // attribute spans: name start, name end, value start, value end (-1 if there is no value)
+    private int[] attributes = new int[16];
+    private int attributeCount;
+
+    // name of element whose content is raw text
+    private String rawTextElement;
+
+    // markup token found after text, returned by the next call
+    private Token pending;
+    private int pendingStart;
+    private int pendingEnd;
+
+    /**
+     * Constructor.
+     *
+     * @param reader     markup source, closed when the end of markup is reached or by {@link #close()}
+     * @param bufferSize initial size of the read buffer, also the maximum length of a single text token
+     */
+    MarkupTokenizer(Reader reader, int bufferSize) {
+        if (reader == null) {
+            throw new IllegalArgumentException("Argument 'reader' may not be null.");
+        }
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Argument 'bufferSize' must be at least 16.");
+        }
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+        this.maxTextLength = bufferSize;
+    }
+
+    /**
+     * Creates tokenizer reading given stream.
+     *
+     * @param stream
+     * @param encoding encoding of the stream or <code>null</code> for UTF-8
+     * @param sizeHint expected number of bytes, used to avoid oversized buffers for small markup
+     * @return tokenizer
+     */
+    static MarkupTokenizer open(InputStream stream, String encoding, long sizeHint) {
+        Charset charset = StandardCharsets.UTF_8;
+        if (encoding != null) {
+            try {
+                charset = Charset.forName(encoding);
+            } catch (IllegalArgumentException e) {
+                // keep the default, same as repository string conversion
+            }
+        }
+        // for the usual encodings a char never takes less than one byte
+        int bufferSize = (int) Math.max(16, Math.min(sizeHint + 1, DEFAULT_BUFFER_SIZE));
+        if (sizeHint <= 0) {
+            bufferSize = DEFAULT_BUFFER_SIZE;
+        }
+        return new MarkupTokenizer(new InputStreamReader(stream, charset), bufferSize);
+    }
+
+    /**
+     * Closes the underlying reader.
+     *
+     * @throws IOException
+     */
+    void close() throws IOException {
+        eof = true;
+        reader.close();
+    }
+
+    /**
+     * Moves to the next token.
+     *
+     * @return type of the token or <code>null</code> at the end of markup
+     * @throws IOException if reading the markup fails
+     */
+    Token next() throws IOException {
+        if (pending != null) {
+            Token token = pending;
+            pending = null;
+            start = pendingStart;
+            end = position = pendingEnd;
+            return token;
+        }
+        // everything before the current position has been consumed
+        mark = position;
+        if (!has(position)) {
+            return null;
+        }
+        final int textStart = position;
+        if (rawTextElement != null) {
+            int e = findRawTextEnd(position, rawTextElement);
+            if (e == -1) {
+                // more raw text follows
+                start = textStart;
+                end = position = textStart + maxTextLength;
+                return Token.TEXT;
+            }
+            rawTextElement = null;
+            if (e > position) {
+                start = textStart;
+                end = position = e;
+                return Token.TEXT;
+            }
+        }
+        int p = position;
+        for (; has(p); ++p) {
+            if (at(p) == '<') {
+                Token token = scanMarkup(p);
+                if (token != null) {
+                    if (p == textStart) {
+                        return token;
+                    }
+                    // return the text before the markup first
+                    pending = token;
+                    pendingStart = start;
+                    pendingEnd = end;
+                    start = textStart;
+                    end = position = p;
+                    return Token.TEXT;
+                }
+            } else if (p - textStart >= maxTextLength) {
+                // split long text so that it doesn't have to be buffered as a whole
+                break;
+            }
+        }
+        start = textStart;
+        end = position = p;
+        return Token.TEXT;
+    }
+
+    /**
+     * Tries to scan markup starting at given position. On success sets the token span and position and returns the
+     * token type, otherwise returns <code>null</code> and the <code>&lt;</code> is treated as text.
+     */
+    private Token scanMarkup(int p) throws IOException {
+        if (!has(p + 1)) {
+            return null;
+        }
+        char c = at(p + 1);
+        if (c == '!') {
+            if (startsWith(p + 2, "--")) {
+                int e = indexOf(p + 4, "-->");
+                if (e == -1) {
+                    return null;
+                }
+                textStart = p + 4;
+                textEnd = e;
+                return setToken(p, e + 3, Token.COMMENT);
+            } else if (startsWith(p + 2, "[CDATA[")) {
+                int e = indexOf(p + 9, "]]>");
+                return e != -1 ? setToken(p, e + 3, Token.TEXT) : null;
+            } else {
+                int e = indexOf(p + 2, '>');
+                if (e == -1) {
+                    return null;
+                }
+                return setToken(p, e + 1, startsWithIgnoreCase(p + 2, "doctype") ? Token.DOCTYPE : Token.TEXT);
+            }
+        } else if (c == '?') {
+            int e = indexOf(p + 2, '>');
+            return e != -1 ? setToken(p, e + 1, Token.TEXT) : null;
+        } else if (c == '/') {
+            return scanTag(p, p + 2, true);
+        } else if (Character.isLetter(c)) {
+            return scanTag(p, p + 1, false);
+        }
+        return null;
+    }
+
+    private Token scanTag(int tagStart, int nameStart, boolean close) throws IOException {
+        int p = nameStart;
+        while (has(p) && !isWhitespace(at(p)) && at(p) != '>' && at(p) != '/') {
+            ++p;
+        }
+        if (p == nameStart) {
+            return null;
+        }
+        final int nameEnd = p;
+        boolean openClose = false;
+        int count = 0;
+        while (true) {
+            while (has(p) && isWhitespace(at(p))) {
+                ++p;
+            }
+            if (!has(p)) {
+                return null;
+            }
+            char c = at(p);
+            if (c == '>') {
+                break;
+            } else if (c == '/') {
+                ++p;
+                openClose = true;
+                continue;
+            }
+            openClose = false;
+
+            // attribute name
+            int attrStart = p;
+            while (has(p) && !isWhitespace(at(p)) && at(p) != '=' && at(p) != '>' && at(p) != '/') {
+                ++p;
+            }
+            if (p == attrStart) {
+                // stray '='
+                ++p;
+                continue;
+            }
+            int attrEnd = p;
+            int valueStart = -1;
+            int valueEnd = -1;
+
+            int q = p;
+            while (has(q) && isWhitespace(at(q))) {
+                ++q;
+            }
+            if (has(q) && at(q) == '=') {
+                ++q;
+                while (has(q) && isWhitespace(at(q))) {
+                    ++q;
+                }
+                if (!has(q)) {
+                    return null;
+                }
+                char quote = at(q);
+                if (quote == '"' || quote == '\'') {
+                    valueStart = q + 1;
+                    valueEnd = indexOf(valueStart, quote);
+                    if (valueEnd == -1) {
+                        return null;
+                    }
+                    p = valueEnd + 1;
+                } else {
+                    valueStart = q;
+                    while (has(q) && !isWhitespace(at(q)) && at(q) != '>') {
+                        ++q;
+                    }
+                    valueEnd = q;
+                    p = q;
+                }
+            }
+
+            if (!close) {
+                if ((count + 1) * 4 > attributes.length) {
+                    int[] copy = new int[attributes.length * 2];
+                    System.arraycopy(attributes, 0, copy, 0, attributes.length);
+                    attributes = copy;
+                }
+                attributes[count * 4] = attrStart;
+                attributes[count * 4 + 1] = attrEnd;
+                attributes[count * 4 + 2] = valueStart;
+                attributes[count * 4 + 3] = valueEnd;
+                ++count;
+            }
+        }
+
+        this.tagName = string(nameStart, nameEnd).toLowerCase().intern();
+        this.close = close;
+        this.openClose = openClose && !close;
+        this.attributeCount = count;
+        if (!close && !this.openClose && ("script".equals(tagName) || "style".equals(tagName))) {
+            rawTextElement = tagName;
+        }
+        return setToken(tagStart, p + 1, Token.TAG);
+    }
+
+    private Token setToken(int start, int end, Token token) {
+        this.start = start;
+        this.end = end;
+        this.position = end;
+        return token;
+    }
+
+    /**
+     * @return position of the close tag of given raw text element, the end of markup or <code>-1</code> if the close
+     *         tag is not within the maximum text length
+     */
+    private int findRawTextEnd(int from, String element) throws IOException {
+        int p = from;
+        for (; has(p); ++p) {
+            if (at(p) == '<' && startsWith(p + 1, "/") && startsWithIgnoreCase(p + 2, element)) {
+                return p;
+            } else if (p - from >= maxTextLength) {
+                return -1;
+            }
+        }
+        return p;
+    }
+
+    private int indexOf(int from, char c) throws IOException {
+        for (int p = from; has(p); ++p) {
+            if (at(p) == c) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(int from, String s) throws IOException {
+        for (int p = from; has(p + s.length() - 1); ++p) {
+            if (startsWith(p, s)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int p, String s) throws IOException {
+        if (!has(p + s.length() - 1)) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); ++i) {
+            if (at(p + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWithIgnoreCase(int p, String s) throws IOException {
+        if (!has(p + s.length() - 1)) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); ++i) {
+            if (Character.toLowerCase(at(p + i)) != Character.toLowerCase(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Makes sure the char at given position is in the buffer, reading more markup if necessary.
+     *
+     * @return <code>false</code> if the position is past the end of markup
+     */
+    private boolean has(int p) throws IOException {
+        while (p >= limit) {
+            if (eof || !fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private char at(int p) {
+        return buffer[p - offset];
+    }
+
+    private boolean fill() throws IOException {
+        if (limit - offset == buffer.length) {
+            if (mark > offset) {
+                // drop the consumed chars
+                System.arraycopy(buffer, mark - offset, buffer, 0, limit - mark);
+                offset = mark;
+            } else {
+                // the current token doesn't fit
+                char[] copy = new char[buffer.length * 2];
+                System.arraycopy(buffer, 0, copy, 0, buffer.length);
+                buffer = copy;
+            }
+        }
+        int read = reader.read(buffer, limit - offset, buffer.length - (limit - offset));
+        if (read == -1) {
+            close();
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private String string(int from, int to) {
+        return new String(buffer, from - offset, to - from);
+    }
+
+    /**
+     * @return raw markup of the current token
+     */
+    String getText() {
+        return string(start, end);
+    }
+
+    /**
+     * @return text between the comment delimiters of the current {@link Token#COMMENT} token
+     */
+    String getCommentText() {
+        return string(textStart, textEnd);
+    }
+
+    /**
+     * @return interned lower case name of the current {@link Token#TAG} token
+     */
+    String getTagName() {
+        return tagName;
+    }
+
+    boolean isCloseTag() {
+        return close;
+    }
+
+    boolean isOpenCloseTag() {
+        return openClose;
+    }
+
+    /**
+     * Returns attributes of the current {@link Token#TAG} token. Attributes without value get their name as value.
+     *
+     * @return attribute map
+     */
+    AttributeMap getAttributes() {
+        if (attributeCount == 0) {
+            return AttributeMap.EMPTY;
+        }
+        String[] keysAndValues = new String[attributeCount * 2];
+        for (int i = 0; i < attributeCount; ++i) {
+            int valueStart = attributes[i * 4 + 2];
+            String name = string(attributes[i * 4], attributes[i * 4 + 1]);
+            keysAndValues[i * 2] = name;
+            keysAndValues[i * 2 + 1] = valueStart != -1 ? string(valueStart, attributes[i * 4 + 3]) : name;
+        }
+        return AttributeMap.of(keysAndValues);
+    }
+}
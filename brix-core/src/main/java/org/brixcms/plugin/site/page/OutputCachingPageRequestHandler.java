@@ -0,0 +1,83 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.IRequestCycle;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebResponse;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.site.SitePlugin;
+import org.brixcms.web.nodepage.BrixNodePageRequestHandler;
+import org.brixcms.web.nodepage.BrixPageParameters;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Renders pages through the {@link PageOutputCache}. Cacheable requests are answered with the cached output if there
+ * is any, otherwise the page is rendered into a buffer and its output stored if it turns out to be cacheable. The
+ * status, content type and headers set while rendering are stored with the output and replayed with it.
+ */
+public class OutputCachingPageRequestHandler extends BrixNodePageRequestHandler {
+    private final IModel<BrixNode> node;
+
+    public OutputCachingPageRequestHandler(IModel<BrixNode> node, PageFactory pageFactory) {
+        super(node, pageFactory);
+        this.node = node;
+    }
+
+    @Override
+    protected void respondWithInitialRedirectHandled(IRequestCycle requestCycle) {
+        RequestCycle cycle = (RequestCycle) requestCycle;
+        PageOutputCache cache = SitePlugin.get().getPageOutputCache();
+        BrixNode page = node.getObject();
+        if (cycle.getActiveRequestHandler() != this || !(page instanceof AbstractContainer) ||
+                !cache.isCacheable(cycle)) {
+            super.respondWithInitialRedirectHandled(requestCycle);
+            return;
+        }
+
+        BrixPageParameters parameters = getPageParameters();
+        HttpServletRequest request = (HttpServletRequest) cycle.getRequest().getContainerRequest();
+        PageOutputCache.Lookup lookup = cache.lookup((AbstractContainer) page, parameters, request);
+        if (lookup == null) {
+            super.respondWithInitialRedirectHandled(requestCycle);
+            return;
+        }
+
+        PageOutput output = lookup.getOutput();
+        if (output != null) {
+            RecordingWebResponse.replay(output, (WebResponse) cycle.getResponse());
+            return;
+        }
+
+        WebResponse original = (WebResponse) cycle.getResponse();
+        RecordingWebResponse buffer = new RecordingWebResponse(original);
+        PageOutputCache.Collector collector = PageOutputCache.startCollecting(cycle);
+        cycle.setResponse(buffer);
+        try {
+            super.respondWithInitialRedirectHandled(requestCycle);
+        } finally {
+            cycle.setResponse(original);
+            PageOutputCache.stopCollecting(cycle);
+        }
+
+        // the page may have bound a session or switched to another handler while rendering
+        if (cache.isCacheable(cycle) && cycle.getActiveRequestHandler() == this) {
+            lookup.store(getPage().isPageStateless() ? buffer.getOutput() : null, collector);
+        }
+        buffer.writeTo(original);
+    }
+}
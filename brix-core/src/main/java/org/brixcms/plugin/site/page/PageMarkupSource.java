@@ -14,31 +14,15 @@
 
 package org.brixcms.plugin.site.page;
 
-import org.brixcms.Brix;
 import org.brixcms.exception.BrixException;
 import org.brixcms.markup.MarkupSource;
 import org.brixcms.markup.tag.Item;
-import org.brixcms.markup.tag.Tag;
-import org.brixcms.markup.tag.Tag.Type;
-import org.brixcms.markup.tag.simple.SimpleComment;
-import org.brixcms.markup.tag.simple.SimpleTag;
-import org.brixcms.markup.tag.simple.SimpleText;
-import org.brixcms.plugin.site.page.tile.TileTag;
-import org.htmlparser.Attribute;
-import org.htmlparser.Node;
-import org.htmlparser.Remark;
-import org.htmlparser.Text;
-import org.htmlparser.lexer.Lexer;
-import org.htmlparser.util.ParserException;
+import org.brixcms.plugin.site.SitePlugin;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 /**
  * {@link MarkupSource} for tile markup. Parses and merges the content of tile container node and it's templates.
@@ -62,12 +46,20 @@ public class PageMarkupSource implements MarkupSource {
     }
 
 
+    /**
+     * Returns the {@link ContainerVersions.Stamp} of the container, so that checking for expiration does not need to
+     * load the template chain. Falls back to the most recent modification date if changes of the workspace can not be
+     * tracked.
+     */
     public Object getExpirationToken() {
-        return getMostRecentLastModifiedDate();
+        ContainerVersions.Stamp stamp = SitePlugin.get(node.getBrix()).getContainerVersions().getStamp(node);
+        return stamp != null ? stamp : getMostRecentLastModifiedDate();
     }
 
     public boolean isMarkupExpired(Object expirationToken) {
-        if (expirationToken != null) {
+        if (expirationToken instanceof ContainerVersions.Stamp) {
+            return !((ContainerVersions.Stamp) expirationToken).isCurrent();
+        } else if (expirationToken != null) {
             Date token = (Date) expirationToken;
             Date current = getMostRecentLastModifiedDate();
             if (current != null) {
@@ -131,110 +123,22 @@ public class PageMarkupSource implements MarkupSource {
     }
 
     private void parseNode(List<AbstractContainer> nodes, int current, List<Item> items) {
-        AbstractContainer node = nodes.get(current);
-        final String content = node.getDataAsString();
-        final Lexer lexer = new Lexer(content);
-        Node cursor = null;
-
-        try {
-            while ((cursor = lexer.nextNode()) != null) {
-                if (cursor instanceof Remark) {
-                    items.add(new SimpleComment(cursor.getText()));
-                } else if (cursor instanceof Text) {
-                    items.add(new SimpleText(cursor.toHtml()));
-                } else if (cursor instanceof org.htmlparser.Tag) {
-                    processTag(nodes, current, items, (org.htmlparser.Tag) cursor);
-                } else {
-                    throw new BrixException("Unknown node type " + cursor.getClass().getName());
-                }
-            }
-        }
-        catch (ParserException e) {
-            throw new BrixException("Couldn't parse node content: '" + node.getPath() + "'", e);
-        }
-    }
-
-    private void processTag(List<AbstractContainer> nodes, int current, List<Item> items,
-                            org.htmlparser.Tag tag) {
-        final Tag.Type type;
-        final String rawName = tag.getRawTagName();
-        if (rawName.startsWith("/")) {
-            type = Tag.Type.CLOSE;
-        } else if (isOpenClose(tag)) {
-            type = Tag.Type.OPEN_CLOSE;
-        } else {
-            type = Tag.Type.OPEN;
-        }
-
-        final String tagName = tag.getTagName().toLowerCase();
-
-        if ("!doctype".equals(tagName)) {
-            this.doctype = tag.toHtml();
-        } else if (type == Tag.Type.CLOSE) {
-            if (!isKnownBrixTag(tagName)) {
-                Map<String, String> attributes = Collections.emptyMap();
-                items.add(new SimpleTag(tagName, type, attributes));
-            }
-        } else {
-            Map<String, String> attributes = getAttributes(tag);
-            if (isKnownBrixTag(tagName)) {
-                processBrixTag(nodes, current, items, tagName, getAttributes(tag), type);
-            } else {
-                items.add(new SimpleTag(tagName, type, attributes));
-            }
-        }
-    }
-
-    private boolean isOpenClose(org.htmlparser.Tag tag) {
-        if (tag.getRawTagName().endsWith("/")) {
-            return true;
-        } else {
-            List<?> atts = tag.getAttributesEx();
-            Attribute a = (Attribute) atts.get(atts.size() - 1);
-            return a.getName() != null && a.getName().equals("/");
-        }
-    }
-
-    private boolean isKnownBrixTag(String tagName) {
-        if (!tagName.startsWith(Brix.NS_PREFIX)) {
-            return false;
-        }
-        String simpleTagName = tagName.substring(Brix.NS_PREFIX.length());
-        return TemplateNode.CONTENT_TAG.equals(tagName) || "tile".equals(simpleTagName) ||
-                "fragment".equals(simpleTagName);
-    }
-
-    private void processBrixTag(List<AbstractContainer> nodes, int current, List<Item> items,
-                                String tagName, Map<String, String> attributes, Tag.Type type) {
-        AbstractContainer node = nodes.get(current);
-        final String simpleTagName = tagName.substring(Brix.NS_PREFIX.length());
-        if (TemplateNode.CONTENT_TAG.equals(tagName)) {
-            if (current != nodes.size() - 1) {
+        final AbstractContainer node = nodes.get(current);
+        final boolean last = current == nodes.size() - 1;
+        // templates are parsed once and their items shared, the page itself is cached as generated markup
+        final ParsedContainer parsed = last ? ParsedContainer.parse(node) : SitePlugin.get(node.getBrix())
+                .getParsedTemplateCache().get(node);
+
+        List<ParsedContainer.Run> runs = parsed.getRuns();
+        for (int i = 0; i < runs.size(); ++i) {
+            if (i > 0 && !last) {
                 parseNode(nodes, current + 1, items);
             }
-        } else if ("tile".equals(simpleTagName)) {
-            String id = attributes.get(AbstractContainer.MARKUP_TILE_ID);
-            //Map<String, String> newAttributes = new HashMap<String, String>(attributes);
-            //newAttributes.remove("id");            
-            items.add(new TileTag("div", Type.OPEN, attributes, node, id));
-            items.add(new SimpleTag("div", Type.CLOSE, null));
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    private Map<String, String> getAttributes(org.htmlparser.Tag tag) {
-        Map<String, String> result = new HashMap<String, String>();
-
-        List<?> original = tag.getAttributesEx();
-        List<Attribute> list = new ArrayList<Attribute>((Collection<? extends Attribute>) original
-                .subList(1, original.size()));
-
-        for (Attribute a : list) {
-            if (a.getName() != null && !a.getName().equals("/") && !a.isWhitespace()) {
-                result.put(a.getName(), a.getValue());
+            ParsedContainer.Run run = runs.get(i);
+            items.addAll(run.getItems());
+            if (run.getDoctype() != null) {
+                doctype = run.getDoctype();
             }
         }
-
-        return result;
     }
 }
@@ -32,6 +32,11 @@ public class PageNode extends AbstractContainer {
             return PageSiteNodePlugin.TYPE.equals(getNodeType(node));
         }
 
+        @Override
+        public String getWrappedNodeType() {
+            return PageSiteNodePlugin.TYPE;
+        }
+
         @Override
         public JcrNode wrap(Brix brix, Node node, JcrSession session) {
             return new PageNode(node, session);
@@ -0,0 +1,151 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rendered page as stored in the {@link PageOutputCache}: the markup together with the status, content type and
+ * headers set while rendering, so that cached responses are the same as rendered ones.
+ */
+final class PageOutput {
+    private final String text;
+    private final int status;
+    private final String contentType;
+    private final List<Header> headers;
+
+    private PageOutput(String text, int status, String contentType, List<Header> headers) {
+        this.text = text;
+        this.status = status;
+        this.contentType = contentType;
+        this.headers = headers;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    /**
+     * @return status set while rendering or <code>0</code> if none was set
+     */
+    int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return content type or <code>null</code> if none was set
+     */
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return headers in the order they were set
+     */
+    List<Header> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return approximate memory taken by the output in bytes
+     */
+    long getWeight() {
+        long weight = 2L * text.length();
+        for (Header header : headers) {
+            weight += 2L * (header.name.length() + (header.value != null ? header.value.length() : 0));
+        }
+        return weight;
+    }
+
+    /**
+     * Response header.
+     */
+    static final class Header {
+        final String name;
+        // null for date headers
+        final String value;
+        final long date;
+        final boolean add;
+
+        private Header(String name, String value, long date, boolean add) {
+            this.name = name;
+            this.value = value;
+            this.date = date;
+            this.add = add;
+        }
+
+        boolean isDate() {
+            return value == null;
+        }
+    }
+
+    /**
+     * Collects the parts of an output while the page renders.
+     */
+    static final class Builder {
+        private final List<Header> headers = new ArrayList<Header>();
+        private int status;
+        private String contentType;
+        private boolean replayable = true;
+
+        void setStatus(int status) {
+            this.status = status;
+        }
+
+        void setContentType(String contentType) {
+            this.contentType = contentType;
+        }
+
+        void setHeader(String name, String value) {
+            removeHeader(name);
+            headers.add(new Header(name, value, 0, false));
+        }
+
+        void addHeader(String name, String value) {
+            headers.add(new Header(name, value, 0, true));
+        }
+
+        void setDateHeader(String name, long date) {
+            removeHeader(name);
+            headers.add(new Header(name, null, date, false));
+        }
+
+        private void removeHeader(String name) {
+            for (int i = headers.size() - 1; i >= 0; --i) {
+                if (headers.get(i).name.equalsIgnoreCase(name)) {
+                    headers.remove(i);
+                }
+            }
+        }
+
+        /**
+         * Marks the output as not replayable, e.g. because it sets cookies or redirects.
+         */
+        void setNotReplayable() {
+            replayable = false;
+        }
+
+        boolean isReplayable() {
+            return replayable;
+        }
+
+        PageOutput build(String text) {
+            return new PageOutput(text, status, contentType,
+                    Collections.unmodifiableList(new ArrayList<Header>(headers)));
+        }
+    }
+}
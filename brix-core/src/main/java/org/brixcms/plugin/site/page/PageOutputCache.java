@@ -0,0 +1,475 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.Session;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.brixcms.BrixNodeModel;
+import org.brixcms.jcr.WorkspaceChangeNotifier;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.site.SitePlugin;
+import org.brixcms.plugin.site.page.tile.CacheableTile;
+import org.brixcms.plugin.site.page.tile.Tile;
+import org.brixcms.web.nodepage.BrixPageParameters;
+
+import javax.jcr.observation.Event;
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rendered output of pages requested anonymously, so that such requests do not build and render the component tree.
+ * <p/>
+ * A page is cached if the request is cacheable (see {@link #isCacheable(RequestCycle)}), the rendered page is stateless
+ * and every tile rendered on it is a {@link CacheableTile} with a positive time to live. Which tiles a page renders is
+ * learned on the first render and remembered, so that pages that can not be cached are not buffered on later requests.
+ * <p/>
+ * Output is keyed by workspace, page, request uri, page parameters, protocol, host, locale and style, the values of
+ * the request headers set with {@link #setVaryHeaders(String...)} and the vary keys of the page's tiles. Entries are
+ * validated through {@link ContainerVersions} stamps of the page (covering its templates and their tiles) and of the
+ * global container, and expire after the smallest time to live of the page's tiles. Least recently used outputs are
+ * evicted once their total size exceeds {@link #setMaxSize(long)}.
+ * <p/>
+ * The cache is disabled by default, see {@link #setEnabled(boolean)}.
+ */
+public class PageOutputCache implements WorkspaceChangeNotifier.Listener {
+    /**
+     * Default maximum number of pages whose cacheability is remembered
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * Default maximum total size of cached outputs in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Default upper bound of the time to live of cached outputs
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(5);
+
+    private static final MetaDataKey<Collector> COLLECTOR_KEY = new MetaDataKey<Collector>() {
+    };
+
+    private final ContainerVersions versions;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // access ordered, guarded by lock
+    private final LinkedHashMap<String, Descriptor> descriptors = new LinkedHashMap<String, Descriptor>(16, 0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Descriptor> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private final PageOutputStore outputs = new PageOutputStore(DEFAULT_MAX_SIZE);
+
+    private final List<String> varyHeaders = new CopyOnWriteArrayList<String>();
+
+    private volatile boolean enabled = false;
+
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    public PageOutputCache(WorkspaceChangeNotifier notifier, ContainerVersions versions) {
+        if (versions == null) {
+            throw new IllegalArgumentException("Argument 'versions' may not be null.");
+        }
+        this.versions = versions;
+        notifier.addListener(this);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * @param maxEntries maximum number of pages whose cacheability is remembered
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param maxSize maximum total size of cached outputs in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        outputs.setMaxWeight(maxSize);
+    }
+
+    /**
+     * @param timeToLive upper bound of the time to live of cached outputs in milliseconds
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Sets the request headers the output of pages depends on, e.g. <code>User-Agent</code> for sites that render
+     * differently for mobile devices.
+     *
+     * @param headers header names
+     */
+    public void setVaryHeaders(String... headers) {
+        varyHeaders.clear();
+        Collections.addAll(varyHeaders, headers);
+    }
+
+    /**
+     * Returns whether the output of the current request may be taken from or stored in the cache. By default only GET
+     * requests of users without a bound session qualify, as their output can not depend on session state.
+     *
+     * @param cycle
+     * @return <code>true</code> if the request is cacheable
+     */
+    public boolean isCacheable(RequestCycle cycle) {
+        if (!enabled) {
+            return false;
+        }
+        Object request = cycle.getRequest().getContainerRequest();
+        if (!(request instanceof HttpServletRequest) || !"GET".equals(((HttpServletRequest) request).getMethod())) {
+            return false;
+        }
+        return !Session.exists() || Session.get().isTemporary();
+    }
+
+    /**
+     * Starts looking up the output of given page.
+     *
+     * @param page       rendered page
+     * @param parameters page parameters
+     * @param request
+     * @return lookup or <code>null</code> if the page is known not to be cacheable or its changes can not be tracked
+     */
+    public Lookup lookup(AbstractContainer page, BrixPageParameters parameters, HttpServletRequest request) {
+        if (page.getSession().hasPendingChanges()) {
+            return null;
+        }
+        // stamps are taken before rendering, changes made while rendering expire the stored output
+        ContainerVersions.Stamp pageStamp = versions.getStamp(page);
+        AbstractContainer global = SitePlugin.get(page.getBrix()).getGlobalContainer(page.getSession());
+        ContainerVersions.Stamp globalStamp = global != null ? versions.getStamp(global) : null;
+        if (pageStamp == null || (global != null && globalStamp == null)) {
+            return null;
+        }
+
+        String workspace = page.getSession().getWorkspace().getName();
+        String pageKey = workspace + ":" + page.getPath();
+        Descriptor descriptor;
+        lock.lock();
+        try {
+            descriptor = descriptors.get(pageKey);
+            if (descriptor != null && !descriptor.isCurrent()) {
+                descriptors.remove(pageKey);
+                descriptor = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (descriptor != null && !descriptor.cacheable) {
+            return null;
+        }
+        return new Lookup(pageKey, getRequestKey(pageKey, parameters, request), pageStamp, globalStamp, descriptor,
+                workspace, parameters);
+    }
+
+    private String getRequestKey(String pageKey, BrixPageParameters parameters, HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(pageKey);
+        // relative urls in the output depend on the request uri
+        key.append('|').append(request.isSecure() ? "https" : "http").append("://").append(request.getServerName())
+                .append(':').append(request.getServerPort()).append(request.getRequestURI());
+        key.append('|');
+        for (int i = 0; i < parameters.getIndexedCount(); ++i) {
+            key.append(parameters.get(i)).append('/');
+        }
+        key.append('?');
+        List<String> named = new ArrayList<String>();
+        for (PageParameters.NamedPair pair : parameters.getAllNamed()) {
+            named.add(pair.getKey() + "=" + pair.getValue());
+        }
+        Collections.sort(named);
+        for (String pair : named) {
+            key.append(pair).append('&');
+        }
+        if (Session.exists()) {
+            key.append('|').append(Session.get().getLocale()).append('|').append(Session.get().getStyle());
+        }
+        for (String header : varyHeaders) {
+            key.append('|').append(request.getHeader(header));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Starts collecting the tiles rendered in the current request.
+     *
+     * @param cycle
+     * @return collector
+     */
+    public static Collector startCollecting(RequestCycle cycle) {
+        Collector collector = new Collector();
+        cycle.setMetaData(COLLECTOR_KEY, collector);
+        return collector;
+    }
+
+    public static void stopCollecting(RequestCycle cycle) {
+        cycle.setMetaData(COLLECTOR_KEY, null);
+    }
+
+    /**
+     * Records a rendered tile. Called for every tile viewer created while rendering a page.
+     *
+     * @param tile
+     * @param tileNode
+     */
+    public static void onTileRendered(Tile tile, BrixNode tileNode) {
+        RequestCycle cycle = RequestCycle.get();
+        Collector collector = cycle != null ? cycle.getMetaData(COLLECTOR_KEY) : null;
+        if (collector != null) {
+            collector.add(tile, tileNode);
+        }
+    }
+
+    /**
+     * Drops all cached outputs.
+     */
+    public void clear() {
+        outputs.clear();
+        lock.lock();
+        try {
+            descriptors.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onWorkspaceChanged(String workspaceId, List<Event> events) {
+        // entries are validated through their stamps
+    }
+
+    public void onWorkspaceDeleted(String workspaceId) {
+        String prefix = workspaceId + ":";
+        outputs.removeAll(prefix);
+        lock.lock();
+        try {
+            for (Iterator<String> i = descriptors.keySet().iterator(); i.hasNext(); ) {
+                if (i.next().startsWith(prefix)) {
+                    i.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of requests served from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of cacheable requests that had to be rendered
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of stored outputs
+     */
+    public long getStoreCount() {
+        return stores.get();
+    }
+
+    /**
+     * @return number of outputs evicted to stay within the maximum size
+     */
+    public long getEvictionCount() {
+        return outputs.getEvictionCount();
+    }
+
+    /**
+     * Lookup of the output of a single request.
+     */
+    public class Lookup {
+        private final String pageKey;
+        private final String requestKey;
+        private final ContainerVersions.Stamp pageStamp;
+        private final ContainerVersions.Stamp globalStamp;
+        private final Descriptor descriptor;
+        private final String workspace;
+        private final BrixPageParameters parameters;
+
+        private Lookup(String pageKey, String requestKey, ContainerVersions.Stamp pageStamp,
+                       ContainerVersions.Stamp globalStamp, Descriptor descriptor, String workspace,
+                       BrixPageParameters parameters) {
+            this.pageKey = pageKey;
+            this.requestKey = requestKey;
+            this.pageStamp = pageStamp;
+            this.globalStamp = globalStamp;
+            this.descriptor = descriptor;
+            this.workspace = workspace;
+            this.parameters = parameters;
+        }
+
+        /**
+         * @return cached output or <code>null</code> if the page has to be rendered
+         */
+        PageOutput getOutput() {
+            if (descriptor != null) {
+                PageOutput output = outputs.get(descriptor.getKey(requestKey, workspace, parameters));
+                if (output != null) {
+                    hits.incrementAndGet();
+                    return output;
+                }
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        /**
+         * Stores the output of the rendered page.
+         *
+         * @param output    rendered output or <code>null</code> if the page turned out not to be cacheable, e.g.
+         *                  because it is stateful
+         * @param collector tiles rendered on the page
+         */
+        void store(PageOutput output, Collector collector) {
+            long ttl = Math.min(timeToLive, collector.timeToLive);
+            boolean cacheable = output != null && collector.cacheable && ttl > 0;
+
+            Descriptor descriptor = new Descriptor(pageStamp, globalStamp, cacheable, collector.tiles);
+            lock.lock();
+            try {
+                descriptors.put(pageKey, descriptor);
+            } finally {
+                lock.unlock();
+            }
+            if (!cacheable) {
+                return;
+            }
+
+            outputs.put(descriptor.getKey(requestKey, workspace, parameters), output,
+                    System.currentTimeMillis() + ttl, pageStamp, globalStamp);
+            stores.incrementAndGet();
+        }
+    }
+
+    /**
+     * Tiles rendered while rendering a page.
+     */
+    public static class Collector {
+        private final List<TileRef> tiles = new ArrayList<TileRef>();
+
+        private boolean cacheable = true;
+
+        private long timeToLive = Long.MAX_VALUE;
+
+        private Collector() {
+        }
+
+        private void add(Tile tile, BrixNode tileNode) {
+            long ttl = tile instanceof CacheableTile ? ((CacheableTile) tile)
+                    .getOutputTimeToLive(new BrixNodeModel(tileNode)) : 0;
+            if (ttl <= 0) {
+                cacheable = false;
+            } else {
+                timeToLive = Math.min(timeToLive, ttl);
+                tiles.add(new TileRef(tileNode.getIdentifier(), (CacheableTile) tile));
+            }
+        }
+    }
+
+    /**
+     * Tile rendered on a page. The tile is kept so that its node does not have to be loaded to look up the output,
+     * changing the tile type changes the page stamp.
+     */
+    private static class TileRef {
+        private final String id;
+        private final CacheableTile tile;
+
+        TileRef(String id, CacheableTile tile) {
+            this.id = id;
+            this.tile = tile;
+        }
+    }
+
+    /**
+     * What has been learned about a page when it was last rendered.
+     */
+    private static class Descriptor {
+        private final ContainerVersions.Stamp pageStamp;
+        private final ContainerVersions.Stamp globalStamp;
+        private final boolean cacheable;
+        private final List<TileRef> tiles;
+
+        Descriptor(ContainerVersions.Stamp pageStamp, ContainerVersions.Stamp globalStamp, boolean cacheable,
+                   List<TileRef> tiles) {
+            this.pageStamp = pageStamp;
+            this.globalStamp = globalStamp;
+            this.cacheable = cacheable;
+            this.tiles = tiles;
+        }
+
+        boolean isCurrent() {
+            return pageStamp.isCurrent() && (globalStamp == null || globalStamp.isCurrent());
+        }
+
+        /**
+         * @return key of the output including the vary keys of the page's tiles
+         */
+        String getKey(String requestKey, String workspace, BrixPageParameters parameters) {
+            if (tiles.isEmpty()) {
+                return requestKey;
+            }
+            StringBuilder key = new StringBuilder(requestKey);
+            for (TileRef ref : tiles) {
+                // the node is only loaded if the tile reads its configuration
+                String vary = ref.tile.getOutputVaryKey(new BrixNodeModel<BrixNode>(ref.id, workspace), parameters);
+                key.append('|');
+                if (vary != null) {
+                    key.append(vary);
+                }
+            }
+            return key.toString();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.markup.ExpirationToken;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Page outputs of the {@link PageOutputCache}. The total weight of the outputs is bounded, least recently used outputs
+ * are evicted first.
+ */
+class PageOutputStore {
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // access ordered, eldest entry is evicted first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private long weight;
+
+    private volatile long maxWeight;
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxWeight maximum total weight of the outputs in bytes
+     */
+    PageOutputStore(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        lock.lock();
+        try {
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param key
+     * @return valid output stored under the key or <code>null</code>
+     */
+    PageOutput get(String key) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (!entry.isValid(System.currentTimeMillis())) {
+                remove(key);
+                return null;
+            }
+            return entry.output;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores an output.
+     *
+     * @param key
+     * @param output
+     * @param expires time the output expires at
+     * @param tokens  tokens that expire the output when any of them expires
+     */
+    void put(String key, PageOutput output, long expires, ExpirationToken... tokens) {
+        Entry entry = new Entry(output, expires, Arrays.asList(tokens), 2L * key.length() + output.getWeight());
+        if (entry.weight > maxWeight) {
+            return;
+        }
+        lock.lock();
+        try {
+            remove(key);
+            entries.put(key, entry);
+            weight += entry.weight;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict() {
+        for (Iterator<Entry> i = entries.values().iterator(); weight > maxWeight && i.hasNext(); ) {
+            Entry eldest = i.next();
+            i.remove();
+            weight -= eldest.weight;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    /**
+     * Removes the outputs with keys starting with given prefix.
+     */
+    void removeAll(String prefix) {
+        lock.lock();
+        try {
+            for (Iterator<java.util.Map.Entry<String, Entry>> i = entries.entrySet().iterator(); i.hasNext(); ) {
+                java.util.Map.Entry<String, Entry> e = i.next();
+                if (e.getKey().startsWith(prefix)) {
+                    i.remove();
+                    weight -= e.getValue().weight;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private static final class Entry {
+        private final PageOutput output;
+        private final long expires;
+        private final List<ExpirationToken> tokens;
+        private final long weight;
+
+        Entry(PageOutput output, long expires, List<ExpirationToken> tokens, long weight) {
+            this.output = output;
+            this.expires = expires;
+            this.tokens = tokens;
+            this.weight = weight;
+        }
+
+        boolean isValid(long now) {
+            if (now >= expires) {
+                return false;
+            }
+            for (ExpirationToken token : tokens) {
+                if (token != null && token.isExpired()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
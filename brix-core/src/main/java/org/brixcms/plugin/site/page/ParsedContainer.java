@@ -0,0 +1,190 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.Brix;
+import org.brixcms.exception.BrixException;
+import org.brixcms.markup.tag.Item;
+import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.Tag.Type;
+import org.brixcms.markup.tag.simple.SimpleComment;
+import org.brixcms.markup.tag.simple.SimpleTag;
+import org.brixcms.markup.tag.simple.SimpleText;
+import org.brixcms.plugin.site.page.tile.TileTag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable markup items of a single {@link AbstractContainer}, split into runs at the {@link
+ * TemplateNode#CONTENT_TAG} tags. The items only depend on the container's own markup, so the items of a template are
+ * shared by all pages using it.
+ */
+final class ParsedContainer {
+    /**
+     * Maximum number of distinct close tags kept as flyweights
+     */
+    private static final int MAX_CLOSE_TAGS = 256;
+
+    private static final ConcurrentMap<String, SimpleTag> closeTags = new ConcurrentHashMap<String, SimpleTag>();
+
+    private final List<Run> runs;
+
+    private ParsedContainer(List<Run> runs) {
+        this.runs = Collections.unmodifiableList(runs);
+    }
+
+    /**
+     * Returns the runs of items. Content of the child container belongs between each two subsequent runs.
+     *
+     * @return list of runs, never empty
+     */
+    List<Run> getRuns() {
+        return runs;
+    }
+
+    /**
+     * Parses the markup of given container.
+     *
+     * @param node
+     * @return parsed container
+     */
+    static ParsedContainer parse(AbstractContainer node) {
+        InputStream stream = node.getDataAsStream();
+        MarkupTokenizer tokenizer = MarkupTokenizer.open(stream, node.getEncoding(), node.getContentLength());
+        try {
+            return parse(node, tokenizer);
+        }
+        catch (IOException e) {
+            throw new BrixException("Couldn't read node content: '" + node.getPath() + "'", e);
+        }
+        finally {
+            try {
+                tokenizer.close();
+            }
+            catch (IOException e) {
+                // the content has been read, nothing to do
+            }
+        }
+    }
+
+    private static ParsedContainer parse(AbstractContainer node, MarkupTokenizer tokenizer) throws IOException {
+        final List<Run> runs = new ArrayList<Run>();
+        Run run = new Run();
+        MarkupTokenizer.Token token;
+        while ((token = tokenizer.next()) != null) {
+            switch (token) {
+                case TEXT:
+                    run.items.add(new SimpleText(tokenizer.getText()));
+                    break;
+                case COMMENT:
+                    run.items.add(new SimpleComment(tokenizer.getCommentText()));
+                    break;
+                case DOCTYPE:
+                    run.doctype = tokenizer.getText();
+                    break;
+                case TAG:
+                    if (TemplateNode.CONTENT_TAG.equals(tokenizer.getTagName()) && !tokenizer.isCloseTag()) {
+                        runs.add(run.seal());
+                        run = new Run();
+                    } else {
+                        processTag(node, run, tokenizer);
+                    }
+                    break;
+            }
+        }
+        runs.add(run.seal());
+        return new ParsedContainer(runs);
+    }
+
+    private static void processTag(AbstractContainer node, Run run, MarkupTokenizer tokenizer) {
+        final String tagName = tokenizer.getTagName();
+        if (tokenizer.isCloseTag()) {
+            if (!isKnownBrixTag(tagName)) {
+                run.items.add(getCloseTag(tagName));
+            }
+        } else {
+            final Tag.Type type = tokenizer.isOpenCloseTag() ? Tag.Type.OPEN_CLOSE : Tag.Type.OPEN;
+            Map<String, String> attributes = tokenizer.getAttributes();
+            if (isKnownBrixTag(tagName)) {
+                processBrixTag(node, run, tagName, attributes);
+            } else {
+                run.items.add(new SimpleTag(tagName, type, attributes));
+            }
+        }
+    }
+
+    private static SimpleTag getCloseTag(String tagName) {
+        SimpleTag tag = closeTags.get(tagName);
+        if (tag == null) {
+            Map<String, String> attributes = Collections.emptyMap();
+            tag = new SimpleTag(tagName, Type.CLOSE, attributes);
+            if (closeTags.size() < MAX_CLOSE_TAGS) {
+                closeTags.putIfAbsent(tagName, tag);
+            }
+        }
+        return tag;
+    }
+
+    private static boolean isKnownBrixTag(String tagName) {
+        if (!tagName.startsWith(Brix.NS_PREFIX)) {
+            return false;
+        }
+        String simpleTagName = tagName.substring(Brix.NS_PREFIX.length());
+        return TemplateNode.CONTENT_TAG.equals(tagName) || "tile".equals(simpleTagName) ||
+                "fragment".equals(simpleTagName);
+    }
+
+    private static void processBrixTag(AbstractContainer node, Run run, String tagName,
+                                       Map<String, String> attributes) {
+        final String simpleTagName = tagName.substring(Brix.NS_PREFIX.length());
+        if ("tile".equals(simpleTagName)) {
+            String id = attributes.get(AbstractContainer.MARKUP_TILE_ID);
+            run.items.add(new TileTag("div", Type.OPEN, attributes, node, id));
+            run.items.add(getCloseTag("div"));
+        }
+    }
+
+    /**
+     * Items between two content tags.
+     */
+    static final class Run {
+        private List<Item> items = new ArrayList<Item>();
+
+        private String doctype;
+
+        private Run seal() {
+            items = Collections.unmodifiableList(new ArrayList<Item>(items));
+            return this;
+        }
+
+        List<Item> getItems() {
+            return items;
+        }
+
+        /**
+         * @return last doctype declared in this run or <code>null</code>
+         */
+        String getDoctype() {
+            return doctype;
+        }
+    }
+}
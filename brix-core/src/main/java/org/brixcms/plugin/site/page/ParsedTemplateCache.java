@@ -0,0 +1,100 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.jcr.WorkspaceChangeNotifier;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the parsed markup of templates, so that the items of a template are parsed once and shared by all pages (and
+ * templates) using it. Entries are validated through {@link ContainerVersions} stamps; templates in workspaces that
+ * can not be tracked are parsed every time.
+ */
+public class ParsedTemplateCache implements WorkspaceChangeNotifier.Listener {
+    private final ContainerVersions versions;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    public ParsedTemplateCache(WorkspaceChangeNotifier notifier, ContainerVersions versions) {
+        if (versions == null) {
+            throw new IllegalArgumentException("Argument 'versions' may not be null.");
+        }
+        this.versions = versions;
+        notifier.addListener(this);
+    }
+
+    /**
+     * Returns the parsed markup of the given template.
+     *
+     * @param template
+     * @return parsed markup
+     */
+    ParsedContainer get(AbstractContainer template) {
+        ContainerVersions.Stamp stamp = versions.getStamp(template);
+        if (stamp == null) {
+            return ParsedContainer.parse(template);
+        }
+        final String key = getKey(template.getSession().getWorkspace().getName(), template.getPath());
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.stamp.isCurrent()) {
+            entry = new Entry(stamp, ParsedContainer.parse(template));
+            entries.put(key, entry);
+        }
+        return entry.parsed;
+    }
+
+    public void onWorkspaceChanged(String workspaceId, List<Event> events) {
+        for (Event event : events) {
+            if (event.getType() == Event.NODE_REMOVED || event.getType() == Event.NODE_MOVED) {
+                try {
+                    removeAll(getKey(workspaceId, event.getPath()));
+                } catch (RepositoryException e) {
+                    // stale entries are still validated through their stamps
+                }
+            }
+        }
+    }
+
+    public void onWorkspaceDeleted(String workspaceId) {
+        removeAll(getKey(workspaceId, ""));
+    }
+
+    private void removeAll(String keyPrefix) {
+        for (String key : entries.keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private static String getKey(String workspace, String path) {
+        return workspace + ":" + path;
+    }
+
+    private static class Entry {
+        private final ContainerVersions.Stamp stamp;
+        private final ParsedContainer parsed;
+
+        Entry(ContainerVersions.Stamp stamp, ParsedContainer parsed) {
+            this.stamp = stamp;
+            this.parsed = parsed;
+        }
+    }
+}
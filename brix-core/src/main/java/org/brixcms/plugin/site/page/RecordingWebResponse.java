@@ -0,0 +1,124 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.time.Time;
+
+import javax.servlet.http.Cookie;
+
+/**
+ * Buffers the rendered page and records the status, content type and headers set while rendering, so that they can
+ * be replayed with the cached output.
+ */
+class RecordingWebResponse extends BufferedWebResponse {
+    private final PageOutput.Builder builder = new PageOutput.Builder();
+
+    RecordingWebResponse(WebResponse originalResponse) {
+        super(originalResponse);
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        super.setStatus(sc);
+        builder.setStatus(sc);
+    }
+
+    @Override
+    public void setContentType(String mimeType) {
+        super.setContentType(mimeType);
+        builder.setContentType(mimeType);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        super.setHeader(name, value);
+        builder.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        super.addHeader(name, value);
+        builder.addHeader(name, value);
+    }
+
+    @Override
+    public void setDateHeader(String name, Time date) {
+        super.setDateHeader(name, date);
+        // the date of the response is set again when the output is replayed
+        if (!"Date".equalsIgnoreCase(name)) {
+            builder.setDateHeader(name, date.getMilliseconds());
+        }
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        super.addCookie(cookie);
+        builder.setNotReplayable();
+    }
+
+    @Override
+    public void clearCookie(Cookie cookie) {
+        super.clearCookie(cookie);
+        builder.setNotReplayable();
+    }
+
+    @Override
+    public void sendRedirect(String url) {
+        super.sendRedirect(url);
+        builder.setNotReplayable();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        super.sendError(sc, msg);
+        builder.setNotReplayable();
+    }
+
+    /**
+     * @return recorded output or <code>null</code> if the response can not be replayed
+     */
+    PageOutput getOutput() {
+        CharSequence text = getText();
+        return builder.isReplayable() && text != null ? builder.build(text.toString()) : null;
+    }
+
+    /**
+     * Writes cached output to the response.
+     *
+     * @param output
+     * @param response
+     */
+    static void replay(PageOutput output, WebResponse response) {
+        if (output.getStatus() != 0) {
+            response.setStatus(output.getStatus());
+        }
+        if (output.getContentType() != null) {
+            response.setContentType(output.getContentType());
+        }
+        for (PageOutput.Header header : output.getHeaders()) {
+            if (header.isDate()) {
+                response.setDateHeader(header.name, Time.millis(header.date));
+            } else if (header.add) {
+                response.addHeader(header.name, header.value);
+            } else {
+                response.setHeader(header.name, header.value);
+            }
+        }
+        response.setDateHeader("Date", Time.now());
+        response.write(output.getText());
+    }
+}
@@ -33,6 +33,11 @@ public class TemplateNode extends AbstractContainer {
             return TemplateSiteNodePlugin.TYPE.equals(getNodeType(node));
         }
 
+        @Override
+        public String getWrappedNodeType() {
+            return TemplateSiteNodePlugin.TYPE;
+        }
+
         @Override
         public JcrNode wrap(Brix brix, Node node, JcrSession session) {
             return new TemplateNode(node, session);
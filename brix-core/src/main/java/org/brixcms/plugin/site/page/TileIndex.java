@@ -0,0 +1,195 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.BrixNodeModel;
+import org.brixcms.jcr.WorkspaceChangeNotifier;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.exception.JcrException;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.markup.ExpirationToken;
+import org.brixcms.plugin.site.page.tile.Tile;
+import org.brixcms.plugin.site.page.tile.TileContainerFacet;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the tiles of containers resolved through their template chains, so that finding a tile or deciding whether a
+ * page requires SSL does not scan the tile nodes of every container in the chain. Entries are validated through {@link
+ * ContainerVersions} stamps and expire together with entries of other containers they were computed from, e.g. the
+ * pages referenced by page tiles (see {@link DependencyTracker}).
+ * <p/>
+ * Sessions with pending changes always see the current state of their tiles, the index is bypassed for them.
+ */
+public class TileIndex implements WorkspaceChangeNotifier.Listener {
+    private final ContainerVersions versions;
+
+    private final ConcurrentMap<String, Tiles> entries = new ConcurrentHashMap<String, Tiles>();
+
+    public TileIndex(WorkspaceChangeNotifier notifier, ContainerVersions versions) {
+        if (versions == null) {
+            throw new IllegalArgumentException("Argument 'versions' may not be null.");
+        }
+        this.versions = versions;
+        notifier.addListener(this);
+    }
+
+    /**
+     * Returns the resolved tiles of given container and its templates.
+     *
+     * @param container
+     * @return resolved tiles or <code>null</code> if the tiles can not be indexed, either because the session has
+     *         pending changes or because changes of the workspace can not be tracked
+     */
+    Tiles get(AbstractContainer container) {
+        if (container.getSession().hasPendingChanges()) {
+            DependencyTracker.dependOnUntracked();
+            return null;
+        }
+        ContainerVersions.Stamp stamp = versions.getStamp(container);
+        if (stamp == null) {
+            DependencyTracker.dependOnUntracked();
+            return null;
+        }
+        final String key = getKey(container.getSession().getWorkspace().getName(), container.getPath());
+        Tiles tiles = entries.get(key);
+        if (tiles == null || tiles.isExpired()) {
+            DependencyTracker dependencies = DependencyTracker.begin();
+            try {
+                tiles = new Tiles(stamp, dependencies, container);
+            } finally {
+                dependencies.end();
+            }
+            if (dependencies.isTracked()) {
+                entries.put(key, tiles);
+            } else {
+                entries.remove(key);
+                DependencyTracker.dependOnUntracked();
+            }
+        }
+        DependencyTracker.depend(tiles);
+        return tiles;
+    }
+
+    public void onWorkspaceChanged(String workspaceId, List<Event> events) {
+        for (Event event : events) {
+            if (event.getType() == Event.NODE_REMOVED || event.getType() == Event.NODE_MOVED) {
+                try {
+                    removeAll(getKey(workspaceId, event.getPath()));
+                } catch (RepositoryException e) {
+                    // stale entries are still validated through their stamps
+                }
+            }
+        }
+    }
+
+    public void onWorkspaceDeleted(String workspaceId) {
+        removeAll(getKey(workspaceId, ""));
+    }
+
+    private void removeAll(String keyPrefix) {
+        for (String key : entries.keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private static String getKey(String workspace, String path) {
+        return workspace + ":" + path;
+    }
+
+    /**
+     * Tiles of a container and its templates, keyed by tile id. Tiles of the container shadow tiles with the same id in
+     * its templates.
+     */
+    static class Tiles implements ExpirationToken {
+        private final ContainerVersions.Stamp stamp;
+
+        // entries of other containers the tiles were resolved from
+        private final DependencyTracker dependencies;
+
+        private final Map<String, String> tileNodeIds = new HashMap<String, String>();
+
+        private final boolean requiresSSL;
+
+        private Tiles(ContainerVersions.Stamp stamp, DependencyTracker dependencies, AbstractContainer container) {
+            this.stamp = stamp;
+            this.dependencies = dependencies;
+
+            boolean requiresSSL = false;
+            Set<String> visited = new HashSet<String>();
+            for (AbstractContainer c = container; c != null && visited.add(c.getPath()); c = c.getTemplate()) {
+                Boolean containerRequiresSSL = c.isRequiresSSL();
+                requiresSSL |= containerRequiresSSL != null && containerRequiresSSL;
+                for (BrixNode tileNode : c.tiles().getTileNodes()) {
+                    String id = TileContainerFacet.getTileId(tileNode);
+                    if (id != null && !tileNodeIds.containsKey(id)) {
+                        tileNodeIds.put(id, tileNode.getIdentifier());
+                    }
+                    if (!requiresSSL) {
+                        String className = TileContainerFacet.getTileClassName(tileNode);
+                        Tile tile = Tile.Helper.getTileOfType(className, container.getBrix());
+                        requiresSSL = tile.requiresSSL(new BrixNodeModel(tileNode));
+                    }
+                }
+            }
+            this.requiresSSL = requiresSSL;
+        }
+
+        /**
+         * @return <code>true</code> if the container, a template or a tile changed, or an entry of another container
+         *         the tiles were resolved from expired
+         */
+        public boolean isExpired() {
+            return !stamp.isCurrent() || dependencies.isExpired();
+        }
+
+        /**
+         * @return <code>true</code> if the container, any of its templates or any of their tiles require SSL
+         */
+        boolean requiresSSL() {
+            return requiresSSL;
+        }
+
+        /**
+         * Loads the tile node with given id.
+         *
+         * @param id      tile id
+         * @param session session to load the node with
+         * @return tile node or <code>null</code> if there is no such tile
+         */
+        BrixNode getTileNode(String id, JcrSession session) {
+            String nodeId = tileNodeIds.get(id);
+            if (nodeId == null) {
+                return null;
+            }
+            try {
+                return (BrixNode) session.getNodeByIdentifier(nodeId);
+            } catch (JcrException e) {
+                // removed and not yet expired
+                return null;
+            }
+        }
+    }
+}
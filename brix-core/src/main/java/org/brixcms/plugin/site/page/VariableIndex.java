@@ -0,0 +1,209 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.jcr.WorkspaceChangeNotifier;
+import org.brixcms.plugin.site.SitePlugin;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the variables of containers resolved through their template chains and the global container, together with the
+ * variable keys and tile ids referenced by their markup. Looking up a variable is then a single map lookup instead of
+ * reading the variables node of every container in the chain.
+ * <p/>
+ * Entries are validated through the {@link ContainerVersions} stamps of the container and of the global container.
+ * Sessions with pending changes bypass the index, as do workspaces that can not be tracked or have no global container.
+ */
+public class VariableIndex implements WorkspaceChangeNotifier.Listener {
+    private final ContainerVersions versions;
+
+    private final ConcurrentMap<String, Variables> entries = new ConcurrentHashMap<String, Variables>();
+
+    public VariableIndex(WorkspaceChangeNotifier notifier, ContainerVersions versions) {
+        if (versions == null) {
+            throw new IllegalArgumentException("Argument 'versions' may not be null.");
+        }
+        this.versions = versions;
+        notifier.addListener(this);
+    }
+
+    /**
+     * Returns the resolved variables of given container.
+     *
+     * @param container
+     * @return resolved variables or <code>null</code> if they can not be indexed
+     */
+    Variables get(AbstractContainer container) {
+        if (container.getSession().hasPendingChanges()) {
+            return null;
+        }
+        final String key = getKey(container.getSession().getWorkspace().getName(), container.getPath());
+        Variables variables = entries.get(key);
+        if (variables != null && variables.isCurrent()) {
+            return variables;
+        }
+
+        ContainerVersions.Stamp stamp = versions.getStamp(container);
+        AbstractContainer global = SitePlugin.get(container.getBrix()).getGlobalContainer(container.getSession());
+        ContainerVersions.Stamp globalStamp = global != null ? versions.getStamp(global) : null;
+        if (stamp == null || globalStamp == null) {
+            return null;
+        }
+        variables = new Variables(stamp, globalStamp, container, global);
+        entries.put(key, variables);
+        return variables;
+    }
+
+    public void onWorkspaceChanged(String workspaceId, List<Event> events) {
+        for (Event event : events) {
+            if (event.getType() == Event.NODE_REMOVED || event.getType() == Event.NODE_MOVED) {
+                try {
+                    removeAll(getKey(workspaceId, event.getPath()));
+                } catch (RepositoryException e) {
+                    // stale entries are still validated through their stamps
+                }
+            }
+        }
+    }
+
+    public void onWorkspaceDeleted(String workspaceId) {
+        removeAll(getKey(workspaceId, ""));
+    }
+
+    private void removeAll(String keyPrefix) {
+        for (String key : entries.keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private static String getKey(String workspace, String path) {
+        return workspace + ":" + path;
+    }
+
+    /**
+     * Variables of a container. Variables saved on the container shadow those of its templates, which in turn shadow
+     * those of the global container. Keys referenced by the markup are collected on first use.
+     */
+    static class Variables {
+        private final ContainerVersions.Stamp stamp;
+
+        private final ContainerVersions.Stamp globalStamp;
+
+        private final List<String> savedKeys;
+
+        private final Map<String, String> values;
+
+        private final Set<String> globalKeys;
+
+        private final Set<String> globalTileIds;
+
+        private volatile Set<String> variableKeys;
+
+        private volatile Set<String> tileIds;
+
+        private Variables(ContainerVersions.Stamp stamp, ContainerVersions.Stamp globalStamp,
+                          AbstractContainer container, AbstractContainer global) {
+            this.stamp = stamp;
+            this.globalStamp = globalStamp;
+
+            Map<String, String> values = new HashMap<String, String>();
+            Map<String, String> saved = container.readSavedVariables();
+            putAbsent(values, saved);
+            Set<String> visited = new HashSet<String>();
+            visited.add(container.getPath());
+            for (AbstractContainer c = container.getTemplate(); c != null && visited.add(c.getPath()); c = c
+                    .getTemplate()) {
+                putAbsent(values, c.readSavedVariables());
+            }
+            Map<String, String> globalValues = global.readSavedVariables();
+            putAbsent(values, globalValues);
+            this.values = values;
+
+            savedKeys = Collections.unmodifiableList(new ArrayList<String>(saved.keySet()));
+            globalKeys = Collections.unmodifiableSet(new HashSet<String>(globalValues.keySet()));
+            globalTileIds = Collections.unmodifiableSet(global.collectOwnTileIDs());
+        }
+
+        private static void putAbsent(Map<String, String> target, Map<String, String> source) {
+            for (Map.Entry<String, String> entry : source.entrySet()) {
+                if (!target.containsKey(entry.getKey())) {
+                    target.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        boolean isCurrent() {
+            return stamp.isCurrent() && globalStamp.isCurrent();
+        }
+
+        /**
+         * @param key
+         * @return value of the variable resolved through templates and the global container
+         */
+        String getValue(String key) {
+            return values.get(key);
+        }
+
+        /**
+         * @return keys of variables saved on the container itself
+         */
+        List<String> getSavedKeys() {
+            return savedKeys;
+        }
+
+        /**
+         * @param container container the variables belong to
+         * @return keys referenced by the markup of the container and keys of global variables
+         */
+        Set<String> getVariableKeys(AbstractContainer container) {
+            Set<String> keys = variableKeys;
+            if (keys == null) {
+                keys = container.collectMarkupVariableKeys();
+                keys.addAll(globalKeys);
+                keys = Collections.unmodifiableSet(keys);
+                variableKeys = keys;
+            }
+            return keys;
+        }
+
+        /**
+         * @param container container the variables belong to
+         * @return ids of tiles referenced by the markup of the container and of global tiles
+         */
+        Set<String> getTileIds(AbstractContainer container) {
+            Set<String> ids = tileIds;
+            if (ids == null) {
+                ids = container.collectMarkupTileIDs();
+                ids.addAll(globalTileIds);
+                ids = Collections.unmodifiableSet(ids);
+                tileIds = ids;
+            }
+            return ids;
+        }
+    }
+}
@@ -35,6 +35,11 @@ public class GlobalContainerNode extends AbstractContainer {
             return TYPE.equals(getNodeType(node));
         }
 
+        @Override
+        public String getWrappedNodeType() {
+            return TYPE;
+        }
+
         @Override
         public JcrNode wrap(Brix brix, Node node, JcrSession session) {
             return new GlobalContainerNode(node, session);
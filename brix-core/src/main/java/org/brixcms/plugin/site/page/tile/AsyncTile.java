@@ -0,0 +1,78 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page.tile;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.model.IModel;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.web.nodepage.BrixPageParameters;
+
+import java.util.concurrent.Callable;
+
+/**
+ * {@link Tile} that fetches its data asynchronously, e.g. from a remote service. The data loads of all such tiles of a
+ * page are started on the {@link TileLoader} before the first tile viewer is created, so a page waits for its slowest
+ * tile rather than for the sum of all of them. A load that does not finish before the tile's deadline or that fails is
+ * abandoned and the tile renders its fallback viewer instead.
+ * <p/>
+ * The loader returned by {@link #newDataLoader(IModel, BrixPageParameters)} runs on a worker thread, concurrently with
+ * the request. It must not touch Wicket components, the request cycle or JCR nodes and sessions; everything it needs
+ * from the tile configuration or the request has to be read when the loader is created.
+ * <p/>
+ * {@link #newViewer(String, IModel)} is still used where the tile is rendered outside of page markup and may load the
+ * data synchronously.
+ *
+ * @param <T> type of the loaded data
+ */
+public interface AsyncTile<T> extends Tile {
+    /**
+     * Creates the task that loads the tile data. Called on the request thread.
+     *
+     * @param tileNode   node that contains tile configuration options
+     * @param parameters parameters of the rendered page
+     * @return task that loads the data
+     */
+    Callable<T> newDataLoader(IModel<BrixNode> tileNode, BrixPageParameters parameters);
+
+    /**
+     * Returns how long rendering of the page may wait for the data of this tile.
+     *
+     * @param tileNode node that contains tile configuration options
+     * @return deadline in milliseconds after the load was started
+     */
+    long getLoadTimeout(IModel<BrixNode> tileNode);
+
+    /**
+     * Creates the tile viewer for loaded data.
+     *
+     * @param id       component id
+     * @param tileNode node that contains tile configuration options
+     * @param data     result of the data loader
+     * @return viewer component
+     */
+    Component newViewer(String id, IModel<BrixNode> tileNode, T data);
+
+    /**
+     * Creates the viewer rendered when the data could not be loaded in time.
+     *
+     * @param id       component id
+     * @param tileNode node that contains tile configuration options
+     * @param cause    {@link java.util.concurrent.TimeoutException} if the deadline passed, {@link
+     *                 java.util.concurrent.RejectedExecutionException} if too many loads are running, otherwise the
+     *                 exception thrown by the loader
+     * @return viewer component
+     */
+    Component newFallbackViewer(String id, IModel<BrixNode> tileNode, Exception cause);
+}
@@ -0,0 +1,48 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page.tile;
+
+import org.apache.wicket.model.IModel;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.site.page.PageOutputCache;
+import org.brixcms.web.nodepage.BrixPageParameters;
+
+/**
+ * {@link Tile} whose viewer output can be kept in the {@link PageOutputCache}. Pages are only cached if all of their
+ * tiles implement this interface and allow it.
+ * <p/>
+ * Cached output is dropped when the page, its templates, their tiles or the global container change. Tiles whose
+ * output depends on anything else (other nodes, time, external services) should return a time to live that bounds how
+ * stale their output may get.
+ */
+public interface CacheableTile extends Tile {
+    /**
+     * Returns for how long the output of the tile may be reused.
+     *
+     * @param tileNode node that contains tile configuration options
+     * @return time to live in milliseconds, zero or less if the output must not be cached
+     */
+    long getOutputTimeToLive(IModel<BrixNode> tileNode);
+
+    /**
+     * Returns the part of the cache key contributed by this tile, e.g. values of page parameters or request headers the
+     * tile reads. The page node, its page parameters and the protocol are always part of the key.
+     *
+     * @param tileNode   node that contains tile configuration options
+     * @param parameters parameters of the rendered page
+     * @return key or <code>null</code> if the output depends on nothing else
+     */
+    String getOutputVaryKey(IModel<BrixNode> tileNode, BrixPageParameters parameters);
+}
@@ -100,18 +100,20 @@ public interface Tile {
      * @author ivaynberg
      */
     public static class Helper {
+        private static final ExtensionPointRegistry.Key<Tile> TYPE_NAME = new ExtensionPointRegistry.Key<Tile>() {
+            public String getKey(Tile tile) {
+                return tile.getTypeName();
+            }
+        };
+
         public static Collection<Tile> getTiles(Brix brix) {
             final ExtensionPointRegistry registry = brix.getConfig().getRegistry();
             return registry.lookupCollection(Tile.POINT);
         }
 
         public static Tile getTileOfType(String type, Brix brix) {
-            for (Tile t : getTiles(brix)) {
-                if (t.getTypeName().equals(type)) {
-                    return t;
-                }
-            }
-            return UnknownTile.INSTANCE;
+            Tile tile = brix.getConfig().getRegistry().lookup(Tile.POINT, TYPE_NAME, type);
+            return tile != null ? tile : UnknownTile.INSTANCE;
         }
     }
 }
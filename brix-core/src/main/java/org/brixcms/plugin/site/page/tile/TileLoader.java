@@ -0,0 +1,248 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page.tile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the data loads of {@link AsyncTile}s. Loads run on virtual threads where the runtime provides them and on a
+ * pool of daemon threads otherwise.
+ * <p/>
+ * The number of loads running at once is bounded. A load only gives its permit back when its task has actually
+ * finished, so loads that keep blocking after their deadline (e.g. in socket reads that ignore interruption) still
+ * count against the bound. Loads started while no permit is available are rejected right away and their tiles render
+ * the fallback viewer.
+ */
+public class TileLoader {
+    private static final Logger log = LoggerFactory.getLogger(TileLoader.class);
+
+    /**
+     * Default maximum number of loads running at once
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_LOADS = 64;
+
+    private final ExecutorService executor;
+
+    private final int maxConcurrentLoads;
+
+    private final Semaphore permits;
+
+    private final AtomicLong startCount = new AtomicLong();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private final AtomicLong failureCount = new AtomicLong();
+
+    private final AtomicLong rejectCount = new AtomicLong();
+
+    public TileLoader() {
+        this(DEFAULT_MAX_CONCURRENT_LOADS);
+    }
+
+    public TileLoader(int maxConcurrentLoads) {
+        this(newExecutor(maxConcurrentLoads), maxConcurrentLoads);
+    }
+
+    /**
+     * @param executor           executor that runs the loads, it must not reject tasks while the loader is open
+     * @param maxConcurrentLoads maximum number of loads running at once
+     */
+    public TileLoader(ExecutorService executor, int maxConcurrentLoads) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Argument 'executor' may not be null.");
+        }
+        if (maxConcurrentLoads < 1) {
+            throw new IllegalArgumentException("Argument 'maxConcurrentLoads' must be positive.");
+        }
+        this.executor = executor;
+        this.maxConcurrentLoads = maxConcurrentLoads;
+        this.permits = new Semaphore(maxConcurrentLoads);
+    }
+
+    /**
+     * Starts the given load.
+     *
+     * @param loader  task that loads the data
+     * @param timeout deadline in milliseconds, measured from now
+     * @return handle to wait for the data with
+     */
+    public <T> Load<T> start(Callable<T> loader, long timeout) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Argument 'loader' may not be null.");
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeout, 0));
+        if (!permits.tryAcquire()) {
+            rejectCount.incrementAndGet();
+            return new Load<T>(null, deadline);
+        }
+        Task<T> task = new Task<T>(loader);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            rejectCount.incrementAndGet();
+            return new Load<T>(null, deadline);
+        }
+        startCount.incrementAndGet();
+        return new Load<T>(task, deadline);
+    }
+
+    /**
+     * Stops the executor, interrupting running loads.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return number of loads currently running
+     */
+    public int getRunningCount() {
+        return maxConcurrentLoads - permits.availablePermits();
+    }
+
+    /**
+     * @return number of loads started
+     */
+    public long getStartCount() {
+        return startCount.get();
+    }
+
+    /**
+     * @return number of loads that did not finish before their deadline
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return number of loads that threw an exception
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return number of loads rejected because too many loads were running
+     */
+    public long getRejectCount() {
+        return rejectCount.get();
+    }
+
+    private static ExecutorService newExecutor(int maxConcurrentLoads) {
+        try {
+            // Java 21+
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            log.debug("Virtual threads are not available, using a thread pool for tile loads");
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrentLoads, maxConcurrentLoads, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new LoaderThreadFactory());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Started (or rejected) load of tile data.
+     */
+    public final class Load<T> {
+        private final Task<T> task;
+        private final long deadline;
+
+        private Load(Task<T> task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Waits for the data until the deadline of the load. A load that is still running at the deadline is
+         * cancelled.
+         *
+         * @return loaded data
+         * @throws TimeoutException           if the deadline passed
+         * @throws RejectedExecutionException if the load was never started
+         * @throws Exception                  thrown by the loader
+         */
+        public T join() throws Exception {
+            if (task == null) {
+                throw new RejectedExecutionException("Too many tile loads running");
+            }
+            try {
+                return task.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                task.cancel(true);
+                timeoutCount.incrementAndGet();
+                throw e;
+            } catch (InterruptedException e) {
+                task.cancel(true);
+                Thread.currentThread().interrupt();
+                throw e;
+            } catch (ExecutionException e) {
+                failureCount.incrementAndGet();
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private class Task<T> extends FutureTask<T> {
+        Task(Callable<T> loader) {
+            super(loader);
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                // also reached for tasks cancelled before they started
+                permits.release();
+            }
+        }
+    }
+
+    private static class LoaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "brix-tile-loader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -15,15 +15,23 @@
 package org.brixcms.plugin.site.page.tile;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.brixcms.BrixNodeModel;
 import org.brixcms.jcr.wrapper.BrixNode;
-import org.brixcms.markup.tag.ComponentTag;
+import org.brixcms.markup.tag.PreloadingComponentTag;
 import org.brixcms.markup.tag.simple.SimpleTag;
 import org.brixcms.markup.variable.VariableKeyProvider;
+import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.plugin.site.page.AbstractContainer;
+import org.brixcms.plugin.site.page.PageOutputCache;
+import org.brixcms.web.nodepage.BrixPageParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -34,8 +42,17 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class TileTag extends SimpleTag
         implements
-        ComponentTag,
+        PreloadingComponentTag,
         VariableKeyProvider {
+    private static final Logger log = LoggerFactory.getLogger(TileTag.class);
+
+    /**
+     * Loads of {@link AsyncTile}s started by {@link #preload(IModel)} in the current request, by unique tag id
+     */
+    private static final MetaDataKey<Map<String, TileLoader.Load<?>>> LOADS_KEY =
+            new MetaDataKey<Map<String, TileLoader.Load<?>>>() {
+            };
+
     private final static AtomicLong atomicLong = new AtomicLong();
 
     private final static String PREFIX = "tile-";
@@ -46,7 +63,7 @@ public class TileTag extends SimpleTag
 
     private final BrixNodeModel tileContainerNodeModel;
 
-    private String id;
+    private final String id;
 
     /**
      * Constructor
@@ -61,6 +78,8 @@ public class TileTag extends SimpleTag
         this.tileName = tileName;
         tileContainerNodeModel = new BrixNodeModel(tileContainerNode);
         tileContainerNodeModel.detach();
+        // assigned eagerly, tags of templates are shared between threads
+        id = PREFIX + atomicLong.incrementAndGet();
     }
 
     /**
@@ -81,19 +100,70 @@ public class TileTag extends SimpleTag
         if (tileNode != null) {
             Tile tile = Tile.Helper.getTileOfType(TileContainerFacet.getTileClassName(tileNode),
                     tileNode.getBrix());
+            PageOutputCache.onTileRendered(tile, tileNode);
+            if (tile instanceof AsyncTile) {
+                return newAsyncViewer(id, (AsyncTile<?>) tile, tileNode);
+            }
             return tile.newViewer(id, new BrixNodeModel(tileNode));
         } else {
             return null;
         }
     }
 
+    /**
+     * Starts the data load if the tile is an {@link AsyncTile}.
+     */
+    public void preload(IModel<BrixNode> pageNodeModel) {
+        RequestCycle cycle = RequestCycle.get();
+        BrixNode tileNode = getTileContainer().getTileNode(tileName);
+        if (cycle == null || tileNode == null) {
+            return;
+        }
+        Tile tile = Tile.Helper.getTileOfType(TileContainerFacet.getTileClassName(tileNode), tileNode.getBrix());
+        if (tile instanceof AsyncTile) {
+            Map<String, TileLoader.Load<?>> loads = cycle.getMetaData(LOADS_KEY);
+            if (loads == null) {
+                loads = new HashMap<String, TileLoader.Load<?>>();
+                cycle.setMetaData(LOADS_KEY, loads);
+            }
+            loads.put(this.id, startLoad((AsyncTile<?>) tile, tileNode));
+        }
+    }
+
+    private <T> TileLoader.Load<T> startLoad(AsyncTile<T> tile, BrixNode tileNode) {
+        IModel<BrixNode> model = new BrixNodeModel(tileNode);
+        TileLoader loader = SitePlugin.get(tileNode.getBrix()).getTileLoader();
+        return loader.start(tile.newDataLoader(model, BrixPageParameters.getCurrent()), tile.getLoadTimeout(model));
+    }
+
+    /**
+     * Waits for the load started by {@link #preload(IModel)}, or starts one if there is none, and creates the viewer
+     * for its data or the fallback viewer.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Component newAsyncViewer(String id, AsyncTile<T> tile, BrixNode tileNode) {
+        RequestCycle cycle = RequestCycle.get();
+        Map<String, TileLoader.Load<?>> loads = cycle != null ? cycle.getMetaData(LOADS_KEY) : null;
+        TileLoader.Load<T> load = loads != null ? (TileLoader.Load<T>) loads.remove(this.id) : null;
+        if (load == null) {
+            load = startLoad(tile, tileNode);
+        }
+
+        IModel<BrixNode> model = new BrixNodeModel(tileNode);
+        T data;
+        try {
+            data = load.join();
+        } catch (Exception e) {
+            log.warn("Could not load data of tile " + tileName + " of " + tileNode.getPath() + ": " + e);
+            return tile.newFallbackViewer(id, model, e);
+        }
+        return tile.newViewer(id, model, data);
+    }
+
     /**
      * return unique id of this tag
      */
     public String getUniqueTagId() {
-        if (id == null) {
-            id = PREFIX + atomicLong.incrementAndGet();
-        }
         return id;
     }
 
@@ -117,8 +187,7 @@ public class TileTag extends SimpleTag
      * @return tile container that contains the tile
      */
     protected AbstractContainer getTileContainer() {
-        AbstractContainer container = (AbstractContainer) tileContainerNodeModel.getObject();
-        tileContainerNodeModel.detach();
-        return container;
+        // use a copy of the model, the tag may be used by multiple requests at once
+        return (AbstractContainer) new BrixNodeModel(tileContainerNodeModel).getObject();
     }
 }
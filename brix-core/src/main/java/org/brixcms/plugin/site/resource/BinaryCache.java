@@ -0,0 +1,414 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.resource;
+
+import org.brixcms.jcr.wrapper.BrixFileNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Local disk copies of resource data, so that frequently requested resources are not pulled through the JCR binary
+ * stack (and possibly over the network from a remote repository or database backed data store) on every request.
+ * Cached files are served with {@link java.nio.channels.FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}.
+ * <p/>
+ * Entries are keyed by the content hash of the resource (see {@link BrixFileNode#getContentHash()}). Saving new data
+ * changes the hash, so a changed resource is never served from a stale entry, the old entry is just not used anymore
+ * and eventually evicted. Resources without a hash are not cached.
+ * <p/>
+ * The total size of cached files is bounded, least recently used entries are evicted first. Entries returned by {@link
+ * #get(BrixFileNode)} are pinned until they are {@link Entry#release() released}, pinned entries are not evicted, so
+ * their files can not be deleted while they are being served. Files found in the directory when the cache is first
+ * used are taken over, so the cache survives restarts.
+ */
+public class BinaryCache {
+    private static final Logger log = LoggerFactory.getLogger(BinaryCache.class);
+
+    private static final String SUFFIX = ".bin";
+
+    /**
+     * Default maximum total size of cached files
+     */
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    /**
+     * Default maximum size of a single cached resource
+     */
+    public static final long DEFAULT_MAX_ENTRY_LENGTH = 32L * 1024 * 1024;
+
+    private final File directory;
+    private final long maxSize;
+    private final long maxEntryLength;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // access ordered, eldest entry is evicted first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private long size;
+
+    private boolean loaded;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BinaryCache(File directory) {
+        this(directory, DEFAULT_MAX_SIZE, DEFAULT_MAX_ENTRY_LENGTH);
+    }
+
+    /**
+     * @param directory      directory to store cached files in, created if it does not exist
+     * @param maxSize        maximum total size of cached files in bytes
+     * @param maxEntryLength resources larger than this are not cached
+     */
+    public BinaryCache(File directory, long maxSize, long maxEntryLength) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Argument 'directory' may not be null.");
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxEntryLength = Math.min(maxEntryLength, maxSize);
+    }
+
+    /**
+     * Returns the cached copy of the node's data, copying the data to the cache first if necessary. The returned entry
+     * is pinned and must be released when its file is no longer read.
+     *
+     * @param node
+     * @return pinned entry with the data of the node or <code>null</code> if the node's data is not cached
+     */
+    public Entry get(final BrixFileNode node) {
+        String hash = node.getContentHash();
+        if (hash == null) {
+            return null;
+        }
+        return get(hash, node.getContentLength(), new Source() {
+            public InputStream open() throws IOException {
+                return node.getDataAsStream();
+            }
+
+            @Override
+            public String toString() {
+                return node.getPath();
+            }
+        });
+    }
+
+    /**
+     * Returns the pinned entry for given key, writing it from the source first if necessary.
+     *
+     * @param key    key of the entry, must be usable as file name
+     * @param length length of the source data
+     * @param source
+     * @return pinned entry or <code>null</code> if the data is not cached
+     */
+    Entry get(String key, long length, Source source) {
+        File file = new File(directory, key + SUFFIX);
+
+        lock.lock();
+        try {
+            load();
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (file.isFile()) {
+                    hits.incrementAndGet();
+                    ++entry.pins;
+                    return entry;
+                }
+                // deleted behind our back
+                remove(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.incrementAndGet();
+        if (length > maxEntryLength) {
+            return null;
+        }
+        File temp;
+        try {
+            temp = copy(source);
+        } catch (IOException e) {
+            log.warn("Could not cache data of " + source, e);
+            return null;
+        }
+
+        // files are only renamed and deleted with the lock held, so a file can not be replaced or deleted between
+        // checking its entry and pinning it
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && !file.isFile()) {
+                remove(entry);
+                entry = null;
+            }
+            if (entry == null) {
+                if (!temp.renameTo(file)) {
+                    log.warn("Could not rename " + temp + " to " + file);
+                    return null;
+                }
+                entry = new Entry(key, file, file.length());
+                entries.put(key, entry);
+                size += entry.length;
+            }
+            // otherwise a concurrent miss has written it already
+            ++entry.pins;
+            evict();
+            return entry;
+        } finally {
+            lock.unlock();
+            if (temp.exists()) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Removes least recently used entries that are not pinned until the cache fits its size. Must be called with the
+     * lock held.
+     */
+    private void evict() {
+        for (Iterator<Entry> i = entries.values().iterator(); size > maxSize && i.hasNext(); ) {
+            Entry eldest = i.next();
+            if (eldest.pins > 0) {
+                continue;
+            }
+            i.remove();
+            size -= eldest.length;
+            eldest.file.delete();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void release(Entry entry) {
+        lock.lock();
+        try {
+            if (entry.pins <= 0) {
+                throw new IllegalStateException("Entry " + entry.key + " is not pinned.");
+            }
+            --entry.pins;
+            // entries pinned while the cache was over its size can be evicted now
+            if (entry.pins == 0 && size > maxSize) {
+                evict();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all cached files that are not pinned.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            load();
+            for (Iterator<Entry> i = entries.values().iterator(); i.hasNext(); ) {
+                Entry entry = i.next();
+                if (entry.pins == 0) {
+                    i.remove();
+                    size -= entry.length;
+                    entry.file.delete();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entries.remove(entry.key) != null) {
+            size -= entry.length;
+        }
+    }
+
+    /**
+     * Takes over files left by a previous run, least recently modified first.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File o1, File o2) {
+                long m1 = o1.lastModified();
+                long m2 = o2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(SUFFIX) && file.isFile()) {
+                String key = name.substring(0, name.length() - SUFFIX.length());
+                long length = file.length();
+                entries.put(key, new Entry(key, file, length));
+                size += length;
+            } else if (name.endsWith(".tmp")) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes the data to a temporary file in the cache directory.
+     */
+    private File copy(Source source) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        File temp = File.createTempFile("entry", ".tmp", directory);
+        boolean written = false;
+        try {
+            InputStream in = source.open();
+            try {
+                OutputStream out = new FileOutputStream(temp);
+                try {
+                    write(in, out);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            written = true;
+            return temp;
+        } finally {
+            if (!written) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes the data of a resource to the file of its entry. Subclasses can override this to store the data
+     * transformed, e.g. compressed.
+     *
+     * @param in  resource data
+     * @param out file of the entry
+     * @throws IOException
+     */
+    protected void write(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[Streamer.BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * @return number of requests served from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of requests for resources that were not cached
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of evicted entries
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return total size of cached files in bytes
+     */
+    public long getSize() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of cached files
+     */
+    public int getEntryCount() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cached file. The file is not deleted while the entry is pinned.
+     */
+    public final class Entry {
+        private final String key;
+        private final File file;
+        private final long length;
+
+        // guarded by the cache lock
+        private int pins;
+
+        private Entry(String key, File file, long length) {
+            this.key = key;
+            this.file = file;
+            this.length = length;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Unpins the entry, must be called once for every time the entry has been returned by the cache.
+         */
+        public void release() {
+            BinaryCache.this.release(this);
+        }
+    }
+
+    /**
+     * Data of a cached entry.
+     */
+    interface Source {
+        /**
+         * @return new stream with the data
+         */
+        InputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.resource;
+
+import org.brixcms.jcr.wrapper.BrixFileNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compressed variants of text resources, stored on disk and keyed by the content hash of the resource (see {@link
+ * BrixFileNode#getContentHash()}). Variants are created on first request. As the key is the hash, a variant never
+ * becomes stale, changed resources simply get a new one.
+ * <p/>
+ * Variants are kept in a {@link BinaryCache}, so their total size is bounded and the least recently used ones are
+ * deleted first.
+ */
+public class CompressedResources {
+    /**
+     * Resources smaller than this are not compressed, the savings would not outweigh the gzip overhead
+     */
+    private static final long MIN_LENGTH = 256;
+
+    /**
+     * Default maximum size of resources that are compressed
+     */
+    public static final long DEFAULT_MAX_LENGTH = 4 * 1024 * 1024;
+
+    /**
+     * Default maximum total size of compressed variants
+     */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private final long maxLength;
+
+    private final BinaryCache variants;
+
+    public CompressedResources(File directory) {
+        this(directory, DEFAULT_MAX_LENGTH, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param directory directory to store the variants in, created if it does not exist
+     * @param maxLength resources larger than this are not compressed
+     * @param maxSize   maximum total size of the variants in bytes
+     */
+    public CompressedResources(File directory, long maxLength, long maxSize) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Argument 'directory' may not be null.");
+        }
+        this.maxLength = maxLength;
+        this.variants = new BinaryCache(directory, maxSize, maxLength) {
+            @Override
+            protected void write(InputStream in, OutputStream out) throws IOException {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 8192);
+                super.write(in, gzip);
+                gzip.finish();
+            }
+        };
+    }
+
+    /**
+     * Returns whether resources of given mime type benefit from compression.
+     *
+     * @param mimeType
+     * @return <code>true</code> for textual mime types
+     */
+    public boolean isCompressible(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        String type = mimeType.toLowerCase();
+        return BrixFileNode.isText(type) || type.startsWith("application/javascript") ||
+                type.startsWith("application/json") || type.startsWith("application/xhtml+xml") ||
+                type.startsWith("image/svg+xml");
+    }
+
+    /**
+     * Returns the gzip variant of given resource, creating it if necessary. The returned entry is pinned and must be
+     * released when its file is no longer read.
+     *
+     * @param node
+     * @return pinned entry with the compressed data or <code>null</code> if the resource should not be compressed
+     */
+    public BinaryCache.Entry getGzipVariant(BrixFileNode node) {
+        String hash = node.getContentHash();
+        if (hash == null || !isCompressible(node.getMimeType()) || !isCompressedLength(node.getContentLength())) {
+            return null;
+        }
+        return variants.get(node);
+    }
+
+    boolean isCompressedLength(long length) {
+        return length >= MIN_LENGTH && length <= maxLength;
+    }
+
+    /**
+     * @return cache holding the variants
+     */
+    BinaryCache getVariants() {
+        return variants;
+    }
+}
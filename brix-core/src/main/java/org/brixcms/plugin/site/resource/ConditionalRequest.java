@@ -0,0 +1,108 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.resource;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Date;
+
+/**
+ * Validators and conditional request headers (If-None-Match, If-Modified-Since, If-Range) of resource responses.
+ */
+final class ConditionalRequest {
+    private ConditionalRequest() {
+    }
+
+    /**
+     * Returns the entity tag of a resource. The content hash is a strong validator, nodes saved before hashes were
+     * introduced only get a weak one.
+     *
+     * @param hash          content hash or <code>null</code>
+     * @param gzip          whether the gzip variant is served
+     * @param lastModified  last modification date or <code>null</code>
+     * @param contentLength
+     * @return entity tag
+     */
+    static String etag(String hash, boolean gzip, Date lastModified, long contentLength) {
+        if (hash != null) {
+            return "\"" + hash + (gzip ? "-gz" : "") + "\"";
+        }
+        return "W/\"" + (lastModified != null ? lastModified.getTime() : 0) + "-" + contentLength + "\"";
+    }
+
+    /**
+     * Evaluates If-None-Match and, if there is none, If-Modified-Since.
+     */
+    static boolean isNotModified(HttpServletRequest request, String etag, Date lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                // weak comparison
+                if (tag.equals("*") || opaque(tag).equals(opaque(etag))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long since = request.getDateHeader("If-Modified-Since");
+        // http dates have a resolution of seconds
+        return since != -1 && lastModified != null && lastModified.getTime() / 1000 <= since / 1000;
+    }
+
+    /**
+     * Evaluates If-Range, ranges are only served if the client's copy is the current one.
+     */
+    static boolean isRangeAllowed(HttpServletRequest request, String etag, Date lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // strong comparison
+            return !etag.startsWith("W/") && ifRange.equals(etag);
+        }
+        long date = request.getDateHeader("If-Range");
+        return date != -1 && lastModified != null && lastModified.getTime() / 1000 == date / 1000;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; ++i) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.resource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache-Control header values for resources, configured per site path prefix or mime type. The policy of the longest
+ * matching path prefix wins, then the policy of the exact mime type, then of the mime type's major type (registered as
+ * e.g. <code>image/*</code>) and finally the default policy.
+ * <p/>
+ * Example:
+ * <pre>
+ * policies.setDefault("no-cache");
+ * policies.addMimeTypePolicy("image/*", "public, max-age=86400");
+ * policies.addPathPolicy("/static", "public, max-age=31536000, immutable");
+ * </pre>
+ */
+public class ResourceCachePolicies {
+    private final Map<String, String> pathPolicies = new ConcurrentHashMap<String, String>();
+
+    private final Map<String, String> mimeTypePolicies = new ConcurrentHashMap<String, String>();
+
+    private volatile String defaultPolicy;
+
+    /**
+     * @param pathPrefix   site path prefix, e.g. <code>/static</code>
+     * @param cacheControl value of the Cache-Control header
+     */
+    public void addPathPolicy(String pathPrefix, String cacheControl) {
+        if (pathPrefix == null) {
+            throw new IllegalArgumentException("Argument 'pathPrefix' may not be null.");
+        }
+        if (cacheControl == null) {
+            throw new IllegalArgumentException("Argument 'cacheControl' may not be null.");
+        }
+        if (pathPrefix.length() > 1 && pathPrefix.endsWith("/")) {
+            pathPrefix = pathPrefix.substring(0, pathPrefix.length() - 1);
+        }
+        pathPolicies.put(pathPrefix, cacheControl);
+    }
+
+    /**
+     * @param mimeType     mime type, e.g. <code>text/css</code>, or major type, e.g. <code>image/*</code>
+     * @param cacheControl value of the Cache-Control header
+     */
+    public void addMimeTypePolicy(String mimeType, String cacheControl) {
+        if (mimeType == null) {
+            throw new IllegalArgumentException("Argument 'mimeType' may not be null.");
+        }
+        if (cacheControl == null) {
+            throw new IllegalArgumentException("Argument 'cacheControl' may not be null.");
+        }
+        mimeTypePolicies.put(mimeType.toLowerCase(), cacheControl);
+    }
+
+    /**
+     * @param cacheControl value of the Cache-Control header for resources no other policy applies to, or
+     *                     <code>null</code> to send no header
+     */
+    public void setDefault(String cacheControl) {
+        this.defaultPolicy = cacheControl;
+    }
+
+    /**
+     * @param path     site path of the resource
+     * @param mimeType mime type of the resource, may be <code>null</code>
+     * @return value of the Cache-Control header or <code>null</code> if no policy applies
+     */
+    public String getCacheControl(String path, String mimeType) {
+        if (!pathPolicies.isEmpty() && path != null) {
+            for (String prefix = path; ; ) {
+                String policy = pathPolicies.get(prefix);
+                if (policy != null) {
+                    return policy;
+                }
+                int slash = prefix.lastIndexOf('/');
+                if (slash <= 0) {
+                    if (!"/".equals(prefix)) {
+                        prefix = "/";
+                        continue;
+                    }
+                    break;
+                }
+                prefix = prefix.substring(0, slash);
+            }
+        }
+        if (!mimeTypePolicies.isEmpty() && mimeType != null) {
+            String type = mimeType.toLowerCase();
+            int parameters = type.indexOf(';');
+            if (parameters != -1) {
+                type = type.substring(0, parameters).trim();
+            }
+            String policy = mimeTypePolicies.get(type);
+            if (policy != null) {
+                return policy;
+            }
+            int slash = type.indexOf('/');
+            if (slash != -1) {
+                policy = mimeTypePolicies.get(type.substring(0, slash) + "/*");
+                if (policy != null) {
+                    return policy;
+                }
+            }
+        }
+        return defaultPolicy;
+    }
+}
@@ -17,7 +17,6 @@
  */
 package org.brixcms.plugin.site.resource;
 
-import java.io.InputStream;
 import java.util.Date;
 
 import javax.servlet.http.HttpServletRequest;
@@ -78,35 +77,68 @@ public class ResourceNodeHandler implements IRequestHandler {
 
 		WebResponse response = (WebResponse) RequestCycle.get().getResponse();
 
-		response.setContentType(node.getMimeType());
-
-		Date lastModified = node.getLastModified();
-		response.setLastModifiedTime(Time.valueOf(lastModified));
-
+		BinaryCache.Entry gzip = null;
 		try {
 			final HttpServletRequest r = (HttpServletRequest) requestCycle.getRequest().getContainerRequest();
-			String since = r.getHeader("If-Modified-Since");
-			if (!save && since != null) {
-				Date d = new Date(r.getDateHeader("If-Modified-Since"));
-
-				// the weird toString comparison is to prevent comparing
-				// milliseconds
-				if (d.after(lastModified) || d.toString().equals(lastModified.toString())) {
-					response.setContentLength(node.getContentLength());
-					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-					return;
+			HttpServletResponse httpServletResponse = (HttpServletResponse) response.getContainerResponse();
+			ResourceNodePlugin plugin = (ResourceNodePlugin) SitePlugin.get().getNodePluginForType(ResourceNodePlugin.TYPE);
+
+			String mimeType = node.getMimeType();
+			Date lastModified = node.getLastModified();
+			String hash = node.getContentHash();
+
+			CompressedResources compressedResources = plugin.getCompressedResources();
+			boolean compressible = compressedResources != null && compressedResources.isCompressible(mimeType);
+			if (compressible && ConditionalRequest.acceptsGzip(r.getHeader("Accept-Encoding"))) {
+				gzip = compressedResources.getGzipVariant(node);
+			}
+
+			String etag = ConditionalRequest.etag(hash, gzip != null, lastModified, node.getContentLength());
+
+			response.setContentType(mimeType);
+			httpServletResponse.setContentType(mimeType);
+			if (lastModified != null) {
+				response.setLastModifiedTime(Time.valueOf(lastModified));
+			}
+			httpServletResponse.setHeader("ETag", etag);
+			String cacheControl = plugin.getCachePolicies().getCacheControl(SitePlugin.get().pathForNode(node), mimeType);
+			if (cacheControl != null) {
+				httpServletResponse.setHeader("Cache-Control", cacheControl);
+			}
+			if (compressible) {
+				httpServletResponse.addHeader("Vary", "Accept-Encoding");
+			}
+
+			if (!save && ConditionalRequest.isNotModified(r, etag, lastModified)) {
+				httpServletResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+
+			Streamer.Content content;
+			if (gzip != null) {
+				httpServletResponse.setHeader("Content-Encoding", "gzip");
+				content = new Streamer.CachedContent(gzip);
+				// released by the streamer from now on
+				gzip = null;
+			} else {
+				BinaryCache binaryCache = plugin.getBinaryCache();
+				BinaryCache.Entry cached = binaryCache != null ? binaryCache.get(node) : null;
+				if (cached != null) {
+					content = new Streamer.CachedContent(cached);
+				} else {
+					content = new Streamer.BinaryContent(node.getDataAsBinary());
 				}
 			}
-			String fileName = node.getName();
-			long length = node.getContentLength();
-			HttpServletResponse httpServletResponse = (HttpServletResponse) response.getContainerResponse();
-			httpServletResponse.setContentType(node.getMimeType());
-			httpServletResponse.setDateHeader("Last-Modified", node.getLastModified().getTime());
-			InputStream stream = node.getDataAsStream();
 
-			new Streamer(length, stream, fileName, save, r, httpServletResponse).stream();
+			Streamer streamer = new Streamer(content, mimeType, node.getName(), save, r, httpServletResponse);
+			streamer.setRangesEnabled(ConditionalRequest.isRangeAllowed(r, etag, lastModified));
+			streamer.stream();
 		} catch (Exception e) {
 			log.error("Error writing resource data to content", e);
+		} finally {
+			if (gzip != null) {
+				gzip.release();
+			}
 		}
 	}
 
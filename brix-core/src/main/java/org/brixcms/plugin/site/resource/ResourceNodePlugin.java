@@ -14,6 +14,7 @@
 
 package org.brixcms.plugin.site.resource;
 
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -38,6 +39,13 @@ public class ResourceNodePlugin implements SiteNodePlugin {
 
     private Map<String /* extension */, String /* mime-type */> mimeTypes = new ConcurrentHashMap<String, String>();
 
+    private ResourceCachePolicies cachePolicies = new ResourceCachePolicies();
+
+    private CompressedResources compressedResources = new CompressedResources(new File(
+            System.getProperty("java.io.tmpdir"), "brix-compressed-resources"));
+
+    private BinaryCache binaryCache;
+
     public ResourceNodePlugin(SitePlugin sp) {
         registerDefaultMimeTypes();
         sp.registerManageNodeTabFactory(new ManageResourceNodeTabFactory());
@@ -65,6 +73,51 @@ public class ResourceNodePlugin implements SiteNodePlugin {
     }
 
 
+    /**
+     * @return Cache-Control policies applied to resources
+     */
+    public ResourceCachePolicies getCachePolicies() {
+        return cachePolicies;
+    }
+
+    public void setCachePolicies(ResourceCachePolicies cachePolicies) {
+        if (cachePolicies == null) {
+            throw new IllegalArgumentException("Argument 'cachePolicies' may not be null.");
+        }
+        this.cachePolicies = cachePolicies;
+    }
+
+    /**
+     * @return store of compressed variants of text resources or <code>null</code> if resources are not compressed
+     */
+    public CompressedResources getCompressedResources() {
+        return compressedResources;
+    }
+
+    /**
+     * @param compressedResources store of compressed variants, <code>null</code> disables compression
+     */
+    public void setCompressedResources(CompressedResources compressedResources) {
+        this.compressedResources = compressedResources;
+    }
+
+    /**
+     * @return local disk cache of resource data or <code>null</code> if resources are always read from the repository
+     */
+    public BinaryCache getBinaryCache() {
+        return binaryCache;
+    }
+
+    /**
+     * Sets the local disk cache of resource data. Worth enabling if reading binaries from the repository is expensive,
+     * e.g. with a remote repository or a database backed data store.
+     *
+     * @param binaryCache cache or <code>null</code> to disable caching
+     */
+    public void setBinaryCache(BinaryCache binaryCache) {
+        this.binaryCache = binaryCache;
+    }
+
     public String getNodeType() {
         return TYPE;
     }
@@ -14,168 +14,530 @@
 
 package org.brixcms.plugin.site.resource;
 
-import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Responds stream with support for Content-Range header.
+ * Responds stream with support for Range header, including multiple ranges (<code>multipart/byteranges</code>).
+ * <p/>
+ * Content is copied through pooled buffers, so downloads do not allocate per chunk. Ranges are served from a single
+ * stream by skipping forward to each range, the stream is only reopened if ranges are not in ascending order. If the
+ * content is available as a file, positional {@link FileChannel#transferTo(long, long, WritableByteChannel)} is used.
+ * <p/>
+ * The container's sendfile is not used, it reads the file after the response is finished, when a {@link BinaryCache}
+ * entry is no longer pinned and its file may have been evicted.
  *
  * @author Matej Knopp
  */
 class Streamer {
+    private static final Logger log = LoggerFactory.getLogger(Streamer.class);
+
+    /**
+     * Size of the pooled copy buffers
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of idle buffers kept in the pool
+     */
+    private static final int MAX_POOLED_BUFFERS = 32;
+
+    /**
+     * Requests with more ranges than this get the whole content, lots of small ranges are more expensive to serve than
+     * the content itself
+     */
+    private static final int MAX_RANGES = 32;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    private final Content content;
     private final long length;
-    private final InputStream inputStream;
+    private final String contentType;
     private final String fileName;
     private final boolean attachment;
     private final HttpServletRequest request;
     private final HttpServletResponse response;
+    private boolean rangesEnabled = true;
 
-    public Streamer(long length, InputStream inputStream, String fileName, boolean attachment,
+    public Streamer(Content content, String contentType, String fileName, boolean attachment,
                     HttpServletRequest request, HttpServletResponse response) {
-        this.length = length;
-        this.inputStream = inputStream;
+        this.content = content;
+        this.length = content.getLength();
+        this.contentType = contentType;
         this.fileName = fileName;
         this.response = response;
         this.request = request;
         this.attachment = attachment;
     }
 
-    final static long maxContentLengthForDirectStreamInBytes = Bytes.kilobytes(512).bytes();
+    /**
+     * @param rangesEnabled <code>false</code> to ignore the Range header, e.g. because the If-Range condition failed
+     */
+    public void setRangesEnabled(boolean rangesEnabled) {
+        this.rangesEnabled = rangesEnabled;
+    }
 
     public void stream() {
-        Range range = parseRange(request.getHeader("Range"), length);
-        Long first = range.start;
-        Long last = range.end;
-        long contentLength = length;
-        boolean isFlushingRequired = false;
-
-        if(contentLength > maxContentLengthForDirectStreamInBytes) {
-            isFlushingRequired = true;
-        }
-
-        if (first != null && last != null) {
-            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-            response.addHeader("Content-Range", "bytes " + first + "-" + last + "/" + length);
-
-            contentLength = last - first + 1;
-        } else {
-            response.setStatus(HttpServletResponse.SC_OK);
-            first = 0l;
-            last = length - 1;
-        }
-
-        response.addHeader("Content-Length", "" + contentLength);
+        List<Range> ranges = rangesEnabled ? parseRanges(request.getHeader("Range"), length) : null;
 
         if (!attachment) {
             response.addHeader("Content-Disposition", "inline; filename=\"" + fileName + "\";");
         } else {
             response.addHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\";");
         }
-        response.addHeader("Accept-Range", "bytes");
+        response.addHeader("Accept-Ranges", "bytes");
 
         /**
          * should request be kept alive?
          */
         String keepAlive = request.getHeader("Connection");
-        if(keepAlive != null && keepAlive.equalsIgnoreCase("keep-alive")) {
+        if (keepAlive != null && keepAlive.equalsIgnoreCase("keep-alive")) {
             response.addHeader("Connection", "keep-alive");
         } else {
             response.addHeader("Connection", "close");
         }
 
-        InputStream s = null;
+        if (ranges != null && ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.addHeader("Content-Range", "bytes */" + length);
+            response.addHeader("Content-Length", "0");
+            return;
+        }
 
+        Cursor cursor = new Cursor();
         try {
-            // flush headers - this is expected to be required for some versions of Firefox
-            response.flushBuffer();
-
-            s = new BufferedInputStream(inputStream);
-
-            s.skip(first);
-
-            final int bufferSize = (int) maxContentLengthForDirectStreamInBytes;
-            long left = contentLength;
-            while (left > 0) {
-                int howMuch = bufferSize;
-                if (howMuch > left) {
-                    howMuch = (int) left;
-                }
-
-                byte[] buf = new byte[howMuch];
-                int numRead = s.read(buf);
-
-                response.getOutputStream().write(buf, 0, numRead);
-                //only call flushBuffer if partial content delivery is active - saves roundtrip
-                if(isFlushingRequired) {
-                    response.flushBuffer();
+            if (ranges == null || ranges.size() == 1) {
+                Range range = ranges != null ? ranges.get(0) : new Range(0, length - 1);
+                if (ranges != null) {
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.addHeader("Content-Range", "bytes " + range.start + "-" + range.end + "/" + length);
+                } else {
+                    response.setStatus(HttpServletResponse.SC_OK);
                 }
+                response.addHeader("Content-Length", "" + range.getLength());
 
+                // flush headers - this is expected to be required for some versions of Firefox
+                response.flushBuffer();
 
-                if (numRead == -1) {
-                    break;
-                }
-
-                left -= numRead;
+                copy(range, response.getOutputStream(), cursor);
+            } else {
+                streamMultipart(ranges, cursor);
             }
+        } catch (ContentEndedException e) {
+            // the response has been committed with a length the content did not have
+            log.error("Content of " + fileName + " is shorter than its declared length " + length, e);
         } catch (Exception e) {
-            if (e.getClass().getName().contains("Eof")) {
-                // ignore
+            if (e.getClass().getName().contains("Eof") || e instanceof EOFException) {
+                // ignore, client has closed the connection
             } else {
                 throw new RuntimeException(e);
             }
         } finally {
-            if (s != null) {
-                try {
-                    s.close();
-                } catch (IOException ignore) {
+            cursor.close();
+            content.close();
+        }
+    }
+
+    private void streamMultipart(List<Range> ranges, Cursor cursor) throws IOException {
+        final String boundary = "BRIX_BYTERANGES_" + Long.toHexString(System.nanoTime());
+
+        List<byte[]> headers = new ArrayList<byte[]>(ranges.size());
+        long contentLength = 0;
+        for (Range range : ranges) {
+            StringBuilder header = new StringBuilder();
+            header.append("\r\n--").append(boundary).append("\r\n");
+            if (contentType != null) {
+                header.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            header.append("Content-Range: bytes ").append(range.start).append('-').append(range.end).append('/')
+                    .append(length).append("\r\n\r\n");
+            byte[] bytes = header.toString().getBytes(ASCII);
+            headers.add(bytes);
+            contentLength += bytes.length + range.getLength();
+        }
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(ASCII);
+        contentLength += trailer.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.addHeader("Content-Length", "" + contentLength);
+        response.flushBuffer();
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); ++i) {
+            out.write(headers.get(i));
+            copy(ranges.get(i), out, cursor);
+        }
+        out.write(trailer);
+    }
+
+    private void copy(Range range, OutputStream out, Cursor cursor) throws IOException {
+        if (range.getLength() == 0) {
+            return;
+        }
+        File file = content.getFile();
+        if (file != null) {
+            cursor.transfer(file, range, out);
+            return;
+        }
+
+        InputStream in = cursor.seek(range.start);
+        byte[] buffer = acquireBuffer();
+        try {
+            long left = range.getLength();
+            while (left > 0) {
+                int read = read(in, buffer, (int) Math.min(buffer.length, left));
+                if (read == -1) {
+                    throw new ContentEndedException("Content ended " + left + " bytes before the end of range");
                 }
+                out.write(buffer, 0, read);
+                left -= read;
             }
+            cursor.position = range.end + 1;
+        } finally {
+            releaseBuffer(buffer);
         }
     }
 
-    private Range parseRange(String range, long length) {
-        if (isEmpty(range)) {
-            return new Range(null, null);
+    private static int read(InputStream in, byte[] buffer, int length) throws IOException {
+        try {
+            return in.read(buffer, 0, length);
+        } catch (EOFException e) {
+            // thrown by the content source, not by the connection to the client
+            throw new ContentEndedException(e);
         }
-        String p[] = range.split("=");
+    }
 
-        if (p.length != 1 && (p.length != 2 || !"bytes".equals(p[0]))) {
-            return new Range(0l, length - 1);
+    private static byte[] acquireBuffer() {
+        byte[] buffer = buffers.poll();
+        if (buffer != null) {
+            pooledBuffers.decrementAndGet();
+            return buffer;
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    private static void releaseBuffer(byte[] buffer) {
+        if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            buffers.offer(buffer);
         } else {
-            p = p[p.length - 1].split("-");
-            if (p.length == 1) {
-                p = new String[]{p[0], ""};
-            }
-            if (p.length != 2) {
-                return new Range(0l, length - 1);
-            }
-            if (isEmpty(p[0]) && isEmpty(p[1])) {
-                return new Range(0l, length - 1);
-            } else if (isEmpty(p[0])) {
-                return new Range(length - Long.valueOf(p[1]), length - 1);
-            } else if (isEmpty(p[1])) {
-                return new Range(Long.valueOf(p[0]), length - 1);
+            pooledBuffers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Parses the Range header.
+     *
+     * @return <code>null</code> if the whole content should be served, empty list if the ranges can not be satisfied,
+     *         otherwise ranges in ascending order with overlapping ranges merged
+     */
+    static List<Range> parseRanges(String header, long length) {
+        if (isEmpty(header)) {
+            return null;
+        }
+        header = header.trim();
+        if (!header.startsWith("bytes=")) {
+            // unknown unit, ignore the header
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<Range> ranges = new ArrayList<Range>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            try {
+                if (isEmpty(first)) {
+                    if (isEmpty(last)) {
+                        return null;
+                    }
+                    // suffix range, last n bytes
+                    start = Math.max(0, length - Long.parseLong(last));
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = isEmpty(last) ? length - 1 : Long.parseLong(last);
+                    if (end < start) {
+                        // syntactically invalid, ignore the header
+                        return null;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (start < 0) {
+                return null;
+            }
+            if (start < length && start <= end) {
+                ranges.add(new Range(start, end));
+            }
+        }
+        return merge(ranges);
+    }
+
+    private static List<Range> merge(List<Range> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        Collections.sort(ranges);
+        List<Range> merged = new ArrayList<Range>(ranges.size());
+        Range current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); ++i) {
+            Range next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                current = new Range(current.start, Math.max(current.end, next.end));
             } else {
-                return new Range(Long.valueOf(p[0]), Long.valueOf(p[1]));
+                merged.add(current);
+                current = next;
             }
         }
+        merged.add(current);
+        return merged;
     }
 
-    private boolean isEmpty(String s) {
+    private static boolean isEmpty(String s) {
         return s == null || s.length() == 0;
     }
 
-    private static class Range {
-        final Long start;
-        final Long end;
+    static final class Range implements Comparable<Range> {
+        final long start;
+        final long end;
 
-        public Range(Long start, Long end) {
+        Range(long start, long end) {
             this.start = start;
             this.end = end;
         }
+
+        long getLength() {
+            return end - start + 1;
+        }
+
+        public int compareTo(Range o) {
+            return start < o.start ? -1 : (start == o.start ? 0 : 1);
+        }
+    }
+
+    /**
+     * Thrown when the content source ends before its declared length. Unlike {@link EOFException}s of the container
+     * this is not caused by the client closing the connection.
+     */
+    static class ContentEndedException extends IOException {
+        ContentEndedException(String message) {
+            super(message);
+        }
+
+        ContentEndedException(EOFException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Content to stream.
+     */
+    interface Content {
+        long getLength();
+
+        /**
+         * @return new stream positioned at the beginning of the content
+         */
+        InputStream openStream() throws IOException;
+
+        /**
+         * @return file holding the content or <code>null</code> if the content is not available as a file
+         */
+        File getFile();
+
+        /**
+         * Releases resources held by the content.
+         */
+        void close();
+    }
+
+    /**
+     * Content of a JCR {@link Binary}, disposed when streaming is done.
+     */
+    static class BinaryContent implements Content {
+        private final Binary binary;
+
+        BinaryContent(Binary binary) {
+            this.binary = binary;
+        }
+
+        public long getLength() {
+            try {
+                return binary.getSize();
+            } catch (RepositoryException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public InputStream openStream() throws IOException {
+            try {
+                return binary.getStream();
+            } catch (RepositoryException e) {
+                throw new IOException(e);
+            }
+        }
+
+        public File getFile() {
+            return null;
+        }
+
+        public void close() {
+            binary.dispose();
+        }
+    }
+
+    /**
+     * Content of a file.
+     */
+    static class FileContent implements Content {
+        private final File file;
+
+        FileContent(File file) {
+            this.file = file;
+        }
+
+        public long getLength() {
+            return file.length();
+        }
+
+        public InputStream openStream() throws IOException {
+            return new FileInputStream(file);
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public void close() {
+        }
+    }
+
+    /**
+     * Content of a pinned {@link BinaryCache} entry, released when streaming is done.
+     */
+    static class CachedContent extends FileContent {
+        private final BinaryCache.Entry entry;
+        private boolean released;
+
+        CachedContent(BinaryCache.Entry entry) {
+            super(entry.getFile());
+            this.entry = entry;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                entry.release();
+            }
+        }
+    }
+
+    /**
+     * Current read position in the content, shared by all ranges of a response.
+     */
+    private class Cursor {
+        private InputStream stream;
+        private FileChannel channel;
+        private long position;
+
+        InputStream seek(long target) throws IOException {
+            if (stream == null || target < position) {
+                closeStream();
+                stream = content.openStream();
+                position = 0;
+            }
+            long toSkip = target - position;
+            try {
+                while (toSkip > 0) {
+                    long skipped = stream.skip(toSkip);
+                    if (skipped <= 0) {
+                        // skip is allowed to make no progress, fall back to reading
+                        if (stream.read() == -1) {
+                            throw new ContentEndedException("Content ended before position " + target);
+                        }
+                        skipped = 1;
+                    }
+                    toSkip -= skipped;
+                }
+            } catch (EOFException e) {
+                throw new ContentEndedException(e);
+            }
+            position = target;
+            return stream;
+        }
+
+        void transfer(File file, Range range, OutputStream out) throws IOException {
+            if (channel == null) {
+                channel = new FileInputStream(file).getChannel();
+            }
+            WritableByteChannel target = Channels.newChannel(out);
+            long offset = range.start;
+            long left = range.getLength();
+            while (left > 0) {
+                long transferred = channel.transferTo(offset, left, target);
+                if (transferred <= 0) {
+                    throw new ContentEndedException("Content ended " + left + " bytes before the end of range");
+                }
+                offset += transferred;
+                left -= transferred;
+            }
+        }
+
+        void close() {
+            closeStream();
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignore) {
+                }
+                channel = null;
+            }
+        }
+
+        private void closeStream() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignore) {
+                }
+                stream = null;
+            }
+        }
     }
 }
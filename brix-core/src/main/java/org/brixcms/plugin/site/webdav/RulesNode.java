@@ -38,6 +38,11 @@ public class RulesNode extends BrixNode {
             return TYPE.equals(getNodeType(node));
         }
 
+        @Override
+        public String getWrappedNodeType() {
+            return TYPE;
+        }
+
         @Override
         public JcrNode wrap(Brix brix, Node node, JcrSession session) {
             return new RulesNode(node, session);
@@ -20,13 +20,20 @@ import org.brixcms.registry.ExtensionPointRegistry.Callback.Status;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Registry of extensions. Extensions of each extension point are kept in an immutable snapshot that is replaced on
+ * every registration, so lookups neither lock nor copy and the returned collections can be iterated safely while
+ * extensions are being registered.
+ */
 public class ExtensionPointRegistry {
-    private final ConcurrentHashMap<ExtensionPoint<?>, Collection<?>> registrations = new ConcurrentHashMap<ExtensionPoint<?>, Collection<?>>();
+    private final ConcurrentHashMap<ExtensionPoint<?>, Snapshot<?>> registrations = new ConcurrentHashMap<ExtensionPoint<?>, Snapshot<?>>();
 
     private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
 
@@ -45,14 +52,12 @@ public class ExtensionPointRegistry {
         return extensions;
     }
 
-    private <T> Collection<T> lookup(ExtensionPoint<T> point) {
-        Collection<T> extensions = get(point);
-        if (extensions == null) {
-            return Collections.emptySet();
+    private <T> List<T> lookup(ExtensionPoint<T> point) {
+        Snapshot<T> snapshot = get(point);
+        if (snapshot == null) {
+            return Collections.emptyList();
         } else {
-            ArrayList<T> copy = new ArrayList<T>(extensions.size());
-            copy.addAll(extensions);
-            return Collections.unmodifiableCollection(copy);
+            return snapshot.extensions;
         }
     }
 
@@ -66,6 +71,27 @@ public class ExtensionPointRegistry {
         }
     }
 
+    /**
+     * Looks up the first registered extension of given point with the given key. The keys of all extensions of the
+     * point are indexed on first use of the key function and the index is kept until the next registration for the
+     * point.
+     *
+     * @param point extension point
+     * @param key   function returning the key of an extension, should be a constant so that its index is reused
+     * @param value key to look for
+     * @return first extension with given key or <code>null</code> if there is none
+     */
+    public <T> T lookup(ExtensionPoint<T> point, Key<? super T> key, String value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Argument 'key' may not be null.");
+        }
+        Snapshot<T> snapshot = get(point);
+        if (snapshot == null || value == null) {
+            return null;
+        }
+        return snapshot.getIndex(key).get(value);
+    }
+
     public <T> T lookupSingleton(ExtensionPoint<T> point) {
         // check multiplicity
         switch (point.getMultiplicity()) {
@@ -78,13 +104,8 @@ public class ExtensionPointRegistry {
                         + ". Must be " + Multiplicity.SINGLETON);
         }
 
-        Iterator<T> it = lookup(point).iterator();
-
-        if (it.hasNext()) {
-            return it.next();
-        } else {
-            return null;
-        }
+        List<T> extensions = lookup(point);
+        return extensions.isEmpty() ? null : extensions.get(0);
     }
 
     /**
@@ -99,42 +120,48 @@ public class ExtensionPointRegistry {
 
         if (replay) {
             // replay past registrations
-            for (ExtensionPoint<?> point : registrations.keySet()) {
-                final Collection<?> extensions = registrations.get(point);
-                for (Object extension : extensions) {
-                    listener.registered(point, extension);
+            for (Map.Entry<ExtensionPoint<?>, Snapshot<?>> entry : registrations.entrySet()) {
+                for (Object extension : entry.getValue().extensions) {
+                    listener.registered(entry.getKey(), extension);
                 }
             }
         }
     }
 
     public <T> void register(ExtensionPoint<T> point, T extension) {
-        Collection<T> extensions = get(point);
-        if (extensions == null) {
-            extensions = new LinkedList<T>();
-            registrations.put(point, extensions);
+        final List<T> removed;
+        synchronized (registrations) {
+            Snapshot<T> snapshot = get(point);
+            List<T> extensions = new ArrayList<T>();
+            switch (point.getMultiplicity()) {
+                case SINGLETON:
+                    removed = snapshot != null ? snapshot.extensions : Collections.<T>emptyList();
+                    break;
+                default:
+                    removed = Collections.emptyList();
+                    if (snapshot != null) {
+                        extensions.addAll(snapshot.extensions);
+                    }
+                    break;
+            }
+            extensions.add(extension);
+            registrations.put(point, new Snapshot<T>(extensions));
         }
 
-        final Multiplicity multiplicity = point.getMultiplicity();
-        switch (multiplicity) {
-            case SINGLETON:
-                for (Object removed : extensions) {
-                    for (Listener listener : listeners) {
-                        listener.unregistered(point, removed);
-                    }
-                }
-                extensions.clear();
-                break;
-            case COLLECTION:
-                break;
+        for (Object r : removed) {
+            for (Listener listener : listeners) {
+                listener.unregistered(point, r);
+            }
         }
 
-        extensions.add(extension);
+        for (Listener listener : listeners) {
+            listener.registered(point, extension);
+        }
     }
 
     @SuppressWarnings("unchecked")
-    private <T> Collection<T> get(ExtensionPoint<T> point) {
-        return (Collection<T>) registrations.get(point);
+    private <T> Snapshot<T> get(ExtensionPoint<T> point) {
+        return (Snapshot<T>) registrations.get(point);
     }
 
     public static interface Callback<T> {
@@ -150,4 +177,40 @@ public class ExtensionPointRegistry {
 
         public void unregistered(ExtensionPoint<?> point, Object extension);
     }
+
+    /**
+     * Returns the key under which an extension is indexed for {@link ExtensionPointRegistry#lookup(ExtensionPoint,
+     * Key, String)}.
+     */
+    public static interface Key<T> {
+        String getKey(T extension);
+    }
+
+    /**
+     * Immutable extensions of a single extension point with lazily built key indexes
+     */
+    private static class Snapshot<T> {
+        private final List<T> extensions;
+
+        private final ConcurrentMap<Key<?>, Map<String, T>> indexes = new ConcurrentHashMap<Key<?>, Map<String, T>>();
+
+        Snapshot(List<T> extensions) {
+            this.extensions = Collections.unmodifiableList(extensions);
+        }
+
+        Map<String, T> getIndex(Key<? super T> key) {
+            Map<String, T> index = indexes.get(key);
+            if (index == null) {
+                index = new HashMap<String, T>();
+                for (T extension : extensions) {
+                    String k = key.getKey(extension);
+                    if (k != null && !index.containsKey(k)) {
+                        index.put(k, extension);
+                    }
+                }
+                indexes.put(key, index);
+            }
+            return index;
+        }
+    }
 }
@@ -60,6 +60,8 @@ import org.brixcms.Brix;
 import org.brixcms.BrixNodeModel;
 import org.brixcms.Path;
 import org.brixcms.config.BrixConfig;
+import org.brixcms.config.CacheableUriMapper;
+import org.brixcms.config.UriMapper;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.exception.JcrException;
 import org.brixcms.jcr.wrapper.BrixNode;
@@ -83,10 +85,12 @@ public class BrixRequestMapper extends AbstractComponentMapper {
 
     private final Brix brix;
     private final HttpsConfig config;
+    private final RouteCache routeCache;
 
     public BrixRequestMapper(Brix brix, HttpsConfig config) {
         this.config = config;
         this.brix = brix;
+        this.routeCache = new RouteCache(brix.getChangeNotifier());
     }
 
     @Override
@@ -111,11 +115,12 @@ public class BrixRequestMapper extends AbstractComponentMapper {
         }
 
         Path path = new Path("/" + url.getPath());
+        RouteCache.Table routes = isRouteCacheable() ? routeCache.getTable(WorkspaceUtils.getWorkspace()) : null;
 
         BrixNode node = null;
         // root path handling
         if (path.isRoot()) {
-            node = getNodeForUriPath(path);
+            node = getNodeForUriPath(path, routes);
             if(node instanceof FolderNode) {
                 node = ((FolderNode) node).getRedirectReference().getNodeModel().getObject();
             }
@@ -125,15 +130,15 @@ public class BrixRequestMapper extends AbstractComponentMapper {
         try {
             while (handler == null) {
                 if(node == null) {
-                    node = getNodeForUriPath(path);
+                    node = getNodeForUriPath(path, routes);
                 }
                 if (node != null) {
-                    SiteNodePlugin plugin = SitePlugin.get().getNodePluginForNode(node);
+                    SiteNodePlugin plugin = getNodePluginForNode(node, path, routes);
                     if (plugin instanceof AbstractSitePagePlugin) {
-                        handler = SitePlugin.get().getNodePluginForNode(node).respond(new BrixNodeModel(node),
+                        handler = plugin.respond(new BrixNodeModel(node),
                                 createBrixPageParams(request.getUrl(), path));
                     } else {
-                        handler = SitePlugin.get().getNodePluginForNode(node).respond(new BrixNodeModel(node),
+                        handler = plugin.respond(new BrixNodeModel(node),
                                 new BrixPageParameters(request.getRequestParameters()));
                     }
                 }
@@ -505,6 +510,62 @@ public class BrixRequestMapper extends AbstractComponentMapper {
         return node;
     }
 
+    /**
+     * Tells whether resolved uri paths may be cached, which is only the case
+     * if the {@link UriMapper} declares so through {@link CacheableUriMapper}.
+     *
+     * @return <code>true</code> if routes may be cached
+     */
+    private boolean isRouteCacheable() {
+        final UriMapper mapper = brix.getConfig().getMapper();
+        return mapper instanceof CacheableUriMapper && ((CacheableUriMapper) mapper).isNodePathCacheable();
+    }
+
+    /**
+     * Resolves uri path to a {@link BrixNode} using the route table of the
+     * current workspace. Only uri paths not yet present in the table are
+     * resolved through {@link #getNodeForUriPath(Path)}.
+     *
+     * @param uriPath
+     *            uri path
+     * @param routes
+     *            route table or <code>null</code> if routes are not cached
+     * @return node that maps to the <code>uriPath</code> or <code>null</code>
+     *         if none
+     */
+    private BrixNode getNodeForUriPath(final Path uriPath, final RouteCache.Table routes) {
+        if (routes == null) {
+            return getNodeForUriPath(uriPath);
+        }
+
+        final String key = uriPath.toString();
+        final RouteCache.Route route = routes.get(key);
+        if (route != null) {
+            if (route.isMissing()) {
+                return null;
+            }
+            final BrixNode node = route.getNode(brix.getCurrentSession(WorkspaceUtils.getWorkspace()));
+            if (node != null) {
+                return node;
+            }
+            // stale route, resolve again
+            routes.remove(key);
+        }
+
+        final BrixNode node = getNodeForUriPath(uriPath);
+        routes.put(key, RouteCache.Route.of(node));
+        return node;
+    }
+
+    private SiteNodePlugin getNodePluginForNode(final BrixNode node, final Path uriPath,
+            final RouteCache.Table routes) {
+        final RouteCache.Route route = routes != null ? routes.get(uriPath.toString()) : null;
+        if (route != null && route.isRouteTo(node)) {
+            return SitePlugin.get().getNodePluginForType(route.getNodeType());
+        }
+        return SitePlugin.get().getNodePluginForNode(node);
+    }
+
     /**
      * Creates a uri path for the specified <code>node</code> By default this
      * method uses {@link BrixConfig#getMapper()} to map node path to a uri
@@ -0,0 +1,184 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.web;
+
+import org.brixcms.jcr.WorkspaceChangeNotifier;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.exception.JcrException;
+import org.brixcms.jcr.wrapper.BrixNode;
+
+import javax.jcr.observation.Event;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-workspace table of uri paths resolved by {@link BrixRequestMapper}. Each entry remembers the identifier and the
+ * brix node type of the node the uri path maps to, or that there is no such node. A table is discarded as a whole
+ * whenever anything in its workspace changes, so entries never outlive the content they were resolved from.
+ * <p/>
+ * The table is shared by all users, so it assumes that visibility of nodes does not depend on the credentials of the
+ * request session (which is the case with the default session factories). Routes are keyed by workspace and uri path
+ * only, so they are cached only if the uri mapper declares that it resolves node paths from the uri path alone, see
+ * {@link org.brixcms.config.CacheableUriMapper}.
+ */
+public class RouteCache implements WorkspaceChangeNotifier.Listener {
+    /**
+     * Default maximum number of routes kept per workspace
+     */
+    public static final int DEFAULT_MAX_ROUTES = 10000;
+
+    private final WorkspaceChangeNotifier notifier;
+
+    private final int maxRoutes;
+
+    private final ConcurrentMap<String, Table> tables = new ConcurrentHashMap<String, Table>();
+
+    public RouteCache(WorkspaceChangeNotifier notifier) {
+        this(notifier, DEFAULT_MAX_ROUTES);
+    }
+
+    public RouteCache(WorkspaceChangeNotifier notifier, int maxRoutes) {
+        if (notifier == null) {
+            throw new IllegalArgumentException("Argument 'notifier' may not be null.");
+        }
+        this.notifier = notifier;
+        this.maxRoutes = maxRoutes;
+        notifier.addListener(this);
+    }
+
+    /**
+     * Returns the route table for given workspace.
+     *
+     * @param workspaceId
+     * @return route table or <code>null</code> if the workspace can not be observed and routes must not be cached
+     */
+    public Table getTable(String workspaceId) {
+        Table table = tables.get(workspaceId);
+        if (table == null) {
+            if (!notifier.observe(workspaceId)) {
+                return null;
+            }
+            Table created = new Table();
+            table = tables.putIfAbsent(workspaceId, created);
+            if (table == null) {
+                table = created;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Drops all routes of the given workspace.
+     *
+     * @param workspaceId
+     */
+    public void invalidate(String workspaceId) {
+        tables.remove(workspaceId);
+    }
+
+    public void onWorkspaceChanged(String workspaceId, List<Event> events) {
+        invalidate(workspaceId);
+    }
+
+    public void onWorkspaceDeleted(String workspaceId) {
+        invalidate(workspaceId);
+    }
+
+    /**
+     * Routes of a single workspace. Invalidation replaces the whole table, so a route resolved concurrently with a
+     * change is stored in the discarded table and never becomes visible.
+     */
+    public class Table {
+        private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<String, Route>();
+
+        private Table() {
+        }
+
+        public Route get(String uriPath) {
+            return routes.get(uriPath);
+        }
+
+        public void put(String uriPath, Route route) {
+            // random urls would otherwise grow the table without limit, starting over is cheap
+            if (routes.size() >= maxRoutes) {
+                routes.clear();
+            }
+            routes.put(uriPath, route);
+        }
+
+        public void remove(String uriPath) {
+            routes.remove(uriPath);
+        }
+    }
+
+    /**
+     * Resolved uri path.
+     */
+    public static final class Route {
+        /**
+         * Route of uri paths that do not map to any node
+         */
+        public static final Route MISSING = new Route(null, null);
+
+        private final String nodeId;
+        private final String nodeType;
+
+        private Route(String nodeId, String nodeType) {
+            this.nodeId = nodeId;
+            this.nodeType = nodeType;
+        }
+
+        public static Route of(BrixNode node) {
+            return node != null ? new Route(node.getIdentifier(), node.getNodeType()) : MISSING;
+        }
+
+        public boolean isMissing() {
+            return nodeId == null;
+        }
+
+        /**
+         * @param node
+         * @return <code>true</code> if this route resolves to the given node
+         */
+        public boolean isRouteTo(BrixNode node) {
+            return nodeId != null && node != null && nodeId.equals(node.getIdentifier());
+        }
+
+        /**
+         * @return brix node type of the node, see {@link BrixNode#getNodeType()}
+         */
+        public String getNodeType() {
+            return nodeType;
+        }
+
+        /**
+         * Loads the node with a single lookup by identifier.
+         *
+         * @param session
+         * @return node or <code>null</code> if the node can no longer be loaded
+         */
+        public BrixNode getNode(JcrSession session) {
+            if (nodeId == null) {
+                return null;
+            }
+            try {
+                return (BrixNode) session.getNodeByIdentifier(nodeId);
+            } catch (JcrException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.workspace;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-mostly cache in front of the {@link WorkspaceManager} for lookups done on every request, i.e. resolving the
+ * workspace by its attributes and checking whether a workspace exists. Lookups do not lock, so request threads do not
+ * serialize on the workspace manager's monitor.
+ * <p/>
+ * The cache is kept current through {@link WorkspaceListener} notifications and therefore only works with {@link
+ * AbstractWorkspaceManager}s, other workspace managers are always asked directly.
+ */
+public class WorkspaceCache implements WorkspaceListener {
+    private final WorkspaceManager manager;
+
+    private final boolean enabled;
+
+    private final ConcurrentMap<Map<String, String>, List<Workspace>> filtered = new ConcurrentHashMap<Map<String, String>, List<Workspace>>();
+
+    private final Set<String> existing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // bumped on every change so that lookups racing with a change do not store stale results
+    private final AtomicLong generation = new AtomicLong();
+
+    public WorkspaceCache(WorkspaceManager manager) {
+        if (manager == null) {
+            throw new IllegalArgumentException("Argument 'manager' may not be null.");
+        }
+        this.manager = manager;
+        if (manager instanceof AbstractWorkspaceManager) {
+            ((AbstractWorkspaceManager) manager).addWorkspaceListener(this);
+            enabled = true;
+        } else {
+            enabled = false;
+        }
+    }
+
+    /**
+     * @see WorkspaceManager#getWorkspacesFiltered(Map)
+     */
+    public List<Workspace> getWorkspacesFiltered(Map<String, String> workspaceAttributes) {
+        if (!enabled) {
+            return manager.getWorkspacesFiltered(workspaceAttributes);
+        }
+        List<Workspace> result = filtered.get(workspaceAttributes);
+        if (result == null) {
+            long current = generation.get();
+            result = Collections.unmodifiableList(manager.getWorkspacesFiltered(workspaceAttributes));
+            Map<String, String> key = new HashMap<String, String>(workspaceAttributes);
+            filtered.put(key, result);
+            if (generation.get() != current) {
+                filtered.remove(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see WorkspaceManager#workspaceExists(String)
+     */
+    public boolean workspaceExists(String workspaceId) {
+        if (!enabled) {
+            return manager.workspaceExists(workspaceId);
+        }
+        if (workspaceId == null) {
+            return false;
+        }
+        if (existing.contains(workspaceId)) {
+            return true;
+        }
+        // only existing workspaces are remembered, workspaces can be created without notification
+        long current = generation.get();
+        boolean exists = manager.workspaceExists(workspaceId);
+        if (exists) {
+            existing.add(workspaceId);
+            if (generation.get() != current) {
+                existing.remove(workspaceId);
+            }
+        }
+        return exists;
+    }
+
+    public void workspaceDeleted(String workspaceId) {
+        generation.incrementAndGet();
+        existing.remove(workspaceId);
+        filtered.clear();
+    }
+
+    public void workspaceAttributeChanged(String workspaceId, String key, String value) {
+        generation.incrementAndGet();
+        filtered.clear();
+    }
+}
@@ -112,7 +112,7 @@ public class WorkspaceUtils {
     }
 
     private static boolean checkSession(String workspaceId) {
-        return Brix.get().getWorkspaceManager().workspaceExists(workspaceId);
+        return Brix.get().getWorkspaceCache().workspaceExists(workspaceId);
     }
 
     private static String getDefaultWorkspaceName() {
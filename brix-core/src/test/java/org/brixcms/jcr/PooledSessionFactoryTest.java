@@ -0,0 +1,297 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PooledSessionFactoryTest {
+    private final List<FakeSession> logins = new ArrayList<FakeSession>();
+
+    private final Credentials credentials = new SimpleCredentials("admin", "admin".toCharArray());
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private PooledSessionFactory factory;
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+        if (factory != null) {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void sessionsAreReusedByLaterScopes() {
+        factory = new PooledSessionFactory(repository(), credentials);
+
+        PooledSessionFactory.Scope first = factory.openScope();
+        Session session = first.getSession("ws");
+        assertSame(session, first.getSession("ws"));
+        assertSame(session, factory.getCurrentSession("ws"));
+        assertEquals(1, factory.getActiveCount("ws"));
+        first.close();
+        assertEquals(0, factory.getActiveCount("ws"));
+        assertEquals(1, factory.getIdleCount("ws"));
+
+        PooledSessionFactory.Scope second = factory.openScope();
+        assertSame(session, second.getSession("ws"));
+        assertNotSame(session, second.getSession(null));
+        second.close();
+
+        assertEquals(2, factory.getLoginCount());
+        assertEquals(3, factory.getBorrowCount());
+        assertEquals(0, factory.getDiscardCount());
+    }
+
+    @Test
+    public void cleanupClosesImplicitScope() {
+        factory = new PooledSessionFactory(repository(), credentials);
+
+        Session session = factory.getCurrentSession("ws");
+        assertSame(session, factory.getCurrentSession("ws"));
+        factory.cleanup();
+        assertEquals(0, factory.getActiveCount("ws"));
+        assertEquals(1, factory.getIdleCount("ws"));
+        assertSame(session, factory.getCurrentSession("ws"));
+        factory.cleanup();
+    }
+
+    @Test
+    public void exhaustedPoolTimesOut() {
+        factory = new PooledSessionFactory(repository(), credentials, 1, 1, 100);
+
+        PooledSessionFactory.Scope first = factory.openScope();
+        first.getSession("ws");
+        PooledSessionFactory.Scope second = factory.openScope();
+        long start = System.nanoTime();
+        try {
+            second.getSession("ws");
+            fail("expected CannotOpenJcrSessionException");
+        } catch (CannotOpenJcrSessionException e) {
+            // expected
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        assertEquals(1, factory.getTimeoutCount());
+        assertEquals(1, factory.getActiveCount("ws"));
+
+        // other workspaces have their own pools
+        second.getSession("other");
+        second.close();
+        first.close();
+        assertEquals(0, factory.getActiveCount("ws"));
+    }
+
+    @Test
+    public void waitingScopeGetsReturnedSession() throws Exception {
+        factory = new PooledSessionFactory(repository(), credentials, 1, 1, 10000);
+
+        PooledSessionFactory.Scope first = factory.openScope();
+        Session session = first.getSession("ws");
+
+        Future<Session> waiting = executor.submit(new Callable<Session>() {
+            public Session call() {
+                PooledSessionFactory.Scope scope = factory.openScope();
+                try {
+                    return scope.getSession("ws");
+                } finally {
+                    scope.close();
+                }
+            }
+        });
+        while (factory.getWaitCount() == 0) {
+            Thread.sleep(10);
+        }
+        assertFalse(waiting.isDone());
+
+        first.close();
+        assertSame(session, waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(1, factory.getLoginCount());
+        assertEquals(0, factory.getTimeoutCount());
+    }
+
+    @Test
+    public void unsavedChangesAreDiscardedOnReturn() {
+        factory = new PooledSessionFactory(repository(), credentials);
+
+        PooledSessionFactory.Scope first = factory.openScope();
+        Session session = first.getSession("ws");
+        logins.get(0).pendingChanges = true;
+        first.close();
+
+        assertEquals(1, logins.get(0).refreshes);
+        PooledSessionFactory.Scope second = factory.openScope();
+        Session reused = second.getSession("ws");
+        assertSame(session, reused);
+        assertFalse(logins.get(0).pendingChanges);
+        second.close();
+    }
+
+    @Test
+    public void sessionFailingRefreshIsDiscarded() {
+        factory = new PooledSessionFactory(repository(), credentials);
+
+        PooledSessionFactory.Scope first = factory.openScope();
+        Session session = first.getSession("ws");
+        logins.get(0).failRefresh = true;
+        first.close();
+
+        assertFalse(logins.get(0).live);
+        assertEquals(0, factory.getIdleCount("ws"));
+        assertEquals(1, factory.getDiscardCount());
+
+        PooledSessionFactory.Scope second = factory.openScope();
+        assertNotSame(session, second.getSession("ws"));
+        second.close();
+    }
+
+    @Test
+    public void idleSessionsOverMaxIdleAreLoggedOut() {
+        factory = new PooledSessionFactory(repository(), credentials, 1, 3, 100);
+
+        List<PooledSessionFactory.Scope> scopes = new ArrayList<PooledSessionFactory.Scope>();
+        for (int i = 0; i < 3; ++i) {
+            PooledSessionFactory.Scope scope = factory.openScope();
+            scope.getSession("ws");
+            scopes.add(scope);
+        }
+        for (PooledSessionFactory.Scope scope : scopes) {
+            scope.close();
+        }
+
+        assertEquals(1, factory.getIdleCount("ws"));
+        assertEquals(2, factory.getDiscardCount());
+        assertEquals(2, countLoggedOut());
+        // sessions returned once the pool is full are the ones logged out
+        assertTrue(logins.get(0).live);
+    }
+
+    @Test
+    public void deadIdleSessionIsNotReused() {
+        factory = new PooledSessionFactory(repository(), credentials);
+
+        PooledSessionFactory.Scope first = factory.openScope();
+        Session session = first.getSession("ws");
+        first.close();
+        session.logout();
+
+        PooledSessionFactory.Scope second = factory.openScope();
+        assertNotSame(session, second.getSession("ws"));
+        second.close();
+        assertEquals(2, factory.getLoginCount());
+        assertEquals(1, factory.getDiscardCount());
+    }
+
+    @Test
+    public void closeLogsOutIdleAndReturnedSessions() {
+        factory = new PooledSessionFactory(repository(), credentials);
+
+        PooledSessionFactory.Scope first = factory.openScope();
+        first.getSession("ws");
+        first.close();
+        PooledSessionFactory.Scope second = factory.openScope();
+        second.getSession("ws");
+        second.getSession("other");
+
+        factory.close();
+        second.close();
+
+        assertEquals(2, logins.size());
+        assertEquals(2, countLoggedOut());
+        assertEquals(0, factory.getIdleCount("ws"));
+        assertEquals(0, factory.getIdleCount("other"));
+    }
+
+    private int countLoggedOut() {
+        int result = 0;
+        for (FakeSession session : logins) {
+            if (!session.live) {
+                ++result;
+            }
+        }
+        return result;
+    }
+
+    private Repository repository() {
+        return (Repository) Proxy.newProxyInstance(Repository.class.getClassLoader(), new Class[]{Repository.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("login")) {
+                            FakeSession session = new FakeSession();
+                            synchronized (logins) {
+                                logins.add(session);
+                            }
+                            return session.proxy;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static class FakeSession implements InvocationHandler {
+        private final Session proxy = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                new Class[]{Session.class}, this);
+
+        private volatile boolean live = true;
+        private volatile boolean pendingChanges;
+        private volatile boolean failRefresh;
+        private volatile int refreshes;
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("isLive")) {
+                return live;
+            } else if (name.equals("logout")) {
+                live = false;
+                return null;
+            } else if (name.equals("hasPendingChanges")) {
+                return pendingChanges;
+            } else if (name.equals("refresh")) {
+                if (failRefresh) {
+                    throw new RepositoryException("refresh failed");
+                }
+                ++refreshes;
+                if (!(Boolean) args[0]) {
+                    pendingChanges = false;
+                }
+                return null;
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.brixcms.Brix;
+import org.brixcms.auth.AuthorizationStrategy;
+import org.brixcms.config.BrixConfig;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.workspace.WorkspaceManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SessionScopeTest {
+    private PooledSessionFactory factory;
+
+    private Brix brix;
+
+    private WicketTester tester;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @Before
+    public void start() {
+        factory = new PooledSessionFactory(proxy(Repository.class), new SimpleCredentials("admin",
+                "admin".toCharArray()));
+        brix = new Brix(new BrixConfig(factory, proxy(WorkspaceManager.class), null)) {
+            @Override
+            public AuthorizationStrategy newAuthorizationStrategy() {
+                return null;
+            }
+        };
+        tester = new WicketTester(new MockApplication() {
+            @Override
+            protected void init() {
+                super.init();
+                brix.attachTo(this);
+            }
+        });
+    }
+
+    @After
+    public void stop() {
+        executor.shutdownNow();
+        tester.destroy();
+        factory.close();
+    }
+
+    @Test
+    public void sessionIsSharedWithinRequestAndReturnedOnDetach() {
+        JcrSession session = brix.getCurrentSession("ws");
+        assertSame(session, brix.getCurrentSession("ws"));
+        assertNotSame(session, brix.getCurrentSession("other"));
+        assertEquals(1, factory.getActiveCount("ws"));
+
+        tester.getRequestCycle().detach();
+
+        assertEquals(0, factory.getActiveCount("ws"));
+        assertEquals(0, factory.getActiveCount("other"));
+        assertEquals(1, factory.getIdleCount("ws"));
+        assertEquals(2, factory.getLoginCount());
+    }
+
+    @Test
+    public void closedScopeRefusesSessions() {
+        SessionScope scope = SessionScope.get(brix);
+        scope.getSession("ws");
+        SessionScope.close(tester.getRequestCycle());
+        try {
+            scope.getSession("ws");
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertNotSame(scope, SessionScope.get(brix));
+    }
+
+    @Test
+    public void otherThreadsAreRefused() throws Exception {
+        final SessionScope scope = SessionScope.get(brix);
+        scope.getSession("ws");
+        try {
+            executor.submit(new Callable<JcrSession>() {
+                public JcrSession call() {
+                    return scope.getSession("ws");
+                }
+            }).get();
+            fail("expected IllegalStateException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, factory.getBorrowCount());
+    }
+
+    @Test
+    public void boundThreadUsesSessionsOfRequest() throws Exception {
+        final SessionScope scope = SessionScope.get(brix);
+        final JcrSession session = brix.getCurrentSession("ws");
+        JcrSession helper = executor.submit(scope.wrap(new Callable<JcrSession>() {
+            public JcrSession call() {
+                assertSame(scope, SessionScope.get(brix));
+                return brix.getCurrentSession("ws");
+            }
+        })).get();
+        assertSame(session, helper);
+
+        // the request thread has the scope back
+        assertSame(session, brix.getCurrentSession("ws"));
+        assertEquals(1, factory.getBorrowCount());
+
+        tester.getRequestCycle().detach();
+        assertEquals(0, factory.getActiveCount("ws"));
+    }
+
+    @Test
+    public void requestThreadIsRefusedWhileScopeIsBound() throws Exception {
+        final SessionScope scope = SessionScope.get(brix);
+        final CountDownLatch bound = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<?> task = executor.submit(scope.wrap(new Runnable() {
+            public void run() {
+                bound.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }));
+        assertTrue(bound.await(5, TimeUnit.SECONDS));
+        try {
+            scope.getSession("ws");
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            release.countDown();
+        }
+        task.get();
+        assertNotNull(scope.getSession("ws"));
+    }
+
+    @Test
+    public void parallelTasksTakeTurns() throws Exception {
+        SessionScope scope = SessionScope.get(brix);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        List<Future<JcrSession>> tasks = new ArrayList<Future<JcrSession>>();
+        for (int i = 0; i < 4; ++i) {
+            tasks.add(executor.submit(scope.wrap(new Callable<JcrSession>() {
+                public JcrSession call() throws Exception {
+                    if (running.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    try {
+                        Thread.sleep(20);
+                        return brix.getCurrentSession("ws");
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }
+            })));
+        }
+        JcrSession first = tasks.get(0).get();
+        for (Future<JcrSession> task : tasks) {
+            assertSame(first, task.get());
+        }
+        assertEquals(0, overlaps.get());
+        assertEquals(1, factory.getBorrowCount());
+    }
+
+    @Test
+    public void scopesAreKeptPerBrix() {
+        Brix other = new Brix(new BrixConfig(factory, proxy(WorkspaceManager.class), null)) {
+            @Override
+            public AuthorizationStrategy newAuthorizationStrategy() {
+                return null;
+            }
+        };
+        SessionScope scope = SessionScope.get(brix);
+        scope.getSession("ws");
+        SessionScope otherScope = SessionScope.get(other);
+        otherScope.getSession("ws");
+        assertNotSame(scope, otherScope);
+        assertSame(scope, SessionScope.get(brix));
+        assertEquals(2, factory.getActiveCount("ws"));
+
+        tester.getRequestCycle().detach();
+
+        assertEquals(0, factory.getActiveCount("ws"));
+    }
+
+    private static <T> T proxy(final Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("login")) {
+                    return session();
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                } else if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + name);
+            }
+        }));
+    }
+
+    private static Session session() {
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class[]{Session.class},
+                new InvocationHandler() {
+                    private boolean live = true;
+
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("isLive")) {
+                            return live;
+                        } else if (name.equals("logout")) {
+                            live = false;
+                            return null;
+                        } else if (name.equals("refresh")) {
+                            return null;
+                        } else if (name.equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        } else if (name.equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        throw new UnsupportedOperationException("Session." + name);
+                    }
+                });
+    }
+}
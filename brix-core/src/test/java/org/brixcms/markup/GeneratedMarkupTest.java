@@ -0,0 +1,132 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.markup;
+
+import org.brixcms.markup.tag.Item;
+import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.simple.SimpleComment;
+import org.brixcms.markup.tag.simple.SimpleTag;
+import org.brixcms.markup.tag.simple.SimpleText;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GeneratedMarkupTest {
+    @Test
+    public void rendersItemsUnchanged() {
+        List<Item> items = page(template("head"), content("a", 50), template("tail"));
+        GeneratedMarkup markup = new GeneratedMarkup(new ListMarkupSource(items, "<!DOCTYPE html>"));
+        assertEquals(render(items, "<!DOCTYPE html>"), markup.render(new BitSet()));
+    }
+
+    @Test
+    public void pagesShareChunksOfTheirTemplate() {
+        List<Item> head = template("head");
+        List<Item> tail = template("tail");
+        GeneratedMarkup page1 = new GeneratedMarkup(new ListMarkupSource(page(head, content("a", 50), tail), null));
+        GeneratedMarkup page2 = new GeneratedMarkup(new ListMarkupSource(page(head, content("bb", 70), tail), null));
+
+        Map<String, Boolean> chunks1 = new IdentityHashMap<String, Boolean>();
+        int length1 = 0;
+        for (String chunk : page1.getStaticChunks()) {
+            chunks1.put(chunk, Boolean.TRUE);
+            length1 += chunk.length();
+        }
+        int shared = 0;
+        for (String chunk : page2.getStaticChunks()) {
+            if (chunks1.containsKey(chunk)) {
+                shared += chunk.length();
+            }
+        }
+
+        int templateLength = render(head, null).length() + render(tail, null).length();
+        // all template markup except the chunks bordering page content is the same instance
+        assertTrue("shared " + shared + " of " + templateLength, shared > templateLength * 3 / 4);
+        assertTrue(shared < length1);
+    }
+
+    private static List<Item> page(List<Item> head, List<Item> content, List<Item> tail) {
+        List<Item> items = new ArrayList<Item>(head);
+        items.addAll(content);
+        items.addAll(tail);
+        return items;
+    }
+
+    private static List<Item> template(String name) {
+        List<Item> items = new ArrayList<Item>();
+        for (int i = 0; i < 400; ++i) {
+            Map<String, String> attributes = new HashMap<String, String>();
+            attributes.put("class", name + "-" + i);
+            items.add(new SimpleTag("li", Tag.Type.OPEN, attributes));
+            items.add(new SimpleText("Template " + name + " item " + i));
+            items.add(new SimpleTag("li", Tag.Type.CLOSE, Collections.<String, String>emptyMap()));
+            if (i % 50 == 0) {
+                items.add(new SimpleComment(" section " + i + " "));
+            }
+        }
+        return items;
+    }
+
+    private static List<Item> content(String name, int count) {
+        List<Item> items = new ArrayList<Item>();
+        for (int i = 0; i < count; ++i) {
+            items.add(new SimpleText("<p>Content " + name + " " + i + "</p>"));
+        }
+        return items;
+    }
+
+    private static String render(List<Item> items, String doctype) {
+        return new MarkupRenderer(items, doctype) {
+            @Override
+            void postprocessTagAttributes(Tag tag, Map<String, String> attributes) {
+            }
+        }.render();
+    }
+
+    private static class ListMarkupSource implements MarkupSource {
+        private final Iterator<Item> iterator;
+        private final String doctype;
+
+        ListMarkupSource(List<Item> items, String doctype) {
+            this.iterator = items.iterator();
+            this.doctype = doctype;
+        }
+
+        public String getDoctype() {
+            return doctype;
+        }
+
+        public Object getExpirationToken() {
+            return null;
+        }
+
+        public boolean isMarkupExpired(Object expirationToken) {
+            return false;
+        }
+
+        public Item nextMarkupItem() {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+}
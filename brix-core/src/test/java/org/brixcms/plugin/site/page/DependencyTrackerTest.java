@@ -0,0 +1,201 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.markup.ExpirationToken;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DependencyTrackerTest {
+    /**
+     * Page <code>a</code> references page <code>b</code> through a page tile, changing whether <code>b</code>
+     * requires SSL must expire the cached decision of <code>a</code>.
+     */
+    @Test
+    public void changeOfReferencedPageExpiresEntry() {
+        Index index = new Index();
+        Page b = index.page("b", false, null);
+        Page a = index.page("a", false, b);
+
+        assertFalse(index.requiresSSL(a));
+        assertEquals(2, index.computations);
+
+        // cached
+        assertFalse(index.requiresSSL(a));
+        assertEquals(2, index.computations);
+
+        b.setRequiresSSL(true);
+        assertTrue(index.requiresSSL(a));
+    }
+
+    @Test
+    public void dependenciesAreTransitive() {
+        Index index = new Index();
+        Page c = index.page("c", false, null);
+        Page b = index.page("b", false, c);
+        Page a = index.page("a", false, b);
+
+        assertFalse(index.requiresSSL(a));
+        c.setRequiresSSL(true);
+        assertTrue(index.requiresSSL(a));
+    }
+
+    @Test
+    public void changeOfUnrelatedPageKeepsEntry() {
+        Index index = new Index();
+        Page b = index.page("b", false, null);
+        Page a = index.page("a", false, b);
+        Page other = index.page("other", false, null);
+
+        index.requiresSSL(a);
+        index.requiresSSL(other);
+        int computations = index.computations;
+
+        other.setRequiresSSL(true);
+        assertFalse(index.requiresSSL(a));
+        assertEquals(computations, index.computations);
+    }
+
+    @Test
+    public void untrackedDependencyIsNotCached() {
+        Index index = new Index();
+        Page b = index.page("b", false, null);
+        b.tracked = false;
+        Page a = index.page("a", false, b);
+
+        assertFalse(index.requiresSSL(a));
+        assertFalse(index.entries.containsKey("a"));
+        b.setRequiresSSL(true);
+        assertTrue(index.requiresSSL(a));
+    }
+
+    @Test
+    public void endRestoresOuterTracker() {
+        DependencyTracker outer = DependencyTracker.begin();
+        try {
+            DependencyTracker inner = DependencyTracker.begin();
+            inner.end();
+            Version version = new Version();
+            DependencyTracker.depend(version.stamp());
+            version.bump();
+            assertTrue(outer.isExpired());
+            assertFalse(inner.isExpired());
+        } finally {
+            outer.end();
+        }
+        // no tracker, nothing recorded
+        DependencyTracker.depend(new Version().stamp());
+    }
+
+    private static class Version {
+        private long value;
+
+        void bump() {
+            ++value;
+        }
+
+        ExpirationToken stamp() {
+            final long stamped = value;
+            return new ExpirationToken() {
+                public boolean isExpired() {
+                    return value != stamped;
+                }
+            };
+        }
+    }
+
+    private static class Page {
+        private final String name;
+        private final Version version = new Version();
+        private final Page referenced;
+        private boolean requiresSSL;
+        private boolean tracked = true;
+
+        Page(String name, boolean requiresSSL, Page referenced) {
+            this.name = name;
+            this.requiresSSL = requiresSSL;
+            this.referenced = referenced;
+        }
+
+        void setRequiresSSL(boolean requiresSSL) {
+            this.requiresSSL = requiresSSL;
+            version.bump();
+        }
+    }
+
+    private static class Entry implements ExpirationToken {
+        private final ExpirationToken stamp;
+        private final DependencyTracker dependencies;
+        private final boolean requiresSSL;
+
+        Entry(ExpirationToken stamp, DependencyTracker dependencies, boolean requiresSSL) {
+            this.stamp = stamp;
+            this.dependencies = dependencies;
+            this.requiresSSL = requiresSSL;
+        }
+
+        public boolean isExpired() {
+            return stamp.isExpired() || dependencies.isExpired();
+        }
+    }
+
+    /**
+     * Uses the tracker the way {@link TileIndex} does, a page referencing another page asks the index about it the
+     * way the page tile does.
+     */
+    private static class Index {
+        private final Map<String, Entry> entries = new HashMap<String, Entry>();
+        private int computations;
+
+        Page page(String name, boolean requiresSSL, Page referenced) {
+            return new Page(name, requiresSSL, referenced);
+        }
+
+        boolean requiresSSL(Page page) {
+            if (!page.tracked) {
+                DependencyTracker.dependOnUntracked();
+                return page.requiresSSL || (page.referenced != null && requiresSSL(page.referenced));
+            }
+            Entry entry = entries.get(page.name);
+            if (entry == null || entry.isExpired()) {
+                ExpirationToken stamp = page.version.stamp();
+                DependencyTracker dependencies = DependencyTracker.begin();
+                try {
+                    ++computations;
+                    boolean requiresSSL = page.requiresSSL;
+                    if (!requiresSSL && page.referenced != null) {
+                        requiresSSL = requiresSSL(page.referenced);
+                    }
+                    entry = new Entry(stamp, dependencies, requiresSSL);
+                } finally {
+                    dependencies.end();
+                }
+                if (dependencies.isTracked()) {
+                    entries.put(page.name, entry);
+                } else {
+                    entries.remove(page.name);
+                    DependencyTracker.dependOnUntracked();
+                }
+            }
+            DependencyTracker.depend(entry);
+            return entry.requiresSSL;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures tokenizing of container markup the way {@link ParsedContainer} does it: the markup is decoded from a
+ * stream and strings are created for the text, comments, tag names and attributes. The markup is a generated page
+ * with paragraphs, links, tiles, comments and a script.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.brixcms.plugin.site.page.MarkupTokenizerBenchmark</code> or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkupTokenizerBenchmark {
+    /**
+     * Number of repeated blocks in the markup, each about 600 bytes
+     */
+    @Param({"10", "100", "1000"})
+    private int blocks;
+
+    private byte[] markup;
+
+    @Setup
+    public void setup() {
+        StringBuilder b = new StringBuilder("<!DOCTYPE html>\n<html><head><title>Benchmark</title>\n");
+        b.append("<script type=\"text/javascript\">function f(a, b) { return a < b && b > 0; }</script>\n");
+        b.append("</head><body>\n");
+        for (int i = 0; i < blocks; ++i) {
+            b.append("<div class=\"block\" id=\"block").append(i).append("\">\n");
+            b.append("<!-- block ").append(i).append(" -->\n");
+            b.append("<h2>Heading ").append(i).append("</h2>\n");
+            b.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ");
+            b.append("ut labore et dolore magna aliqua. <a href=\"/page").append(i).append("\" title='Page'>link</a>");
+            b.append(" Ut enim ad minim veniam, quis nostrud exercitation.<br/></p>\n");
+            b.append("<brix:tile id=\"tile").append(i).append("\"/>\n");
+            b.append("<input type=checkbox checked name=\"c").append(i).append("\">\n");
+            b.append("</div>\n");
+        }
+        b.append("</body></html>\n");
+        markup = b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole blackhole) throws IOException {
+        MarkupTokenizer tokenizer = MarkupTokenizer.open(new ByteArrayInputStream(markup), "UTF-8", markup.length);
+        MarkupTokenizer.Token token;
+        while ((token = tokenizer.next()) != null) {
+            switch (token) {
+                case TEXT:
+                case DOCTYPE:
+                    blackhole.consume(tokenizer.getText());
+                    break;
+                case COMMENT:
+                    blackhole.consume(tokenizer.getCommentText());
+                    break;
+                case TAG:
+                    blackhole.consume(tokenizer.getTagName());
+                    if (!tokenizer.isCloseTag()) {
+                        blackhole.consume(tokenizer.getAttributes());
+                    }
+                    break;
+            }
+        }
+        tokenizer.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MarkupTokenizerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
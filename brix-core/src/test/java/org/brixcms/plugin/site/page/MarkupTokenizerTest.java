@@ -0,0 +1,251 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.plugin.site.page.MarkupTokenizer.Token;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MarkupTokenizerTest {
+    @Test
+    public void comment() throws IOException {
+        MarkupTokenizer tokenizer = tokenizer("a<!-- x < y -->b");
+        assertEquals(Token.TEXT, tokenizer.next());
+        assertEquals("a", tokenizer.getText());
+        assertEquals(Token.COMMENT, tokenizer.next());
+        assertEquals(" x < y ", tokenizer.getCommentText());
+        assertEquals("<!-- x < y -->", tokenizer.getText());
+        assertEquals(Token.TEXT, tokenizer.next());
+        assertEquals("b", tokenizer.getText());
+        assertNull(tokenizer.next());
+    }
+
+    @Test
+    public void unterminatedCommentIsText() throws IOException {
+        assertEquals("<!-- x <b", text("<!-- x <b"));
+    }
+
+    @Test
+    public void cdataIsText() throws IOException {
+        MarkupTokenizer tokenizer = tokenizer("<![CDATA[<p>x</p>]]><p>");
+        assertEquals(Token.TEXT, tokenizer.next());
+        assertEquals("<![CDATA[<p>x</p>]]>", tokenizer.getText());
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("p", tokenizer.getTagName());
+        assertNull(tokenizer.next());
+    }
+
+    @Test
+    public void doctypeAndProcessingInstruction() throws IOException {
+        MarkupTokenizer tokenizer = tokenizer("<?xml version=\"1.0\"?><!doctype html>");
+        assertEquals(Token.TEXT, tokenizer.next());
+        assertEquals("<?xml version=\"1.0\"?>", tokenizer.getText());
+        assertEquals(Token.DOCTYPE, tokenizer.next());
+        assertEquals("<!doctype html>", tokenizer.getText());
+        assertNull(tokenizer.next());
+    }
+
+    @Test
+    public void attributes() throws IOException {
+        MarkupTokenizer tokenizer = tokenizer("<INPUT type=text checked value = 'a \"b\"' data-x=\"1\">");
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("input", tokenizer.getTagName());
+        assertFalse(tokenizer.isCloseTag());
+        assertFalse(tokenizer.isOpenCloseTag());
+        Map<String, String> attributes = tokenizer.getAttributes();
+        assertEquals(4, attributes.size());
+        assertEquals("text", attributes.get("type"));
+        assertEquals("checked", attributes.get("checked"));
+        assertEquals("a \"b\"", attributes.get("value"));
+        assertEquals("1", attributes.get("data-x"));
+    }
+
+    @Test
+    public void selfClosingAndCloseTags() throws IOException {
+        MarkupTokenizer tokenizer = tokenizer("<br/><img src=a.png /></DIV >");
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("br", tokenizer.getTagName());
+        assertTrue(tokenizer.isOpenCloseTag());
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("img", tokenizer.getTagName());
+        assertTrue(tokenizer.isOpenCloseTag());
+        assertEquals("a.png", tokenizer.getAttributes().get("src"));
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("div", tokenizer.getTagName());
+        assertTrue(tokenizer.isCloseTag());
+        assertFalse(tokenizer.isOpenCloseTag());
+        assertNull(tokenizer.next());
+    }
+
+    @Test
+    public void malformedTagsAreText() throws IOException {
+        assertEquals("a < b <> c </ d <p title=\"x", text("a < b <> c </ d <p title=\"x"));
+
+        MarkupTokenizer tokenizer = tokenizer("1 < 2<b>");
+        assertEquals(Token.TEXT, tokenizer.next());
+        assertEquals("1 < 2", tokenizer.getText());
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("b", tokenizer.getTagName());
+    }
+
+    @Test
+    public void scriptAndStyleBodiesAreText() throws IOException {
+        MarkupTokenizer tokenizer = new MarkupTokenizer(
+                new StringReader("<script>if (a<b) { x('<p>'); }</SCRIPT><style>p>a{}</style>"), 1024);
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("script", tokenizer.getTagName());
+        assertEquals(Token.TEXT, tokenizer.next());
+        assertEquals("if (a<b) { x('<p>'); }", tokenizer.getText());
+        assertEquals(Token.TAG, tokenizer.next());
+        assertTrue(tokenizer.isCloseTag());
+        assertEquals("script", tokenizer.getTagName());
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("style", tokenizer.getTagName());
+        assertEquals(Token.TEXT, tokenizer.next());
+        assertEquals("p>a{}", tokenizer.getText());
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("style", tokenizer.getTagName());
+        assertNull(tokenizer.next());
+    }
+
+    @Test
+    public void readsIncrementally() throws IOException {
+        StringBuilder markup = new StringBuilder();
+        for (int i = 0; i < 200; ++i) {
+            markup.append("<p class=\"c").append(i).append("\">text ").append(i).append("</p><!--").append(i)
+                    .append("-->");
+        }
+        markup.append("<script>");
+        for (int i = 0; i < 100; ++i) {
+            markup.append("var x").append(i).append(" = a < b;");
+        }
+        markup.append("</script>");
+
+        List<String> expected = tokens(new MarkupTokenizer(new StringReader(markup.toString()), 1 << 16));
+        CountingReader reader = new CountingReader(markup.toString());
+        MarkupTokenizer tokenizer = new MarkupTokenizer(reader, 16);
+        Token token;
+        StringBuilder text = new StringBuilder();
+        List<String> actual = new ArrayList<String>();
+        int longestText = 0;
+        while ((token = tokenizer.next()) != null) {
+            // only a bounded lookahead is read ahead of the current token
+            assertTrue(reader.position - text.length() < 64);
+            text.append(tokenizer.getText());
+            longestText = Math.max(longestText, tokenizer.getText().length());
+            add(actual, token, tokenizer);
+        }
+        assertEquals(markup.toString(), text.toString());
+        assertTrue(longestText < 64);
+        assertEquals(merge(expected), merge(actual));
+    }
+
+    @Test
+    public void decodesStream() throws IOException {
+        byte[] bytes = "<p title=\"žluťoučký\">kůň</p>".getBytes(StandardCharsets.UTF_8);
+        MarkupTokenizer tokenizer = MarkupTokenizer.open(new ByteArrayInputStream(bytes), "UTF-8", bytes.length);
+        assertEquals(Token.TAG, tokenizer.next());
+        assertEquals("žluťoučký", tokenizer.getAttributes().get("title"));
+        assertEquals(Token.TEXT, tokenizer.next());
+        assertEquals("kůň", tokenizer.getText());
+    }
+
+    private static MarkupTokenizer tokenizer(String markup) {
+        return new MarkupTokenizer(new StringReader(markup), 16);
+    }
+
+    /**
+     * @return concatenated text of the markup, fails if it contains other tokens
+     */
+    private static String text(String markup) throws IOException {
+        MarkupTokenizer tokenizer = tokenizer(markup);
+        StringBuilder text = new StringBuilder();
+        Token token;
+        while ((token = tokenizer.next()) != null) {
+            assertEquals(Token.TEXT, token);
+            text.append(tokenizer.getText());
+        }
+        return text.toString();
+    }
+
+    private static List<String> tokens(MarkupTokenizer tokenizer) throws IOException {
+        List<String> result = new ArrayList<String>();
+        Token token;
+        while ((token = tokenizer.next()) != null) {
+            add(result, token, tokenizer);
+        }
+        return result;
+    }
+
+    private static void add(List<String> result, Token token, MarkupTokenizer tokenizer) {
+        if (token == Token.TAG) {
+            result.add(token + " " + tokenizer.getTagName() + " " + tokenizer.getAttributes());
+        } else {
+            result.add(token + " " + tokenizer.getText());
+        }
+    }
+
+    /**
+     * Merges subsequent text tokens, the tokenizer may split long text.
+     */
+    private static List<String> merge(List<String> tokens) {
+        List<String> result = new ArrayList<String>();
+        String text = null;
+        for (String token : tokens) {
+            if (token.startsWith(Token.TEXT + " ")) {
+                text = text == null ? token : text + token.substring(Token.TEXT.name().length() + 1);
+            } else {
+                if (text != null) {
+                    result.add(text);
+                    text = null;
+                }
+                result.add(token);
+            }
+        }
+        if (text != null) {
+            result.add(text);
+        }
+        return result;
+    }
+
+    private static class CountingReader extends FilterReader {
+        private int position = 0;
+
+        CountingReader(String s) {
+            super(new StringReader(s));
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int read = super.read(cbuf, off, len);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.brixcms.jcr.JcrSessionFactory;
+import org.brixcms.jcr.WorkspaceChangeNotifier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.*;
+
+public class PageOutputCacheTest {
+    private WicketTester tester;
+
+    private PageOutputCache cache;
+
+    @Before
+    public void start() {
+        tester = new WicketTester(new MockApplication());
+        JcrSessionFactory factory = (JcrSessionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{JcrSessionFactory.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        WorkspaceChangeNotifier notifier = new WorkspaceChangeNotifier(factory);
+        cache = new PageOutputCache(notifier, new ContainerVersions(notifier));
+        tester.getRequest().setMethod("GET");
+    }
+
+    @After
+    public void stop() {
+        tester.destroy();
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertFalse(cache.isEnabled());
+        assertFalse(cache.isCacheable(tester.getRequestCycle()));
+    }
+
+    @Test
+    public void anonymousGetIsCacheable() {
+        cache.setEnabled(true);
+        assertTrue(tester.getSession().isTemporary());
+        assertTrue(cache.isCacheable(tester.getRequestCycle()));
+    }
+
+    @Test
+    public void boundSessionBypassesCache() {
+        cache.setEnabled(true);
+        tester.getSession().bind();
+        assertFalse(cache.isCacheable(tester.getRequestCycle()));
+    }
+
+    @Test
+    public void postBypassesCache() {
+        cache.setEnabled(true);
+        tester.getRequest().setMethod("POST");
+        assertFalse(cache.isCacheable(tester.getRequestCycle()));
+    }
+}
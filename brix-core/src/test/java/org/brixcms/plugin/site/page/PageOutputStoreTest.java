@@ -0,0 +1,153 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.markup.ExpirationToken;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PageOutputStoreTest {
+    @Test
+    public void missThenHit() {
+        PageOutputStore store = new PageOutputStore(1024 * 1024);
+        assertNull(store.get("ws:/page"));
+
+        PageOutput output = output("<html/>");
+        store.put("ws:/page", output, later());
+        assertSame(output, store.get("ws:/page"));
+        assertNull(store.get("ws:/other"));
+    }
+
+    @Test
+    public void expiredTokenInvalidatesOutput() {
+        PageOutputStore store = new PageOutputStore(1024 * 1024);
+        Token page = new Token();
+        Token global = new Token();
+        store.put("ws:/page", output("<html/>"), later(), page, global);
+        assertNotNull(store.get("ws:/page"));
+
+        global.expired = true;
+        assertNull(store.get("ws:/page"));
+        assertEquals(0, store.size());
+        assertEquals(0, store.getWeight());
+    }
+
+    @Test
+    public void outputExpiresAfterTimeToLive() {
+        PageOutputStore store = new PageOutputStore(1024 * 1024);
+        store.put("ws:/page", output("<html/>"), System.currentTimeMillis() - 1);
+        assertNull(store.get("ws:/page"));
+    }
+
+    @Test
+    public void leastRecentlyUsedOutputIsEvicted() {
+        PageOutput a = output("aaaa");
+        long weight = 2L * "ws:/a".length() + a.getWeight();
+        PageOutputStore store = new PageOutputStore(2 * weight);
+        store.put("ws:/a", a, later());
+        store.put("ws:/b", output("bbbb"), later());
+
+        // a is used after b, so b is evicted
+        assertNotNull(store.get("ws:/a"));
+        store.put("ws:/c", output("cccc"), later());
+
+        assertNotNull(store.get("ws:/a"));
+        assertNull(store.get("ws:/b"));
+        assertNotNull(store.get("ws:/c"));
+        assertEquals(1, store.getEvictionCount());
+        assertEquals(2 * weight, store.getWeight());
+    }
+
+    @Test
+    public void outputLargerThanStoreIsNotKept() {
+        PageOutputStore store = new PageOutputStore(64);
+        store.put("ws:/small", output("s"), later());
+        store.put("ws:/large", output("a large page that does not fit"), later());
+        assertNull(store.get("ws:/large"));
+        assertNotNull(store.get("ws:/small"));
+    }
+
+    @Test
+    public void replacingOutputKeepsWeight() {
+        PageOutputStore store = new PageOutputStore(1024 * 1024);
+        store.put("ws:/page", output("first"), later());
+        long weight = store.getWeight();
+        PageOutput second = output("other");
+        store.put("ws:/page", second, later());
+        assertSame(second, store.get("ws:/page"));
+        assertEquals(weight, store.getWeight());
+    }
+
+    @Test
+    public void removeAllRemovesWorkspace() {
+        PageOutputStore store = new PageOutputStore(1024 * 1024);
+        store.put("ws1:/page", output("1"), later());
+        store.put("ws2:/page", output("2"), later());
+        store.removeAll("ws1:");
+        assertNull(store.get("ws1:/page"));
+        assertNotNull(store.get("ws2:/page"));
+    }
+
+    @Test
+    public void shrinkingEvicts() {
+        PageOutputStore store = new PageOutputStore(1024 * 1024);
+        store.put("ws:/a", output("a"), later());
+        store.put("ws:/b", output("b"), later());
+        store.setMaxWeight(store.getWeight() - 1);
+        assertNull(store.get("ws:/a"));
+        assertNotNull(store.get("ws:/b"));
+    }
+
+    @Test
+    public void headersAreRecorded() {
+        PageOutput.Builder builder = new PageOutput.Builder();
+        builder.setStatus(404);
+        builder.setContentType("text/html; charset=UTF-8");
+        builder.setHeader("Cache-Control", "no-cache");
+        builder.setHeader("cache-control", "no-store");
+        builder.addHeader("Vary", "Accept");
+        builder.addHeader("Vary", "User-Agent");
+        builder.setDateHeader("Expires", 0);
+        PageOutput output = builder.build("missing");
+
+        assertTrue(builder.isReplayable());
+        assertEquals(404, output.getStatus());
+        assertEquals("text/html; charset=UTF-8", output.getContentType());
+        assertEquals(4, output.getHeaders().size());
+        assertEquals("no-store", output.getHeaders().get(0).value);
+        assertTrue(output.getHeaders().get(1).add);
+        assertTrue(output.getHeaders().get(3).isDate());
+
+        builder.setNotReplayable();
+        assertFalse(builder.isReplayable());
+    }
+
+    private static PageOutput output(String text) {
+        return new PageOutput.Builder().build(text);
+    }
+
+    private static long later() {
+        return System.currentTimeMillis() + 60000;
+    }
+
+    private static class Token implements ExpirationToken {
+        private boolean expired;
+
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+}
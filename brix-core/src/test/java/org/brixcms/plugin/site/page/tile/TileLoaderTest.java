@@ -0,0 +1,174 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.page.tile;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class TileLoaderTest {
+    private static final long SLOW_RESPONSE = 3000;
+
+    private HttpServer server;
+
+    private TileLoader loader;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/fast", new Respond(0));
+        server.createContext("/slow", new Respond(SLOW_RESPONSE));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        loader = new TileLoader(4);
+    }
+
+    @After
+    public void stop() {
+        release.countDown();
+        loader.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void loadsRunInParallelAndSlowLoadsTimeOut() throws Exception {
+        long start = System.nanoTime();
+        TileLoader.Load<String> fast = loader.start(fetch("/fast"), 2000);
+        TileLoader.Load<String> slow1 = loader.start(fetch("/slow"), 500);
+        TileLoader.Load<String> slow2 = loader.start(fetch("/slow"), 500);
+
+        assertEquals("/fast", fast.join());
+        assertTimesOut(slow1);
+        assertTimesOut(slow2);
+
+        // both deadlines ran concurrently
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("took " + elapsed + "ms", elapsed < 1500);
+        assertEquals(3, loader.getStartCount());
+        assertEquals(2, loader.getTimeoutCount());
+    }
+
+    @Test
+    public void loadsAreRejectedWhenTooManyAreRunning() throws Exception {
+        TileLoader small = new TileLoader(1);
+        try {
+            TileLoader.Load<String> slow = small.start(fetch("/slow"), 100);
+            TileLoader.Load<String> rejected = small.start(fetch("/fast"), 100);
+            try {
+                rejected.join();
+                fail();
+            } catch (RejectedExecutionException e) {
+            }
+            assertTimesOut(slow);
+            assertEquals(1, small.getRejectCount());
+        } finally {
+            small.close();
+        }
+    }
+
+    @Test
+    public void closedLoaderRejectsLoads() throws Exception {
+        TileLoader closed = new TileLoader(1);
+        closed.close();
+        try {
+            closed.start(fetch("/fast"), 100).join();
+            fail();
+        } catch (RejectedExecutionException e) {
+        }
+        assertEquals(1, closed.getRejectCount());
+        assertEquals(0, closed.getRunningCount());
+    }
+
+    @Test
+    public void failuresAreReported() throws Exception {
+        TileLoader.Load<String> missing = loader.start(fetch("/missing"), 2000);
+        try {
+            missing.join();
+            fail();
+        } catch (IOException e) {
+        }
+        assertEquals(1, loader.getFailureCount());
+    }
+
+    private static void assertTimesOut(TileLoader.Load<?> load) throws Exception {
+        try {
+            load.join();
+            fail();
+        } catch (TimeoutException e) {
+        }
+    }
+
+    private Callable<String> fetch(String path) {
+        final String url = "http://127.0.0.1:" + server.getAddress().getPort() + path;
+        return new Callable<String>() {
+            public String call() throws Exception {
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                InputStream in = connection.getInputStream();
+                try {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                        out.write(buffer, 0, read);
+                    }
+                    return out.toString("UTF-8");
+                } finally {
+                    in.close();
+                }
+            }
+        };
+    }
+
+    private class Respond implements HttpHandler {
+        private final long delay;
+
+        Respond(long delay) {
+            this.delay = delay;
+        }
+
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                release.await(delay, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = exchange.getRequestURI().getPath().getBytes("UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BinaryCacheTest {
+    private static final int LENGTH = 1000;
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = File.createTempFile("binary-cache", "");
+        directory.delete();
+    }
+
+    @After
+    public void cleanup() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void entriesAreCachedAndReused() throws IOException {
+        BinaryCache cache = new BinaryCache(directory, 10 * LENGTH, LENGTH);
+
+        BinaryCache.Entry entry = cache.get("a", LENGTH, source(data(1)));
+        assertArrayEquals(data(1), read(entry.getFile()));
+        assertSame(entry, cache.get("a", LENGTH, source(data(2))));
+        entry.release();
+        entry.release();
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(LENGTH, cache.getSize());
+        assertNull(cache.get("large", LENGTH + 1, source(new byte[LENGTH + 1])));
+    }
+
+    @Test
+    public void existingFilesAreTakenOver() {
+        BinaryCache cache = new BinaryCache(directory, 10 * LENGTH, LENGTH);
+        cache.get("a", LENGTH, source(data(1))).release();
+
+        BinaryCache restarted = new BinaryCache(directory, 10 * LENGTH, LENGTH);
+        BinaryCache.Entry entry = restarted.get("a", LENGTH, source(data(2)));
+        assertEquals(1, restarted.getHitCount());
+        assertEquals(LENGTH, restarted.getSize());
+        entry.release();
+    }
+
+    @Test
+    public void pinnedEntriesAreNotEvicted() {
+        BinaryCache cache = new BinaryCache(directory, 2 * LENGTH, LENGTH);
+
+        BinaryCache.Entry a = cache.get("a", LENGTH, source(data(1)));
+        cache.get("b", LENGTH, source(data(2))).release();
+        BinaryCache.Entry c = cache.get("c", LENGTH, source(data(3)));
+
+        // b is the only entry that is not pinned
+        assertTrue(a.getFile().exists());
+        assertFalse(new File(directory, "b.bin").exists());
+        assertTrue(c.getFile().exists());
+
+        BinaryCache.Entry d = cache.get("d", LENGTH, source(data(4)));
+        // everything is pinned, the cache is over its size until entries are released
+        assertEquals(3, cache.getEntryCount());
+        assertTrue(a.getFile().exists());
+
+        a.release();
+        assertFalse(a.getFile().exists());
+        assertEquals(2 * LENGTH, cache.getSize());
+        c.release();
+        d.release();
+        assertEquals(2, cache.getEntryCount());
+    }
+
+    @Test
+    public void clearKeepsPinnedEntries() {
+        BinaryCache cache = new BinaryCache(directory, 10 * LENGTH, LENGTH);
+        BinaryCache.Entry a = cache.get("a", LENGTH, source(data(1)));
+        cache.get("b", LENGTH, source(data(2))).release();
+
+        cache.clear();
+        assertTrue(a.getFile().exists());
+        assertFalse(new File(directory, "b.bin").exists());
+        assertEquals(1, cache.getEntryCount());
+        a.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releasingTooOftenFails() {
+        BinaryCache cache = new BinaryCache(directory, 10 * LENGTH, LENGTH);
+        BinaryCache.Entry a = cache.get("a", LENGTH, source(data(1)));
+        a.release();
+        a.release();
+    }
+
+    @Test(timeout = 60000)
+    public void filesAreNotEvictedWhileRead() throws Exception {
+        // room for three of the ten keys, so nearly every miss evicts
+        final BinaryCache cache = new BinaryCache(directory, 3 * LENGTH, LENGTH);
+        final int keys = 10;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 8; ++t) {
+                final Random random = new Random(t);
+                results.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        int reads = 0;
+                        while (System.nanoTime() < deadline) {
+                            int key = random.nextInt(keys);
+                            BinaryCache.Entry entry = cache.get("k" + key, LENGTH, source(data(key)));
+                            if (entry == null) {
+                                continue;
+                            }
+                            try {
+                                // give other threads the chance to evict the entry
+                                Thread.yield();
+                                assertArrayEquals(data(key), read(entry.getFile()));
+                                ++reads;
+                            } finally {
+                                entry.release();
+                            }
+                        }
+                        return reads;
+                    }
+                }));
+            }
+            int reads = 0;
+            for (Future<Integer> result : results) {
+                reads += result.get();
+            }
+            assertTrue(reads > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(cache.getEvictionCount() > 0);
+        assertTrue(cache.getSize() <= 3 * LENGTH);
+        // every remaining entry has its file and there are no leftovers
+        File[] files = directory.listFiles();
+        assertEquals(cache.getEntryCount(), files.length);
+        for (File file : files) {
+            int key = Integer.parseInt(file.getName().substring(1, file.getName().indexOf('.')));
+            assertArrayEquals(data(key), read(file));
+        }
+    }
+
+    private static byte[] data(int key) {
+        byte[] data = new byte[LENGTH];
+        Arrays.fill(data, (byte) key);
+        return data;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] data = new byte[(int) in.length()];
+            in.readFully(data);
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static BinaryCache.Source source(final byte[] data) {
+        return new BinaryCache.Source() {
+            public InputStream open() {
+                return new ByteArrayInputStream(data);
+            }
+        };
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class CompressedResourcesTest {
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = File.createTempFile("compressed", "");
+        directory.delete();
+    }
+
+    @After
+    public void cleanup() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void variantIsGzippedData() throws IOException {
+        CompressedResources resources = new CompressedResources(directory);
+        byte[] data = text(0, 4096);
+
+        BinaryCache.Entry variant = resources.getVariants().get("hash", data.length, source(data));
+        assertNotNull(variant);
+        assertTrue(variant.getFile().length() < data.length);
+        assertArrayEquals(data, gunzip(variant.getFile()));
+        assertSame(variant, resources.getVariants().get("hash", data.length, source(data)));
+        assertEquals(1, resources.getVariants().getHitCount());
+        variant.release();
+        variant.release();
+    }
+
+    @Test
+    public void onlyMidSizedResourcesAreCompressed() {
+        CompressedResources resources = new CompressedResources(directory, 1000, 10000);
+        assertFalse(resources.isCompressedLength(10));
+        assertTrue(resources.isCompressedLength(500));
+        assertFalse(resources.isCompressedLength(1001));
+
+        assertTrue(resources.isCompressible("text/css"));
+        assertTrue(resources.isCompressible("application/javascript; charset=UTF-8"));
+        assertFalse(resources.isCompressible("image/png"));
+        assertFalse(resources.isCompressible(null));
+    }
+
+    @Test
+    public void variantsAreEvictedWhenSizeIsExceeded() throws IOException {
+        CompressedResources resources = new CompressedResources(directory, 1024 * 1024, 1024);
+        BinaryCache variants = resources.getVariants();
+
+        // random looking data does not compress, each variant takes about 600 bytes
+        BinaryCache.Entry first = variants.get("first", 600, source(noise(1, 600)));
+        first.release();
+        BinaryCache.Entry second = variants.get("second", 600, source(noise(2, 600)));
+        assertNotNull(second);
+
+        assertFalse(first.getFile().exists());
+        assertTrue(second.getFile().exists());
+        assertEquals(1, variants.getEntryCount());
+        assertEquals(1, variants.getEvictionCount());
+        assertTrue(variants.getSize() <= 1024);
+        assertArrayEquals(noise(2, 600), gunzip(second.getFile()));
+        second.release();
+    }
+
+    private static BinaryCache.Source source(final byte[] data) {
+        return new BinaryCache.Source() {
+            public InputStream open() {
+                return new ByteArrayInputStream(data);
+            }
+        };
+    }
+
+    private static byte[] text(int seed, int length) {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < length) {
+            builder.append("body { margin: ").append(seed++).append("px; }\n");
+        }
+        return builder.substring(0, length).getBytes();
+    }
+
+    private static byte[] noise(long seed, int length) {
+        byte[] data = new byte[length];
+        new java.util.Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] gunzip(File file) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.resource;
+
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConditionalRequestTest {
+    private static final Date MODIFIED = new Date(1500000000123L);
+
+    private static final String STRONG = ConditionalRequest.etag("abc", false, MODIFIED, 10);
+
+    private static final String WEAK = ConditionalRequest.etag(null, false, MODIFIED, 10);
+
+    private final Map<String, String> headers = new HashMap<String, String>();
+
+    private final Map<String, Long> dateHeaders = new HashMap<String, Long>();
+
+    @Test
+    public void etags() {
+        assertEquals("\"abc\"", STRONG);
+        assertEquals("\"abc-gz\"", ConditionalRequest.etag("abc", true, MODIFIED, 10));
+        assertEquals("W/\"1500000000123-10\"", WEAK);
+        assertEquals("W/\"0-10\"", ConditionalRequest.etag(null, false, null, 10));
+    }
+
+    @Test
+    public void ifNoneMatch() {
+        assertFalse(ConditionalRequest.isNotModified(request(), STRONG, MODIFIED));
+
+        headers.put("If-None-Match", "\"abc\"");
+        assertTrue(ConditionalRequest.isNotModified(request(), STRONG, MODIFIED));
+        // the gzip variant has its own tag
+        assertFalse(ConditionalRequest.isNotModified(request(), "\"abc-gz\"", MODIFIED));
+
+        headers.put("If-None-Match", "\"x\", W/\"abc\"");
+        assertTrue(ConditionalRequest.isNotModified(request(), STRONG, MODIFIED));
+
+        headers.put("If-None-Match", "*");
+        assertTrue(ConditionalRequest.isNotModified(request(), STRONG, MODIFIED));
+
+        headers.put("If-None-Match", "\"1500000000123-10\"");
+        assertTrue(ConditionalRequest.isNotModified(request(), WEAK, MODIFIED));
+    }
+
+    @Test
+    public void ifNoneMatchTakesPrecedenceOverIfModifiedSince() {
+        headers.put("If-None-Match", "\"other\"");
+        dateHeaders.put("If-Modified-Since", MODIFIED.getTime());
+        assertFalse(ConditionalRequest.isNotModified(request(), STRONG, MODIFIED));
+    }
+
+    @Test
+    public void ifModifiedSince() {
+        dateHeaders.put("If-Modified-Since", MODIFIED.getTime() / 1000 * 1000);
+        assertTrue(ConditionalRequest.isNotModified(request(), STRONG, MODIFIED));
+
+        dateHeaders.put("If-Modified-Since", MODIFIED.getTime() - 1000);
+        assertFalse(ConditionalRequest.isNotModified(request(), STRONG, MODIFIED));
+        assertFalse(ConditionalRequest.isNotModified(request(), STRONG, null));
+    }
+
+    @Test
+    public void ifRange() {
+        assertTrue(ConditionalRequest.isRangeAllowed(request(), STRONG, MODIFIED));
+
+        headers.put("If-Range", "\"abc\"");
+        assertTrue(ConditionalRequest.isRangeAllowed(request(), STRONG, MODIFIED));
+        assertFalse(ConditionalRequest.isRangeAllowed(request(), "\"abc-gz\"", MODIFIED));
+
+        // weak validators must not be used for ranges
+        headers.put("If-Range", "W/\"abc\"");
+        assertFalse(ConditionalRequest.isRangeAllowed(request(), STRONG, MODIFIED));
+        headers.put("If-Range", WEAK);
+        assertFalse(ConditionalRequest.isRangeAllowed(request(), WEAK, MODIFIED));
+    }
+
+    @Test
+    public void ifRangeDate() {
+        headers.put("If-Range", "Fri, 14 Jul 2017 02:40:00 GMT");
+        dateHeaders.put("If-Range", MODIFIED.getTime() / 1000 * 1000);
+        assertTrue(ConditionalRequest.isRangeAllowed(request(), STRONG, MODIFIED));
+
+        dateHeaders.put("If-Range", MODIFIED.getTime() - 1000);
+        assertFalse(ConditionalRequest.isRangeAllowed(request(), STRONG, MODIFIED));
+    }
+
+    @Test
+    public void acceptsGzip() {
+        assertFalse(ConditionalRequest.acceptsGzip(null));
+        assertTrue(ConditionalRequest.acceptsGzip("gzip, deflate"));
+        assertTrue(ConditionalRequest.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertFalse(ConditionalRequest.acceptsGzip("gzip;q=0"));
+        assertFalse(ConditionalRequest.acceptsGzip("deflate, br"));
+    }
+
+    private HttpServletRequest request() {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{HttpServletRequest.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("getHeader")) {
+                            return headers.get(args[0]);
+                        } else if (name.equals("getDateHeader")) {
+                            Long date = dateHeaders.get(args[0]);
+                            return date != null ? date : -1L;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+}
@@ -0,0 +1,350 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class StreamerTest {
+    private static final int LENGTH = 100;
+
+    private final byte[] data = new byte[LENGTH];
+
+    private final Map<String, String> requestHeaders = new HashMap<String, String>();
+
+    private final Map<String, Object> requestAttributes = new HashMap<String, Object>();
+
+    private final Map<String, String> responseHeaders = new HashMap<String, String>();
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private int status;
+
+    private String contentType;
+
+    private OutputStream out = body;
+
+    private File file;
+
+    @Before
+    public void setup() {
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+    }
+
+    @After
+    public void cleanup() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void missingOrUnknownHeaderServesEverything() {
+        assertNull(Streamer.parseRanges(null, LENGTH));
+        assertNull(Streamer.parseRanges("", LENGTH));
+        assertNull(Streamer.parseRanges("items=0-10", LENGTH));
+        // syntactically invalid ranges make the whole header invalid
+        assertNull(Streamer.parseRanges("bytes=10-5", LENGTH));
+        assertNull(Streamer.parseRanges("bytes=a-5", LENGTH));
+        assertNull(Streamer.parseRanges("bytes=-", LENGTH));
+        assertNull(Streamer.parseRanges("bytes=0-1,5", LENGTH));
+    }
+
+    @Test
+    public void suffixRanges() {
+        assertRanges(Streamer.parseRanges("bytes=-10", LENGTH), 90, 99);
+        // suffix longer than the content is the whole content
+        assertRanges(Streamer.parseRanges("bytes=-500", LENGTH), 0, 99);
+        // open ended range
+        assertRanges(Streamer.parseRanges("bytes=95-", LENGTH), 95, 99);
+        assertTrue(Streamer.parseRanges("bytes=-0", LENGTH).isEmpty());
+    }
+
+    @Test
+    public void overlappingAndUnsortedRangesAreMerged() {
+        assertRanges(Streamer.parseRanges("bytes=50-60, 0-10,5-20 , 21-30", LENGTH), 0, 30, 50, 60);
+        assertRanges(Streamer.parseRanges("bytes=70-80,-25", LENGTH), 70, 99);
+        assertRanges(Streamer.parseRanges("bytes=10-20,30-40", LENGTH), 10, 20, 30, 40);
+    }
+
+    @Test
+    public void rangesPastTheEnd() {
+        assertRanges(Streamer.parseRanges("bytes=90-200", LENGTH), 90, 99);
+        assertTrue(Streamer.parseRanges("bytes=100-200", LENGTH).isEmpty());
+        // unsatisfiable ranges are dropped if others can be served
+        assertRanges(Streamer.parseRanges("bytes=200-300,0-0", LENGTH), 0, 0);
+        assertTrue(Streamer.parseRanges("bytes=0-10", 0).isEmpty());
+    }
+
+    @Test
+    public void unsatisfiableRangeResponds416() {
+        requestHeaders.put("Range", "bytes=100-200");
+        stream(memoryContent(data));
+
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, status);
+        assertEquals("bytes */100", responseHeaders.get("Content-Range"));
+        assertEquals("0", responseHeaders.get("Content-Length"));
+        assertEquals(0, body.size());
+    }
+
+    @Test
+    public void wholeContent() {
+        stream(memoryContent(data));
+
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertEquals("100", responseHeaders.get("Content-Length"));
+        assertNull(responseHeaders.get("Content-Range"));
+        assertArrayEquals(data, body.toByteArray());
+    }
+
+    @Test
+    public void disabledRangesServeWholeContent() {
+        requestHeaders.put("Range", "bytes=0-10");
+        Streamer streamer = streamer(memoryContent(data));
+        streamer.setRangesEnabled(false);
+        streamer.stream();
+
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertArrayEquals(data, body.toByteArray());
+    }
+
+    @Test
+    public void singleRange() {
+        requestHeaders.put("Range", "bytes=-10");
+        stream(memoryContent(data));
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status);
+        assertEquals("bytes 90-99/100", responseHeaders.get("Content-Range"));
+        assertEquals("10", responseHeaders.get("Content-Length"));
+        assertArrayEquals(Arrays.copyOfRange(data, 90, 100), body.toByteArray());
+    }
+
+    @Test
+    public void multipleRangesFromStream() {
+        assertMultipart(memoryContent(data));
+    }
+
+    @Test
+    public void multipleRangesFromFile() throws IOException {
+        file = File.createTempFile("streamer", ".bin");
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(data);
+        } finally {
+            fos.close();
+        }
+        assertMultipart(new Streamer.FileContent(file));
+    }
+
+    private void assertMultipart(Streamer.Content content) {
+        requestHeaders.put("Range", "bytes=50-59,0-4,2-9");
+        stream(content);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status);
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring("multipart/byteranges; boundary=".length());
+        byte[] bytes = body.toByteArray();
+        assertEquals(String.valueOf(bytes.length), responseHeaders.get("Content-Length"));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        write(expected, "\r\n--" + boundary + "\r\nContent-Type: application/octet-stream\r\n"
+                + "Content-Range: bytes 0-9/100\r\n\r\n");
+        expected.write(data, 0, 10);
+        write(expected, "\r\n--" + boundary + "\r\nContent-Type: application/octet-stream\r\n"
+                + "Content-Range: bytes 50-59/100\r\n\r\n");
+        expected.write(data, 50, 10);
+        write(expected, "\r\n--" + boundary + "--\r\n");
+        assertArrayEquals(expected.toByteArray(), bytes);
+    }
+
+    @Test
+    public void truncatedContentIsNotTreatedAsDisconnect() {
+        final byte[] half = Arrays.copyOf(data, LENGTH / 2);
+        final boolean[] closed = {false};
+        stream(new Streamer.Content() {
+            public long getLength() {
+                return LENGTH;
+            }
+
+            public InputStream openStream() {
+                return new ByteArrayInputStream(half);
+            }
+
+            public File getFile() {
+                return null;
+            }
+
+            public void close() {
+                closed[0] = true;
+            }
+        });
+
+        // logged as an error, the response is already committed
+        assertArrayEquals(half, body.toByteArray());
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    public void clientDisconnectIsIgnored() {
+        out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new EOFException();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new EOFException();
+            }
+        };
+        stream(memoryContent(data));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void otherErrorsArePropagated() {
+        out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken");
+            }
+        };
+        stream(memoryContent(data));
+    }
+
+    private static void assertRanges(List<Streamer.Range> ranges, long... bounds) {
+        assertNotNull(ranges);
+        assertEquals(bounds.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); ++i) {
+            assertEquals(bounds[2 * i], ranges.get(i).start);
+            assertEquals(bounds[2 * i + 1], ranges.get(i).end);
+        }
+    }
+
+    private static void write(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes();
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static Streamer.Content memoryContent(final byte[] bytes) {
+        return new Streamer.Content() {
+            public long getLength() {
+                return bytes.length;
+            }
+
+            public InputStream openStream() {
+                return new ByteArrayInputStream(bytes);
+            }
+
+            public File getFile() {
+                return null;
+            }
+
+            public void close() {
+            }
+        };
+    }
+
+    private void stream(Streamer.Content content) {
+        streamer(content).stream();
+    }
+
+    private Streamer streamer(Streamer.Content content) {
+        return new Streamer(content, "application/octet-stream", "data.bin", false, request(), response());
+    }
+
+    private HttpServletRequest request() {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{HttpServletRequest.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("getHeader")) {
+                            return requestHeaders.get(args[0]);
+                        } else if (name.equals("getAttribute")) {
+                            return requestAttributes.get(args[0]);
+                        } else if (name.equals("setAttribute")) {
+                            requestAttributes.put((String) args[0], args[1]);
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+
+    private HttpServletResponse response() {
+        final ServletOutputStream stream = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{HttpServletResponse.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("setStatus")) {
+                            status = (Integer) args[0];
+                        } else if (name.equals("addHeader") || name.equals("setHeader")) {
+                            responseHeaders.put((String) args[0], (String) args[1]);
+                        } else if (name.equals("setContentType")) {
+                            contentType = (String) args[0];
+                        } else if (name.equals("getOutputStream")) {
+                            return stream;
+                        } else if (!name.equals("flushBuffer")) {
+                            throw new UnsupportedOperationException(name);
+                        }
+                        return null;
+                    }
+                });
+    }
+}
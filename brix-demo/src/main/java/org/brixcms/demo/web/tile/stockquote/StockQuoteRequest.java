@@ -50,7 +50,22 @@ public class StockQuoteRequest {
      * We used to use the www.xmethods.com demo webservice for stockquotes. We now use webservicex, as xmethods was
      * really overloaded and unreliable.
      */
-    private static final String serviceUrl = "http://www.webservicex.net/stockquote.asmx";
+    public static final String DEFAULT_SERVICE_URL = "http://www.webservicex.net/stockquote.asmx";
+
+    /**
+     * Default connect and read timeout in milliseconds, a hanging service must not hang the requesting thread forever.
+     */
+    public static final int DEFAULT_TIMEOUT = 5000;
+
+    /**
+     * url of the SOAP service
+     */
+    private String serviceUrl = DEFAULT_SERVICE_URL;
+
+    /**
+     * connect and read timeout in milliseconds
+     */
+    private int timeout = DEFAULT_TIMEOUT;
 
     /**
      * the symbol to get the quote for.
@@ -72,6 +87,17 @@ public class StockQuoteRequest {
         this.symbol = symbol;
     }
 
+    /**
+     * Constructor setting the symbol and the url of the service to ask.
+     *
+     * @param symbol     the symbol to look up
+     * @param serviceUrl the url of the SOAP service
+     */
+    public StockQuoteRequest(String symbol, String serviceUrl) {
+        this.symbol = symbol;
+        this.serviceUrl = serviceUrl;
+    }
+
     /**
      * Gets the symbol.
      *
@@ -90,6 +116,42 @@ public class StockQuoteRequest {
         this.symbol = symbol;
     }
 
+    /**
+     * Gets the url of the SOAP service.
+     *
+     * @return the service url
+     */
+    public String getServiceUrl() {
+        return serviceUrl;
+    }
+
+    /**
+     * Sets the url of the SOAP service.
+     *
+     * @param serviceUrl
+     */
+    public void setServiceUrl(String serviceUrl) {
+        this.serviceUrl = serviceUrl;
+    }
+
+    /**
+     * Gets the connect and read timeout.
+     *
+     * @return timeout in milliseconds
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the connect and read timeout.
+     *
+     * @param timeout timeout in milliseconds, zero to wait forever
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
     /**
      * Gets a stock quote for the given symbol
      *
@@ -178,6 +240,8 @@ public class StockQuoteRequest {
         httpConn.setRequestProperty("Content-Length", String.valueOf(length));
         httpConn.setRequestProperty("Content-Type", "text/xml; charset=utf-8");
         httpConn.setRequestProperty("SOAPAction", "\"http://www.webserviceX.NET/GetQuote\"");
+        httpConn.setConnectTimeout(timeout);
+        httpConn.setReadTimeout(timeout);
         httpConn.setRequestMethod("POST");
         httpConn.setDoOutput(true);
         httpConn.setDoInput(true);
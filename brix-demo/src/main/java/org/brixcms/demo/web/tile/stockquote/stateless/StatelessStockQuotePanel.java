@@ -49,13 +49,31 @@ public class StatelessStockQuotePanel extends Panel implements PageParametersAwa
      */
     private String value;
 
+    /**
+     * symbol whose value has been loaded before the panel was created
+     */
+    private String loadedSymbol;
+
     /**
      * Constructor
      *
      * @param id
      */
     public StatelessStockQuotePanel(String id) {
+        this(id, null, null);
+    }
+
+    /**
+     * Constructor for a value that has already been looked up, see {@link StatelessStockQuoteTile}
+     *
+     * @param id
+     * @param loadedSymbol symbol the value was looked up for
+     * @param loadedValue  value of the symbol
+     */
+    public StatelessStockQuotePanel(String id, String loadedSymbol, String loadedValue) {
         super(id);
+        this.loadedSymbol = loadedSymbol;
+        this.value = loadedValue;
 
         // display value of stock symbol
         add(new Label("value", new PropertyModel(this, "value")));
@@ -90,7 +108,10 @@ public class StatelessStockQuotePanel extends Panel implements PageParametersAwa
         // restore symbol from url
         symbol = params.get("symbol").toString(null);
 
-        // restore value by looking it up
-        value = new StockQuoteRequest(symbol).getQuote();
+        // restore value by looking it up unless it has been looked up already
+        if (loadedSymbol == null || !loadedSymbol.equals(symbol)) {
+            value = new StockQuoteRequest(symbol).getQuote();
+            loadedSymbol = symbol;
+        }
     }
 }
@@ -16,11 +16,15 @@ package org.brixcms.demo.web.tile.stockquote.stateless;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.model.IModel;
+import org.brixcms.demo.web.tile.stockquote.StockQuoteRequest;
 import org.brixcms.demo.web.tile.stockquote.stateful.StatefulStockQuoteTile;
 import org.brixcms.jcr.wrapper.BrixNode;
-import org.brixcms.plugin.site.page.tile.Tile;
+import org.brixcms.plugin.site.page.tile.AsyncTile;
 import org.brixcms.plugin.site.page.tile.admin.EmptyTileEditorPanel;
 import org.brixcms.plugin.site.page.tile.admin.TileEditorPanel;
+import org.brixcms.web.nodepage.BrixPageParameters;
+
+import java.util.concurrent.Callable;
 
 /**
  * Stateless stock quote tile definition.
@@ -29,11 +33,18 @@ import org.brixcms.plugin.site.page.tile.admin.TileEditorPanel;
  * accessed. Because this tile is stateless it does not take advantage of Wicket's automatic state management and thus
  * exposes extra work on the user to manage state. See {@link StatelessStockQuotePanel} for details.
  * <p/>
+ * The quote is looked up asynchronously (see {@link AsyncTile}), so the lookups of several quote tiles on a page run
+ * in parallel and a slow quote service delays the page by at most {@link #LOAD_TIMEOUT}.
+ * <p/>
  * For a stateful variant of tile see {@link StatefulStockQuoteTile}
  *
  * @author igor.vaynberg
  */
-public class StatelessStockQuoteTile implements Tile {
+public class StatelessStockQuoteTile implements AsyncTile<String> {
+    /**
+     * How long rendering waits for a quote, in milliseconds
+     */
+    public static final long LOAD_TIMEOUT = 2000;
 
     /**
      * {@inheritDoc}
@@ -65,6 +76,41 @@ public class StatelessStockQuoteTile implements Tile {
         return new StatelessStockQuotePanel(id);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Callable<String> newDataLoader(IModel<BrixNode> tileNode, BrixPageParameters parameters) {
+        // read the symbol here, the loader runs outside of the request
+        final String symbol = parameters.get("symbol").toString(null);
+        return new Callable<String>() {
+            public String call() throws Exception {
+                return new StockQuoteRequest(symbol).getQuote();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLoadTimeout(IModel<BrixNode> tileNode) {
+        return LOAD_TIMEOUT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Component newViewer(String id, IModel<BrixNode> tileNode, String data) {
+        return new StatelessStockQuotePanel(id, BrixPageParameters.getCurrent().get("symbol").toString(null), data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Component newFallbackViewer(String id, IModel<BrixNode> tileNode, Exception cause) {
+        return new StatelessStockQuotePanel(id, BrixPageParameters.getCurrent().get("symbol").toString(null),
+                "(unavailable)");
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -32,6 +32,12 @@ public class MenusNode extends BrixNode implements TreeAwareNode {
             return node.getPath().equals(MenuPlugin.get(brix).getRootPath());
         }
 
+        @Override
+        public String getWrappedNodePath(Brix brix) {
+            MenuPlugin plugin = MenuPlugin.get(brix);
+            return plugin != null ? plugin.getRootPath() : null;
+        }
+
         @Override
         public JcrNode wrap(Brix brix, Node node, JcrSession session) {
             return new MenusNode(node, session);
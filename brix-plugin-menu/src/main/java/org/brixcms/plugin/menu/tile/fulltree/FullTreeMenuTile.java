@@ -17,10 +17,17 @@ package org.brixcms.plugin.menu.tile.fulltree;
 import org.apache.wicket.Component;
 import org.apache.wicket.model.IModel;
 import org.brixcms.jcr.wrapper.BrixNode;
-import org.brixcms.plugin.site.page.tile.Tile;
+import org.brixcms.plugin.site.page.tile.CacheableTile;
 import org.brixcms.plugin.site.page.tile.admin.TileEditorPanel;
+import org.brixcms.web.nodepage.BrixPageParameters;
 
-public class FullTreeMenuTile implements Tile {
+import java.util.concurrent.TimeUnit;
+
+public class FullTreeMenuTile implements CacheableTile {
+    /**
+     * Menus are not stored with the page, changes of a menu show up on cached pages once their output expires
+     */
+    private static final long OUTPUT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(1);
 
     public String getDisplayName() {
         return "Menu - Full Tree";
@@ -41,4 +48,13 @@ public class FullTreeMenuTile implements Tile {
     public boolean requiresSSL(IModel<BrixNode> tileNode) {
         return false;
     }
+
+    public long getOutputTimeToLive(IModel<BrixNode> tileNode) {
+        return OUTPUT_TIME_TO_LIVE;
+    }
+
+    public String getOutputVaryKey(IModel<BrixNode> tileNode, BrixPageParameters parameters) {
+        // the selected item depends on the page and its parameters, which are part of the key anyway
+        return null;
+    }
 }
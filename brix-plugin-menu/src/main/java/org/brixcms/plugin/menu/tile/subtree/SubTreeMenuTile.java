@@ -17,12 +17,20 @@ package org.brixcms.plugin.menu.tile.subtree;
 import org.apache.wicket.Component;
 import org.apache.wicket.model.IModel;
 import org.brixcms.jcr.wrapper.BrixNode;
-import org.brixcms.plugin.site.page.tile.Tile;
+import org.brixcms.plugin.site.page.tile.CacheableTile;
 import org.brixcms.plugin.site.page.tile.admin.TileEditorPanel;
+import org.brixcms.web.nodepage.BrixPageParameters;
 
-public class SubTreeMenuTile implements Tile {
+import java.util.concurrent.TimeUnit;
+
+public class SubTreeMenuTile implements CacheableTile {
     public static final String TYPE_NAME = "org.brixcms.web.tile.menu.MenuTile";
 
+    /**
+     * Menus are not stored with the page, changes of a menu show up on cached pages once their output expires
+     */
+    private static final long OUTPUT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(1);
+
 
     public String getDisplayName() {
         return "Menu";
@@ -43,4 +51,13 @@ public class SubTreeMenuTile implements Tile {
     public boolean requiresSSL(IModel<BrixNode> tileNode) {
         return false;
     }
+
+    public long getOutputTimeToLive(IModel<BrixNode> tileNode) {
+        return OUTPUT_TIME_TO_LIVE;
+    }
+
+    public String getOutputVaryKey(IModel<BrixNode> tileNode, BrixPageParameters parameters) {
+        // the selected item depends on the page and its parameters, which are part of the key anyway
+        return null;
+    }
 }
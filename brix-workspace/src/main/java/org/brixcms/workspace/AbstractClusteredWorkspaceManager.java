@@ -28,13 +28,13 @@ import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
 import javax.jcr.observation.EventListener;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspaceManager implements
         ClusteredWorkspaceManager {
@@ -47,11 +47,9 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
     // deleted
     // such workspace can only be deleted manually when all nodes are down
     private final String PROPERTY_DO_NOT_USE = "doNotUse";
-    private final Set<String> availableWorkspaceNames = new HashSet<String>();
-
     private final Set<String> deletedWorkspaceNames = new HashSet<String>();
 
-    private final Map<String, Session> workspaceToSessionMap = new HashMap<String, Session>();
+    private final ConcurrentMap<String, Session> workspaceToSessionMap = new ConcurrentHashMap<String, Session>();
 
     public AbstractClusteredWorkspaceManager() {
 
@@ -66,10 +64,11 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
     }
 
 
-    public synchronized List<Workspace> getWorkspaces() {
-        List<Workspace> result = new ArrayList<Workspace>();
-        for (String s : availableWorkspaceNames) {
-            result.add(getWorkspace(s));
+    public List<Workspace> getWorkspaces() {
+        Set<String> available = getAvailableWorkspaceIds();
+        List<Workspace> result = new ArrayList<Workspace>(available.size());
+        for (String s : available) {
+            result.add(new WorkspaceImpl(s));
         }
         return result;
     }
@@ -90,7 +89,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
             Node node = session.getRootNode().addNode(NODE_NAME, "nt:unstructured");
             node.addMixin("mix:lockable");
             node.addNode(PROPERTIES_NODE, "nt:unstructured");
-            availableWorkspaceNames.add(id);
+            setWorkspaceAvailable(id, true);
             session.save();
 
             return getWorkspace(id);
@@ -99,8 +98,8 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
         }
     }
 
-    public synchronized boolean workspaceExists(String workspaceId) {
-        return availableWorkspaceNames.contains(workspaceId);
+    public boolean workspaceExists(String workspaceId) {
+        return isWorkspaceAvailable(workspaceId);
     }
 
     abstract protected void createWorkspace(String workspaceId);
@@ -108,7 +107,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
     @Override
     protected void delete(String workspaceId) throws RepositoryException {
         synchronized (this) {
-            if (!availableWorkspaceNames.contains(workspaceId)) {
+            if (!isWorkspaceAvailable(workspaceId)) {
                 throw new IllegalStateException("Workspace " + workspaceId
                         + " either does not exist or was already deleted.");
             }
@@ -119,7 +118,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
         tryLockNode(node);
         try {
             synchronized (this) {
-                availableWorkspaceNames.remove(workspaceId);
+                setWorkspaceAvailable(workspaceId, false);
                 removeCachedWorkspaceAttributes(workspaceId);
 
                 node.setProperty(DELETED_PROPERTY, true);
@@ -171,15 +170,17 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
         NodeIterator iterator = root.getNodes();
         while (iterator.hasNext()) {
             Node node = iterator.nextNode();
-            if (!node.getName().equals(NODE_NAME) && !node.getName().equals("jcr:system")) {
+            // protected nodes (e.g. the access control policy of the root) can not be removed
+            if (!node.getName().equals(NODE_NAME) && !node.getName().equals("jcr:system")
+                    && !node.getDefinition().isProtected()) {
                 node.remove();
             }
         }
     }
 
     @Override
-    protected synchronized String getAttribute(String workspaceId, String key) {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+    protected String getAttribute(String workspaceId, String key) {
+        if (!isWorkspaceAvailable(workspaceId)) {
             throw new IllegalStateException("Trying to get attribute of workspace " + workspaceId
                     + " that doesn't exist or was removed.");
         }
@@ -188,7 +189,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
 
     @Override
     protected Iterator<String> getAttributeKeys(String workspaceId) {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+        if (!isWorkspaceAvailable(workspaceId)) {
             throw new IllegalStateException("Trying to get attribute keys of workspace " + workspaceId
                     + " that doesn't exist or was removed.");
         }
@@ -268,7 +269,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
                             deletedWorkspaceNames.add(workspace);
                         } else {
                             // for available workspaces read the properties
-                            availableWorkspaceNames.add(workspace);
+                            setWorkspaceAvailable(workspace, true);
                             if (node.hasNode(PROPERTIES_NODE)) {
                                 Node properties = node.getNode(PROPERTIES_NODE);
                                 PropertyIterator iterator = properties.getProperties();
@@ -287,7 +288,12 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
         }
     }
 
-    synchronized Session getSession(String workspaceId) {
+    Session getSession(String workspaceId) {
+        Session session = workspaceToSessionMap.get(workspaceId);
+        return session != null ? session : createObservedSession(workspaceId);
+    }
+
+    private synchronized Session createObservedSession(String workspaceId) {
         try {
             Session session = workspaceToSessionMap.get(workspaceId);
             if (session == null) {
@@ -330,7 +336,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
                         && (!node.hasProperty(PROPERTY_DO_NOT_USE) || node.getProperty(PROPERTY_DO_NOT_USE)
                         .getBoolean() == false)) {
                     node.setProperty(DELETED_PROPERTY, (String) null);
-                    availableWorkspaceNames.add(workspaceId);
+                    setWorkspaceAvailable(workspaceId, true);
                     deletedWorkspaceNames.remove(workspaceId);
 
                     // clear properties if there are any
@@ -356,7 +362,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
     @Override
     protected synchronized void setAttribute(String workspaceId, String attributeKey, String attributeValue)
             throws RepositoryException {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+        if (!isWorkspaceAvailable(workspaceId)) {
             throw new IllegalStateException("Trying to set attribute of workspace " + workspaceId
                     + " that doesn't exist or was removed.");
         }
@@ -394,15 +400,20 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
 
         private void workspaceCreated() {
             String name = session.getWorkspace().getName();
-            availableWorkspaceNames.add(name);
+            setWorkspaceAvailable(name, true);
             deletedWorkspaceNames.remove(name);
         }
 
         private void workspaceRemoved() {
             String name = session.getWorkspace().getName();
-            availableWorkspaceNames.remove(name);
+            // a local delete makes the workspace unavailable before saving and notifies listeners itself
+            boolean deletedElsewhere = isWorkspaceAvailable(name);
+            setWorkspaceAvailable(name, false);
             deletedWorkspaceNames.add(name);
             removeCachedWorkspaceAttributes(name);
+            if (deletedElsewhere) {
+                fireWorkspaceDeleted(name);
+            }
         }
 
         private void attributeChanged(String key, String value) {
@@ -23,7 +23,6 @@ import javax.jcr.Session;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -38,16 +37,15 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
     private static final Collection<String> NODES_TO_LEAVE_WHEN_CLEANING = Arrays
             .asList(NODE_NAME, "jcr:system", "rep:policy");
 
-    private Set<String> availableWorkspaceNames;
-
     private List<String> deletedWorkspaceNames;
 
 
 
-    public synchronized List<Workspace> getWorkspaces() {
-        List<Workspace> result = new ArrayList<Workspace>(availableWorkspaceNames.size());
+    public List<Workspace> getWorkspaces() {
+        Set<String> available = getAvailableWorkspaceIds();
+        List<Workspace> result = new ArrayList<Workspace>(available.size());
 
-        for (String s : availableWorkspaceNames) {
+        for (String s : available) {
             result.add(new WorkspaceImpl(s));
         }
 
@@ -61,7 +59,7 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
                 if (deletedWorkspaceNames.size() > 0) {
                     String id = deletedWorkspaceNames.get(deletedWorkspaceNames.size() - 1);
                     deletedWorkspaceNames.remove(id);
-                    availableWorkspaceNames.add(id);
+                    setWorkspaceAvailable(id, true);
                     session = createSession(id);
                     Node node = (Node) session.getItem(NODE_PATH);
                     node.setProperty(DELETED_PROPERTY, (String) null);
@@ -81,7 +79,7 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
                 node.addNode(PROPERTIES_NODE, "nt:unstructured");
                 closeSession(session, true);
                 session = null;
-                availableWorkspaceNames.add(id);
+                setWorkspaceAvailable(id, true);
             }
 
             return new WorkspaceImpl(id);
@@ -91,15 +89,15 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
         }
     }
 
-    public synchronized boolean workspaceExists(String workspaceId) {
-        return availableWorkspaceNames.contains(workspaceId);
+    public boolean workspaceExists(String workspaceId) {
+        return isWorkspaceAvailable(workspaceId);
     }
 
     abstract protected void createWorkspace(String workspaceName);
 
     protected void delete(String workspaceId) throws RepositoryException {
         synchronized (this) {
-            if (!availableWorkspaceNames.contains(workspaceId)) {
+            if (!isWorkspaceAvailable(workspaceId)) {
                 throw new IllegalStateException("Workspace " + workspaceId +
                         " either does not exist or was already deleted.");
             }
@@ -118,7 +116,7 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
             node.getSession().save();
 
             synchronized (this) {
-                availableWorkspaceNames.remove(workspaceId);
+                setWorkspaceAvailable(workspaceId, false);
                 deletedWorkspaceNames.add(workspaceId);
                 removeCachedWorkspaceAttributes(workspaceId);
             }
@@ -142,8 +140,8 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
     }
 
     @Override
-    protected synchronized String getAttribute(String workspaceId, String key) {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+    protected String getAttribute(String workspaceId, String key) {
+        if (!isWorkspaceAvailable(workspaceId)) {
             throw new IllegalStateException("Trying to get attribute of workspace " + workspaceId +
                     " that doesn't exist or was removed.");
         }
@@ -152,7 +150,7 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
 
     @Override
     protected Iterator<String> getAttributeKeys(String workspaceId) {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+        if (!isWorkspaceAvailable(workspaceId)) {
             throw new IllegalStateException("Trying to get attribute keys of workspace " +
                     workspaceId + " that doesn't exist or was removed.");
         }
@@ -165,7 +163,6 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
         Session session = null;
 
         try {
-            availableWorkspaceNames = new HashSet<String>();
             deletedWorkspaceNames = new ArrayList<String>();
 
             List<String> accessibleWorkspaces = getAccessibleWorkspaceNames();
@@ -179,7 +176,7 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
                                 node.getProperty(DELETED_PROPERTY).getBoolean() == true) {
                             deletedWorkspaceNames.add(workspace);
                         } else {
-                            availableWorkspaceNames.add(workspace);
+                            setWorkspaceAvailable(workspace, true);
                             if (node.hasNode(PROPERTIES_NODE)) {
                                 Node properties = node.getNode(PROPERTIES_NODE);
                                 PropertyIterator iterator = properties.getProperties();
@@ -231,7 +228,7 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
     protected synchronized void setAttribute(String workspaceId, String key, String value) {
         Session session = null;
         boolean saveSession = true;
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+        if (!isWorkspaceAvailable(workspaceId)) {
             throw new IllegalStateException("Can not set attribute '" + key +
                     "' on deleted or non-existing workspace '" + workspaceId + "'.");
         }
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Contains common and convenience Workspace Manager methods.
@@ -47,25 +48,52 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
 
     protected final String WORKSPACE_PREFIX = "bx_";
 
-    private Map<AttributeKeyAndValue, Set<String>> attributeToWorkspaceListMap = new HashMap<AttributeKeyAndValue, Set<String>>();
+    // immutable snapshot of available workspaces and their attributes, replaced on every change while holding the
+    // monitor of this workspace manager, so that lookups never lock and always see a consistent index. A new
+    // snapshot shares all but the entries of the changed workspace with the previous one, so a write costs
+    // O(attributes of the workspace * log(workspaces)).
+    private volatile Index index = Index.EMPTY;
 
-    private Map<String, Map<String, String>> workspaceToWorkspaceAttributesMap = new HashMap<String, Map<String, String>>();
+    private final List<WorkspaceListener> workspaceListeners = new CopyOnWriteArrayList<WorkspaceListener>();
 
+    public void addWorkspaceListener(WorkspaceListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Argument 'listener' may not be null.");
+        }
+        workspaceListeners.add(listener);
+    }
+
+    public void removeWorkspaceListener(WorkspaceListener listener) {
+        workspaceListeners.remove(listener);
+    }
+
+    protected void fireWorkspaceDeleted(String workspaceId) {
+        for (WorkspaceListener listener : workspaceListeners) {
+            listener.workspaceDeleted(workspaceId);
+        }
+    }
+
+    protected void fireWorkspaceAttributeChanged(String workspaceId, String key, String value) {
+        for (WorkspaceListener listener : workspaceListeners) {
+            listener.workspaceAttributeChanged(workspaceId, key, value);
+        }
+    }
 
-    public synchronized List<Workspace> getWorkspacesFiltered(
+    public List<Workspace> getWorkspacesFiltered(
             Map<String, String> workspaceAttributes) {
         if (workspaceAttributes.isEmpty()) {
             return getWorkspaces();
         } else {
-            List<Set<String>> workspaces = new ArrayList<Set<String>>();
+            final Index index = this.index;
+            List<Set<String>> workspaces = new ArrayList<Set<String>>(workspaceAttributes.size());
             for (Entry<String, String> entry : workspaceAttributes.entrySet()) {
                 AttributeKeyAndValue keyAndValue = new AttributeKeyAndValue(entry.getKey(), entry
                         .getValue());
-                Set<String> w = attributeToWorkspaceListMap.get(keyAndValue);
+                ImmutableHashMap<String, Boolean> w = index.workspacesByAttribute.get(keyAndValue);
                 if (w == null || w.isEmpty()) {
                     return Collections.emptyList();
                 } else {
-                    workspaces.add(w);
+                    workspaces.add(w.keySet());
                 }
             }
 
@@ -73,7 +101,9 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
             List<Workspace> result = new ArrayList<Workspace>(intersection.size());
 
             for (String s : intersection) {
-                result.add(getWorkspace(s));
+                if (index.available.containsKey(s)) {
+                    result.add(new WorkspaceImpl(s));
+                }
             }
 
             return result;
@@ -94,16 +124,42 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
 
     abstract protected Iterator<String> getAttributeKeys(String workspaceId);
 
-    protected synchronized Iterator<String> getCachedAttributeKeys(String workspaceId) {
-        Map<String, String> attributes = workspaceToWorkspaceAttributesMap.get(workspaceId);
+    protected Iterator<String> getCachedAttributeKeys(String workspaceId) {
+        Map<String, String> attributes = index.attributes.get(workspaceId);
         if (attributes == null || attributes.isEmpty()) {
             List<String> empty = Collections.emptyList();
             return empty.iterator();
         } else {
-            return new ArrayList<String>(attributes.keySet()).iterator();
+            return attributes.keySet().iterator();
         }
     }
 
+    /**
+     * Returns whether the workspace is available, i.e. exists and is not deleted.
+     *
+     * @param workspaceId
+     * @return <code>true</code> if the workspace is available
+     */
+    protected boolean isWorkspaceAvailable(String workspaceId) {
+        return index.available.containsKey(workspaceId);
+    }
+
+    /**
+     * Returns unmodifiable snapshot of ids of available workspaces. The snapshot is not affected by workspaces being
+     * added or removed afterwards.
+     *
+     * @return available workspace ids
+     */
+    protected Set<String> getAvailableWorkspaceIds() {
+        return index.available.keySet();
+    }
+
+    protected synchronized void setWorkspaceAvailable(String workspaceId, boolean available) {
+        ImmutableHashMap<String, Boolean> ids = available ? index.available.plus(workspaceId, Boolean.TRUE)
+                : index.available.minus(workspaceId);
+        index = new Index(ids, index.attributes, index.workspacesByAttribute);
+    }
+
     protected String getWorkspaceId(UUID uuid) {
         final long most = uuid.getMostSignificantBits();
         final long least = uuid.getLeastSignificantBits();
@@ -113,8 +169,9 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
     }
 
     protected AbstractWorkspaceManager initialize() {
-        attributeToWorkspaceListMap.clear();
-        workspaceToWorkspaceAttributesMap.clear();
+        synchronized (this) {
+            index = Index.EMPTY;
+        }
         return this;
     }
 
@@ -163,60 +220,58 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
     }
 
     protected synchronized void removeCachedWorkspaceAttributes(String workspaceId) {
-        workspaceToWorkspaceAttributesMap.remove(workspaceId);
-        for (Iterator<Entry<AttributeKeyAndValue, Set<String>>> i = attributeToWorkspaceListMap
-                .entrySet().iterator(); i.hasNext();) {
-            Entry<AttributeKeyAndValue, Set<String>> e = i.next();
-            if (e.getValue().contains(workspaceId)) {
-                e.getValue().remove(workspaceId);
-                if (e.getValue().isEmpty()) {
-                    i.remove();
-                }
+        Map<String, String> attributes = index.attributes.get(workspaceId);
+        if (attributes != null) {
+            ImmutableHashMap<AttributeKeyAndValue, ImmutableHashMap<String, Boolean>> workspacesByAttribute =
+                    index.workspacesByAttribute;
+            for (Entry<String, String> e : attributes.entrySet()) {
+                workspacesByAttribute = removeWorkspace(workspacesByAttribute,
+                        new AttributeKeyAndValue(e.getKey(), e.getValue()), workspaceId);
             }
+            index = new Index(index.available, index.attributes.minus(workspaceId), workspacesByAttribute);
         }
     }
 
     abstract protected void setAttribute(String workspaceId, String attributeKey,
                                          String attributeValue) throws RepositoryException;
 
-    protected void setCachedAttribute(String workspaceId, String key, String value) {
-        removeCachedAttribute(workspaceId, key);
-        if (value != null) {
-            Map<String, String> workspaceAttributes = workspaceToWorkspaceAttributesMap
-                    .get(workspaceId);
-            if (workspaceAttributes == null) {
-                workspaceAttributes = new HashMap<String, String>();
-                workspaceToWorkspaceAttributesMap.put(workspaceId, workspaceAttributes);
+    protected synchronized void setCachedAttribute(String workspaceId, String key, String value) {
+        Map<String, String> attributes = index.attributes.get(workspaceId);
+        String oldValue = attributes != null ? attributes.get(key) : null;
+        if (oldValue != null || value != null) {
+            Map<String, String> newAttributes = attributes != null ? new HashMap<String, String>(attributes)
+                    : new HashMap<String, String>();
+            ImmutableHashMap<AttributeKeyAndValue, ImmutableHashMap<String, Boolean>> workspacesByAttribute =
+                    index.workspacesByAttribute;
+            if (oldValue != null && !oldValue.equals(value)) {
+                workspacesByAttribute = removeWorkspace(workspacesByAttribute,
+                        new AttributeKeyAndValue(key, oldValue), workspaceId);
             }
-            workspaceAttributes.put(key, value);
-
-            AttributeKeyAndValue keyAndValue = new AttributeKeyAndValue(key, value);
-            Set<String> workspaces = attributeToWorkspaceListMap.get(keyAndValue);
-            if (workspaces == null) {
-                workspaces = new HashSet<String>();
-                attributeToWorkspaceListMap.put(keyAndValue, workspaces);
-            }
-            if (!workspaces.contains(workspaceId)) {
-                workspaces.add(workspaceId);
+            if (value != null) {
+                newAttributes.put(key, value);
+                AttributeKeyAndValue keyAndValue = new AttributeKeyAndValue(key, value);
+                ImmutableHashMap<String, Boolean> workspaces = workspacesByAttribute.get(keyAndValue);
+                if (workspaces == null) {
+                    workspaces = ImmutableHashMap.empty();
+                }
+                workspacesByAttribute = workspacesByAttribute.plus(keyAndValue,
+                        workspaces.plus(workspaceId, Boolean.TRUE));
+            } else {
+                newAttributes.remove(key);
             }
+            index = new Index(index.available,
+                    index.attributes.plus(workspaceId, Collections.unmodifiableMap(newAttributes)),
+                    workspacesByAttribute);
         }
+        fireWorkspaceAttributeChanged(workspaceId, key, value);
     }
 
     protected void removeCachedAttribute(String workspaceId, String key) {
-        String value = getCachedAttribute(workspaceId, key);
-        if (value != null) {
-            Map<String, String> attributes = workspaceToWorkspaceAttributesMap.get(workspaceId);
-            attributes.remove(key);
-            AttributeKeyAndValue keyAndValue = new AttributeKeyAndValue(key, value);
-            Set<String> workspaces = attributeToWorkspaceListMap.get(keyAndValue);
-            if (workspaces != null) {
-                workspaces.remove(workspaceId);
-            }
-        }
+        setCachedAttribute(workspaceId, key, null);
     }
 
     protected String getCachedAttribute(String workspaceId, String key) {
-        Map<String, String> attributes = workspaceToWorkspaceAttributesMap.get(workspaceId);
+        Map<String, String> attributes = index.attributes.get(workspaceId);
         if (attributes != null) {
             return attributes.get(key);
         } else {
@@ -224,7 +279,38 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
         }
     }
 
-    private class AttributeKeyAndValue {
+    private static ImmutableHashMap<AttributeKeyAndValue, ImmutableHashMap<String, Boolean>> removeWorkspace(
+            ImmutableHashMap<AttributeKeyAndValue, ImmutableHashMap<String, Boolean>> workspacesByAttribute,
+            AttributeKeyAndValue keyAndValue, String workspaceId) {
+        ImmutableHashMap<String, Boolean> workspaces = workspacesByAttribute.get(keyAndValue);
+        if (workspaces == null) {
+            return workspacesByAttribute;
+        }
+        workspaces = workspaces.minus(workspaceId);
+        return workspaces.isEmpty() ? workspacesByAttribute.minus(keyAndValue)
+                : workspacesByAttribute.plus(keyAndValue, workspaces);
+    }
+
+    private static final class Index {
+        static final Index EMPTY = new Index(ImmutableHashMap.<String, Boolean>empty(),
+                ImmutableHashMap.<String, Map<String, String>>empty(),
+                ImmutableHashMap.<AttributeKeyAndValue, ImmutableHashMap<String, Boolean>>empty());
+
+        final ImmutableHashMap<String, Boolean> available;
+
+        final ImmutableHashMap<String, Map<String, String>> attributes;
+
+        final ImmutableHashMap<AttributeKeyAndValue, ImmutableHashMap<String, Boolean>> workspacesByAttribute;
+
+        Index(ImmutableHashMap<String, Boolean> available, ImmutableHashMap<String, Map<String, String>> attributes,
+              ImmutableHashMap<AttributeKeyAndValue, ImmutableHashMap<String, Boolean>> workspacesByAttribute) {
+            this.available = available;
+            this.attributes = attributes;
+            this.workspacesByAttribute = workspacesByAttribute;
+        }
+    }
+
+    private static class AttributeKeyAndValue {
         private final String key;
         private final String value;
 
@@ -310,6 +396,7 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
         public void delete() {
             try {
                 AbstractWorkspaceManager.this.delete(getId());
+                fireWorkspaceDeleted(getId());
             } catch (RepositoryException e) {
                 throw new JcrException(e);
             }
@@ -0,0 +1,347 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.workspace;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable hash map. {@link #plus(Object, Object)} and {@link #minus(Object)} return a new map that shares all but
+ * the changed path of the hash trie with this map, so a change costs O(log n) instead of copying the whole map. Null
+ * keys are not supported.
+ */
+final class ImmutableHashMap<K, V> extends AbstractMap<K, V> {
+    private static final Object NOT_FOUND = new Object();
+
+    private static final ImmutableHashMap<Object, Object> EMPTY = new ImmutableHashMap<Object, Object>(
+            new BitmapNode(0, new Object[0]), 0);
+
+    private final Node root;
+
+    private final int size;
+
+    private ImmutableHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> ImmutableHashMap<K, V> empty() {
+        return (ImmutableHashMap<K, V>) EMPTY;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && root.find(0, key.hashCode(), key, NOT_FOUND) != NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        Object value = root.find(0, key.hashCode(), key, NOT_FOUND);
+        return value != NOT_FOUND ? (V) value : null;
+    }
+
+    /**
+     * Returns map with the given mapping added or replaced.
+     *
+     * @param key
+     * @param value
+     * @return new map, or this map if it already contains the mapping
+     */
+    ImmutableHashMap<K, V> plus(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Argument 'key' may not be null.");
+        }
+        boolean[] added = new boolean[1];
+        Node root = this.root.put(0, key.hashCode(), key, value, added);
+        return root != this.root ? new ImmutableHashMap<K, V>(root, added[0] ? size + 1 : size) : this;
+    }
+
+    /**
+     * Returns map without the mapping for given key.
+     *
+     * @param key
+     * @return new map, or this map if it does not contain the key
+     */
+    ImmutableHashMap<K, V> minus(Object key) {
+        if (key == null) {
+            return this;
+        }
+        Node root = this.root.remove(0, key.hashCode(), key);
+        if (root == this.root) {
+            return this;
+        } else if (root == null) {
+            return empty();
+        } else {
+            return new ImmutableHashMap<K, V>(root, size - 1);
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                List<Entry<K, V>> entries = new ArrayList<Entry<K, V>>(size);
+                root.collect(entries);
+                return new ReadOnlyIterator<Entry<K, V>>(entries.iterator());
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    private static Object[] insert(Object[] array, int i, Object key, Object value) {
+        Object[] result = new Object[array.length + 2];
+        System.arraycopy(array, 0, result, 0, i);
+        result[i] = key;
+        result[i + 1] = value;
+        System.arraycopy(array, i, result, i + 2, array.length - i);
+        return result;
+    }
+
+    private static Object[] replace(Object[] array, int i, Object key, Object value) {
+        Object[] result = array.clone();
+        result[i] = key;
+        result[i + 1] = value;
+        return result;
+    }
+
+    private static Object[] delete(Object[] array, int i) {
+        Object[] result = new Object[array.length - 2];
+        System.arraycopy(array, 0, result, 0, i);
+        System.arraycopy(array, i + 2, result, i, array.length - i - 2);
+        return result;
+    }
+
+    private static abstract class Node {
+        abstract Object find(int shift, int hash, Object key, Object notFound);
+
+        /**
+         * @return this node if nothing changed
+         */
+        abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * @return this node if nothing changed, <code>null</code> if the node became empty
+         */
+        abstract Node remove(int shift, int hash, Object key);
+
+        abstract <K, V> void collect(List<Entry<K, V>> entries);
+    }
+
+    /**
+     * Branch of the trie. For every bit set in the bitmap the array contains a key and a value, or <code>null</code>
+     * and a child node holding all entries whose hash shares the bits consumed so far.
+     */
+    private static final class BitmapNode extends Node {
+        private final int bitmap;
+
+        private final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key, Object notFound) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return notFound;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).find(shift + 5, hash, key, notFound);
+            }
+            return key.equals(k) ? array[i + 1] : notFound;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, insert(array, i, key, value));
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(shift + 5, hash, key, value, added);
+                return child != v ? new BitmapNode(bitmap, replace(array, i, null, child)) : this;
+            } else if (key.equals(k)) {
+                return v != value ? new BitmapNode(bitmap, replace(array, i, k, value)) : this;
+            } else {
+                added[0] = true;
+                Node child = createNode(shift + 5, k, v, hash, key, value);
+                return new BitmapNode(bitmap, replace(array, i, null, child));
+            }
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node child = (Node) array[i + 1];
+                Node newChild = child.remove(shift + 5, hash, key);
+                if (newChild == child) {
+                    return this;
+                } else if (newChild != null) {
+                    return new BitmapNode(bitmap, replace(array, i, null, newChild));
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            return bitmap != bit ? new BitmapNode(bitmap ^ bit, delete(array, i)) : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <K, V> void collect(List<Entry<K, V>> entries) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).collect(entries);
+                } else {
+                    entries.add(new SimpleImmutableEntry<K, V>((K) array[i], (V) array[i + 1]));
+                }
+            }
+        }
+
+        private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2,
+                                       Object value2) {
+            int hash1 = key1.hashCode();
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            }
+            boolean[] added = new boolean[1];
+            return new BitmapNode(0, new Object[0])
+                    .put(shift, hash1, key1, value1, added)
+                    .put(shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * Entries whose keys have the same hash code.
+     */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int index(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key, Object notFound) {
+            int i = hash == this.hash ? index(key) : -1;
+            return i != -1 ? array[i + 1] : notFound;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // push this node one level down, the hashes differ so the keys end up in different branches
+                return new BitmapNode(bit(this.hash, shift), new Object[]{null, this})
+                        .put(shift, hash, key, value, added);
+            }
+            int i = index(key);
+            if (i == -1) {
+                added[0] = true;
+                return new CollisionNode(hash, insert(array, array.length, key, value));
+            }
+            return array[i + 1] != value ? new CollisionNode(hash, replace(array, i, key, value)) : this;
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int i = hash == this.hash ? index(key) : -1;
+            if (i == -1) {
+                return this;
+            }
+            return array.length > 2 ? new CollisionNode(hash, delete(array, i)) : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <K, V> void collect(List<Entry<K, V>> entries) {
+            for (int i = 0; i < array.length; i += 2) {
+                entries.add(new SimpleImmutableEntry<K, V>((K) array[i], (V) array[i + 1]));
+            }
+        }
+    }
+
+    private static final class ReadOnlyIterator<T> implements Iterator<T> {
+        private final Iterator<T> delegate;
+
+        ReadOnlyIterator(Iterator<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        public T next() {
+            return delegate.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
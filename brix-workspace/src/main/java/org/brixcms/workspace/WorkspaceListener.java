@@ -0,0 +1,41 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.workspace;
+
+/**
+ * Listener notified by {@link AbstractWorkspaceManager} about workspace life cycle and attribute changes. Allows caches
+ * keyed by workspace id or attributes to drop stale entries.
+ */
+public interface WorkspaceListener {
+    /**
+     * Called after the workspace has been deleted, either through this workspace manager or (for clustered workspace
+     * managers) on another cluster node. May be called while the workspace manager holds its lock, so implementations
+     * must return quickly and must not call back into the workspace manager.
+     *
+     * @param workspaceId
+     */
+    public void workspaceDeleted(String workspaceId);
+
+    /**
+     * Called after an attribute of the workspace has been set or removed, either through this workspace manager, while
+     * loading the attributes or (for clustered workspace managers) on another cluster node. The same restrictions as
+     * for {@link #workspaceDeleted(String)} apply.
+     *
+     * @param workspaceId
+     * @param key
+     * @param value       new value or <code>null</code> if the attribute has been removed
+     */
+    public void workspaceAttributeChanged(String workspaceId, String key, String value);
+}
@@ -16,47 +16,23 @@ package org.brixcms.workspace.rmi;
 
 import org.brixcms.workspace.Workspace;
 
-import java.rmi.RemoteException;
 import java.util.Iterator;
 
-// TODO: Make it a bit smarter. The RMI communication should be much coarser grained
-// Workspaces objects are short lived, we don't need fresh property values every time
-// we query for them. All properties should be copied from server on workspace initialization
-// (in 1 rmi call)
+/**
+ * Workspace of {@link ClientWorkspaceManager}. Attributes are read from the manager's local copy of the workspaces,
+ * changes are sent to the server.
+ */
 class ClientWorkspace implements Workspace {
-    private RemoteWorkspace delegate;
+    private final String id;
 
-    private String id;
-    private RemoteWorkspaceManager remoteWorkspaceManager;
-
-    public ClientWorkspace(RemoteWorkspace delegate) {
-        this.delegate = delegate;
-    }
+    private final ClientWorkspaceManager manager;
 
-    public ClientWorkspace(String id, RemoteWorkspaceManager manager) {
+    public ClientWorkspace(String id, ClientWorkspaceManager manager) {
         this.id = id;
-        this.remoteWorkspaceManager = manager;
-    }
-
-    public RemoteWorkspace getDelegate() {
-        if (delegate == null) {
-            try {
-                delegate = remoteWorkspaceManager.getWorkspace(id);
-            } catch (RemoteException e) {
-                throw new CommunicationException(e);
-            }
-        }
-        return delegate;
+        this.manager = manager;
     }
 
     public String getId() {
-        if (id == null) {
-            try {
-                return id = getDelegate().getId();
-            } catch (RemoteException e) {
-                throw new CommunicationException(e);
-            }
-        }
         return id;
     }
 
@@ -69,51 +45,29 @@ class ClientWorkspace implements Workspace {
             return false;
         }
         ClientWorkspace that = (ClientWorkspace) obj;
-        if (id == that.id) {
-            return true;
-        }
-        if (id == null || that.id == null) {
-            return false;
-        }
         return id.equals(that.id);
     }
 
     @Override
     public int hashCode() {
-        return id != null ? id.hashCode() : 0;
+        return id.hashCode();
     }
 
 
 
     public void setAttribute(String attributeKey, String attributeValue) {
-        try {
-            getDelegate().setAttribute(attributeKey, attributeValue);
-        } catch (RemoteException e) {
-            throw new CommunicationException(e);
-        }
+        manager.setAttribute(id, attributeKey, attributeValue);
     }
 
     public String getAttribute(String attributeKey) {
-        try {
-            return getDelegate().getAttribute(attributeKey);
-        } catch (RemoteException e) {
-            throw new CommunicationException(e);
-        }
+        return manager.getSnapshot().getAttribute(id, attributeKey);
     }
 
     public Iterator<String> getAttributeKeys() {
-        try {
-            return getDelegate().getAttributeKeys();
-        } catch (RemoteException e) {
-            throw new CommunicationException(e);
-        }
+        return manager.getSnapshot().getAttributeKeys(id).iterator();
     }
 
     public void delete() {
-        try {
-            getDelegate().delete();
-        } catch (RemoteException e) {
-            throw new CommunicationException(e);
-        }
+        manager.deleteWorkspace(id);
     }
 }
@@ -16,24 +16,47 @@ package org.brixcms.workspace.rmi;
 
 import org.brixcms.workspace.Workspace;
 import org.brixcms.workspace.WorkspaceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.rmi.Naming;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Workspace manager talking to a {@link ServerWorkspaceManager} over RMI. All workspaces and their attributes are
+ * copied from the server in a single call and kept current by a daemon thread waiting for changes on the server, so
+ * reads are served locally. Only changes go to the server, the local copy is refreshed right after each change.
+ * <p/>
+ * The thread stops when the manager is closed. Brix closes its workspace manager when the application is destroyed;
+ * a manager that is dropped without being closed is stopped once it has been garbage collected.
+ */
 public class ClientWorkspaceManager implements WorkspaceManager {
-    private RemoteWorkspaceManager delegate;
+    private static final Logger log = LoggerFactory.getLogger(ClientWorkspaceManager.class);
+
+    /**
+     * How long a single wait for changes may take on the server
+     */
+    private static final long AWAIT_TIMEOUT = 30000;
+
+    /**
+     * Delay before waiting for changes again after a communication error
+     */
+    private static final long RETRY_DELAY = 5000;
+
+    private volatile RemoteWorkspaceManager delegate;
     private String url;
 
-    private static List<Workspace> remoteToLocal(List<RemoteWorkspace> remote) {
-        ArrayList<Workspace> local = new ArrayList<Workspace>(remote.size());
-        for (RemoteWorkspace workspace : remote) {
-            local.add(new ClientWorkspace(workspace));
-        }
-        return local;
-    }
+    private volatile WorkspaceSnapshot snapshot;
+
+    private Updater updater;
+
+    private volatile boolean closed;
 
     public ClientWorkspaceManager(String url) {
         this.url = url;
@@ -44,8 +67,10 @@ public class ClientWorkspaceManager implements WorkspaceManager {
     }
 
     public RemoteWorkspaceManager getDelegate() {
+        RemoteWorkspaceManager delegate = this.delegate;
         if (delegate == null) {
             delegate = lookup(url);
+            this.delegate = delegate;
         }
         return delegate;
     }
@@ -58,29 +83,84 @@ public class ClientWorkspaceManager implements WorkspaceManager {
         }
     }
 
+    /**
+     * Stops waiting for changes on the server. A wait that is already in progress can not be interrupted, the thread
+     * ends when it returns, at the latest after {@value #AWAIT_TIMEOUT} ms.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (updater != null) {
+            updater.interrupt();
+            updater = null;
+        }
+    }
 
+    synchronized Thread getUpdater() {
+        return updater;
+    }
 
-    public List<Workspace> getWorkspaces() {
-        try {
-            return remoteToLocal(getDelegate().getWorkspaces());
-        } catch (RemoteException e) {
-            delegate = null;
-            throw new CommunicationException(e);
+    /**
+     * Returns the local copy of the workspaces, loading it from the server if there is none yet.
+     *
+     * @return snapshot
+     */
+    WorkspaceSnapshot getSnapshot() {
+        WorkspaceSnapshot snapshot = this.snapshot;
+        if (snapshot == null) {
+            snapshot = refresh();
         }
+        return snapshot;
     }
 
-    public List<Workspace> getWorkspacesFiltered(Map<String, String> workspaceAttributes) {
+    private WorkspaceSnapshot refresh() {
         try {
-            return remoteToLocal(getDelegate().getWorkspacesFiltered(workspaceAttributes));
+            WorkspaceSnapshot snapshot = update(getDelegate().getSnapshot());
+            startUpdater();
+            return snapshot;
         } catch (RemoteException e) {
             delegate = null;
             throw new CommunicationException(e);
         }
     }
 
+    private synchronized WorkspaceSnapshot update(WorkspaceSnapshot snapshot) {
+        // a snapshot received by the updater may be older than one loaded after a change
+        if (this.snapshot == null || snapshot.getVersion() >= this.snapshot.getVersion()) {
+            this.snapshot = snapshot;
+        }
+        return this.snapshot;
+    }
+
+    private synchronized void startUpdater() {
+        if (updater == null && !closed) {
+            updater = new Updater(this);
+            updater.start();
+        }
+    }
+
+    private List<Workspace> toWorkspaces(Collection<String> ids) {
+        List<Workspace> workspaces = new ArrayList<Workspace>(ids.size());
+        for (String id : ids) {
+            workspaces.add(new ClientWorkspace(id, this));
+        }
+        return workspaces;
+    }
+
+
+
+    public List<Workspace> getWorkspaces() {
+        return toWorkspaces(getSnapshot().getWorkspaceIds());
+    }
+
+    public List<Workspace> getWorkspacesFiltered(Map<String, String> workspaceAttributes) {
+        return toWorkspaces(getSnapshot().getWorkspaceIds(workspaceAttributes));
+    }
+
     public Workspace createWorkspace() {
         try {
-            return new ClientWorkspace(getDelegate().createWorkspace());
+            String id = getDelegate().createWorkspace().getId();
+            refresh();
+            return new ClientWorkspace(id, this);
         } catch (RemoteException e) {
             delegate = null;
             throw new CommunicationException(e);
@@ -88,15 +168,78 @@ public class ClientWorkspaceManager implements WorkspaceManager {
     }
 
     public Workspace getWorkspace(String workspaceId) {
-        return new ClientWorkspace(workspaceId, getDelegate());
+        return workspaceExists(workspaceId) ? new ClientWorkspace(workspaceId, this) : null;
     }
 
     public boolean workspaceExists(String workspaceId) {
+        return getSnapshot().workspaceExists(workspaceId);
+    }
+
+    void setAttribute(String workspaceId, String attributeKey, String attributeValue) {
         try {
-            return getDelegate().workspaceExists(workspaceId);
+            getDelegate().setAttribute(workspaceId, attributeKey, attributeValue);
+            refresh();
         } catch (RemoteException e) {
             delegate = null;
             throw new CommunicationException(e);
         }
     }
+
+    void deleteWorkspace(String workspaceId) {
+        try {
+            getDelegate().deleteWorkspace(workspaceId);
+            refresh();
+        } catch (RemoteException e) {
+            delegate = null;
+            throw new CommunicationException(e);
+        }
+    }
+
+    /**
+     * Waits for changes on the server and applies them to the manager. The manager is only weakly referenced while
+     * waiting, so that the thread does not keep a manager that is no longer used alive; the thread stops after the
+     * next wait once the manager has been closed or garbage collected.
+     */
+    private static class Updater extends Thread {
+        private final Reference<ClientWorkspaceManager> manager;
+
+        public Updater(ClientWorkspaceManager manager) {
+            super("Workspace updater " + (manager.url != null ? manager.url : ""));
+            this.manager = new WeakReference<ClientWorkspaceManager>(manager);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                ClientWorkspaceManager manager = this.manager.get();
+                if (manager == null || manager.closed) {
+                    break;
+                }
+                try {
+                    RemoteWorkspaceManager delegate = manager.getDelegate();
+                    long version = manager.snapshot.getVersion();
+                    manager = null;
+                    WorkspaceSnapshot snapshot = delegate.awaitChange(version, AWAIT_TIMEOUT);
+                    manager = this.manager.get();
+                    if (manager != null) {
+                        manager.update(snapshot);
+                    }
+                } catch (Exception e) {
+                    manager = this.manager.get();
+                    if (manager == null || manager.closed) {
+                        break;
+                    }
+                    log.warn("Could not receive workspace changes, retrying in " + RETRY_DELAY + " ms", e);
+                    manager.delegate = null;
+                    manager = null;
+                    try {
+                        Thread.sleep(RETRY_DELAY);
+                    } catch (InterruptedException ie) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
 }
@@ -30,4 +30,27 @@ interface RemoteWorkspaceManager extends Remote {
             throws RemoteException;
 
     public boolean workspaceExists(String workspaceId) throws RemoteException;
+
+    /**
+     * Returns all workspaces with their attributes.
+     *
+     * @return current snapshot
+     * @throws RemoteException
+     */
+    public WorkspaceSnapshot getSnapshot() throws RemoteException;
+
+    /**
+     * Waits until the snapshot differs from the given version or the timeout elapses.
+     *
+     * @param version       version of the snapshot the client has
+     * @param timeoutMillis maximum time to wait
+     * @return current snapshot, which has the given version if nothing changed before the timeout
+     * @throws RemoteException
+     */
+    public WorkspaceSnapshot awaitChange(long version, long timeoutMillis) throws RemoteException;
+
+    public void setAttribute(String workspaceId, String attributeKey, String attributeValue)
+            throws RemoteException;
+
+    public void deleteWorkspace(String workspaceId) throws RemoteException;
 }
@@ -14,17 +14,53 @@
 
 package org.brixcms.workspace.rmi;
 
+import org.brixcms.workspace.AbstractWorkspaceManager;
 import org.brixcms.workspace.Workspace;
+import org.brixcms.workspace.WorkspaceListener;
 import org.brixcms.workspace.WorkspaceManager;
 
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Exports a {@link WorkspaceManager} to {@link ClientWorkspaceManager}s. The snapshot of all workspaces is built once
+ * and shared by all clients, it is only rebuilt after a change, or after {@link #MAX_SNAPSHOT_AGE} to pick up changes
+ * the workspace manager does not notify about (e.g. workspaces created directly through it). Clients waiting for
+ * changes wait on the change counter and do not read the workspaces themselves.
+ */
 public class ServerWorkspaceManager implements RemoteWorkspaceManager {
+    /**
+     * Maximum age of the snapshot when the workspace manager notifies about changes
+     */
+    private static final long MAX_SNAPSHOT_AGE = 10000;
+
+    /**
+     * Maximum age of the snapshot when the workspace manager does not notify about changes
+     */
+    private static final long MAX_UNNOTIFIED_SNAPSHOT_AGE = 1000;
+
     private final WorkspaceManager delegate;
 
+    private final long maxSnapshotAge;
+
+    // only one thread reads the workspaces at a time, the others wait for its snapshot
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private WorkspaceSnapshot snapshot;
+
+    // value of the change counter and time when the snapshot was built
+    private long snapshotChanges;
+    private long snapshotTime;
+
+    // incremented on every change
+    private long changes;
+
     private static List<RemoteWorkspace> localToRemote(List<Workspace> local)
             throws RemoteException {
         ArrayList<RemoteWorkspace> remote = new ArrayList<RemoteWorkspace>(local.size());
@@ -36,11 +72,26 @@ public class ServerWorkspaceManager implements RemoteWorkspaceManager {
 
     public ServerWorkspaceManager(WorkspaceManager delegate) {
         this.delegate = delegate;
+        this.maxSnapshotAge = delegate instanceof AbstractWorkspaceManager ? MAX_SNAPSHOT_AGE
+                : MAX_UNNOTIFIED_SNAPSHOT_AGE;
+        if (delegate instanceof AbstractWorkspaceManager) {
+            ((AbstractWorkspaceManager) delegate).addWorkspaceListener(new WorkspaceListener() {
+                public void workspaceDeleted(String workspaceId) {
+                    changed();
+                }
+
+                public void workspaceAttributeChanged(String workspaceId, String key, String value) {
+                    changed();
+                }
+            });
+        }
     }
 
 
     public RemoteWorkspace createWorkspace() throws RemoteException {
-        return new ServerWorkspace(delegate.createWorkspace());
+        RemoteWorkspace workspace = new ServerWorkspace(delegate.createWorkspace());
+        changed();
+        return workspace;
     }
 
     public RemoteWorkspace getWorkspace(String workspaceId) throws RemoteException {
@@ -59,4 +110,110 @@ public class ServerWorkspaceManager implements RemoteWorkspaceManager {
     public boolean workspaceExists(String workspaceId) throws RemoteException {
         return delegate.workspaceExists(workspaceId);
     }
+
+    public WorkspaceSnapshot getSnapshot() throws RemoteException {
+        WorkspaceSnapshot current = getCurrentSnapshot();
+        if (current != null) {
+            return current;
+        }
+        rebuildLock.lock();
+        try {
+            current = getCurrentSnapshot();
+            if (current != null) {
+                return current;
+            }
+            final long seen;
+            synchronized (this) {
+                seen = changes;
+            }
+            // read outside of the monitor, workspace managers notify about changes while holding their own lock
+            Map<String, Map<String, String>> workspaces = readWorkspaces();
+            synchronized (this) {
+                if (snapshot == null) {
+                    // versions of a restarted server should not collide with versions clients already have
+                    snapshot = new WorkspaceSnapshot(System.currentTimeMillis(), workspaces);
+                } else if (!snapshot.hasSameContent(workspaces)) {
+                    snapshot = new WorkspaceSnapshot(snapshot.getVersion() + 1, workspaces);
+                    // wake up clients waiting for a change the workspace manager did not notify about
+                    notifyAll();
+                }
+                snapshotChanges = seen;
+                snapshotTime = System.currentTimeMillis();
+                return snapshot;
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * @return snapshot if there has been no change since it was built and it is not too old, <code>null</code>
+     *         otherwise
+     */
+    private synchronized WorkspaceSnapshot getCurrentSnapshot() {
+        if (snapshot != null && snapshotChanges == changes &&
+                System.currentTimeMillis() - snapshotTime < maxSnapshotAge) {
+            return snapshot;
+        }
+        return null;
+    }
+
+    public WorkspaceSnapshot awaitChange(long version, long timeoutMillis) throws RemoteException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            WorkspaceSnapshot current = getSnapshot();
+            long remaining = deadline - System.currentTimeMillis();
+            if (current.getVersion() != version || remaining <= 0) {
+                return current;
+            }
+            synchronized (this) {
+                // wait unless the snapshot changed or a change happened since it was taken
+                if (snapshot == current && snapshotChanges == changes) {
+                    try {
+                        wait(Math.min(remaining, maxSnapshotAge));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return current;
+                    }
+                }
+            }
+        }
+    }
+
+    public void setAttribute(String workspaceId, String attributeKey, String attributeValue)
+            throws RemoteException {
+        getExistingWorkspace(workspaceId).setAttribute(attributeKey, attributeValue);
+        changed();
+    }
+
+    public void deleteWorkspace(String workspaceId) throws RemoteException {
+        getExistingWorkspace(workspaceId).delete();
+        changed();
+    }
+
+    private Workspace getExistingWorkspace(String workspaceId) {
+        Workspace workspace = delegate.getWorkspace(workspaceId);
+        if (workspace == null) {
+            throw new IllegalStateException("Workspace " + workspaceId + " either does not exist or was deleted.");
+        }
+        return workspace;
+    }
+
+    private Map<String, Map<String, String>> readWorkspaces() {
+        Map<String, Map<String, String>> workspaces = new LinkedHashMap<String, Map<String, String>>();
+        for (Workspace workspace : delegate.getWorkspaces()) {
+            Map<String, String> attributes = new HashMap<String, String>();
+            for (Iterator<String> i = workspace.getAttributeKeys(); i.hasNext();) {
+                String key = i.next();
+                attributes.put(key, workspace.getAttribute(key));
+            }
+            workspaces.put(workspace.getId(), attributes);
+        }
+        return workspaces;
+    }
+
+    private synchronized void changed() {
+        ++changes;
+        notifyAll();
+    }
 }
@@ -0,0 +1,92 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.workspace.rmi;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable copy of all workspaces and their attributes, transferred in a single RMI call. The version changes whenever
+ * the content changes, so clients can ask the server to wait until their copy is outdated.
+ */
+class WorkspaceSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+
+    private final Map<String, Map<String, String>> workspaces;
+
+    WorkspaceSnapshot(long version, Map<String, Map<String, String>> workspaces) {
+        this.version = version;
+        this.workspaces = workspaces;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean hasSameContent(Map<String, Map<String, String>> workspaces) {
+        return this.workspaces.equals(workspaces);
+    }
+
+    public Collection<String> getWorkspaceIds() {
+        return Collections.unmodifiableSet(workspaces.keySet());
+    }
+
+    public boolean workspaceExists(String workspaceId) {
+        return workspaces.containsKey(workspaceId);
+    }
+
+    public String getAttribute(String workspaceId, String key) {
+        Map<String, String> attributes = workspaces.get(workspaceId);
+        return attributes != null ? attributes.get(key) : null;
+    }
+
+    public Set<String> getAttributeKeys(String workspaceId) {
+        Map<String, String> attributes = workspaces.get(workspaceId);
+        return attributes != null ? Collections.unmodifiableSet(attributes.keySet()) : Collections.<String>emptySet();
+    }
+
+    /**
+     * Returns ids of workspaces that have all given attributes.
+     *
+     * @param workspaceAttributes
+     * @return list of workspace ids
+     */
+    public List<String> getWorkspaceIds(Map<String, String> workspaceAttributes) {
+        List<String> result = new ArrayList<String>();
+        for (Map.Entry<String, Map<String, String>> workspace : workspaces.entrySet()) {
+            if (matches(workspace.getValue(), workspaceAttributes)) {
+                result.add(workspace.getKey());
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(Map<String, String> attributes, Map<String, String> required) {
+        for (Map.Entry<String, String> entry : required.entrySet()) {
+            String value = attributes.get(entry.getKey());
+            if (value == null || !value.equals(entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
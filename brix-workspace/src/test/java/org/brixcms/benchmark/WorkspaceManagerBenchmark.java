@@ -0,0 +1,109 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.benchmark;
+
+import org.brixcms.workspace.InMemoryWorkspaceManager;
+import org.brixcms.workspace.Workspace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the workspace lookups done on every request (resolving a workspace by its attributes and checking that it
+ * exists) from 63 threads while another thread keeps changing attributes, and the cost of an attribute change
+ * depending on the number of workspaces.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.brixcms.benchmark.WorkspaceManagerBenchmark</code> or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkspaceManagerBenchmark {
+    @Param({"50", "50000"})
+    private int workspaces;
+
+    private InMemoryWorkspaceManager manager;
+
+    private Workspace scratch;
+
+    private Map<String, String> attributes;
+
+    private int changes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        manager = new InMemoryWorkspaceManager();
+        for (int i = 0; i < workspaces; ++i) {
+            Workspace w = manager.createWorkspace();
+            w.setAttribute("type", "site");
+            w.setAttribute("name", "site" + i);
+            w.setAttribute("state", "published");
+        }
+        scratch = manager.createWorkspace();
+        scratch.setAttribute("type", "site");
+
+        attributes = new HashMap<String, String>();
+        attributes.put("type", "site");
+        attributes.put("name", "site7");
+        attributes.put("state", "published");
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(63)
+    public void lookup(Blackhole blackhole) {
+        List<Workspace> result = manager.getWorkspacesFiltered(attributes);
+        blackhole.consume(manager.workspaceExists(result.get(0).getId()));
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void change() {
+        scratch.setAttribute("name", "scratch" + (changes++ % 10));
+    }
+
+    @Benchmark
+    public void setAttribute() {
+        scratch.setAttribute("state", (changes++ & 1) == 0 ? "published" : "draft");
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(WorkspaceManagerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.workspace;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link ImmutableHashMap}
+ */
+public class ImmutableHashMapTest {
+    @Test
+    public void testPlusAndMinusLeaveOriginalUnchanged() {
+        ImmutableHashMap<String, String> empty = ImmutableHashMap.empty();
+        ImmutableHashMap<String, String> one = empty.plus("a", "1");
+        ImmutableHashMap<String, String> two = one.plus("b", "2");
+        ImmutableHashMap<String, String> changed = two.plus("a", "3");
+
+        assertTrue(empty.isEmpty());
+        assertEquals(1, one.size());
+        assertEquals("1", one.get("a"));
+        assertNull(one.get("b"));
+        assertEquals(2, two.size());
+        assertEquals("1", two.get("a"));
+        assertEquals("3", changed.get("a"));
+        assertEquals(2, changed.size());
+
+        ImmutableHashMap<String, String> removed = changed.minus("a");
+        assertEquals(1, removed.size());
+        assertFalse(removed.containsKey("a"));
+        assertEquals("3", changed.get("a"));
+        assertSame(removed, removed.minus("a"));
+        assertSame(one, one.plus("a", "1"));
+        assertTrue(removed.minus("b").isEmpty());
+    }
+
+    @Test
+    public void testCollidingKeys() {
+        // "Aa" and "BB" have the same hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        ImmutableHashMap<String, Integer> map = ImmutableHashMap.<String, Integer>empty()
+                .plus("Aa", 1).plus("BB", 2).plus("AaAa", 3).plus("BBBB", 4).plus("AaBB", 5);
+        assertEquals(5, map.size());
+        assertEquals(Integer.valueOf(1), map.get("Aa"));
+        assertEquals(Integer.valueOf(2), map.get("BB"));
+        assertEquals(Integer.valueOf(5), map.get("AaBB"));
+
+        map = map.minus("Aa").plus("BB", 6);
+        assertEquals(4, map.size());
+        assertNull(map.get("Aa"));
+        assertEquals(Integer.valueOf(6), map.get("BB"));
+        assertEquals(Integer.valueOf(4), map.get("BBBB"));
+
+        map = map.minus("BB").minus("AaAa").minus("BBBB").minus("AaBB");
+        assertTrue(map.isEmpty());
+        assertTrue(map.entrySet().isEmpty());
+    }
+
+    @Test
+    public void testBehavesLikeHashMap() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        ImmutableHashMap<Integer, Integer> map = ImmutableHashMap.empty();
+        for (int i = 0; i < 100000; ++i) {
+            // keys spread over the whole int range and small ones, to get both deep and dense tries
+            int key = random.nextBoolean() ? random.nextInt() : random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(expected, new HashMap<Integer, Integer>(map));
+        for (Integer key : expected.keySet()) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
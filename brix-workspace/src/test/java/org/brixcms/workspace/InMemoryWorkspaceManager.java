@@ -0,0 +1,66 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.workspace;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Workspace manager keeping everything in memory, for tests of the workspace index and of code built on top of
+ * workspace managers.
+ */
+public class InMemoryWorkspaceManager extends AbstractWorkspaceManager {
+    public List<Workspace> getWorkspaces() {
+        List<Workspace> result = new ArrayList<Workspace>();
+        for (String id : getAvailableWorkspaceIds()) {
+            result.add(new WorkspaceImpl(id));
+        }
+        return result;
+    }
+
+    public Workspace createWorkspace() {
+        String id = getWorkspaceId(UUID.randomUUID());
+        setWorkspaceAvailable(id, true);
+        return new WorkspaceImpl(id);
+    }
+
+    public boolean workspaceExists(String workspaceId) {
+        return isWorkspaceAvailable(workspaceId);
+    }
+
+    @Override
+    protected synchronized void delete(String workspaceId) {
+        setWorkspaceAvailable(workspaceId, false);
+        removeCachedWorkspaceAttributes(workspaceId);
+    }
+
+    @Override
+    protected String getAttribute(String workspaceId, String key) {
+        return getCachedAttribute(workspaceId, key);
+    }
+
+    @Override
+    protected Iterator<String> getAttributeKeys(String workspaceId) {
+        return getCachedAttributeKeys(workspaceId);
+    }
+
+    @Override
+    protected synchronized void setAttribute(String workspaceId, String attributeKey, String attributeValue) {
+        setCachedAttribute(workspaceId, attributeKey, attributeValue);
+    }
+}
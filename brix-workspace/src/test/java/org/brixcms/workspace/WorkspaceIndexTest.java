@@ -0,0 +1,166 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.workspace;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the workspace index of {@link AbstractWorkspaceManager}. Throughput under contention is measured by
+ * <code>org.brixcms.benchmark.WorkspaceManagerBenchmark</code>.
+ */
+public class WorkspaceIndexTest {
+    @Test
+    public void testFilterByAttributes() {
+        final int count = 1000;
+        final InMemoryWorkspaceManager manager = new InMemoryWorkspaceManager();
+        List<Workspace> workspaces = new ArrayList<Workspace>(count);
+        for (int i = 0; i < count; ++i) {
+            Workspace w = manager.createWorkspace();
+            w.setAttribute("type", "site");
+            w.setAttribute("state", "published");
+            w.setAttribute("name", "site" + i);
+            workspaces.add(w);
+        }
+
+        Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("type", "site");
+        attributes.put("state", "published");
+        assertEquals(count, manager.getWorkspacesFiltered(attributes).size());
+
+        workspaces.get(7).setAttribute("state", "draft");
+        workspaces.get(8).delete();
+        assertEquals(count - 2, manager.getWorkspacesFiltered(attributes).size());
+        assertFalse(manager.workspaceExists(workspaces.get(8).getId()));
+
+        attributes.put("state", "draft");
+        List<Workspace> drafts = manager.getWorkspacesFiltered(attributes);
+        assertEquals(1, drafts.size());
+        assertEquals(workspaces.get(7), drafts.get(0));
+        assertEquals("site7", drafts.get(0).getAttribute("name"));
+
+        workspaces.get(7).setAttribute("state", null);
+        assertTrue(manager.getWorkspacesFiltered(attributes).isEmpty());
+        assertNull(workspaces.get(7).getAttribute("state"));
+
+        attributes.put("state", "missing");
+        assertTrue(manager.getWorkspacesFiltered(attributes).isEmpty());
+    }
+
+    @Test
+    public void testAvailableWorkspaceIdsAreSnapshot() {
+        InMemoryWorkspaceManager manager = new InMemoryWorkspaceManager();
+        Workspace first = manager.createWorkspace();
+        Set<String> ids = manager.getAvailableWorkspaceIds();
+
+        Workspace second = manager.createWorkspace();
+        first.delete();
+
+        assertEquals(1, ids.size());
+        assertTrue(ids.contains(first.getId()));
+        assertFalse(ids.contains(second.getId()));
+        assertEquals(1, manager.getWorkspaces().size());
+        assertEquals(second, manager.getWorkspaces().get(0));
+        try {
+            ids.remove(first.getId());
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Lookups must see a complete index while attributes change and workspaces are created and deleted.
+     */
+    @Test(timeout = 20000)
+    public void testLookupsSeeConsistentIndex() throws InterruptedException {
+        final InMemoryWorkspaceManager manager = new InMemoryWorkspaceManager();
+        for (int i = 0; i < 50; ++i) {
+            Workspace w = manager.createWorkspace();
+            w.setAttribute("type", "site");
+            w.setAttribute("name", "site" + i);
+        }
+        final Workspace scratch = manager.createWorkspace();
+        scratch.setAttribute("type", "scratch");
+        scratch.setAttribute("name", "a");
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int i = 0; i < 4; ++i) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Map<String, String> site = new HashMap<String, String>();
+                        site.put("type", "site");
+                        site.put("name", "site7");
+                        Map<String, String> scratches = new HashMap<String, String>();
+                        scratches.put("type", "scratch");
+                        while (!stop.get()) {
+                            List<Workspace> result = manager.getWorkspacesFiltered(site);
+                            assertEquals(1, result.size());
+                            assertTrue(manager.workspaceExists(result.get(0).getId()));
+
+                            Set<String> ids = manager.getAvailableWorkspaceIds();
+                            int size = ids.size();
+                            int iterated = 0;
+                            for (String id : ids) {
+                                assertTrue(ids.contains(id));
+                                ++iterated;
+                            }
+                            assertEquals(size, iterated);
+                            assertEquals(1, manager.getWorkspacesFiltered(scratches).size());
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        Set<String> created = new HashSet<String>();
+        for (int i = 0; i < 2000 && failure.get() == null; ++i) {
+            scratch.setAttribute("name", (i & 1) == 0 ? "b" : "a");
+            if (i % 10 == 0) {
+                Workspace w = manager.createWorkspace();
+                created.add(w.getId());
+                w.delete();
+            }
+        }
+        stop.set(true);
+        done.await();
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        for (String id : created) {
+            assertFalse(manager.workspaceExists(id));
+        }
+    }
+}
@@ -32,6 +32,7 @@ import javax.jcr.SimpleCredentials;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -231,6 +232,53 @@ public class WorkspaceManagerTest {
         assertNull(manager.getWorkspace(w2.getId()));
     }
 
+    @Test
+    public void testWorkspaceDeletionNotifiesListeners() throws RepositoryException {
+        final List<String> deleted = new ArrayList<String>();
+        ((AbstractWorkspaceManager) manager).addWorkspaceListener(new WorkspaceListener() {
+            public void workspaceDeleted(String workspaceId) {
+                deleted.add(workspaceId);
+            }
+
+            public void workspaceAttributeChanged(String workspaceId, String key, String value) {
+            }
+        });
+
+        Workspace w1 = manager.createWorkspace();
+        Workspace w2 = manager.createWorkspace();
+        assertTrue(deleted.isEmpty());
+
+        w1.delete();
+        assertEquals(Arrays.asList(w1.getId()), deleted);
+
+        w2.delete();
+        assertEquals(Arrays.asList(w1.getId(), w2.getId()), deleted);
+    }
+
+    @Test
+    public void testClusteredWorkspaceDeletionNotifiesListenersOnce() throws Exception {
+        ClusteredManager node1 = new ClusteredManager(repo);
+        node1.initialize();
+        Workspace workspace = node1.createWorkspace();
+        ClusteredManager node2 = new ClusteredManager(repo);
+        node2.initialize();
+
+        final List<String> deleted1 = new ArrayList<String>();
+        final List<String> deleted2 = new ArrayList<String>();
+        node1.addWorkspaceListener(new RecordingListener(deleted1));
+        node2.addWorkspaceListener(new RecordingListener(deleted2));
+
+        workspace.delete();
+
+        // the other node learns about the deletion through observation
+        for (int i = 0; i < 50 && deleted2.isEmpty(); ++i) {
+            Thread.sleep(100);
+        }
+        Thread.sleep(500);
+        assertEquals(Arrays.asList(workspace.getId()), deleted1);
+        assertEquals(Arrays.asList(workspace.getId()), deleted2);
+    }
+
     @Test
     public void testWorkspaceFiltering() throws RepositoryException {
         // set up test workspaces
@@ -329,4 +377,63 @@ public class WorkspaceManagerTest {
             }
         }
     }
+
+    private static class RecordingListener implements WorkspaceListener {
+        private final List<String> deleted;
+
+        private RecordingListener(List<String> deleted) {
+            this.deleted = deleted;
+        }
+
+        public void workspaceDeleted(String workspaceId) {
+            synchronized (deleted) {
+                deleted.add(workspaceId);
+            }
+        }
+
+        public void workspaceAttributeChanged(String workspaceId, String key, String value) {
+        }
+    }
+
+    private static class ClusteredManager extends AbstractClusteredWorkspaceManager {
+        private final Repository repo;
+
+        private ClusteredManager(Repository repo) {
+            this.repo = repo;
+        }
+
+        @Override
+        protected Session createSession(String workspaceName) {
+            Credentials credentials = new SimpleCredentials("admin", "admin".toCharArray());
+            try {
+                return repo.login(credentials, workspaceName);
+            } catch (RepositoryException e) {
+                throw new JcrException(e);
+            }
+        }
+
+        @Override
+        protected void createWorkspace(String workspaceName) {
+            Session session = createSession(null);
+            try {
+                session.getWorkspace().createWorkspace(workspaceName);
+            } catch (RepositoryException e) {
+                throw new JcrException(e);
+            } finally {
+                session.logout();
+            }
+        }
+
+        @Override
+        protected List<String> getAccessibleWorkspaceIds() {
+            Session session = createSession(null);
+            try {
+                return Arrays.asList(session.getWorkspace().getAccessibleWorkspaceNames());
+            } catch (RepositoryException e) {
+                throw new JcrException(e);
+            } finally {
+                session.logout();
+            }
+        }
+    }
 }
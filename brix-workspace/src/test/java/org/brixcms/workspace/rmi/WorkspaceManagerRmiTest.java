@@ -1,58 +1,201 @@
-///**
-// * Licensed under the Apache License, Version 2.0 (the "License");
-// * you may not use this file except in compliance with the License.
-// * You may obtain a copy of the License at
-// *
-// *     http://www.apache.org/licenses/LICENSE-2.0
-// *
-// * Unless required by applicable law or agreed to in writing, software
-// * distributed under the License is distributed on an "AS IS" BASIS,
-// * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
-// * See the License for the specific language governing permissions and
-// * limitations under the License.
-// */
-//
-//package org.brixcms.workspace.rmi;
-//
-//import org.brixcms.workspace.Workspace;
-//import org.brixcms.workspace.WorkspaceManager;
-//import org.easymock.classextension.EasyMock;
-//import org.junit.Ignore;
-//import org.junit.Test;
-//
-//import java.rmi.registry.LocateRegistry;
-//import java.rmi.registry.Registry;
-//import java.rmi.server.RemoteStub;
-//import java.rmi.server.UnicastRemoteObject;
-//
-//
-//// FIXME figure out why this is failing on teamcity
-//@Ignore
-//public class WorkspaceManagerRmiTest {
-//    @Test
-//    public void test() throws Exception {
-//        WorkspaceManager remote = EasyMock.createMock(WorkspaceManager.class);
-//
-//        Workspace workspace = EasyMock.createMock(Workspace.class);
-//
-//        EasyMock.expect(remote.createWorkspace()).andReturn(workspace);
-//        workspace.delete();
-//
-//        EasyMock.replay(remote, workspace);
-//
-//        Registry registry = LocateRegistry.createRegistry(10000);
-//
-//        ServerWorkspaceManager server = new ServerWorkspaceManager(remote);
-//        RemoteStub stub = UnicastRemoteObject.exportObject(server);
-//        registry.rebind("wm", stub);
-//
-//        RemoteWorkspaceManager client = (RemoteWorkspaceManager) registry.lookup("wm");
-//        WorkspaceManager local = new ClientWorkspaceManager(client);
-//
-//        Workspace w = local.createWorkspace();
-//        w.delete();
-//        EasyMock.verify(remote, workspace);
-//
-//        UnicastRemoteObject.unexportObject(server, true);
-//    }
-//}
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.workspace.rmi;
+
+import org.brixcms.workspace.InMemoryWorkspaceManager;
+import org.brixcms.workspace.Workspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the client and server workspace managers against an in-process RMI registry.
+ */
+public class WorkspaceManagerRmiTest {
+    private CountingWorkspaceManager local;
+    private ServerWorkspaceManager server;
+    private Registry registry;
+    private RemoteWorkspaceManager remote;
+    private ClientWorkspaceManager client;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        local = new CountingWorkspaceManager();
+        server = new ServerWorkspaceManager(local);
+        registry = LocateRegistry.createRegistry(0);
+        registry.rebind("wm", UnicastRemoteObject.exportObject(server, 0));
+        remote = (RemoteWorkspaceManager) registry.lookup("wm");
+        client = new ClientWorkspaceManager(remote);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        client.close();
+        UnicastRemoteObject.unexportObject(server, true);
+        UnicastRemoteObject.unexportObject(registry, true);
+    }
+
+    @Test
+    public void testClientChangesAreVisible() {
+        Workspace w = client.createWorkspace();
+        w.setAttribute("type", "site");
+        assertTrue(local.workspaceExists(w.getId()));
+        assertEquals("site", local.getWorkspace(w.getId()).getAttribute("type"));
+
+        Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("type", "site");
+        List<Workspace> filtered = client.getWorkspacesFiltered(attributes);
+        assertEquals(1, filtered.size());
+        assertEquals(w.getId(), filtered.get(0).getId());
+
+        w.delete();
+        assertFalse(client.workspaceExists(w.getId()));
+        assertFalse(local.workspaceExists(w.getId()));
+    }
+
+    @Test
+    public void testSnapshotIsSharedUntilChange() throws Exception {
+        local.createWorkspace().setAttribute("type", "site");
+        WorkspaceSnapshot first = remote.getSnapshot();
+        int reads = local.reads.get();
+
+        assertEquals(first.getVersion(), remote.getSnapshot().getVersion());
+        assertEquals(first.getVersion(), remote.awaitChange(first.getVersion(), 100).getVersion());
+        assertEquals(reads, local.reads.get());
+
+        local.getWorkspaces().get(0).setAttribute("type", "template");
+        WorkspaceSnapshot second = remote.getSnapshot();
+        assertTrue(second.getVersion() != first.getVersion());
+        assertEquals("template", second.getAttribute(second.getWorkspaceIds().iterator().next(), "type"));
+    }
+
+    @Test
+    public void testAwaitChangeReturnsOnChange() throws Exception {
+        final Workspace w = local.createWorkspace();
+        final long version = remote.getSnapshot().getVersion();
+
+        List<Future<WorkspaceSnapshot>> waiting = new ArrayList<Future<WorkspaceSnapshot>>();
+        for (int i = 0; i < 10; ++i) {
+            waiting.add(executor.submit(new Callable<WorkspaceSnapshot>() {
+                public WorkspaceSnapshot call() throws Exception {
+                    return remote.awaitChange(version, 30000);
+                }
+            }));
+        }
+        // let the clients start waiting
+        Thread.sleep(200);
+        int reads = local.reads.get();
+
+        long start = System.currentTimeMillis();
+        w.setAttribute("state", "published");
+        for (Future<WorkspaceSnapshot> future : waiting) {
+            WorkspaceSnapshot snapshot = future.get(5, TimeUnit.SECONDS);
+            assertTrue(snapshot.getVersion() != version);
+            assertEquals("published", snapshot.getAttribute(w.getId(), "state"));
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        // the waiting clients share a single rebuild of the snapshot
+        assertEquals(reads + 1, local.reads.get());
+    }
+
+    @Test
+    public void testAwaitChangeTimesOut() throws Exception {
+        long version = remote.getSnapshot().getVersion();
+        long start = System.currentTimeMillis();
+        WorkspaceSnapshot snapshot = remote.awaitChange(version, 300);
+        assertEquals(version, snapshot.getVersion());
+        assertTrue(System.currentTimeMillis() - start >= 300);
+    }
+
+    @Test
+    public void testClientReceivesServerChanges() throws Exception {
+        Workspace w = local.createWorkspace();
+        w.setAttribute("name", "a");
+        assertEquals("a", client.getWorkspace(w.getId()).getAttribute("name"));
+
+        w.setAttribute("name", "b");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"b".equals(client.getSnapshot().getAttribute(w.getId(), "name"))) {
+            assertTrue("Change was not received", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testCloseStopsUpdater() throws Exception {
+        client.getWorkspaces();
+        Thread updater = client.getUpdater();
+        assertTrue(updater.isAlive());
+
+        client.close();
+        // a pending remote call can not be interrupted, end the wait of the updater
+        server.setAttribute(local.createWorkspace().getId(), "type", "site");
+        updater.join(5000);
+        assertFalse(updater.isAlive());
+    }
+
+    @Test(timeout = 20000)
+    public void testUpdaterStopsWhenClientIsCollected() throws Exception {
+        ClientWorkspaceManager unused = new ClientWorkspaceManager(remote);
+        unused.getWorkspaces();
+        Thread updater = unused.getUpdater();
+        assertTrue(updater.isAlive());
+
+        WeakReference<ClientWorkspaceManager> reference = new WeakReference<ClientWorkspaceManager>(unused);
+        unused = null;
+        while (reference.get() != null) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        // end the wait of the updater
+        server.setAttribute(local.createWorkspace().getId(), "type", "site");
+        updater.join(5000);
+        assertFalse(updater.isAlive());
+    }
+
+    /**
+     * Counts how often all workspaces are read.
+     */
+    private static class CountingWorkspaceManager extends InMemoryWorkspaceManager {
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public List<Workspace> getWorkspaces() {
+            reads.incrementAndGet();
+            return super.getWorkspaces();
+        }
+    }
+}
@@ -337,6 +337,18 @@ public interface JcrSession extends BrixSession {
 
     // Caching related methods
 
+    /**
+     * Enables caching of nodes looked up by path and of nodes referenced by properties, in addition to nodes looked up
+     * by identifier. Cached nodes are dropped whenever this session saves, refreshes, moves or removes items or changes
+     * properties, but changes saved by other sessions are not noticed. The cache is thus meant for short lived sessions,
+     * e.g. sessions used for a single request.
+     *
+     * @param enabled
+     */
+    public void setNodeCacheEnabled(boolean enabled);
+
+    public boolean isNodeCacheEnabled();
+
     /**
      * Each wrapped node should call this method when the remove() method is invoked on it.
      */
@@ -373,6 +385,13 @@ public interface JcrSession extends BrixSession {
          */
         public void nodeSaved(JcrNode node);
 
+        /**
+         * Invoked after the save started by {@link JcrNode#save()} has succeeded.
+         *
+         * @param node
+         */
+        public void nodeSaveSucceeded(JcrNode node);
+
         /**
          * Invoked when the underlying JCR method throws an exception.
          *
@@ -70,6 +70,12 @@ abstract class AbstractWrapper {
         return null;
     }
 
+    /**
+     * Translates exception thrown by the delegate. Frequently called methods catch exceptions themselves and call this
+     * directly instead of going through {@link #executeCallback(Callback)}, which saves allocating the callback.
+     *
+     * @param e
+     */
     protected void handleException(Exception e) {
         // TODO: This is definitely not what we want to do.
         // Inspect the exception and register flash messages for certain
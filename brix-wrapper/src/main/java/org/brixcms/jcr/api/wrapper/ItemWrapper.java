@@ -56,45 +56,50 @@ abstract class ItemWrapper extends AbstractWrapper implements JcrItem {
     }
 
     public String getPath() {
-        return executeCallback(new Callback<String>() {
-            public String execute() throws Exception {
-                return getDelegate().getPath();
-            }
-        });
+        try {
+            return getDelegate().getPath();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
 
 
     public String getName() {
-        return executeCallback(new Callback<String>() {
-            public String execute() throws Exception {
-                return getDelegate().getName();
-            }
-        });
+        try {
+            return getDelegate().getName();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrItem getAncestor(final int depth) {
-        return executeCallback(new Callback<JcrItem>() {
-            public JcrItem execute() throws Exception {
-                return JcrItem.Wrapper.wrap(getDelegate().getAncestor(depth), getJcrSession());
-            }
-        });
+        try {
+            return JcrItem.Wrapper.wrap(getDelegate().getAncestor(depth), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrNode getParent() {
-        return executeCallback(new Callback<JcrNode>() {
-            public JcrNode execute() throws Exception {
-                return JcrNode.Wrapper.wrap(getDelegate().getParent(), getJcrSession());
-            }
-        });
+        try {
+            return JcrNode.Wrapper.wrap(getDelegate().getParent(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public int getDepth() {
-        return executeCallback(new Callback<Integer>() {
-            public Integer execute() throws Exception {
-                return getDelegate().getDepth();
-            }
-        });
+        try {
+            return getDelegate().getDepth();
+        } catch (Exception e) {
+            handleException(e);
+            return 0;
+        }
     }
 
     public JcrSession getSession() {
@@ -110,27 +115,29 @@ abstract class ItemWrapper extends AbstractWrapper implements JcrItem {
     }
 
     public boolean isModified() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().isModified();
-            }
-        });
+        try {
+            return getDelegate().isModified();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public boolean isSame(final Item otherItem) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().isSame(unwrap(otherItem));
-            }
-        });
+        try {
+            return getDelegate().isSame(unwrap(otherItem));
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public void accept(final ItemVisitor visitor) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().accept(visitor);
-            }
-        });
+        try {
+            getDelegate().accept(visitor);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -138,27 +145,27 @@ abstract class ItemWrapper extends AbstractWrapper implements JcrItem {
      */
     @Deprecated
     public void save() {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().getSession().save();
-            }
-        });
+        try {
+            getDelegate().getSession().save();
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void refresh(final boolean keepChanges) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().refresh(keepChanges);
-            }
-        });
+        try {
+            getDelegate().refresh(keepChanges);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void remove() {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().remove();
-            }
-        });
+        try {
+            getDelegate().remove();
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public Item getDelegate() {
@@ -69,11 +69,11 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
 
 
     public void accept(final ItemVisitor visitor) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                visitor.visit(NodeWrapper.this);
-            }
-        });
+        try {
+            visitor.visit(NodeWrapper.this);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -87,6 +87,9 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
             behavior.nodeSaved(this);
         }
         super.getJcrSession().save();
+        if (behavior != null) {
+            behavior.nodeSaveSucceeded(this);
+        }
     }
 
     @Override
@@ -96,102 +99,112 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
 
 
     public JcrNode addNode(final String relPath) {
-        return executeCallback(new Callback<JcrNode>() {
-            public JcrNode execute() throws Exception {
-                return JcrNode.Wrapper.wrap(getDelegate().addNode(relPath), getJcrSession());
-            }
-        });
+        try {
+            return JcrNode.Wrapper.wrap(getDelegate().addNode(relPath), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrNode addNode(final String relPath, final String primaryNodeTypeName) {
-        return executeCallback(new Callback<JcrNode>() {
-            public JcrNode execute() throws Exception {
-                return JcrNode.Wrapper.wrap(getDelegate().addNode(relPath, primaryNodeTypeName),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrNode.Wrapper.wrap(getDelegate().addNode(relPath, primaryNodeTypeName),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public void orderBefore(final String srcChildRelPath, final String destChildRelPath) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().orderBefore(srcChildRelPath, destChildRelPath);
-            }
-        });
+        try {
+            getDelegate().orderBefore(srcChildRelPath, destChildRelPath);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public JcrProperty setProperty(final String name, final Value value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrap(value)),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrap(value)),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final Value value, final int type) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate()
-                        .setProperty(name, unwrap(value), type), getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate()
+                    .setProperty(name, unwrap(value), type), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final Value[] values) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                final Value[] unwrapped = unwrap(values, new Value[values.length]);
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrapped),
-                        getJcrSession());
-            }
-        });
+        try {
+            final Value[] unwrapped = unwrap(values, new Value[values.length]);
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrapped),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final Value[] values, final int type) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                final Value[] unwrapped = unwrap(values, new Value[values.length]);
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrapped, type),
-                        getJcrSession());
-            }
-        });
+        try {
+            final Value[] unwrapped = unwrap(values, new Value[values.length]);
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrapped, type),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final String[] values) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, values),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, values),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final String[] values, final int type) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, values, type),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, values, type),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final String value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final String value, final int type) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value, type),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value, type),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -199,153 +212,170 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public JcrProperty setProperty(final String name, final InputStream value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final Binary value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrap(value)),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrap(value)),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final boolean value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final double value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final BigDecimal value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrap(value)),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrap(value)),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final long value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final Calendar value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, value),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty setProperty(final String name, final Node value) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrap(value)),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().setProperty(name, unwrap(value)),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrNode getNode(final String relPath) {
-        return executeCallback(new Callback<JcrNode>() {
-            public JcrNode execute() throws Exception {
-                return JcrNode.Wrapper.wrap(getDelegate().getNode(relPath), getJcrSession());
-            }
-        });
+        try {
+            return JcrNode.Wrapper.wrap(getDelegate().getNode(relPath), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrNodeIterator getNodes() {
-        return executeCallback(new Callback<JcrNodeIterator>() {
-            public JcrNodeIterator execute() throws Exception {
-                return JcrNodeIterator.Wrapper.wrap(getDelegate().getNodes(), getJcrSession());
-            }
-        });
+        try {
+            return JcrNodeIterator.Wrapper.wrap(getDelegate().getNodes(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrNodeIterator getNodes(final String namePattern) {
-        return executeCallback(new Callback<JcrNodeIterator>() {
-            public JcrNodeIterator execute() throws Exception {
-                return JcrNodeIterator.Wrapper.wrap(getDelegate().getNodes(namePattern),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrNodeIterator.Wrapper.wrap(getDelegate().getNodes(namePattern),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrNodeIterator getNodes(final String[] nameGlobs) {
-        return executeCallback(new Callback<JcrNodeIterator>() {
-            public JcrNodeIterator execute() throws Exception {
-                return JcrNodeIterator.Wrapper.wrap(getDelegate().getNodes(nameGlobs),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrNodeIterator.Wrapper.wrap(getDelegate().getNodes(nameGlobs),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty getProperty(final String relPath) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper
-                        .wrap(getDelegate().getProperty(relPath), getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper
+                    .wrap(getDelegate().getProperty(relPath), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrPropertyIterator getProperties() {
-        return executeCallback(new Callback<JcrPropertyIterator>() {
-            public JcrPropertyIterator execute() throws Exception {
-                return JcrPropertyIterator.Wrapper.wrap(getDelegate().getProperties(),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrPropertyIterator.Wrapper.wrap(getDelegate().getProperties(),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrPropertyIterator getProperties(final String namePattern) {
-        return executeCallback(new Callback<JcrPropertyIterator>() {
-            public JcrPropertyIterator execute() throws Exception {
-                return JcrPropertyIterator.Wrapper.wrap(getDelegate().getProperties(namePattern),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrPropertyIterator.Wrapper.wrap(getDelegate().getProperties(namePattern),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrPropertyIterator getProperties(final String[] nameGlobs) {
-        return executeCallback(new Callback<JcrPropertyIterator>() {
-            public JcrPropertyIterator execute() throws Exception {
-                return JcrPropertyIterator.Wrapper.wrap(getDelegate().getProperties(nameGlobs),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrPropertyIterator.Wrapper.wrap(getDelegate().getProperties(nameGlobs),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrItem getPrimaryItem() {
-        return executeCallback(new Callback<JcrItem>() {
-            public JcrItem execute() throws Exception {
-                return JcrItem.Wrapper.wrap(getDelegate().getPrimaryItem(), getJcrSession());
-            }
-        });
+        try {
+            return JcrItem.Wrapper.wrap(getDelegate().getPrimaryItem(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -353,157 +383,173 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public String getUUID() {
-        return executeCallback(new Callback<String>() {
-            public String execute() throws Exception {
-                return getDelegate().getUUID();
-            }
-        });
+        try {
+            return getDelegate().getUUID();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public String getIdentifier() {
-        return executeCallback(new Callback<String>() {
-            public String execute() throws Exception {
-                return getDelegate().getIdentifier();
-            }
-        });
+        try {
+            return getDelegate().getIdentifier();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public int getIndex() {
-        return executeCallback(new Callback<Integer>() {
-            public Integer execute() throws Exception {
-                return getDelegate().getIndex();
-            }
-        });
+        try {
+            return getDelegate().getIndex();
+        } catch (Exception e) {
+            handleException(e);
+            return 0;
+        }
     }
 
     public JcrPropertyIterator getReferences() {
-        return executeCallback(new Callback<JcrPropertyIterator>() {
-            public JcrPropertyIterator execute() throws Exception {
-                return JcrPropertyIterator.Wrapper.wrap(getDelegate().getReferences(),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrPropertyIterator.Wrapper.wrap(getDelegate().getReferences(),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrPropertyIterator getReferences(final String name) {
-        return executeCallback(new Callback<JcrPropertyIterator>() {
-            public JcrPropertyIterator execute() throws Exception {
-                return JcrPropertyIterator.Wrapper.wrap(getDelegate().getReferences(name),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrPropertyIterator.Wrapper.wrap(getDelegate().getReferences(name),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrPropertyIterator getWeakReferences() {
-        return executeCallback(new Callback<JcrPropertyIterator>() {
-            public JcrPropertyIterator execute() throws Exception {
-                return JcrPropertyIterator.Wrapper.wrap(getDelegate().getWeakReferences(), getJcrSession());
-            }
-        });
+        try {
+            return JcrPropertyIterator.Wrapper.wrap(getDelegate().getWeakReferences(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrPropertyIterator getWeakReferences(final String name) {
-        return executeCallback(new Callback<JcrPropertyIterator>() {
-            public JcrPropertyIterator execute() throws Exception {
-                return JcrPropertyIterator.Wrapper.wrap(getDelegate().getWeakReferences(name), getJcrSession());
-            }
-        });
+        try {
+            return JcrPropertyIterator.Wrapper.wrap(getDelegate().getWeakReferences(name), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public boolean hasNode(final String relPath) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().hasNode(relPath);
-            }
-        });
+        try {
+            return getDelegate().hasNode(relPath);
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public boolean hasProperty(final String relPath) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().hasProperty(relPath);
-            }
-        });
+        try {
+            return getDelegate().hasProperty(relPath);
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public boolean hasNodes() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().hasNodes();
-            }
-        });
+        try {
+            return getDelegate().hasNodes();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public boolean hasProperties() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().hasProperties();
-            }
-        });
+        try {
+            return getDelegate().hasProperties();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public NodeType getPrimaryNodeType() {
-        return executeCallback(new Callback<NodeType>() {
-            public NodeType execute() throws Exception {
-                return getDelegate().getPrimaryNodeType();
-            }
-        });
+        try {
+            return getDelegate().getPrimaryNodeType();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public NodeType[] getMixinNodeTypes() {
-        return executeCallback(new Callback<NodeType[]>() {
-            public NodeType[] execute() throws Exception {
-                return getDelegate().getMixinNodeTypes();
-            }
-        });
+        try {
+            return getDelegate().getMixinNodeTypes();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public boolean isNodeType(final String nodeTypeName) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().isNodeType(nodeTypeName);
-            }
-        });
+        try {
+            return getDelegate().isNodeType(nodeTypeName);
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public void setPrimaryType(final String nodeTypeName) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setPrimaryType(nodeTypeName);
-            }
-        });
+        try {
+            getDelegate().setPrimaryType(nodeTypeName);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void addMixin(final String mixinName) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().addMixin(mixinName);
-            }
-        });
+        try {
+            getDelegate().addMixin(mixinName);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void removeMixin(final String mixinName) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().removeMixin(mixinName);
-            }
-        });
+        try {
+            getDelegate().removeMixin(mixinName);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public boolean canAddMixin(final String mixinName) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().canAddMixin(mixinName);
-            }
-        });
+        try {
+            return getDelegate().canAddMixin(mixinName);
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public NodeDefinition getDefinition() {
-        return executeCallback(new Callback<NodeDefinition>() {
-            public NodeDefinition execute() throws Exception {
-                return getDelegate().getDefinition();
-            }
-        });
+        try {
+            return getDelegate().getDefinition();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -511,19 +557,20 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public JcrVersion checkin() {
-        return executeCallback(new Callback<JcrVersion>() {
-            public JcrVersion execute() throws Exception {
-                final Node delegate = getDelegate();
-
-                if (delegate instanceof Version) {
-                    VersionManager vm = delegate.getSession().getWorkspace().getVersionManager();
-                    if (vm.isCheckedOut(delegate.getPath())) {
-                        return JcrVersion.Wrapper.wrap(vm.checkin(delegate.getPath()), getJcrSession());
-                    }
+        try {
+            final Node delegate = getDelegate();
+
+            if (delegate instanceof Version) {
+                VersionManager vm = delegate.getSession().getWorkspace().getVersionManager();
+                if (vm.isCheckedOut(delegate.getPath())) {
+                    return JcrVersion.Wrapper.wrap(vm.checkin(delegate.getPath()), getJcrSession());
                 }
-                return null;
             }
-        });
+            return null;
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -531,14 +578,14 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public void checkout() {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                if (getDelegate() instanceof Version) {
-                    VersionManager vm = getDelegate().getSession().getWorkspace().getVersionManager();
-                    vm.checkout(getDelegate().getPath());
-                }
+        try {
+            if (getDelegate() instanceof Version) {
+                VersionManager vm = getDelegate().getSession().getWorkspace().getVersionManager();
+                vm.checkout(getDelegate().getPath());
             }
-        });
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -546,11 +593,11 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public void doneMerge(final Version version) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().doneMerge(unwrap(version));
-            }
-        });
+        try {
+            getDelegate().doneMerge(unwrap(version));
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -558,19 +605,19 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public void cancelMerge(final Version version) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().cancelMerge(unwrap(version));
-            }
-        });
+        try {
+            getDelegate().cancelMerge(unwrap(version));
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void update(final String srcWorkspaceName) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().update(srcWorkspaceName);
-            }
-        });
+        try {
+            getDelegate().update(srcWorkspaceName);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -578,52 +625,56 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public JcrNodeIterator merge(final String srcWorkspace, final boolean bestEffort) {
-        return executeCallback(new Callback<JcrNodeIterator>() {
-            public JcrNodeIterator execute() throws Exception {
-                return JcrNodeIterator.Wrapper.wrap(getDelegate().merge(srcWorkspace, bestEffort),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrNodeIterator.Wrapper.wrap(getDelegate().merge(srcWorkspace, bestEffort),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public String getCorrespondingNodePath(final String workspaceName) {
-        return executeCallback(new Callback<String>() {
-            public String execute() throws Exception {
-                return getDelegate().getCorrespondingNodePath(workspaceName);
-            }
-        });
+        try {
+            return getDelegate().getCorrespondingNodePath(workspaceName);
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrNodeIterator getSharedSet() {
-        return executeCallback(new Callback<JcrNodeIterator>() {
-            public JcrNodeIterator execute() throws Exception {
-                return JcrNodeIterator.Wrapper.wrap(getDelegate().getSharedSet(), getJcrSession());
-            }
-        });
+        try {
+            return JcrNodeIterator.Wrapper.wrap(getDelegate().getSharedSet(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public void removeSharedSet() {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().removeSharedSet();
-            }
-        });
+        try {
+            getDelegate().removeSharedSet();
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void removeShare() {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().removeShare();
-            }
-        });
+        try {
+            getDelegate().removeShare();
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public boolean isCheckedOut() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().isCheckedOut();
-            }
-        });
+        try {
+            return getDelegate().isCheckedOut();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     /**
@@ -631,11 +682,11 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public void restore(final String versionName, final boolean removeExisting) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().restore(versionName, removeExisting);
-            }
-        });
+        try {
+            getDelegate().restore(versionName, removeExisting);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -643,11 +694,11 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public void restore(final Version version, final boolean removeExisting) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().restore(unwrap(version), removeExisting);
-            }
-        });
+        try {
+            getDelegate().restore(unwrap(version), removeExisting);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -655,11 +706,11 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public void restore(final Version version, final String relPath, final boolean removeExisting) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().restore(unwrap(version), relPath, removeExisting);
-            }
-        });
+        try {
+            getDelegate().restore(unwrap(version), relPath, removeExisting);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -667,11 +718,11 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public void restoreByLabel(final String versionLabel, final boolean removeExisting) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().restoreByLabel(versionLabel, removeExisting);
-            }
-        });
+        try {
+            getDelegate().restoreByLabel(versionLabel, removeExisting);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -679,12 +730,13 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public JcrVersionHistory getVersionHistory() {
-        return executeCallback(new Callback<JcrVersionHistory>() {
-            public JcrVersionHistory execute() throws Exception {
-                return JcrVersionHistory.Wrapper.wrap(getDelegate().getVersionHistory(),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrVersionHistory.Wrapper.wrap(getDelegate().getVersionHistory(),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -692,11 +744,12 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public JcrVersion getBaseVersion() {
-        return executeCallback(new Callback<JcrVersion>() {
-            public JcrVersion execute() throws Exception {
-                return JcrVersion.Wrapper.wrap(getDelegate().getBaseVersion(), getJcrSession());
-            }
-        });
+        try {
+            return JcrVersion.Wrapper.wrap(getDelegate().getBaseVersion(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -704,11 +757,12 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public Lock lock(final boolean isDeep, final boolean isSessionScoped) {
-        return executeCallback(new Callback<Lock>() {
-            public Lock execute() throws Exception {
-                return getDelegate().lock(isDeep, isSessionScoped);
-            }
-        });
+        try {
+            return getDelegate().lock(isDeep, isSessionScoped);
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -716,11 +770,12 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public Lock getLock() {
-        return executeCallback(new Callback<Lock>() {
-            public Lock execute() throws Exception {
-                return getDelegate().getSession().getWorkspace().getLockManager().getLock(getDelegate().getPath());
-            }
-        });
+        try {
+            return getDelegate().getSession().getWorkspace().getLockManager().getLock(getDelegate().getPath());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -728,11 +783,11 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public void unlock() {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().unlock();
-            }
-        });
+        try {
+            getDelegate().unlock();
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -740,34 +795,37 @@ public class NodeWrapper extends ItemWrapper implements JcrNode {
      */
     @Deprecated
     public boolean holdsLock() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().holdsLock();
-            }
-        });
+        try {
+            return getDelegate().holdsLock();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public boolean isLocked() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().isLocked();
-            }
-        });
+        try {
+            return getDelegate().isLocked();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public void followLifecycleTransition(final String transition) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().followLifecycleTransition(transition);
-            }
-        });
+        try {
+            getDelegate().followLifecycleTransition(transition);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public String[] getAllowedLifecycleTransistions() {
-        return executeCallback(new Callback<String[]>() {
-            public String[] execute() throws Exception {
-                return getDelegate().getAllowedLifecycleTransistions();
-            }
-        });
+        try {
+            return getDelegate().getAllowedLifecycleTransistions();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 }
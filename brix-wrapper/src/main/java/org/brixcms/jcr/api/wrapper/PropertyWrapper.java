@@ -48,11 +48,11 @@ class PropertyWrapper extends ItemWrapper implements JcrProperty {
 
 
     public void accept(final ItemVisitor visitor) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                visitor.visit(PropertyWrapper.this);
-            }
-        });
+        try {
+            visitor.visit(PropertyWrapper.this);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     @Override
@@ -62,35 +62,35 @@ class PropertyWrapper extends ItemWrapper implements JcrProperty {
 
 
     public void setValue(final Value value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(value);
-            }
-        });
+        try {
+            getDelegate().setValue(value);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final Value[] values) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(values);
-            }
-        });
+        try {
+            getDelegate().setValue(values);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final String value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(value);
-            }
-        });
+        try {
+            getDelegate().setValue(value);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final String[] values) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(values);
-            }
-        });
+        try {
+            getDelegate().setValue(values);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -98,91 +98,94 @@ class PropertyWrapper extends ItemWrapper implements JcrProperty {
      */
     @Deprecated
     public void setValue(final InputStream value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(value);
-            }
-        });
+        try {
+            getDelegate().setValue(value);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final Binary value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(value);
-            }
-        });
+        try {
+            getDelegate().setValue(value);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final long value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(value);
-            }
-        });
+        try {
+            getDelegate().setValue(value);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final double value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(value);
-            }
-        });
+        try {
+            getDelegate().setValue(value);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final BigDecimal value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(value);
-            }
-        });
+        try {
+            getDelegate().setValue(value);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final Calendar value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(value);
-            }
-        });
+        try {
+            getDelegate().setValue(value);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final boolean value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(value);
-            }
-        });
+        try {
+            getDelegate().setValue(value);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setValue(final Node value) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setValue(unwrap(value));
-            }
-        });
+        try {
+            getDelegate().setValue(unwrap(value));
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public JcrValue getValue() {
-        return executeCallback(new Callback<JcrValue>() {
-            public JcrValue execute() throws Exception {
-                return JcrValue.Wrapper.wrap(getDelegate().getValue(), getJcrSession());
-            }
-        });
+        try {
+            return JcrValue.Wrapper.wrap(getDelegate().getValue(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrValue[] getValues() {
-        return executeCallback(new Callback<JcrValue[]>() {
-            public JcrValue[] execute() throws Exception {
-                return JcrValue.Wrapper.wrap(getDelegate().getValues(), getJcrSession());
-            }
-        });
+        try {
+            return JcrValue.Wrapper.wrap(getDelegate().getValues(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public String getString() {
-        return executeCallback(new Callback<String>() {
-            public String execute() throws Exception {
-                return getDelegate().getString();
-            }
-        });
+        try {
+            return getDelegate().getString();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -190,114 +193,139 @@ class PropertyWrapper extends ItemWrapper implements JcrProperty {
      */
     @Deprecated
     public InputStream getStream() {
-        return executeCallback(new Callback<InputStream>() {
-            public InputStream execute() throws Exception {
-                return getDelegate().getStream();
-            }
-        });
+        try {
+            return getDelegate().getStream();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public Binary getBinary() {
-        return executeCallback(new Callback<Binary>() {
-            public Binary execute() throws Exception {
-                return getDelegate().getBinary();
-            }
-        });
+        try {
+            return getDelegate().getBinary();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public long getLong() {
-        return executeCallback(new Callback<Long>() {
-            public Long execute() throws Exception {
-                return getDelegate().getLong();
-            }
-        });
+        try {
+            return getDelegate().getLong();
+        } catch (Exception e) {
+            handleException(e);
+            return 0;
+        }
     }
 
     public double getDouble() {
-        return executeCallback(new Callback<Double>() {
-            public Double execute() throws Exception {
-                return getDelegate().getDouble();
-            }
-        });
+        try {
+            return getDelegate().getDouble();
+        } catch (Exception e) {
+            handleException(e);
+            return 0;
+        }
     }
 
     public BigDecimal getDecimal() {
-        return executeCallback(new Callback<BigDecimal>() {
-            public BigDecimal execute() throws Exception {
-                return getDelegate().getDecimal();
-            }
-        });
+        try {
+            return getDelegate().getDecimal();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public Calendar getDate() {
-        return executeCallback(new Callback<Calendar>() {
-            public Calendar execute() throws Exception {
-                return getDelegate().getDate();
-            }
-        });
+        try {
+            return getDelegate().getDate();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public boolean getBoolean() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().getBoolean();
-            }
-        });
+        try {
+            return getDelegate().getBoolean();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public JcrNode getNode() {
-        return executeCallback(new Callback<JcrNode>() {
-            public JcrNode execute() throws Exception {
-                return JcrNode.Wrapper.wrap(getDelegate().getNode(), getJcrSession());
+        try {
+            if (getJcrSession() instanceof SessionWrapper && getJcrSession().isNodeCacheEnabled()) {
+                // references such as templates are resolved over and over while rendering
+                SessionWrapper session = (SessionWrapper) getJcrSession();
+                String path = getDelegate().getPath();
+                JcrNode node = session.getReferencedNode(path);
+                if (node == null) {
+                    node = JcrNode.Wrapper.wrap(getDelegate().getNode(), session);
+                    session.referencedNodeResolved(path, node);
+                }
+                return node;
             }
-        });
+            return JcrNode.Wrapper.wrap(getDelegate().getNode(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrProperty getProperty() {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper.wrap(getDelegate().getProperty(), getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper.wrap(getDelegate().getProperty(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public long getLength() {
-        return executeCallback(new Callback<Long>() {
-            public Long execute() throws Exception {
-                return getDelegate().getLength();
-            }
-        });
+        try {
+            return getDelegate().getLength();
+        } catch (Exception e) {
+            handleException(e);
+            return 0;
+        }
     }
 
     public long[] getLengths() {
-        return executeCallback(new Callback<long[]>() {
-            public long[] execute() throws Exception {
-                return getDelegate().getLengths();
-            }
-        });
+        try {
+            return getDelegate().getLengths();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public PropertyDefinition getDefinition() {
-        return executeCallback(new Callback<PropertyDefinition>() {
-            public PropertyDefinition execute() throws Exception {
-                return getDelegate().getDefinition();
-            }
-        });
+        try {
+            return getDelegate().getDefinition();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public int getType() {
-        return executeCallback(new Callback<Integer>() {
-            public Integer execute() throws Exception {
-                return getDelegate().getType();
-            }
-        });
+        try {
+            return getDelegate().getType();
+        } catch (Exception e) {
+            handleException(e);
+            return 0;
+        }
     }
 
     public boolean isMultiple() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().isMultiple();
-            }
-        });
+        try {
+            return getDelegate().isMultiple();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 }
@@ -28,7 +28,6 @@ import org.brixcms.jcr.base.wrapper.WrapperAccessor;
 import org.xml.sax.ContentHandler;
 
 import javax.jcr.Credentials;
-import javax.jcr.Node;
 import javax.jcr.Repository;
 import javax.jcr.Session;
 import javax.jcr.retention.RetentionManager;
@@ -47,6 +46,13 @@ class SessionWrapper extends AbstractWrapper implements JcrSession {
 
     private Map<String, JcrNode> uuidMap = new HashMap<String, JcrNode>();
 
+    // nodes by absolute path and referenced nodes by path of the reference property, only if the node cache is enabled
+    private Map<String, JcrNode> pathMap = null;
+    private Map<String, JcrNode> referenceMap = null;
+
+    // change count of the delegate when the maps were last known to be valid
+    private long cacheChangeCount;
+
     public static JcrSession wrap(Session delegate, Behavior behavior) {
         if (delegate == null) {
             return null;
@@ -86,6 +92,64 @@ class SessionWrapper extends AbstractWrapper implements JcrSession {
         return getDelegate().getValueFilter();
     }
 
+    public long getChangeCount() {
+        return getDelegate().getChangeCount();
+    }
+
+    public void setNodeCacheEnabled(boolean enabled) {
+        if (enabled && pathMap == null) {
+            pathMap = new HashMap<String, JcrNode>();
+            referenceMap = new HashMap<String, JcrNode>();
+        } else if (!enabled) {
+            pathMap = null;
+            referenceMap = null;
+        }
+    }
+
+    public boolean isNodeCacheEnabled() {
+        return pathMap != null;
+    }
+
+    /**
+     * Drops cached nodes if anything that could make them stale happened since they were cached.
+     */
+    private void validateCache() {
+        long count = getDelegate().getChangeCount();
+        if (count != cacheChangeCount) {
+            clearCache();
+            cacheChangeCount = count;
+        }
+    }
+
+    private void clearCache() {
+        uuidMap.clear();
+        if (pathMap != null) {
+            pathMap.clear();
+            referenceMap.clear();
+        }
+    }
+
+    /**
+     * Returns node referenced by property on given path, if it has been resolved before.
+     *
+     * @param propertyPath
+     * @return node or <code>null</code>
+     */
+    JcrNode getReferencedNode(String propertyPath) {
+        if (referenceMap == null) {
+            return null;
+        }
+        validateCache();
+        return referenceMap.get(propertyPath);
+    }
+
+    void referencedNodeResolved(String propertyPath, JcrNode node) {
+        if (referenceMap != null && node != null) {
+            validateCache();
+            referenceMap.put(propertyPath, node);
+        }
+    }
+
     @Override
     public BrixSession getDelegate() {
         return (BrixSession) super.getDelegate();
@@ -94,65 +158,72 @@ class SessionWrapper extends AbstractWrapper implements JcrSession {
     public void nodeRemoved(JcrNode node) {
         // it's not enough to just remove the node from UUID map, we are
         // removing the entire subtree
-        uuidMap.clear();
+        clearCache();
     }
 
 
     public Repository getRepository() {
-        return executeCallback(new Callback<Repository>() {
-            public Repository execute() throws Exception {
-                return getDelegate().getRepository();
-            }
-        });
+        try {
+            return getDelegate().getRepository();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public String getUserID() {
-        return executeCallback(new Callback<String>() {
-            public String execute() throws Exception {
-                return getDelegate().getUserID();
-            }
-        });
+        try {
+            return getDelegate().getUserID();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public String[] getAttributeNames() {
-        return executeCallback(new Callback<String[]>() {
-            public String[] execute() throws Exception {
-                return getDelegate().getAttributeNames();
-            }
-        });
+        try {
+            return getDelegate().getAttributeNames();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public Object getAttribute(final String name) {
-        return executeCallback(new Callback<Object>() {
-            public Object execute() throws Exception {
-                return getDelegate().getAttribute(name);
-            }
-        });
+        try {
+            return getDelegate().getAttribute(name);
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrWorkspace getWorkspace() {
-        return executeCallback(new Callback<JcrWorkspace>() {
-            public JcrWorkspace execute() throws Exception {
-                return JcrWorkspace.Wrapper.wrap(getDelegate().getWorkspace(), getJcrSession());
-            }
-        });
+        try {
+            return JcrWorkspace.Wrapper.wrap(getDelegate().getWorkspace(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrNode getRootNode() {
-        return executeCallback(new Callback<JcrNode>() {
-            public JcrNode execute() throws Exception {
-                return JcrNode.Wrapper.wrap(getDelegate().getRootNode(), getJcrSession());
-            }
-        });
+        try {
+            return JcrNode.Wrapper.wrap(getDelegate().getRootNode(), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrSession impersonate(final Credentials credentials) {
-        return executeCallback(new Callback<JcrSession>() {
-            public JcrSession execute() throws Exception {
-                return JcrSession.Wrapper.wrap(getDelegate().impersonate(credentials),
-                        getBehavior());
-            }
-        });
+        try {
+            return JcrSession.Wrapper.wrap(getDelegate().impersonate(credentials),
+                    getBehavior());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -160,254 +231,289 @@ class SessionWrapper extends AbstractWrapper implements JcrSession {
      */
     @Deprecated
     public JcrNode getNodeByUUID(final String uuid) {
+        validateCache();
         JcrNode result = uuidMap.get(uuid);
         if (result == null) {
-            result = executeCallback(new Callback<JcrNode>() {
-                public JcrNode execute() throws Exception {
-                    Node node = getDelegate().getNodeByUUID(uuid);
-                    return JcrNode.Wrapper.wrap(node, getJcrSession());
-                }
-            });
+            try {
+                result = JcrNode.Wrapper.wrap(getDelegate().getNodeByUUID(uuid), getJcrSession());
+            } catch (Exception e) {
+                handleException(e);
+                return null;
+            }
             uuidMap.put(uuid, result);
         }
         return result;
     }
 
     public JcrNode getNodeByIdentifier(final String id) {
+        validateCache();
         JcrNode result = uuidMap.get(id);
         if (result == null) {
-            result = executeCallback(new Callback<JcrNode>() {
-                public JcrNode execute() throws Exception {
-                    Node node = getDelegate().getNodeByIdentifier(id);
-                    return JcrNode.Wrapper.wrap(node, getJcrSession());
-                }
-            });
+            try {
+                result = JcrNode.Wrapper.wrap(getDelegate().getNodeByIdentifier(id), getJcrSession());
+            } catch (Exception e) {
+                handleException(e);
+                return null;
+            }
             uuidMap.put(id, result);
         }
         return result;
     }
 
     public JcrItem getItem(final String absPath) {
-        return executeCallback(new Callback<JcrItem>() {
-            public JcrItem execute() throws Exception {
-                return JcrItem.Wrapper.wrap(getDelegate().getItem(absPath), getJcrSession());
-            }
-        });
+        try {
+            return JcrItem.Wrapper.wrap(getDelegate().getItem(absPath), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public JcrNode getNode(final String absPath) {
-        return executeCallback(new Callback<JcrNode>() {
-            public JcrNode execute() throws Exception {
-                return JcrNode.Wrapper.wrap(getDelegate().getNode(absPath), getJcrSession());
+        JcrNode result = null;
+        if (pathMap != null) {
+            validateCache();
+            result = pathMap.get(absPath);
+        }
+        if (result == null) {
+            try {
+                result = JcrNode.Wrapper.wrap(getDelegate().getNode(absPath), getJcrSession());
+            } catch (Exception e) {
+                handleException(e);
+                return null;
             }
-        });
+            if (pathMap != null) {
+                pathMap.put(absPath, result);
+            }
+        }
+        return result;
     }
 
     public JcrProperty getProperty(final String absPath) {
-        return executeCallback(new Callback<JcrProperty>() {
-            public JcrProperty execute() throws Exception {
-                return JcrProperty.Wrapper
-                        .wrap(getDelegate().getProperty(absPath), getJcrSession());
-            }
-        });
+        try {
+            return JcrProperty.Wrapper
+                    .wrap(getDelegate().getProperty(absPath), getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public boolean itemExists(final String absPath) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().itemExists(absPath);
-            }
-        });
+        try {
+            return getDelegate().itemExists(absPath);
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public boolean nodeExists(final String absPath) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().nodeExists(absPath);
+        if (pathMap != null) {
+            validateCache();
+            if (pathMap.containsKey(absPath)) {
+                return true;
             }
-        });
+        }
+        try {
+            return getDelegate().nodeExists(absPath);
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public boolean propertyExists(final String absPath) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().propertyExists(absPath);
-            }
-        });
+        try {
+            return getDelegate().propertyExists(absPath);
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public void move(final String srcAbsPath, final String destAbsPath) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().move(srcAbsPath, destAbsPath);
-            }
-        });
+        try {
+            getDelegate().move(srcAbsPath, destAbsPath);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void removeItem(final String absPath) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().removeItem(absPath);
-            }
-        });
+        try {
+            getDelegate().removeItem(absPath);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void save() {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().save();
-            }
-        });
+        try {
+            getDelegate().save();
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void refresh(final boolean keepChanges) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().refresh(keepChanges);
-            }
-        });
+        try {
+            getDelegate().refresh(keepChanges);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public boolean hasPendingChanges() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().hasPendingChanges();
-            }
-        });
+        try {
+            return getDelegate().hasPendingChanges();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public JcrValueFactory getValueFactory() {
-        return executeCallback(new Callback<JcrValueFactory>() {
-            public JcrValueFactory execute() throws Exception {
-                return JcrValueFactory.Wrapper.wrap(getDelegate().getValueFactory(),
-                        getJcrSession());
-            }
-        });
+        try {
+            return JcrValueFactory.Wrapper.wrap(getDelegate().getValueFactory(),
+                    getJcrSession());
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public boolean hasPermission(final String absPath, final String actions) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().hasPermission(absPath, actions);
-            }
-        });
+        try {
+            return getDelegate().hasPermission(absPath, actions);
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public void checkPermission(final String absPath, final String actions) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().checkPermission(absPath, actions);
-            }
-        });
+        try {
+            getDelegate().checkPermission(absPath, actions);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public boolean hasCapability(final String methodName, final Object target,
                                  final Object[] arguments) {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().hasCapability(methodName, target, arguments);
-            }
-        });
+        try {
+            return getDelegate().hasCapability(methodName, target, arguments);
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     public ContentHandler getImportContentHandler(final String parentAbsPath, final int uuidBehavior) {
-        return executeCallback(new Callback<ContentHandler>() {
-            public ContentHandler execute() throws Exception {
-                return getDelegate().getImportContentHandler(parentAbsPath, uuidBehavior);
-            }
-        });
+        try {
+            return getDelegate().getImportContentHandler(parentAbsPath, uuidBehavior);
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public void importXML(final String parentAbsPath, final InputStream in, final int uuidBehavior) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().importXML(parentAbsPath, in, uuidBehavior);
-            }
-        });
+        try {
+            getDelegate().importXML(parentAbsPath, in, uuidBehavior);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void exportSystemView(final String absPath, final ContentHandler contentHandler,
                                  final boolean skipBinary, final boolean noRecurse) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().exportSystemView(absPath, contentHandler, skipBinary, noRecurse);
-            }
-        });
+        try {
+            getDelegate().exportSystemView(absPath, contentHandler, skipBinary, noRecurse);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void exportSystemView(final String absPath, final OutputStream out,
                                  final boolean skipBinary, final boolean noRecurse) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().exportSystemView(absPath, out, skipBinary, noRecurse);
-            }
-        });
+        try {
+            getDelegate().exportSystemView(absPath, out, skipBinary, noRecurse);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void exportDocumentView(final String absPath, final ContentHandler contentHandler,
                                    final boolean skipBinary, final boolean noRecurse) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().exportDocumentView(absPath, contentHandler, skipBinary, noRecurse);
-            }
-        });
+        try {
+            getDelegate().exportDocumentView(absPath, contentHandler, skipBinary, noRecurse);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void exportDocumentView(final String absPath, final OutputStream out,
                                    final boolean skipBinary, final boolean noRecurse) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().exportDocumentView(absPath, out, skipBinary, noRecurse);
-            }
-        });
+        try {
+            getDelegate().exportDocumentView(absPath, out, skipBinary, noRecurse);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public void setNamespacePrefix(final String prefix, final String uri) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().setNamespacePrefix(prefix, uri);
-            }
-        });
+        try {
+            getDelegate().setNamespacePrefix(prefix, uri);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public String[] getNamespacePrefixes() {
-        return executeCallback(new Callback<String[]>() {
-            public String[] execute() throws Exception {
-                return getDelegate().getNamespacePrefixes();
-            }
-        });
+        try {
+            return getDelegate().getNamespacePrefixes();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public String getNamespaceURI(final String prefix) {
-        return executeCallback(new Callback<String>() {
-            public String execute() throws Exception {
-                return getDelegate().getNamespaceURI(prefix);
-            }
-        });
+        try {
+            return getDelegate().getNamespaceURI(prefix);
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public String getNamespacePrefix(final String uri) {
-        return executeCallback(new Callback<String>() {
-            public String execute() throws Exception {
-                return getDelegate().getNamespacePrefix(uri);
-            }
-        });
+        try {
+            return getDelegate().getNamespacePrefix(uri);
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public void logout() {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().logout();
-            }
-        });
+        clearCache();
+        try {
+            getDelegate().logout();
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public boolean isLive() {
-        return executeCallback(new Callback<Boolean>() {
-            public Boolean execute() throws Exception {
-                return getDelegate().isLive();
-            }
-        });
+        try {
+            return getDelegate().isLive();
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
     }
 
     /**
@@ -415,11 +521,11 @@ class SessionWrapper extends AbstractWrapper implements JcrSession {
      */
     @Deprecated
     public void addLockToken(final String lt) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().addLockToken(lt);
-            }
-        });
+        try {
+            getDelegate().addLockToken(lt);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -427,11 +533,12 @@ class SessionWrapper extends AbstractWrapper implements JcrSession {
      */
     @Deprecated
     public String[] getLockTokens() {
-        return executeCallback(new Callback<String[]>() {
-            public String[] execute() throws Exception {
-                return getDelegate().getLockTokens();
-            }
-        });
+        try {
+            return getDelegate().getLockTokens();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     /**
@@ -439,27 +546,29 @@ class SessionWrapper extends AbstractWrapper implements JcrSession {
      */
     @Deprecated
     public void removeLockToken(final String lt) {
-        executeCallback(new VoidCallback() {
-            public void execute() throws Exception {
-                getDelegate().removeLockToken(lt);
-            }
-        });
+        try {
+            getDelegate().removeLockToken(lt);
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     public AccessControlManager getAccessControlManager() {
-        return executeCallback(new Callback<AccessControlManager>() {
-            public AccessControlManager execute() throws Exception {
-                return getDelegate().getAccessControlManager();
-            }
-        });
+        try {
+            return getDelegate().getAccessControlManager();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     public RetentionManager getRetentionManager() {
-        return executeCallback(new Callback<RetentionManager>() {
-            public RetentionManager execute() throws Exception {
-                return getDelegate().getRetentionManager();
-            }
-        });
+        try {
+            return getDelegate().getRetentionManager();
+        } catch (Exception e) {
+            handleException(e);
+            return null;
+        }
     }
 
     @Override
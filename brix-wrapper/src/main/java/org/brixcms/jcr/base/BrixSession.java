@@ -31,4 +31,13 @@ public interface BrixSession extends Session {
     public ValueFilter getValueFilter();
 
     public void setValueFilter(ValueFilter valueFilter);
+
+    /**
+     * Returns number of operations done through this session that may have changed which node is found on a path or
+     * which node a property references, e.g. saves, refreshes, moves, removals and property changes. Caches of nodes
+     * looked up through the session compare the count to find out when they must be dropped.
+     *
+     * @return change count
+     */
+    public long getChangeCount();
 }
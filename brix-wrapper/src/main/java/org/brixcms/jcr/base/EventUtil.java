@@ -24,39 +24,122 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Raises {@link SaveEvent}s to registered {@link SaveEventListener}s.
+ * <p/>
+ * Synchronous listeners are invoked on the saving thread before the save, so they can still modify the saved nodes.
+ * Asynchronous listeners get their own {@link SaveEventQueue}. Once the save has succeeded, the saving thread only
+ * queues a detached copy of the event, and the listener receives all events pending at the time in a single {@link
+ * EventIterator}, with repeated saves of the same node coalesced into one event.
+ * <p/>
+ * Registration does not block raising events, listeners are kept in copy-on-write lists.
+ */
 public class EventUtil {
-    private final static List<SaveEventListener> listeners = Collections
-            .synchronizedList(new ArrayList<SaveEventListener>());
+    private final static List<SaveEventListener> listeners = new CopyOnWriteArrayList<SaveEventListener>();
+
+    private final static List<SaveEventQueue> queues = new CopyOnWriteArrayList<SaveEventQueue>();
 
     public static void raiseSaveEvent(Node node) {
+        if (hasListeners()) {
+            // the node is only wrapped if a listener asks for it
+            raise(new EventImpl(node, null));
+        }
+    }
+
+    public static void raiseSaveEvent(JcrNode node) {
+        if (hasListeners()) {
+            raise(new EventImpl(node, node));
+        }
+    }
+
+    private static boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Queues the event of a node save that has succeeded for the asynchronous listeners.
+     *
+     * @param node
+     */
+    public static void raiseSavedEvent(Node node) {
+        if (queues.isEmpty()) {
+            return;
+        }
+        DetachedEvent event;
         try {
-            JcrSession session = JcrSession.Wrapper.wrap(node.getSession(), null);
-            JcrNode wrapped = JcrNode.Wrapper.wrap(node, session);
-            raiseSaveEvent(wrapped);
+            Session session = node.getSession();
+            event = new DetachedEvent(session.getWorkspace().getName(), node.getPath(), node.getIdentifier(),
+                    session.getUserID());
         } catch (RepositoryException e) {
             throw new JcrException(e);
         }
+        for (SaveEventQueue queue : queues) {
+            queue.offer(event, event.workspace, event.path);
+        }
     }
 
-    public static void raiseSaveEvent(JcrNode node) {
-        Event event = new EventImpl(node);
-
-        synchronized (listeners) {
-            for (SaveEventListener listener : listeners) {
-                listener.onEvent(new Iterator(event));
-            }
+    private static void raise(EventImpl event) {
+        Iterator iterator = new Iterator(Collections.<Event>singletonList(event));
+        for (SaveEventListener listener : listeners) {
+            iterator.rewind();
+            listener.onEvent(iterator);
         }
     }
 
+    /**
+     * Registers listener invoked on the saving thread before the save.
+     *
+     * @param listener
+     */
     public static void registerSaveEventListener(SaveEventListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Argument 'listener' may not be null.");
+        }
         listeners.add(listener);
     }
 
+    /**
+     * Registers listener invoked on its own thread after saves have succeeded. The listener can not access the saved
+     * nodes through {@link SaveEvent#getNode()}, it gets their workspace, path and identifier.
+     *
+     * @param listener
+     * @param capacity maximum number of distinct nodes pending for the listener
+     * @return queue of the listener
+     */
+    public static SaveEventQueue registerAsynchronousSaveEventListener(SaveEventListener listener, int capacity) {
+        SaveEventQueue queue = new SaveEventQueue(listener, capacity);
+        queues.add(queue);
+        return queue;
+    }
+
+    /**
+     * @return queues of the asynchronous listeners
+     */
+    public static List<SaveEventQueue> getSaveEventQueues() {
+        return Collections.unmodifiableList(queues);
+    }
+
+    /**
+     * Unregisters listener. The thread of an asynchronous listener is stopped.
+     *
+     * @param listener
+     */
+    public static void unregisterSaveEventListener(SaveEventListener listener) {
+        listeners.remove(listener);
+        for (SaveEventQueue queue : queues) {
+            if (queue.getListener() == listener) {
+                queues.remove(queue);
+                queue.stop();
+            }
+        }
+    }
+
     /**
      * Ensure that calling checkin and save on nodes within the session raises the save event.
      *
@@ -71,33 +154,42 @@ public class EventUtil {
         return WrapperAccessor.unwrap(session);
     }
 
-    private static class Iterator implements EventIterator {
-        private Event event;
+    static class Iterator implements EventIterator {
+        private final List<Event> events;
+        private int position;
+
+        public Iterator(List<Event> events) {
+            this.events = events;
+        }
 
-        public Iterator(Event event) {
-            this.event = event;
+        void rewind() {
+            position = 0;
         }
 
         public Event nextEvent() {
-            Event res = event;
-            event = null;
-            return res;
+            if (position >= events.size()) {
+                throw new NoSuchElementException();
+            }
+            return events.get(position++);
         }
 
         public long getPosition() {
-            return 0;
+            return position;
         }
 
         public long getSize() {
-            return -1;
+            return events.size();
         }
 
         public void skip(long skipNum) {
-
+            if (position + skipNum > events.size()) {
+                throw new NoSuchElementException();
+            }
+            position += skipNum;
         }
 
         public boolean hasNext() {
-            return event != null;
+            return position < events.size();
         }
 
         public Object next() {
@@ -110,19 +202,33 @@ public class EventUtil {
     }
 
     private static class EventImpl implements SaveEvent {
-        private final JcrNode node;
+        private final Node delegate;
+        private JcrNode node;
         private long timestamp = System.currentTimeMillis();
 
-        public EventImpl(JcrNode node) {
+        public EventImpl(Node delegate, JcrNode node) {
+            this.delegate = delegate;
             this.node = node;
         }
 
         public JcrNode getNode() {
+            if (node == null) {
+                try {
+                    JcrSession session = JcrSession.Wrapper.wrap(delegate.getSession(), null);
+                    node = JcrNode.Wrapper.wrap(delegate, session);
+                } catch (RepositoryException e) {
+                    throw new JcrException(e);
+                }
+            }
             return node;
         }
 
         public String getPath() throws RepositoryException {
-            return node.getPath();
+            return delegate.getPath();
+        }
+
+        public String getWorkspaceName() throws RepositoryException {
+            return delegate.getSession().getWorkspace().getName();
         }
 
         public int getType() {
@@ -130,7 +236,7 @@ public class EventUtil {
         }
 
         public String getUserID() {
-            return node.getSession().getUserID();
+            return getNode().getSession().getUserID();
         }
 
         public long getDate() throws RepositoryException {
@@ -138,7 +244,7 @@ public class EventUtil {
         }
 
         public String getIdentifier() throws RepositoryException {
-            return node.getIdentifier();
+            return delegate.getIdentifier();
         }
 
         public Map<?, ?> getInfo() throws RepositoryException {
@@ -150,5 +256,62 @@ public class EventUtil {
         }
     }
 
-    ;
+    /**
+     * Event delivered to asynchronous listeners. It does not reference the saved node, whose session belongs to the
+     * saving thread.
+     */
+    static class DetachedEvent implements SaveEvent {
+        private final String workspace;
+        private final String path;
+        private final String identifier;
+        private final String userID;
+        private final long timestamp = System.currentTimeMillis();
+
+        DetachedEvent(String workspace, String path, String identifier, String userID) {
+            this.workspace = workspace;
+            this.path = path;
+            this.identifier = identifier;
+            this.userID = userID;
+        }
+
+        public JcrNode getNode() {
+            throw new UnsupportedOperationException("Nodes are not available to asynchronous listeners.");
+        }
+
+        public String getWorkspaceName() {
+            return workspace;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public int getType() {
+            return SaveEvent.NODE_SAVE;
+        }
+
+        public String getUserID() {
+            return userID;
+        }
+
+        public long getDate() {
+            return timestamp;
+        }
+
+        /**
+         * @return identifier of the node, <code>null</code> for the event that stands for all saves in the workspace
+         *         after the queue was full
+         */
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public Map<?, ?> getInfo() {
+            throw new UnsupportedOperationException();
+        }
+
+        public String getUserData() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
@@ -16,10 +16,22 @@ package org.brixcms.jcr.base;
 
 import org.brixcms.jcr.api.JcrNode;
 
+import javax.jcr.RepositoryException;
 import javax.jcr.observation.Event;
 
 public interface SaveEvent extends Event {
     public static final int NODE_SAVE = 4096;
 
+    /**
+     * @return saved node
+     * @throws UnsupportedOperationException if the event is delivered to an asynchronous listener, which must not use
+     *                                       the session of the saving thread
+     */
     JcrNode getNode();
+
+    /**
+     * @return name of the workspace the node was saved in
+     * @throws RepositoryException
+     */
+    String getWorkspaceName() throws RepositoryException;
 }
@@ -0,0 +1,265 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr.base;
+
+import javax.jcr.observation.Event;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of save events pending for an asynchronous {@link SaveEventListener}, see {@link
+ * EventUtil#registerAsynchronousSaveEventListener(SaveEventListener, int)}. Events are only queued once the save has
+ * succeeded. A dedicated daemon thread delivers all pending events to the listener as one batch.
+ * <p/>
+ * A save of a node that is already pending replaces the pending event, so the listener sees each node at most once per
+ * batch. When the queue is full, further saves in a workspace are merged into a single event for the root node of the
+ * workspace instead of being dropped, so the listener always learns that something below the root has changed.
+ * <p/>
+ * Also provides metrics about the queue, i.e. its depth and how long events wait for delivery.
+ */
+public class SaveEventQueue {
+    private final SaveEventListener listener;
+
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    // pending events by workspace and path in the order they were first queued, guarded by lock
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<String, Pending>();
+
+    private boolean stopped;
+
+    private final Thread worker;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile long lastBatchLag;
+
+    SaveEventQueue(SaveEventListener listener, int capacity) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Argument 'listener' may not be null.");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Argument 'capacity' must be positive.");
+        }
+        this.listener = listener;
+        this.capacity = capacity;
+        worker = new Thread("Brix save events " + listener.getClass().getName()) {
+            @Override
+            public void run() {
+                deliver();
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public SaveEventListener getListener() {
+        return listener;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    void offer(SaveEvent event, String workspace, String path) {
+        queued.incrementAndGet();
+        String key = workspace + ":" + path;
+        lock.lock();
+        try {
+            if (stopped) {
+                return;
+            }
+            Pending previous = pending.get(key);
+            if (previous != null) {
+                // keeps the position and the time of the first save so that the lag is not hidden
+                previous.event = event;
+                coalesced.incrementAndGet();
+                return;
+            }
+            if (pending.size() >= capacity) {
+                overflowed.incrementAndGet();
+                key = workspace + ":/";
+                event = new EventUtil.DetachedEvent(workspace, "/", null, event.getUserID());
+                previous = pending.get(key);
+                if (previous != null) {
+                    previous.event = event;
+                    return;
+                }
+            }
+            pending.put(key, new Pending(event, System.currentTimeMillis()));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the delivery thread, pending events are discarded.
+     */
+    void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            pending.clear();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void deliver() {
+        while (true) {
+            List<Event> events;
+            long oldest;
+            lock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    if (stopped) {
+                        return;
+                    }
+                    notEmpty.awaitUninterruptibly();
+                }
+                events = new ArrayList<Event>(pending.size());
+                oldest = pending.values().iterator().next().queued;
+                for (Pending p : pending.values()) {
+                    events.add(p.event);
+                }
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+            lastBatchLag = System.currentTimeMillis() - oldest;
+            try {
+                listener.onEvent(new EventUtil.Iterator(events));
+                delivered.addAndGet(events.size());
+                batches.incrementAndGet();
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> until the listener has been unregistered and its last batch processed
+     */
+    public boolean isAlive() {
+        return worker.isAlive();
+    }
+
+    /**
+     * @return number of events waiting for delivery
+     */
+    public int getSize() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return milliseconds the oldest pending event has been waiting, <code>0</code> if there is none
+     */
+    public long getLag() {
+        long oldest;
+        lock.lock();
+        try {
+            Iterator<Pending> i = pending.values().iterator();
+            if (!i.hasNext()) {
+                return 0;
+            }
+            // entries keep their insertion order and time, so the first one is the oldest
+            oldest = i.next().queued;
+        } finally {
+            lock.unlock();
+        }
+        return System.currentTimeMillis() - oldest;
+    }
+
+    /**
+     * @return milliseconds the oldest event of the most recently delivered batch waited for delivery
+     */
+    public long getLastBatchLag() {
+        return lastBatchLag;
+    }
+
+    /**
+     * @return number of events offered to this queue
+     */
+    public long getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * @return number of events merged into an already pending event of the same node
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return number of events merged into the event of the workspace root because the queue was full
+     */
+    public long getOverflowCount() {
+        return overflowed.get();
+    }
+
+    /**
+     * @return number of events delivered to the listener
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return number of batches delivered to the listener
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * @return number of batches the listener failed to process
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    private static class Pending {
+        private SaveEvent event;
+        private final long queued;
+
+        Pending(SaveEvent event, long queued) {
+            this.event = event;
+            this.queued = queued;
+        }
+    }
+}
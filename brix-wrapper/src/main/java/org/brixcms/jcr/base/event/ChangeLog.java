@@ -18,7 +18,14 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * ChangeLog keep tracks of events happening in a single {@link Session}. At certain points (usually when Item#save() or
@@ -27,13 +34,31 @@ import java.util.List;
  * <p/>
  * The session must add proper events to the {@link ChangeLog} using {@link #addEvent(Event)} and {@link ChangeLog} will
  * make sure that the events will be normalized (i.e. redundant events will be removed, etc).
+ * <p/>
+ * Events are indexed by their {@link Event#getIndexPath() path}, so a new event is only compared with the events it
+ * can affect (events on the same path, or below it if a node is being removed). Adding an event thus does not depend
+ * on the number of events already queued, which matters for sessions that create many nodes before saving.
  *
  * @author Matej Knopp
  * @see #addEvent(Event)
  * @see #removeAndGetAffectedEvents(Node)
  */
 public class ChangeLog {
-    private List<Event> events = new ArrayList<Event>();
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        public int compare(Entry o1, Entry o2) {
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    };
+
+    // all events, replaced events keep their sequence number but move to the end
+    private final Set<Entry> events = new LinkedHashSet<Entry>();
+
+    private final TreeMap<String, List<Entry>> eventsByPath = new TreeMap<String, List<Entry>>();
+
+    // events without index path
+    private final List<Entry> unindexed = new ArrayList<Entry>();
+
+    private long sequence;
 
     public ChangeLog() {
 
@@ -47,39 +72,129 @@ public class ChangeLog {
      */
     public void addEvent(Event event) throws RepositoryException {
         final boolean blockAddingEvent[] = {false};
-        for (int i = 0; i < events.size(); ++i) {
-            Event e = events.get(i);
-            Event.QueueCallback callback = new Event.QueueCallback() {
-                public void blockAddingEvent() {
-                    blockAddingEvent[0] = true;
+        Event.QueueCallback callback = new Event.QueueCallback() {
+            public void blockAddingEvent() {
+                blockAddingEvent[0] = true;
+            }
+        };
+        for (Entry entry : getCandidates(event)) {
+            Event replacement = entry.event.onNewEvent(event, callback);
+            if (replacement != entry.event) {
+                remove(entry);
+                if (replacement != null) {
+                    add(new Entry(entry.sequence, replacement));
                 }
-            };
-            events.set(i, e.onNewEvent(event, callback));
+            }
         }
 
-        removeNullEvents();
-
         if (blockAddingEvent[0] == false) {
             Event transformed = event.transformBeforeAddingToQueue();
             if (transformed != null) {
-                events.add(transformed);
+                add(new Entry(sequence++, transformed));
             }
         }
+
+        if (event instanceof MoveNodeEvent) {
+            // paths of the moved node and of everything below it have changed
+            reindex(((MoveNodeEvent) event).getOriginalPath());
+        }
     }
 
     /**
-     * Shrinks the queue removing null events.
+     * Returns the events that may be affected by adding the given event, in the order they were added.
      */
-    private void removeNullEvents() {
-        // remove null events
-        List<Event> newList = new ArrayList<Event>(events.size());
-        for (Event e : events) {
-            if (e != null) {
-                newList.add(e);
+    private List<Entry> getCandidates(Event event) throws RepositoryException {
+        String path = event.getIndexPath();
+        if (path == null) {
+            List<Entry> result = new ArrayList<Entry>(events);
+            Collections.sort(result, ORDER);
+            return result;
+        }
+        List<Entry> result = new ArrayList<Entry>(unindexed);
+        if (event instanceof BeforeRemoveNodeEvent) {
+            // affects events of the node and of all nodes below it
+            addAll(result, getPrefixRange(path).values());
+        } else {
+            List<Entry> entries = eventsByPath.get(path);
+            if (entries != null) {
+                result.addAll(entries);
+            }
+            if (event instanceof MoveNodeEvent) {
+                // the index is only updated after the move is added, events of the moved node are still indexed
+                // under the path it has been moved from
+                String originalPath = ((MoveNodeEvent) event).getOriginalPath();
+                entries = !path.equals(originalPath) ? eventsByPath.get(originalPath) : null;
+                if (entries != null) {
+                    result.addAll(entries);
+                }
+            }
+        }
+        Collections.sort(result, ORDER);
+        return result;
+    }
+
+    /**
+     * Returns events indexed by paths starting with given path, which is the same comparison {@link
+     * Event#isAffected(String)} does.
+     */
+    private Map<String, List<Entry>> getPrefixRange(String path) {
+        return eventsByPath.subMap(path, true, path + Character.MAX_VALUE, false);
+    }
+
+    private static void addAll(List<Entry> result, Collection<List<Entry>> entries) {
+        for (List<Entry> list : entries) {
+            result.addAll(list);
+        }
+    }
+
+    private void add(Entry entry) throws RepositoryException {
+        events.add(entry);
+        index(entry);
+    }
+
+    private void index(Entry entry) throws RepositoryException {
+        entry.path = entry.event.getIndexPath();
+        if (entry.path == null) {
+            unindexed.add(entry);
+        } else {
+            List<Entry> entries = eventsByPath.get(entry.path);
+            if (entries == null) {
+                entries = new ArrayList<Entry>(2);
+                eventsByPath.put(entry.path, entries);
             }
+            entries.add(entry);
         }
+    }
 
-        events = newList;
+    private void remove(Entry entry) {
+        events.remove(entry);
+        if (entry.path == null) {
+            unindexed.remove(entry);
+        } else {
+            List<Entry> entries = eventsByPath.get(entry.path);
+            if (entries != null) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    eventsByPath.remove(entry.path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-keys the events indexed under given path or below it.
+     */
+    private void reindex(String path) throws RepositoryException {
+        Map<String, List<Entry>> range = getPrefixRange(path);
+        if (range.isEmpty()) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<Entry>();
+        addAll(entries, range.values());
+        range.clear();
+        for (Entry entry : entries) {
+            index(entry);
+        }
     }
 
     /**
@@ -91,21 +206,50 @@ public class ChangeLog {
      * @throws RepositoryException
      */
     public List<Event> removeAndGetAffectedEvents(String path) throws RepositoryException {
-        List<Event> result;
+        List<Entry> affected;
         if (path == null) {
-            result = events;
-            events = new ArrayList<Event>();
+            affected = new ArrayList<Entry>(events);
+            Collections.sort(affected, ORDER);
+            events.clear();
+            eventsByPath.clear();
+            unindexed.clear();
         } else {
-            result = new ArrayList<Event>();
-            for (int i = 0; i < events.size(); ++i) {
-                Event e = events.get(i);
-                if (e.isAffected(path)) {
-                    result.add(e);
-                    events.set(i, null);
+            List<Entry> candidates = new ArrayList<Entry>(unindexed);
+            addAll(candidates, getPrefixRange(path).values());
+            // property events are indexed by the path of their node, which is the parent of a saved property
+            int slash = path.lastIndexOf('/');
+            if (slash > 0) {
+                List<Entry> entries = eventsByPath.get(path.substring(0, slash));
+                if (entries != null) {
+                    candidates.addAll(entries);
+                }
+            }
+            affected = new ArrayList<Entry>();
+            for (Entry entry : candidates) {
+                if (entry.event.isAffected(path)) {
+                    affected.add(entry);
                 }
             }
-            removeNullEvents();
+            Collections.sort(affected, ORDER);
+            for (Entry entry : affected) {
+                remove(entry);
+            }
+        }
+        List<Event> result = new ArrayList<Event>(affected.size());
+        for (Entry entry : affected) {
+            result.add(entry.event);
         }
         return result;
     }
+
+    private static class Entry {
+        private final long sequence;
+        private final Event event;
+        private String path;
+
+        Entry(long sequence, Event event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
 }
@@ -35,6 +35,18 @@ public abstract class Event {
         return false;
     }
 
+    /**
+     * Returns the path under which {@link ChangeLog} indexes this event. Events are only compared with events indexed
+     * under paths they can affect, so the path must be the one {@link #isAffected(String)} and {@link
+     * #onNewEvent(Event, QueueCallback)} are based on.
+     *
+     * @return path or <code>null</code> if the event is not bound to a path (it is then compared with all events)
+     * @throws RepositoryException
+     */
+    String getIndexPath() throws RepositoryException {
+        return null;
+    }
+
     /**
      * Notifies this event that another event is about to be added to the queue.
      *
@@ -34,6 +34,11 @@ abstract class NodeEvent extends Event {
         return node;
     }
 
+    @Override
+    String getIndexPath() throws RepositoryException {
+        return getNode().getPath();
+    }
+
     @Override
     boolean isAffected(String path) throws RepositoryException {
         String currentPath = getNode().getPath();
@@ -0,0 +1,137 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr.base.wrapper;
+
+import org.brixcms.jcr.base.action.AbstractActionHandler;
+
+import javax.jcr.Item;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.version.Version;
+
+/**
+ * Counts operations of a session that can change which node is found on a path or which node a property references,
+ * see {@link org.brixcms.jcr.base.BrixSession#getChangeCount()}. Adding nodes is not counted, it does not change
+ * anything that could have been looked up before.
+ */
+class ChangeCounter extends AbstractActionHandler {
+    private long count;
+
+    long getCount() {
+        return count;
+    }
+
+    void changed() {
+        ++count;
+    }
+
+    @Override
+    public void afterItemRefresh(Item item, boolean keepChanges) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterItemSave(Item item) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterNodeCancelMerge(Node node, Version version) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterNodeChildNodesOrderChange(Node node) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterNodeDoneMerge(Node node, Version version) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterNodeRestoreVersion(Node node) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterNodeUpdate(Node node) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterPropertyRemove(Node node, String propertyName) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterPropertySet(Property property) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterSessionImportXML(String parentAbsPath) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterSessionNodeMove(String sourcePath, String destinationPath) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterSessionRefresh(boolean keepChanges) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterSessionSave() throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterWorkspaceClone(String srcWorkspace, String srcAbsPath, String destAbsPath)
+            throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterWorkspaceCopy(String srcAbsPath, String destAbsPath) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterWorkspaceCopy(String srcWorkspace, String srcAbsPath, String destAbsPath)
+            throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterWorkspaceImportXML(String parentAbsPath) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void afterWorkspaceMove(String srcAbsPath, String destAbsPath) throws RepositoryException {
+        changed();
+    }
+
+    @Override
+    public void beforeNodeRemove(Node node) throws RepositoryException {
+        changed();
+    }
+}
@@ -94,6 +94,7 @@ class NodeWrapper extends ItemWrapper implements Node {
         }
 
         super.save();
+        EventUtil.raiseSavedEvent(node);
     }
 
     @Override
@@ -58,6 +58,8 @@ class SessionWrapper extends BaseWrapper<Session> implements BrixSession {
 
     private final ChangeLogActionHandler changeLogActionHandler;
 
+    private final ChangeCounter changeCounter = new ChangeCounter();
+
     private final Map<String, Object> attributesMap = new HashMap<String, Object>();
 
     private ValueFilter valueFilter = new ValueFilter();
@@ -75,6 +77,7 @@ class SessionWrapper extends BaseWrapper<Session> implements BrixSession {
 
         changeLogActionHandler = new ChangeLogActionHandler(new ChangeLog(), this);
         actionHandler.addHandler(changeLogActionHandler);
+        actionHandler.addHandler(changeCounter);
     }
 
     public CompoundActionHandler getActionHandler() {
@@ -85,6 +88,10 @@ class SessionWrapper extends BaseWrapper<Session> implements BrixSession {
         return attributesMap;
     }
 
+    public long getChangeCount() {
+        return changeCounter.getCount();
+    }
+
     public ValueFilter getValueFilter() {
         return valueFilter;
     }
@@ -179,6 +186,7 @@ class SessionWrapper extends BaseWrapper<Session> implements BrixSession {
 
     public void removeItem(String absPath) throws VersionException, LockException,
             ConstraintViolationException, AccessDeniedException, RepositoryException {
+        changeCounter.changed();
         getDelegate().removeItem(absPath);
     }
 
@@ -265,6 +273,7 @@ class SessionWrapper extends BaseWrapper<Session> implements BrixSession {
     }
 
     public void logout() {
+        changeCounter.changed();
         getDelegate().logout();
     }
 
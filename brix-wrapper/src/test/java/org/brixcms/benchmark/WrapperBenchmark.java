@@ -0,0 +1,155 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.benchmark;
+
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.base.EventUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading properties through the plain JCR API, the base wrapper ({@link EventUtil#wrapSession(Session)})
+ * and the api wrapper ({@link JcrSession}). Each invocation does what a tile does while rendering: checks for a number
+ * of properties and reads the string value of those present.
+ * <p/>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.brixcms.benchmark.WrapperBenchmark</code> or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WrapperBenchmark {
+    private static final int PROPERTIES = 20;
+
+    private static final String[] NAMES = new String[PROPERTIES * 2];
+
+    static {
+        // half of the checked properties do not exist
+        for (int i = 0; i < NAMES.length; ++i) {
+            NAMES[i] = "property" + i;
+        }
+    }
+
+    private File home;
+    private Repository repository;
+    private Session session;
+
+    private Node raw;
+    private Node base;
+    private JcrNode api;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        home = new File(System.getProperty("java.io.tmpdir"), getClass().getName());
+        delete(home);
+        if (!home.mkdirs()) {
+            throw new RuntimeException("Could not create directory: " + home.getAbsolutePath());
+        }
+        InputStream configStream = WrapperBenchmark.class.getResourceAsStream("/org/brixcms/repository.xml");
+        repository = RepositoryImpl.create(RepositoryConfig.create(configStream, home.getAbsolutePath()));
+        session = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+
+        Node node = session.getRootNode().addNode("benchmark");
+        for (int i = 0; i < PROPERTIES; ++i) {
+            node.setProperty(NAMES[i], "value" + i);
+        }
+        session.save();
+
+        raw = session.getNode("/benchmark");
+        base = EventUtil.wrapSession(session).getNode("/benchmark");
+        api = JcrSession.Wrapper.wrap(session).getNode("/benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        session.logout();
+        ((JackrabbitRepository) repository).shutdown();
+        delete(home);
+    }
+
+    @Benchmark
+    public void raw(Blackhole blackhole) throws RepositoryException {
+        for (String name : NAMES) {
+            if (raw.hasProperty(name)) {
+                blackhole.consume(raw.getProperty(name).getString());
+            }
+        }
+    }
+
+    @Benchmark
+    public void baseWrapper(Blackhole blackhole) throws RepositoryException {
+        for (String name : NAMES) {
+            if (base.hasProperty(name)) {
+                blackhole.consume(base.getProperty(name).getString());
+            }
+        }
+    }
+
+    @Benchmark
+    public void apiWrapper(Blackhole blackhole) {
+        for (String name : NAMES) {
+            if (api.hasProperty(name)) {
+                blackhole.consume(api.getProperty(name).getString());
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            throw new RuntimeException("Could not delete file: " + file.getAbsolutePath());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(WrapperBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr.api.wrapper;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.SimpleCredentials;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that nodes cached by {@link SessionWrapper} and {@link PropertyWrapper#getNode()} are dropped once the
+ * session changes in a way that can make them stale.
+ */
+public class SessionWrapperCacheTest {
+    private Repository repo;
+    private List<JcrSession> sessions;
+
+    private File home;
+
+    @Before
+    public void setupRepository() throws IOException, RepositoryException {
+        String temp = System.getProperty("java.io.tmpdir");
+        home = new File(temp, getClass().getName());
+        delete(home);
+        home.deleteOnExit();
+
+        if (!home.mkdirs()) {
+            throw new RuntimeException("Could not create directory: " + home.getAbsolutePath());
+        }
+
+        InputStream configStream = getClass().getResourceAsStream("/org/brixcms/repository.xml");
+        RepositoryConfig config = RepositoryConfig.create(configStream, home.getAbsolutePath());
+        repo = RepositoryImpl.create(config);
+
+        sessions = new ArrayList<JcrSession>();
+    }
+
+    @After
+    public void cleanup() {
+        for (JcrSession session : sessions) {
+            if (session.isLive()) {
+                session.logout();
+            }
+        }
+        ((JackrabbitRepository) repo).shutdown();
+
+        delete(home);
+    }
+
+    private static void delete(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            throw new RuntimeException("Could not delete file: " + file.getAbsolutePath());
+        }
+    }
+
+    private JcrSession login() throws RepositoryException {
+        Credentials credentials = new SimpleCredentials("admin", "admin".toCharArray());
+        JcrSession session = JcrSession.Wrapper.wrap(repo.login(credentials));
+        sessions.add(session);
+        return session;
+    }
+
+    private JcrSession loginWithCache() throws RepositoryException {
+        JcrSession session = login();
+        session.setNodeCacheEnabled(true);
+        return session;
+    }
+
+    @Test
+    public void testCachedNodeIsReturnedWithoutChanges() throws RepositoryException {
+        JcrSession session = loginWithCache();
+        session.getRootNode().addNode("a");
+        session.save();
+
+        long count = session.getChangeCount();
+        JcrNode node = session.getNode("/a");
+        assertSame(node, session.getNode("/a"));
+        assertTrue(session.nodeExists("/a"));
+
+        // reads and added nodes do not invalidate anything
+        node.addNode("child");
+        assertSame(node, session.getNode("/a"));
+        assertEquals(count, session.getChangeCount());
+    }
+
+    @Test
+    public void testSaveInvalidatesPathCache() throws RepositoryException {
+        JcrSession session = loginWithCache();
+        session.getRootNode().addNode("a");
+        session.save();
+        assertTrue(session.nodeExists("/a"));
+        JcrNode cached = session.getNode("/a");
+
+        // another session removes the node, this session sees it only after its own save
+        JcrSession other = login();
+        other.getNode("/a").remove();
+        other.save();
+
+        long count = session.getChangeCount();
+        session.save();
+        assertTrue(session.getChangeCount() > count);
+        assertFalse(session.nodeExists("/a"));
+
+        session.getRootNode().addNode("a");
+        session.save();
+        assertNotSame(cached, session.getNode("/a"));
+    }
+
+    @Test
+    public void testMoveInvalidatesPathCache() throws RepositoryException {
+        JcrSession session = loginWithCache();
+        session.getRootNode().addNode("a");
+        session.save();
+        JcrNode cached = session.getNode("/a");
+
+        long count = session.getChangeCount();
+        session.move("/a", "/b");
+        assertTrue(session.getChangeCount() > count);
+
+        assertFalse(session.nodeExists("/a"));
+        assertTrue(session.nodeExists("/b"));
+        assertEquals("/b", session.getNode("/b").getPath());
+
+        session.getRootNode().addNode("a");
+        assertNotSame(cached, session.getNode("/a"));
+    }
+
+    @Test
+    public void testRemoveInvalidatesPathCache() throws RepositoryException {
+        JcrSession session = loginWithCache();
+        session.getRootNode().addNode("a").addNode("child");
+        session.save();
+        assertTrue(session.nodeExists("/a"));
+        assertTrue(session.nodeExists("/a/child"));
+
+        long count = session.getChangeCount();
+        session.getNode("/a").remove();
+        assertTrue(session.getChangeCount() > count);
+
+        assertFalse(session.nodeExists("/a"));
+        assertFalse(session.nodeExists("/a/child"));
+    }
+
+    @Test
+    public void testRefreshInvalidatesPathCache() throws RepositoryException {
+        JcrSession session = loginWithCache();
+        session.getRootNode().addNode("a");
+        session.save();
+
+        session.move("/a", "/b");
+        assertTrue(session.nodeExists("/b"));
+        session.getNode("/b");
+
+        long count = session.getChangeCount();
+        session.refresh(false);
+        assertTrue(session.getChangeCount() > count);
+
+        assertFalse(session.nodeExists("/b"));
+        assertTrue(session.nodeExists("/a"));
+    }
+
+    @Test
+    public void testIdentifierCacheIsInvalidated() throws RepositoryException {
+        JcrSession session = loginWithCache();
+        JcrNode node = session.getRootNode().addNode("a");
+        node.addMixin(JcrConstants.MIX_REFERENCEABLE);
+        session.save();
+
+        String id = node.getIdentifier();
+        JcrNode cached = session.getNodeByIdentifier(id);
+        assertSame(cached, session.getNodeByIdentifier(id));
+
+        session.move("/a", "/b");
+        JcrNode moved = session.getNodeByIdentifier(id);
+        assertNotSame(cached, moved);
+        assertEquals("/b", moved.getPath());
+    }
+
+    @Test
+    public void testReferenceCacheFollowsPropertyChanges() throws RepositoryException {
+        JcrSession session = loginWithCache();
+        JcrNode root = session.getRootNode();
+        JcrNode first = root.addNode("first");
+        first.addMixin(JcrConstants.MIX_REFERENCEABLE);
+        JcrNode second = root.addNode("second");
+        second.addMixin(JcrConstants.MIX_REFERENCEABLE);
+        JcrNode source = root.addNode("source");
+        source.setProperty("ref", first);
+        session.save();
+
+        JcrNode target = source.getProperty("ref").getNode();
+        assertEquals("/first", target.getPath());
+        assertSame(target, source.getProperty("ref").getNode());
+
+        source.setProperty("ref", second);
+        assertEquals("/second", source.getProperty("ref").getNode().getPath());
+
+        session.refresh(false);
+        assertEquals("/first", source.getProperty("ref").getNode().getPath());
+    }
+
+    @Test
+    public void testReferenceCacheFollowsMoveAndSave() throws RepositoryException {
+        JcrSession session = loginWithCache();
+        JcrNode root = session.getRootNode();
+        JcrNode target = root.addNode("target");
+        target.addMixin(JcrConstants.MIX_REFERENCEABLE);
+        JcrNode source = root.addNode("source");
+        source.setProperty("ref", target);
+        session.save();
+
+        assertEquals("/target", source.getProperty("ref").getNode().getPath());
+
+        session.move("/target", "/moved");
+        assertEquals("/moved", source.getProperty("ref").getNode().getPath());
+
+        // another session points the reference elsewhere, visible after this session saves
+        JcrSession other = login();
+        JcrNode next = other.getRootNode().addNode("next");
+        next.addMixin(JcrConstants.MIX_REFERENCEABLE);
+        other.getNode("/source").setProperty("ref", next);
+        other.save();
+
+        session.save();
+        assertEquals("/next", session.getNode("/source").getProperty("ref").getNode().getPath());
+    }
+
+    @Test
+    public void testDisabledCacheDoesNotHoldNodes() throws RepositoryException {
+        JcrSession session = login();
+        session.getRootNode().addNode("a");
+        session.save();
+
+        assertFalse(session.isNodeCacheEnabled());
+        assertNotSame(session.getNode("/a"), session.getNode("/a"));
+        assertNull(((SessionWrapper) session).getReferencedNode("/a/ref"));
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr.base;
+
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SaveEventQueueTest {
+    private final List<SaveEventListener> registered = new ArrayList<SaveEventListener>();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private File home;
+
+    private JackrabbitRepository repo;
+
+    @After
+    public void cleanup() {
+        release.countDown();
+        for (SaveEventListener listener : registered) {
+            EventUtil.unregisterSaveEventListener(listener);
+        }
+        if (repo != null) {
+            repo.shutdown();
+            delete(home);
+        }
+    }
+
+    @Test
+    public void eventsAreCoalescedPerPath() throws Exception {
+        Recorder recorder = new Recorder(true);
+        SaveEventQueue queue = register(recorder, 100);
+
+        // the first batch blocks the listener, so the following saves pile up
+        saved("ws", "/first");
+        assertEquals("/first", recorder.batch().get(0).getPath());
+
+        saved("ws", "/a");
+        saved("ws", "/b");
+        saved("ws", "/a");
+        saved("other", "/a");
+        assertEquals(3, queue.getSize());
+        Thread.sleep(5);
+        assertTrue(queue.getLag() > 0);
+
+        release.countDown();
+        List<Event> batch = recorder.batch();
+        assertEquals(3, batch.size());
+        assertEquals("/a", batch.get(0).getPath());
+        assertEquals("ws", ((SaveEvent) batch.get(0)).getWorkspaceName());
+        assertEquals("/b", batch.get(1).getPath());
+        assertEquals("other", ((SaveEvent) batch.get(2)).getWorkspaceName());
+
+        // counters are updated once the listener returns
+        for (int i = 0; i < 500 && queue.getBatchCount() < 2; ++i) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, queue.getQueuedCount());
+        assertEquals(1, queue.getCoalescedCount());
+        assertEquals(2, queue.getBatchCount());
+        assertEquals(4, queue.getDeliveredCount());
+        assertEquals(0, queue.getSize());
+        assertEquals(0, queue.getLag());
+        assertTrue(queue.getLastBatchLag() > 0);
+    }
+
+    @Test
+    public void fullQueueMergesIntoWorkspaceRoot() throws Exception {
+        Recorder recorder = new Recorder(true);
+        SaveEventQueue queue = register(recorder, 2);
+
+        saved("ws", "/first");
+        recorder.batch();
+
+        saved("ws", "/a");
+        saved("ws", "/b");
+        saved("ws", "/c");
+        saved("ws", "/d");
+        saved("other", "/e");
+        assertEquals(4, queue.getSize());
+        assertEquals(3, queue.getOverflowCount());
+
+        release.countDown();
+        List<Event> batch = recorder.batch();
+        assertEquals(4, batch.size());
+        assertEquals("/", batch.get(2).getPath());
+        assertEquals("ws", ((SaveEvent) batch.get(2)).getWorkspaceName());
+        assertNull(batch.get(2).getIdentifier());
+        assertEquals("/", batch.get(3).getPath());
+        assertEquals("other", ((SaveEvent) batch.get(3)).getWorkspaceName());
+    }
+
+    @Test
+    public void failingListenerKeepsReceivingEvents() throws Exception {
+        final BlockingQueue<String> paths = new LinkedBlockingQueue<String>();
+        SaveEventListener listener = new SaveEventListener() {
+            public void onEvent(EventIterator events) {
+                String path = ((EventUtil.DetachedEvent) events.next()).getPath();
+                paths.add(path);
+                if (path.equals("/fail")) {
+                    throw new IllegalStateException("expected");
+                }
+            }
+        };
+        SaveEventQueue queue = register(listener, 10);
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            public void uncaughtException(Thread t, Throwable e) {
+            }
+        });
+        try {
+            saved("ws", "/fail");
+            assertEquals("/fail", paths.poll(5, TimeUnit.SECONDS));
+            saved("ws", "/next");
+            assertEquals("/next", paths.poll(5, TimeUnit.SECONDS));
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+        assertEquals(1, queue.getFailureCount());
+    }
+
+    @Test
+    public void unregisteringStopsThread() throws Exception {
+        Recorder recorder = new Recorder(false);
+        SaveEventQueue queue = register(recorder, 10);
+        assertTrue(EventUtil.getSaveEventQueues().contains(queue));
+
+        EventUtil.unregisterSaveEventListener(recorder);
+        assertFalse(EventUtil.getSaveEventQueues().contains(queue));
+        for (int i = 0; i < 100 && queue.isAlive(); ++i) {
+            Thread.sleep(10);
+        }
+        assertFalse(queue.isAlive());
+    }
+
+    @Test
+    public void asynchronousListenersOnlySeeSucceededSaves() throws Exception {
+        startRepository();
+        final List<String> before = new ArrayList<String>();
+        SaveEventListener sync = new SaveEventListener() {
+            public void onEvent(EventIterator events) {
+                try {
+                    before.add(((Event) events.next()).getPath());
+                } catch (RepositoryException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        EventUtil.registerSaveEventListener(sync);
+        registered.add(sync);
+        Recorder recorder = new Recorder(false);
+        register(recorder, 10);
+
+        Session session = EventUtil.wrapSession(repo.login(new SimpleCredentials("admin", "admin".toCharArray())));
+        try {
+            Node root = session.getRootNode();
+            Node node = root.addNode("a");
+            try {
+                // new nodes can only be saved through their parent
+                node.save();
+                fail();
+            } catch (RepositoryException e) {
+            }
+            root.save();
+            node.setProperty("p", "v");
+            node.save();
+        } finally {
+            session.logout();
+        }
+
+        // the base session raises the synchronous event once per node
+        assertEquals(2, before.size());
+        assertEquals("/a", before.get(0));
+        List<Event> batch = recorder.batch();
+        assertEquals("/", batch.get(0).getPath());
+        if (batch.size() == 1) {
+            batch = recorder.batch();
+        }
+        SaveEvent event = (SaveEvent) batch.get(batch.size() - 1);
+        assertEquals("/a", event.getPath());
+        assertEquals("default", event.getWorkspaceName());
+        assertEquals("admin", event.getUserID());
+        assertNotNull(event.getIdentifier());
+        try {
+            event.getNode();
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    private SaveEventQueue register(SaveEventListener listener, int capacity) {
+        registered.add(listener);
+        return EventUtil.registerAsynchronousSaveEventListener(listener, capacity);
+    }
+
+    private static void saved(String workspace, String path) {
+        EventUtil.DetachedEvent event = new EventUtil.DetachedEvent(workspace, path, path, "admin");
+        for (SaveEventQueue queue : EventUtil.getSaveEventQueues()) {
+            queue.offer(event, workspace, path);
+        }
+    }
+
+    private void startRepository() throws IOException, RepositoryException {
+        home = new File(System.getProperty("java.io.tmpdir"), getClass().getName());
+        delete(home);
+        if (!home.mkdirs()) {
+            throw new RuntimeException("Could not create directory: " + home.getAbsolutePath());
+        }
+        InputStream configStream = getClass().getResourceAsStream("/org/brixcms/repository.xml");
+        repo = RepositoryImpl.create(RepositoryConfig.create(configStream, home.getAbsolutePath()));
+    }
+
+    private static void delete(File file) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Hands the delivered batches to the test, optionally blocking the delivery thread in the first batch.
+     */
+    private class Recorder implements SaveEventListener {
+        private final BlockingQueue<List<Event>> batches = new LinkedBlockingQueue<List<Event>>();
+        private boolean block;
+
+        Recorder(boolean block) {
+            this.block = block;
+        }
+
+        public void onEvent(EventIterator events) {
+            List<Event> batch = new ArrayList<Event>();
+            while (events.hasNext()) {
+                batch.add(events.nextEvent());
+            }
+            batches.add(batch);
+            if (block) {
+                block = false;
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        List<Event> batch() throws InterruptedException {
+            List<Event> batch = batches.poll(5, TimeUnit.SECONDS);
+            assertNotNull("no events delivered", batch);
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr.base.event;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Adds 50 000 events to a {@link ChangeLog}, the way a session importing 10 000 nodes would, and reports how long it
+ * takes. Also checks that the events are still coalesced and returned in order.
+ */
+public class ChangeLogBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeLogBenchmarkTest.class);
+
+    private static final int NODES = 10000;
+
+    private static final int PROPERTIES = 4;
+
+    @Test
+    public void testAddEvents() throws Exception {
+        ChangeLog log = new ChangeLog();
+        Node site = node("/site", null);
+        Node[] nodes = new Node[NODES];
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < NODES; ++i) {
+            nodes[i] = node(path(i), site);
+            log.addEvent(new AddNodeEvent(nodes[i]));
+            for (int j = 0; j < PROPERTIES; ++j) {
+                log.addEvent(new SetPropertyEvent(property(nodes[i], "p" + j)));
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Added " + NODES * (PROPERTIES + 1) + " events in " + elapsed + " ms");
+
+        // replaces the pending change of the same property
+        for (int i = 0; i < NODES; ++i) {
+            log.addEvent(new SetPropertyEvent(property(nodes[i], "p0")));
+        }
+        // removes the nodes together with all their events
+        for (int i = 0; i < 1000; ++i) {
+            log.addEvent(new BeforeRemoveNodeEvent(nodes[i]));
+        }
+
+        List<Event> events = log.removeAndGetAffectedEvents(path(1000));
+        assertEquals(PROPERTIES + 1, events.size());
+        assertTrue(events.get(0) instanceof AddNodeEvent);
+
+        events = log.removeAndGetAffectedEvents(path(1001) + "/p1");
+        assertEquals(1, events.size());
+        assertEquals("p1", ((SetPropertyEvent) events.get(0)).getPropertyName());
+
+        events = log.removeAndGetAffectedEvents(null);
+        assertEquals((NODES - 1000) * (PROPERTIES + 1) - PROPERTIES - 2, events.size());
+        assertTrue(events.get(0) instanceof AddNodeEvent);
+        assertEquals(path(1001), ((AddNodeEvent) events.get(0)).getNewNode().getPath());
+        SetPropertyEvent last = (SetPropertyEvent) events.get(events.size() - 1);
+        assertEquals(path(NODES - 1), last.getNode().getPath());
+        assertEquals("p0", last.getPropertyName());
+
+        assertTrue(log.removeAndGetAffectedEvents(null).isEmpty());
+    }
+
+    @Test
+    public void testRepeatedMovesAreCoalesced() throws Exception {
+        ChangeLog log = new ChangeLog();
+        Node site = node("/site", null);
+        final String[] path = {"/site/a"};
+        Node node = movableNode(path, site);
+
+        log.addEvent(new SetPropertyEvent(property(node, "p")));
+        path[0] = "/site/b";
+        log.addEvent(new MoveNodeEvent(node, "/site/a"));
+        path[0] = "/site/c";
+        log.addEvent(new MoveNodeEvent(node, "/site/b"));
+        path[0] = "/site/d";
+        log.addEvent(new MoveNodeEvent(node, "/site/c"));
+
+        List<Event> events = log.removeAndGetAffectedEvents("/site/d");
+        assertEquals(2, events.size());
+        assertEquals("p", ((SetPropertyEvent) events.get(0)).getPropertyName());
+        assertEquals("/site/a", ((MoveNodeEvent) events.get(1)).getOriginalPath());
+        assertTrue(log.removeAndGetAffectedEvents(null).isEmpty());
+    }
+
+    @Test
+    public void testMovedSubtreeIsReindexed() throws Exception {
+        ChangeLog log = new ChangeLog();
+        Node site = node("/site", null);
+        final String[] parentPath = {"/site/a"};
+        final String[] childPath = {"/site/a/x"};
+        Node parent = movableNode(parentPath, site);
+        Node child = movableNode(childPath, parent);
+        Node other = node("/site/other", site);
+
+        log.addEvent(new SetPropertyEvent(property(child, "p")));
+        log.addEvent(new SetPropertyEvent(property(other, "p")));
+        parentPath[0] = "/site/b";
+        childPath[0] = "/site/b/x";
+        log.addEvent(new MoveNodeEvent(parent, "/site/a"));
+
+        assertTrue(log.removeAndGetAffectedEvents("/site/a").isEmpty());
+        List<Event> events = log.removeAndGetAffectedEvents("/site/b/x");
+        assertEquals(1, events.size());
+        assertSame(child, ((SetPropertyEvent) events.get(0)).getNode());
+        assertEquals(1, log.removeAndGetAffectedEvents("/site/other").size());
+        assertEquals(1, log.removeAndGetAffectedEvents(null).size());
+    }
+
+    @Test
+    public void testBulkMove() throws Exception {
+        ChangeLog log = new ChangeLog();
+        Node site = node("/site", null);
+        String[][] paths = new String[NODES][];
+        for (int i = 0; i < NODES; ++i) {
+            paths[i] = new String[]{path(i)};
+            log.addEvent(new SetPropertyEvent(property(movableNode(paths[i], site), "p")));
+        }
+
+        long start = System.currentTimeMillis();
+        List<Node> moved = new ArrayList<Node>();
+        for (int i = 0; i < NODES; ++i) {
+            String original = paths[i][0];
+            paths[i][0] = original.replace("/n", "/m");
+            Node node = movableNode(paths[i], site);
+            moved.add(node);
+            log.addEvent(new MoveNodeEvent(node, original));
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Moved " + NODES + " nodes in " + elapsed + " ms");
+
+        assertTrue(log.removeAndGetAffectedEvents(path(5000)).isEmpty());
+        List<Event> events = log.removeAndGetAffectedEvents(path(5000).replace("/n", "/m"));
+        assertEquals(2, events.size());
+        assertTrue(events.get(0) instanceof SetPropertyEvent);
+        assertSame(moved.get(5000), ((MoveNodeEvent) events.get(1)).getNode());
+    }
+
+    /**
+     * Names have the same length, events are matched by path prefix and n1 would match n10.
+     */
+    private static String path(int i) {
+        return String.format("/site/n%05d", i);
+    }
+
+    private static Node node(String path, Node parent) {
+        return movableNode(new String[]{path}, parent);
+    }
+
+    /**
+     * @param path holder of the current path of the node
+     */
+    private static Node movableNode(final String[] path, final Node parent) {
+        return (Node) Proxy.newProxyInstance(Node.class.getClassLoader(), new Class[]{Node.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("getPath")) {
+                            return path[0];
+                        } else if (name.equals("getName")) {
+                            return path[0].substring(path[0].lastIndexOf('/') + 1);
+                        } else if (name.equals("getParent")) {
+                            return parent;
+                        } else if (name.equals("isNodeType")) {
+                            return false;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+
+    private static Property property(final Node node, final String propertyName) {
+        return (Property) Proxy.newProxyInstance(Property.class.getClassLoader(), new Class[]{Property.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("getName")) {
+                            return propertyName;
+                        } else if (name.equals("getParent")) {
+                            return node;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+}